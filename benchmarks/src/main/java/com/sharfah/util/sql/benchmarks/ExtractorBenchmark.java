@@ -0,0 +1,160 @@
+package com.sharfah.util.sql.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sharfah.util.sql.StreamingCsvResultSetExtractor;
+import com.sharfah.util.sql.StreamingJsonResultSetExtractor;
+
+/**
+ * Measures how fast the streaming extractors export generated rows.
+ * <p>
+ * An operation is one row, so the score is in rows per second, and with
+ * {@code -prof gc} the normalized allocation rate is in bytes per row. The
+ * {@code bytes} counter is the output written, in bytes per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ExtractorBenchmark {
+
+  /** The number of rows exported by each invocation. */
+  static final int ROWS = 100_000;
+
+  /**
+   * Where the output goes.
+   */
+  public enum Sink {
+    /** Discarded. */
+    NULL,
+    /** A ByteArrayOutputStream, reused across invocations. */
+    MEMORY,
+    /** A temporary file, truncated by each invocation. */
+    FILE
+  }
+
+  @Param({ "NARROW", "WIDE" })
+  public SyntheticRows.Width width;
+
+  @Param({ "NUMERIC", "STRING" })
+  public SyntheticRows.Content content;
+
+  @Param({ "0.0", "0.25" })
+  public double nullRatio;
+
+  @Param({ "NULL", "MEMORY", "FILE" })
+  public Sink sink;
+
+  private SyntheticRows rows;
+  private ByteArrayOutputStream memory;
+  private Path file;
+
+  /**
+   * Counts the bytes written, reported per second.
+   */
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class Output {
+
+    public long bytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      bytes = 0;
+    }
+  }
+
+  @Setup
+  public void setUp() throws IOException {
+    rows = new SyntheticRows(width, content, nullRatio);
+    memory = new ByteArrayOutputStream(64 * 1024 * 1024);
+    file = Files.createTempFile("extractor-benchmark", ".out");
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public void csv(final Output output) throws IOException {
+    try (var os = open(output)) {
+      new StreamingCsvResultSetExtractor(os).extractData(rows.resultSet(ROWS));
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public void json(final Output output) throws IOException {
+    try (var os = open(output)) {
+      new StreamingJsonResultSetExtractor(os).extractData(rows.resultSet(ROWS));
+    }
+  }
+
+  private OutputStream open(final Output output) throws IOException {
+    final OutputStream os;
+    switch (sink) {
+      case MEMORY:
+        memory.reset();
+        os = memory;
+        break;
+      case FILE:
+        os = Files.newOutputStream(file);
+        break;
+      default:
+        os = OutputStream.nullOutputStream();
+        break;
+    }
+    return new CountingOutputStream(os, output);
+  }
+
+  /**
+   * Adds the bytes written to the output counter.
+   */
+  private static final class CountingOutputStream extends FilterOutputStream {
+
+    private final Output output;
+
+    CountingOutputStream(final OutputStream os, final Output output) {
+      super(os);
+      this.output = output;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+      out.write(b);
+      output.bytes++;
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+      out.write(b, off, len);
+      output.bytes += len;
+    }
+  }
+}
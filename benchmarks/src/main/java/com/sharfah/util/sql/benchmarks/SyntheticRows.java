@@ -0,0 +1,132 @@
+package com.sharfah.util.sql.benchmarks;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.sql.Types;
+
+import com.sharfah.util.sql.InMemoryResultSet;
+
+/**
+ * Generates rows of a given width and content for the benchmarks.
+ * <p>
+ * Strings, decimals and timestamps are taken from pools built up front, and
+ * numbers are set as primitives, so that generating a row allocates nothing
+ * and what is measured is the cost of extracting it.
+ */
+public final class SyntheticRows {
+
+  /**
+   * The number of columns.
+   */
+  public enum Width {
+    NARROW(4), WIDE(40);
+
+    private final int columns;
+
+    Width(final int columns) {
+      this.columns = columns;
+    }
+  }
+
+  /**
+   * The types of the columns after the first, which is always a BIGINT id.
+   */
+  public enum Content {
+    NUMERIC(Types.BIGINT, Types.DOUBLE, Types.INTEGER, Types.DECIMAL, Types.BOOLEAN, Types.TIMESTAMP),
+    STRING(Types.VARCHAR, Types.VARCHAR, Types.BIGINT, Types.VARCHAR);
+
+    private final int[] types;
+
+    Content(final int... types) {
+      this.types = types;
+    }
+  }
+
+  private static final int POOL_SIZE = 1024;
+
+  private final String[] names;
+  private final int[] types;
+  private final long nullThreshold;
+  private final String[] strings = new String[POOL_SIZE];
+  private final BigDecimal[] decimals = new BigDecimal[POOL_SIZE];
+  private final Timestamp[] timestamps = new Timestamp[POOL_SIZE];
+
+  /**
+   * @param width the number of columns
+   * @param content the types of the columns
+   * @param nullRatio the fraction of values, other than ids, which are null
+   */
+  public SyntheticRows(final Width width, final Content content, final double nullRatio) {
+    names = new String[width.columns];
+    types = new int[width.columns];
+    for (var i = 0; i < width.columns; i++) {
+      names[i] = i == 0 ? "id" : "c" + i;
+      types[i] = i == 0 ? Types.BIGINT : content.types[(i - 1) % content.types.length];
+    }
+    nullThreshold = (long) (nullRatio * (1L << 24));
+    for (var i = 0; i < POOL_SIZE; i++) {
+      // mostly plain words of varying length, some needing quotes or escapes
+      final var s = new StringBuilder("value ").append(i);
+      for (var j = 0; j < i % 7; j++) {
+        s.append(" lorem");
+      }
+      if (i % 10 == 0) {
+        s.append(", \"quoted\"");
+      }
+      strings[i] = s.toString();
+      decimals[i] = BigDecimal.valueOf(i * 7919L - 4_000_000, 2);
+      timestamps[i] = new Timestamp(1_600_000_000_000L + i * 86_399_999L);
+    }
+  }
+
+  /**
+   * @param rows the number of rows
+   * @return a ResultSet over that many generated rows
+   */
+  public InMemoryResultSet resultSet(final long rows) {
+    return InMemoryResultSet.generate(names, types, rows, this::generate);
+  }
+
+  private void generate(final long row, final InMemoryResultSet.Row values) {
+    values.setLong(1, row);
+    for (var i = 1; i < types.length; i++) {
+      if (isNull(row, i)) {
+        continue;
+      }
+      final var column = i + 1;
+      final var pooled = (int) ((row + i) % POOL_SIZE);
+      switch (types[i]) {
+        case Types.BIGINT:
+          values.setLong(column, row * 1_000_003 + i);
+          break;
+        case Types.INTEGER:
+          values.setLong(column, (row + i) % 100_000);
+          break;
+        case Types.DOUBLE:
+          values.setDouble(column, row * 0.37 + i);
+          break;
+        case Types.BOOLEAN:
+          values.setBoolean(column, (row + i) % 2 == 0);
+          break;
+        case Types.DECIMAL:
+          values.setObject(column, decimals[pooled]);
+          break;
+        case Types.TIMESTAMP:
+          values.setObject(column, timestamps[pooled]);
+          break;
+        default:
+          values.setObject(column, strings[pooled]);
+          break;
+      }
+    }
+  }
+
+  /**
+   * Decides whether a value is null from a hash of its position, so that
+   * nulls are spread evenly but the same on every run.
+   */
+  private boolean isNull(final long row, final int column) {
+    final var hash = (row * 0x9E3779B97F4A7C15L + column * 0xBF58476D1CE4E5B9L) * 0x94D049BB133111EBL;
+    return (hash >>> 40) < nullThreshold;
+  }
+}
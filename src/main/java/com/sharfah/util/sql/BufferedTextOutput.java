@@ -0,0 +1,168 @@
+package com.sharfah.util.sql;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes rows of text as UTF-8 into a large reusable byte buffer, which is
+ * written to the OutputStream when it fills up. The stream is flushed when
+ * the {@link FlushPolicy} says so, and at the end.
+ * <p>
+ * If the OutputStream is a {@link ByteBufferOutput} whose buffers can hold
+ * any encoded character, the text is encoded straight into its buffers
+ * instead.
+ */
+final class BufferedTextOutput implements Closeable {
+
+  // large enough for any encoded character, so that encoding always progresses
+  static final int MIN_BUFFER_SIZE = 16;
+
+  private final OutputStream os;
+  private final ByteBufferOutput direct;
+  private final FlushPolicy flushPolicy;
+  private final CharsetEncoder encoder;
+  private ByteBuffer bytes;
+  // the position of the bytes buffer when it was last drained or handed out
+  private int mark;
+  private CharBuffer chars;
+
+  private long rowsSinceFlush;
+  private long bytesSinceFlush;
+  private long lastFlushNanos;
+  private long bytesWritten;
+
+  /**
+   * @param os the OutputStream to write to
+   * @param bufferSize the size of the byte buffer
+   * @param flushPolicy when to flush the OutputStream
+   */
+  BufferedTextOutput(final OutputStream os, final int bufferSize, final FlushPolicy flushPolicy) {
+    this.os = os;
+    // a smaller buffer could not take a whole character, so the text would never fit
+    this.direct = os instanceof ByteBufferOutput
+        && ((ByteBufferOutput) os).buffer().capacity() >= MIN_BUFFER_SIZE ? (ByteBufferOutput) os : null;
+    this.flushPolicy = flushPolicy;
+    this.encoder = StandardCharsets.UTF_8.newEncoder()
+        .onMalformedInput(CodingErrorAction.REPLACE)
+        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    if (direct == null) {
+      this.bytes = ByteBuffer.allocate(Math.max(bufferSize, MIN_BUFFER_SIZE));
+    } else {
+      this.bytes = direct.buffer();
+      this.mark = bytes.position();
+    }
+    this.chars = CharBuffer.allocate(0);
+    this.lastFlushNanos = System.nanoTime();
+  }
+
+  /**
+   * Encodes a complete row, including its line separator, and consults the
+   * flush policy.
+   *
+   * @param buf the row to write
+   * @throws IOException if the OutputStream cannot be written to
+   */
+  void writeRow(final TextBuffer buf) throws IOException {
+    write(buf);
+    rowsSinceFlush++;
+    if (flushPolicy.shouldFlush(rowsSinceFlush, bytesSinceFlush + bytes.position() - mark,
+        lastFlushNanos)) {
+      flush();
+    }
+  }
+
+  /**
+   * Encodes the contents of the buffer.
+   *
+   * @param buf the text to write
+   * @throws IOException if the OutputStream cannot be written to
+   */
+  void write(final TextBuffer buf) throws IOException {
+    // rewrap only when the TextBuffer has grown, to avoid allocating per row
+    if (chars.array() != buf.chars()) {
+      chars = CharBuffer.wrap(buf.chars());
+    }
+    chars.clear().limit(buf.length());
+    while (encoder.encode(chars, bytes, false).isOverflow()) {
+      drain();
+    }
+  }
+
+  /**
+   * Writes the buffered bytes to the OutputStream and flushes it.
+   *
+   * @throws IOException if the OutputStream cannot be written to
+   */
+  void flush() throws IOException {
+    if (direct == null) {
+      drain();
+      os.flush();
+    } else {
+      count();
+      direct.flush();
+      bytes = direct.buffer();
+      mark = bytes.position();
+    }
+    rowsSinceFlush = 0;
+    bytesSinceFlush = 0;
+    lastFlushNanos = System.nanoTime();
+  }
+
+  /**
+   * @return the number of bytes written so far, including those still buffered
+   */
+  long bytesWritten() {
+    return bytesWritten + bytes.position() - mark;
+  }
+
+  /**
+   * Makes space in the bytes buffer, by writing it out or by moving on to the
+   * next buffer of the ByteBufferOutput.
+   */
+  private void drain() throws IOException {
+    if (direct != null) {
+      count();
+      direct.next();
+      bytes = direct.buffer();
+      mark = bytes.position();
+      return;
+    }
+    final var len = bytes.position();
+    if (len > 0) {
+      os.write(bytes.array(), 0, len);
+      bytes.clear();
+      bytesWritten += len;
+      bytesSinceFlush += len;
+    }
+  }
+
+  private void count() {
+    final var len = bytes.position() - mark;
+    bytesWritten += len;
+    bytesSinceFlush += len;
+    mark = bytes.position();
+  }
+
+  /**
+   * Flushes the remaining output and closes the OutputStream.
+   */
+  @Override
+  public void close() throws IOException {
+    try (os) {
+      chars.clear().limit(0);
+      while (encoder.encode(chars, bytes, true).isOverflow()) {
+        drain();
+      }
+      while (encoder.flush(bytes).isOverflow()) {
+        drain();
+      }
+      flush();
+    }
+  }
+}
@@ -0,0 +1,68 @@
+package com.sharfah.util.sql;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An OutputStream which collects bytes in ByteBuffers that it hands out,
+ * so that an encoder can put bytes straight into them rather than into an
+ * array of its own which is then copied. See {@link BufferedTextOutput}.
+ */
+abstract class ByteBufferOutput extends OutputStream {
+
+  /** The buffer being filled. */
+  protected ByteBuffer buffer;
+
+  /** Where the bytes written and the time spent writing are added, may be null. */
+  protected ExportStats stats;
+
+  /**
+   * @return the buffer to put bytes into, which may be full
+   */
+  final ByteBuffer buffer() {
+    return buffer;
+  }
+
+  /**
+   * Takes the bytes put into the buffer, which may be full, and replaces it
+   * with one which has space.
+   *
+   * @throws IOException if the bytes cannot be written
+   */
+  abstract void next() throws IOException;
+
+  /**
+   * Adds the bytes written and the time spent writing them to the stats.
+   *
+   * @param stats the stats
+   * @return this
+   */
+  final ByteBufferOutput metered(final ExportStats stats) {
+    this.stats = stats;
+    return this;
+  }
+
+  @Override
+  public final void write(final int b) throws IOException {
+    if (!buffer.hasRemaining()) {
+      next();
+    }
+    buffer.put((byte) b);
+  }
+
+  @Override
+  public final void write(final byte[] b, final int off, final int len) throws IOException {
+    var offset = off;
+    var remaining = len;
+    while (remaining > 0) {
+      if (!buffer.hasRemaining()) {
+        next();
+      }
+      final var n = Math.min(remaining, buffer.remaining());
+      buffer.put(b, offset, n);
+      offset += n;
+      remaining -= n;
+    }
+  }
+}
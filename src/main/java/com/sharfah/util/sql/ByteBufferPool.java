@@ -0,0 +1,89 @@
+package com.sharfah.util.sql;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * A pool of direct ByteBuffers of one size, which are costly to allocate and
+ * are freed only by the garbage collector, so are worth reusing across
+ * exports. A pool is thread-safe and meant to be shared.
+ */
+public final class ByteBufferPool {
+
+  /** The default size of each buffer, in bytes. */
+  public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  /** The default maximum number of idle buffers kept. */
+  public static final int DEFAULT_MAX_POOLED = 64;
+
+  private final int bufferSize;
+  private final int maxPooled;
+  private final ArrayDeque<ByteBuffer> pooled = new ArrayDeque<>();
+
+  /**
+   * Creates a pool of {@link #DEFAULT_MAX_POOLED} buffers of
+   * {@link #DEFAULT_BUFFER_SIZE} bytes.
+   */
+  public ByteBufferPool() {
+    this(DEFAULT_BUFFER_SIZE, DEFAULT_MAX_POOLED);
+  }
+
+  /**
+   * @param bufferSize the size of each buffer, in bytes
+   * @param maxPooled the maximum number of idle buffers kept; buffers
+   *        released beyond this are left to the garbage collector
+   */
+  public ByteBufferPool(final int bufferSize, final int maxPooled) {
+    if (bufferSize <= 0) {
+      throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+    }
+    if (maxPooled < 0) {
+      throw new IllegalArgumentException("Max pooled must not be negative: " + maxPooled);
+    }
+    this.bufferSize = bufferSize;
+    this.maxPooled = maxPooled;
+  }
+
+  /**
+   * @return the size of each buffer, in bytes
+   */
+  public int getBufferSize() {
+    return bufferSize;
+  }
+
+  /**
+   * @return an empty buffer, pooled or newly allocated
+   */
+  ByteBuffer acquire() {
+    synchronized (pooled) {
+      final var buffer = pooled.poll();
+      if (buffer != null) {
+        return buffer;
+      }
+    }
+    return ByteBuffer.allocateDirect(bufferSize);
+  }
+
+  /**
+   * Returns a buffer to the pool.
+   *
+   * @param buffer a buffer acquired from this pool
+   */
+  void release(final ByteBuffer buffer) {
+    buffer.clear();
+    synchronized (pooled) {
+      if (pooled.size() < maxPooled) {
+        pooled.push(buffer);
+      }
+    }
+  }
+
+  /**
+   * @return the number of idle buffers
+   */
+  int pooled() {
+    synchronized (pooled) {
+      return pooled.size();
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package com.sharfah.util.sql;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+
+/**
+ * Creates OutputStreams, to give to the extractors, which write to channels
+ * through direct ByteBuffers rather than through heap arrays and stream
+ * wrappers.
+ * <p>
+ * The CSV extractor encodes straight into these buffers. Other extractors,
+ * and compressed output, write to them like to any OutputStream, which still
+ * saves the copy into a temporary direct buffer that writing a heap array to
+ * a channel entails.
+ *
+ * @author fahd
+ */
+public final class ChannelOutput {
+
+  /** The default number of full buffers written to a channel at once. */
+  public static final int DEFAULT_GATHER = 8;
+
+  /** The default size of each mapped region of a file, in bytes. */
+  public static final long DEFAULT_REGION_SIZE = 64L * 1024 * 1024;
+
+  // shared by the streams created without a pool
+  private static final ByteBufferPool DEFAULT_POOL = new ByteBufferPool();
+
+  private ChannelOutput() {
+  }
+
+  /**
+   * Creates a stream which writes to the channel with buffers from a shared
+   * pool. Closing the stream closes the channel.
+   *
+   * @param channel the channel to write to
+   * @return the stream
+   */
+  public static OutputStream of(final WritableByteChannel channel) {
+    return of(channel, DEFAULT_POOL, DEFAULT_GATHER);
+  }
+
+  /**
+   * Creates a stream which fills buffers from the pool and writes them to
+   * the channel several at a time, with a gathering write if the channel
+   * supports it. Closing the stream closes the channel.
+   *
+   * @param channel the channel to write to
+   * @param pool the pool of buffers
+   * @param gather the number of full buffers written at once
+   * @return the stream
+   */
+  public static OutputStream of(final WritableByteChannel channel, final ByteBufferPool pool,
+      final int gather) {
+    return new GatheringChannelOutput(channel, pool, gather);
+  }
+
+  /**
+   * Creates a stream which writes to the file through memory mapped regions
+   * of {@link #DEFAULT_REGION_SIZE} bytes.
+   *
+   * @param file the file, which is created or truncated
+   * @return the stream
+   * @throws IOException if the file cannot be opened or mapped
+   */
+  public static OutputStream mapped(final Path file) throws IOException {
+    return mapped(file, DEFAULT_REGION_SIZE);
+  }
+
+  /**
+   * Creates a stream which writes to the file through memory mapped regions.
+   * The file is grown a region at a time, so a region size close to the
+   * expected size of the output avoids remapping; the file is truncated to
+   * what was written when the stream is closed.
+   *
+   * @param file the file, which is created or truncated
+   * @param regionSize the size of each mapped region, in bytes
+   * @return the stream
+   * @throws IOException if the file cannot be opened or mapped
+   */
+  public static OutputStream mapped(final Path file, final long regionSize) throws IOException {
+    return new MappedFileOutput(file, regionSize);
+  }
+}
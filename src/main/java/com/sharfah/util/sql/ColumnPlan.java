@@ -0,0 +1,114 @@
+package com.sharfah.util.sql;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+
+import com.fasterxml.jackson.core.io.SerializedString;
+
+/**
+ * The names and types of the columns of a ResultSet, resolved once from its
+ * metadata so that nothing has to be looked up per row.
+ */
+public final class ColumnPlan {
+
+  final String[] names;
+  final ColumnType[] types;
+  private volatile SerializedString[] jsonNames;
+
+  ColumnPlan(final String[] names, final ColumnType[] types) {
+    this.names = names;
+    this.types = types;
+  }
+
+  /**
+   * Builds the plan for the given metadata.
+   *
+   * @param rsmd the ResultSet metadata
+   * @return the column plan
+   * @throws SQLException if the metadata cannot be read
+   */
+  static ColumnPlan of(final ResultSetMetaData rsmd) throws SQLException {
+    final var columnCount = rsmd.getColumnCount();
+    final var names = new String[columnCount];
+    final var types = new ColumnType[columnCount];
+    for (var i = 0; i < columnCount; i++) {
+      names[i] = rsmd.getColumnName(i + 1);
+      types[i] = ColumnType.of(rsmd.getColumnType(i + 1));
+    }
+    return new ColumnPlan(names, types);
+  }
+
+  /**
+   * Returns the plan for the given metadata from the cache, or builds it if
+   * there is no cache.
+   *
+   * @param rsmd the ResultSet metadata
+   * @param cache the plan cache, may be null
+   * @return the column plan
+   * @throws SQLException if the metadata cannot be read
+   */
+  static ColumnPlan of(final ResultSetMetaData rsmd, final ColumnPlanCache cache)
+      throws SQLException {
+    return cache == null ? of(rsmd) : cache.get(rsmd);
+  }
+
+  /**
+   * @return the number of columns
+   */
+  int size() {
+    return types.length;
+  }
+
+  /**
+   * @return true if any column is a {@link ColumnType#CLOB} or {@link ColumnType#BLOB}
+   */
+  boolean hasLobs() {
+    for (final var type : types) {
+      if (type == ColumnType.CLOB || type == ColumnType.BLOB) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return the number of columns
+   */
+  public int getColumnCount() {
+    return types.length;
+  }
+
+  /**
+   * @param i the index of the column, from 0
+   * @return the name of the column
+   */
+  public String getColumnName(final int i) {
+    return names[i];
+  }
+
+  /**
+   * @param i the index of the column, from 0
+   * @return the type of the column
+   */
+  public ColumnType getColumnType(final int i) {
+    return types[i];
+  }
+
+  /**
+   * Returns the column names as JSON field names, which cache their quoted
+   * and encoded forms. They are created on first use.
+   *
+   * @return the JSON field names
+   */
+  SerializedString[] jsonNames() {
+    var result = jsonNames;
+    if (result == null) {
+      result = new SerializedString[names.length];
+      for (var i = 0; i < names.length; i++) {
+        result[i] = new SerializedString(names[i]);
+      }
+      jsonNames = result;
+    }
+    return result;
+  }
+}
@@ -0,0 +1,98 @@
+package com.sharfah.util.sql;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A thread-safe, size-bounded cache of column plans, keyed by the names and
+ * JDBC types of the columns. Result sets with the same shape share a plan,
+ * along with everything it has derived, such as its JSON field names.
+ */
+final class ColumnPlanCache {
+
+  /**
+   * The names and JDBC types of the columns of a ResultSet.
+   */
+  private static final class Signature {
+    final String[] names;
+    final int[] sqlTypes;
+    final int hash;
+
+    Signature(final String[] names, final int[] sqlTypes) {
+      this.names = names;
+      this.sqlTypes = sqlTypes;
+      this.hash = 31 * Arrays.hashCode(names) + Arrays.hashCode(sqlTypes);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Signature)) {
+        return false;
+      }
+      final var other = (Signature) obj;
+      return hash == other.hash
+          && Arrays.equals(sqlTypes, other.sqlTypes)
+          && Arrays.equals(names, other.names);
+    }
+  }
+
+  private final Map<Signature, ColumnPlan> plans;
+
+  /**
+   * @param maxSize the maximum number of plans to keep; the least recently
+   *        used plan is evicted when it is exceeded
+   */
+  ColumnPlanCache(final int maxSize) {
+    this.plans = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<Signature, ColumnPlan> eldest) {
+        return size() > maxSize;
+      }
+    });
+  }
+
+  /**
+   * Returns the plan for the given metadata, building it if it is not cached.
+   *
+   * @param rsmd the ResultSet metadata
+   * @return the column plan
+   * @throws SQLException if the metadata cannot be read
+   */
+  ColumnPlan get(final ResultSetMetaData rsmd) throws SQLException {
+    final var columnCount = rsmd.getColumnCount();
+    final var names = new String[columnCount];
+    final var sqlTypes = new int[columnCount];
+    for (var i = 0; i < columnCount; i++) {
+      names[i] = rsmd.getColumnName(i + 1);
+      sqlTypes[i] = rsmd.getColumnType(i + 1);
+    }
+    return plans.computeIfAbsent(new Signature(names, sqlTypes), k -> {
+      final var types = new ColumnType[columnCount];
+      for (var i = 0; i < columnCount; i++) {
+        types[i] = ColumnType.of(sqlTypes[i]);
+      }
+      return new ColumnPlan(names, types);
+    });
+  }
+
+  /**
+   * @return the number of cached plans
+   */
+  int size() {
+    return plans.size();
+  }
+}
@@ -0,0 +1,74 @@
+package com.sharfah.util.sql;
+
+import java.sql.Types;
+
+/**
+ * The kind of value held by a column, derived once from its JDBC type.
+ * It decides which ResultSet getter is used to read the column and how
+ * the value is written by the extractors.
+ */
+public enum ColumnType {
+  LONG,
+  DOUBLE,
+  FLOAT,
+  DECIMAL,
+  BOOLEAN,
+  STRING,
+  DATE,
+  TIME,
+  TIMESTAMP,
+  /** Text which may be too large to hold, read as a character stream. */
+  CLOB,
+  /** Binary data which may be too large to hold, read as a stream. */
+  BLOB,
+  OBJECT;
+
+  /**
+   * Returns the column type for the given JDBC type.
+   *
+   * @param sqlType a type from {@link java.sql.Types}
+   * @return the column type, {@link #OBJECT} if the JDBC type has no
+   *         specialised handling
+   */
+  public static ColumnType of(final int sqlType) {
+    switch (sqlType) {
+      case Types.TINYINT:
+      case Types.SMALLINT:
+      case Types.INTEGER:
+      case Types.BIGINT:
+        return LONG;
+      case Types.FLOAT:
+      case Types.DOUBLE:
+        return DOUBLE;
+      case Types.REAL:
+        return FLOAT;
+      case Types.NUMERIC:
+      case Types.DECIMAL:
+        return DECIMAL;
+      case Types.BIT:
+      case Types.BOOLEAN:
+        return BOOLEAN;
+      case Types.CHAR:
+      case Types.VARCHAR:
+      case Types.NCHAR:
+      case Types.NVARCHAR:
+        return STRING;
+      case Types.LONGVARCHAR:
+      case Types.LONGNVARCHAR:
+      case Types.CLOB:
+      case Types.NCLOB:
+        return CLOB;
+      case Types.LONGVARBINARY:
+      case Types.BLOB:
+        return BLOB;
+      case Types.DATE:
+        return DATE;
+      case Types.TIME:
+        return TIME;
+      case Types.TIMESTAMP:
+        return TIMESTAMP;
+      default:
+        return OBJECT;
+    }
+  }
+}
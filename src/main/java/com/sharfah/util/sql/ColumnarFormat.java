@@ -0,0 +1,109 @@
+package com.sharfah.util.sql;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Constants and primitives of the binary columnar format written by
+ * {@link ColumnarResultSetExtractor} and read by {@link ColumnarReader}.
+ * <p>
+ * The layout is:
+ * <pre>
+ * header:    magic "SCOL", version, column count, (name, type) per column
+ * row group: ROW_GROUP marker, row count, per column:
+ *              null flag, [null bitmap], encoding, non-null values
+ * end:       END marker
+ * footer:    column count, (name, type) per column, row group count,
+ *              (offset, row count) per row group, total rows
+ * trailer:   footer length (4 bytes), magic "SCOL"
+ * </pre>
+ * Numbers are big-endian, counts and lengths are unsigned LEB128 varints and
+ * strings are UTF-8 prefixed by their length in bytes. BLOBs are stored as
+ * base64 strings. The footer repeats the schema so that a reader with random
+ * access can start from the end.
+ */
+final class ColumnarFormat {
+
+  static final byte[] MAGIC = { 'S', 'C', 'O', 'L' };
+  static final int VERSION = 1;
+
+  static final int ROW_GROUP = 1;
+  static final int END = 0;
+
+  /** 8 bytes per value. */
+  static final int PLAIN_LONG = 0;
+  /** Runs of (value, length), for repeated values. */
+  static final int RLE_LONG = 1;
+  /** Length-prefixed UTF-8 per value. */
+  static final int PLAIN_STRING = 2;
+  /** A dictionary of distinct values followed by an index per value. */
+  static final int DICTIONARY_STRING = 3;
+
+  private ColumnarFormat() {
+  }
+
+  /**
+   * The physical representation of a column type.
+   *
+   * @param type the column type
+   * @return true if its values are stored as longs, false if as strings
+   */
+  static boolean isLong(final ColumnType type) {
+    switch (type) {
+      case LONG:
+      case DOUBLE:
+      case FLOAT:
+      case BOOLEAN:
+      case DATE:
+      case TIME:
+      case TIMESTAMP:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  static void writeVarint(final DataOutput out, final long value) throws IOException {
+    var v = value;
+    while ((v & ~0x7FL) != 0) {
+      out.writeByte((int) ((v & 0x7F) | 0x80));
+      v >>>= 7;
+    }
+    out.writeByte((int) v);
+  }
+
+  static long readVarint(final DataInput in) throws IOException {
+    var value = 0L;
+    for (var shift = 0; shift < 64; shift += 7) {
+      final var b = in.readUnsignedByte();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IOException("Malformed varint");
+  }
+
+  static void writeString(final DataOutput out, final String s) throws IOException {
+    final var bytes = s.getBytes(StandardCharsets.UTF_8);
+    writeVarint(out, bytes.length);
+    out.write(bytes);
+  }
+
+  static String readString(final DataInput in) throws IOException {
+    final var bytes = new byte[(int) readVarint(in)];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  static void writeSchema(final DataOutput out, final String[] names, final ColumnType[] types)
+      throws IOException {
+    writeVarint(out, names.length);
+    for (var i = 0; i < names.length; i++) {
+      writeString(out, names[i]);
+      writeString(out, types[i].name());
+    }
+  }
+}
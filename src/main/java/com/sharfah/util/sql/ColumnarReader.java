@@ -0,0 +1,360 @@
+package com.sharfah.util.sql;
+
+import static com.sharfah.util.sql.ColumnarFormat.*;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Reads the output of a {@link ColumnarResultSetExtractor} one row group at a
+ * time, from a stream, so that only one row group is held in memory.
+ * <p>
+ * Columns and rows are numbered from 0.
+ */
+public class ColumnarReader implements Closeable {
+
+  private final DataInputStream in;
+  private final String[] names;
+  private final ColumnType[] types;
+  private long rowsRead;
+  private long totalRows = -1;
+
+  /**
+   * Reads the header of the stream.
+   *
+   * @param is the stream to read from
+   * @throws IOException if the stream cannot be read or is not in the
+   *         columnar format
+   */
+  public ColumnarReader(final InputStream is) throws IOException {
+    this.in = new DataInputStream(new BufferedInputStream(is));
+    final var magic = new byte[MAGIC.length];
+    in.readFully(magic);
+    if (!Arrays.equals(magic, MAGIC)) {
+      throw new IOException("Not in the columnar format");
+    }
+    final var version = in.readUnsignedByte();
+    if (version != VERSION) {
+      throw new IOException("Unsupported columnar format version: " + version);
+    }
+    final var columnCount = (int) readVarint(in);
+    this.names = new String[columnCount];
+    this.types = new ColumnType[columnCount];
+    for (var i = 0; i < columnCount; i++) {
+      names[i] = readString(in);
+      types[i] = ColumnType.valueOf(readString(in));
+    }
+  }
+
+  /**
+   * @return the number of columns
+   */
+  public int getColumnCount() {
+    return names.length;
+  }
+
+  /**
+   * @param column the column index
+   * @return the column name
+   */
+  public String getColumnName(final int column) {
+    return names[column];
+  }
+
+  /**
+   * @param column the column index
+   * @return the column type
+   */
+  public ColumnType getColumnType(final int column) {
+    return types[column];
+  }
+
+  /**
+   * Returns the total number of rows, as recorded in the footer, which is
+   * only known once every row group has been read.
+   *
+   * @return the number of rows, or -1 if the footer has not been read yet
+   */
+  public long getTotalRows() {
+    return totalRows;
+  }
+
+  /**
+   * Reads the next row group. After the last one, the footer is read and
+   * checked.
+   *
+   * @return the row group, or null if there are no more
+   * @throws IOException if the stream cannot be read or is corrupt
+   */
+  public RowGroup next() throws IOException {
+    if (totalRows >= 0) {
+      return null;
+    }
+    final var marker = in.readUnsignedByte();
+    if (marker == END) {
+      readFooter();
+      return null;
+    }
+    if (marker != ROW_GROUP) {
+      throw new IOException("Unexpected marker: " + marker);
+    }
+    final var rowCount = (int) readVarint(in);
+    final var group = new RowGroup(rowCount);
+    for (var i = 0; i < names.length; i++) {
+      final var isNull = readNulls(rowCount);
+      group.nulls[i] = isNull;
+      final var encoding = in.readUnsignedByte();
+      switch (encoding) {
+        case PLAIN_LONG:
+          group.longs[i] = readPlainLongs(isNull, rowCount);
+          break;
+        case RLE_LONG:
+          group.longs[i] = readRunLengthLongs(isNull, rowCount);
+          break;
+        case PLAIN_STRING:
+          group.strings[i] = readPlainStrings(isNull, rowCount);
+          break;
+        case DICTIONARY_STRING:
+          group.strings[i] = readDictionaryStrings(isNull, rowCount);
+          break;
+        default:
+          throw new IOException("Unknown encoding: " + encoding);
+      }
+    }
+    rowsRead += rowCount;
+    return group;
+  }
+
+  private boolean[] readNulls(final int rowCount) throws IOException {
+    final var isNull = new boolean[rowCount];
+    if (in.readBoolean()) {
+      final var bitmap = new byte[(rowCount + 7) >>> 3];
+      in.readFully(bitmap);
+      for (var r = 0; r < rowCount; r++) {
+        isNull[r] = (bitmap[r >>> 3] & (1 << (r & 7))) != 0;
+      }
+    }
+    return isNull;
+  }
+
+  private long[] readPlainLongs(final boolean[] isNull, final int rowCount) throws IOException {
+    final var values = new long[rowCount];
+    for (var r = 0; r < rowCount; r++) {
+      if (!isNull[r]) {
+        values[r] = in.readLong();
+      }
+    }
+    return values;
+  }
+
+  private long[] readRunLengthLongs(final boolean[] isNull, final int rowCount)
+      throws IOException {
+    final var values = new long[rowCount];
+    final var runs = readVarint(in);
+    var r = 0;
+    for (var run = 0L; run < runs; run++) {
+      final var value = in.readLong();
+      var length = readVarint(in);
+      while (length > 0) {
+        if (r == rowCount) {
+          throw new IOException("Run exceeds the row group");
+        }
+        if (!isNull[r]) {
+          values[r] = value;
+          length--;
+        }
+        r++;
+      }
+    }
+    return values;
+  }
+
+  private String[] readPlainStrings(final boolean[] isNull, final int rowCount)
+      throws IOException {
+    final var values = new String[rowCount];
+    for (var r = 0; r < rowCount; r++) {
+      if (!isNull[r]) {
+        values[r] = readString(in);
+      }
+    }
+    return values;
+  }
+
+  private String[] readDictionaryStrings(final boolean[] isNull, final int rowCount)
+      throws IOException {
+    final var dictionary = new String[(int) readVarint(in)];
+    for (var d = 0; d < dictionary.length; d++) {
+      dictionary[d] = readString(in);
+    }
+    final var values = new String[rowCount];
+    for (var r = 0; r < rowCount; r++) {
+      if (!isNull[r]) {
+        values[r] = dictionary[(int) readVarint(in)];
+      }
+    }
+    return values;
+  }
+
+  private void readFooter() throws IOException {
+    final var columnCount = readVarint(in);
+    if (columnCount != names.length) {
+      throw new IOException("Footer does not match the header");
+    }
+    for (var i = 0; i < columnCount; i++) {
+      if (!names[i].equals(readString(in)) || !types[i].name().equals(readString(in))) {
+        throw new IOException("Footer does not match the header");
+      }
+    }
+    final var rowGroupCount = readVarint(in);
+    for (var g = 0L; g < rowGroupCount; g++) {
+      readVarint(in);
+      readVarint(in);
+    }
+    final var total = readVarint(in);
+    if (total != rowsRead) {
+      throw new IOException("Footer records " + total + " rows but " + rowsRead + " were read");
+    }
+    in.readInt();
+    final var magic = new byte[MAGIC.length];
+    in.readFully(magic);
+    if (!Arrays.equals(magic, MAGIC)) {
+      throw new IOException("Missing trailer");
+    }
+    totalRows = total;
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  /**
+   * The decoded columns of a row group.
+   */
+  public final class RowGroup {
+
+    private final int rowCount;
+    private final long[][] longs;
+    private final String[][] strings;
+    private final boolean[][] nulls;
+
+    private RowGroup(final int rowCount) {
+      this.rowCount = rowCount;
+      this.longs = new long[names.length][];
+      this.strings = new String[names.length][];
+      this.nulls = new boolean[names.length][];
+    }
+
+    /**
+     * @return the number of rows
+     */
+    public int getRowCount() {
+      return rowCount;
+    }
+
+    /**
+     * @param column the column index
+     * @param row the row index
+     * @return true if the value is null
+     */
+    public boolean isNull(final int column, final int row) {
+      return nulls[column][row];
+    }
+
+    /**
+     * Returns the value of a {@link ColumnType#LONG LONG} or
+     * {@link ColumnType#BOOLEAN BOOLEAN} (as 1 or 0) column, or the epoch
+     * millis of a DATE or TIME column, or the epoch micros of a TIMESTAMP
+     * column.
+     *
+     * @param column the column index
+     * @param row the row index
+     * @return the value, 0 if null
+     */
+    public long getLong(final int column, final int row) {
+      return checkLongs(column)[row];
+    }
+
+    /**
+     * Returns the value of a DOUBLE or FLOAT column.
+     *
+     * @param column the column index
+     * @param row the row index
+     * @return the value, 0 if null
+     */
+    public double getDouble(final int column, final int row) {
+      return Double.longBitsToDouble(checkLongs(column)[row]);
+    }
+
+    /**
+     * Returns the value of a column stored as a string: STRING, DECIMAL
+     * and OBJECT columns.
+     *
+     * @param column the column index
+     * @param row the row index
+     * @return the value, or null
+     */
+    public String getString(final int column, final int row) {
+      if (strings[column] == null) {
+        throw new IllegalArgumentException("Column " + column + " is not stored as strings");
+      }
+      return strings[column][row];
+    }
+
+    /**
+     * Returns a value as the Java type a JDBC driver would give for its
+     * column type: Long, Double, Float, Boolean, BigDecimal, String,
+     * java.sql.Date, Time, Timestamp or, for BLOBs, a byte array.
+     *
+     * @param column the column index
+     * @param row the row index
+     * @return the value, or null
+     */
+    public Object getObject(final int column, final int row) {
+      if (nulls[column][row]) {
+        return null;
+      }
+      switch (types[column]) {
+        case LONG:
+          return longs[column][row];
+        case DOUBLE:
+          return getDouble(column, row);
+        case FLOAT:
+          return (float) getDouble(column, row);
+        case BOOLEAN:
+          return longs[column][row] != 0;
+        case DECIMAL:
+          return new BigDecimal(strings[column][row]);
+        case DATE:
+          return new Date(longs[column][row]);
+        case TIME:
+          return new Time(longs[column][row]);
+        case TIMESTAMP:
+          final var micros = longs[column][row];
+          final var ts = new Timestamp(Math.floorDiv(micros, 1_000_000L) * 1000);
+          ts.setNanos((int) Math.floorMod(micros, 1_000_000L) * 1000);
+          return ts;
+        case BLOB:
+          return Base64.getDecoder().decode(strings[column][row]);
+        default:
+          return strings[column][row];
+      }
+    }
+
+    private long[] checkLongs(final int column) {
+      if (longs[column] == null) {
+        throw new IllegalArgumentException("Column " + column + " is not stored as numbers");
+      }
+      return longs[column];
+    }
+  }
+}
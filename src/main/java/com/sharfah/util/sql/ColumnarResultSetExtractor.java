@@ -0,0 +1,134 @@
+package com.sharfah.util.sql;
+
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.util.concurrent.Executor;
+
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+/**
+ * Streams a ResultSet in a compact binary columnar format, which can be read
+ * back with a {@link ColumnarReader}.
+ * <p>
+ * Rows are buffered into row groups of a fixed number of rows. Each column of
+ * a row group is written with an encoding suited to its values: plain
+ * primitives, run-length encoding for repeated values, or a dictionary for
+ * strings with few distinct values. Nulls are kept in a bitmap. The output
+ * ends with a footer holding the schema and the offset of every row group.
+ * <p>
+ * Decimals and columns of other types are stored as strings, and timestamps
+ * to the microsecond.
+ */
+public class ColumnarResultSetExtractor implements ResultSetExtractor<Void> {
+
+  /** The default number of rows in a row group. */
+  public static final int DEFAULT_ROW_GROUP_SIZE = 16 * 1024;
+
+  /** The default size of the output buffer, in bytes. */
+  public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  private final OutputStream os;
+  private final ColumnPlanCache planCache;
+  private int rowGroupSize = DEFAULT_ROW_GROUP_SIZE;
+  final ExportOptions options = new ExportOptions();
+
+  /**
+   * @param os the OutputStream to stream the rows to
+   */
+  public ColumnarResultSetExtractor(final OutputStream os) {
+    this(os, null);
+  }
+
+  /**
+   * @param os the OutputStream to stream the rows to
+   * @param planCache the cache to get column plans from, may be null
+   */
+  ColumnarResultSetExtractor(final OutputStream os, final ColumnPlanCache planCache) {
+    this.os = os;
+    this.planCache = planCache;
+  }
+
+  /**
+   * Sets the number of rows in a row group, which are held in memory until
+   * the group is written. Defaults to {@link #DEFAULT_ROW_GROUP_SIZE}.
+   *
+   * @param rowGroupSize the number of rows
+   */
+  public void setRowGroupSize(final int rowGroupSize) {
+    if (rowGroupSize <= 0) {
+      throw new IllegalArgumentException("Row group size must be positive: " + rowGroupSize);
+    }
+    this.rowGroupSize = rowGroupSize;
+  }
+
+  /**
+   * Sets the size of the output buffer. Defaults to {@link #DEFAULT_BUFFER_SIZE}.
+   *
+   * @param bufferSize the buffer size, in bytes
+   */
+  public void setBufferSize(final int bufferSize) {
+    options.setBufferSize(bufferSize);
+  }
+
+  /**
+   * Sets the number of rows which may be fetched ahead of the encoding.
+   * If positive, rows are encoded on a separate thread; if 0, the default,
+   * rows are fetched and encoded on the calling thread.
+   *
+   * @param pipelineCapacity the number of rows, rounded up to a power of two
+   */
+  public void setPipelineCapacity(final int pipelineCapacity) {
+    options.setPipelineCapacity(pipelineCapacity);
+  }
+
+  /**
+   * Sets the executor which runs the encoding when pipelined. Defaults to a
+   * new thread per export.
+   *
+   * @param pipelineExecutor the executor
+   */
+  public void setPipelineExecutor(final Executor pipelineExecutor) {
+    options.pipelineExecutor = pipelineExecutor;
+  }
+
+  /**
+   * Sets how the output is compressed. Defaults to null, for no compression.
+   * The row group offsets in the footer are those of the uncompressed data.
+   *
+   * @param compression the compression, or null
+   */
+  public void setCompression(final Compression compression) {
+    options.compression = compression;
+  }
+
+  /**
+   * Sets what adjusts the fetch size of the ResultSet as it is read.
+   * Defaults to null, for the fetch size to be left as it is.
+   *
+   * @param fetchSizeTuner the fetch size tuner, or null
+   */
+  public void setFetchSizeTuner(final FetchSizeTuner fetchSizeTuner) {
+    options.fetchSizeTuner = fetchSizeTuner;
+  }
+
+  /**
+   * Sets the listener told how each export went. Defaults to null.
+   *
+   * @param exportListener the listener, or null
+   */
+  public void setExportListener(final ExportListener exportListener) {
+    options.exportListener = exportListener;
+  }
+
+  @Override
+  public Void extractData(final ResultSet rs) {
+    options.measure("columnar", stats -> {
+      try (var encoder = new ColumnarRowEncoder(options.output(os, stats), options.bufferSize,
+          rowGroupSize)) {
+        final var plan = ColumnPlan.of(rs.getMetaData(), planCache);
+        options.run(rs, plan, encoder, stats);
+      }
+    });
+    return null;
+  }
+}
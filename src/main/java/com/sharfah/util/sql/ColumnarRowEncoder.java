@@ -0,0 +1,266 @@
+package com.sharfah.util.sql;
+
+import static com.sharfah.util.sql.ColumnarFormat.*;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Encodes rows in the binary columnar format described by
+ * {@link ColumnarFormat}.
+ * <p>
+ * Rows are buffered, column by column, into a row group. When the group is
+ * full each column is written with the smallest of the encodings which suit
+ * its type: plain or run-length for numbers, booleans and temporals; plain or
+ * dictionary for strings. Nulls are recorded in a bitmap and take no other
+ * space.
+ */
+final class ColumnarRowEncoder implements RowSink {
+
+  private final CountingOutputStream counter;
+  private final DataOutputStream out;
+  private final int rowGroupSize;
+  private final List<long[]> rowGroups = new ArrayList<>();
+  private ColumnPlan plan;
+  private long[][] longs;
+  private String[][] strings;
+  private boolean[][] nulls;
+  private int count;
+  private long totalRows;
+
+  /**
+   * @param os the OutputStream to write to
+   * @param bufferSize the size of the output buffer, in bytes
+   * @param rowGroupSize the number of rows in each row group
+   */
+  ColumnarRowEncoder(final OutputStream os, final int bufferSize, final int rowGroupSize) {
+    this.counter = new CountingOutputStream(new BufferedOutputStream(os, bufferSize));
+    this.out = new DataOutputStream(counter);
+    this.rowGroupSize = rowGroupSize;
+  }
+
+  @Override
+  public void start(final ColumnPlan plan) throws IOException {
+    this.plan = plan;
+    final var size = plan.size();
+    longs = new long[size][];
+    strings = new String[size][];
+    nulls = new boolean[size][rowGroupSize];
+    for (var i = 0; i < size; i++) {
+      if (isLong(plan.types[i])) {
+        longs[i] = new long[rowGroupSize];
+      } else {
+        strings[i] = new String[rowGroupSize];
+      }
+    }
+    out.write(MAGIC);
+    out.writeByte(VERSION);
+    writeSchema(out, plan.names, plan.types);
+  }
+
+  @Override
+  public void write(final RowValues row) throws IOException {
+    for (var i = 0; i < row.types.length; i++) {
+      final var isNull = row.nulls[i];
+      nulls[i][count] = isNull;
+      if (isNull) {
+        continue;
+      }
+      switch (row.types[i]) {
+        case LONG:
+        case BOOLEAN:
+          longs[i][count] = row.longs[i];
+          break;
+        case DOUBLE:
+        case FLOAT:
+          longs[i][count] = Double.doubleToRawLongBits(row.doubles[i]);
+          break;
+        case DATE:
+        case TIME:
+          longs[i][count] = ((Date) row.objects[i]).getTime();
+          break;
+        case TIMESTAMP:
+          longs[i][count] = toEpochMicros((Timestamp) row.objects[i]);
+          break;
+        case BLOB:
+          strings[i][count] = Base64.getEncoder().encodeToString((byte[]) row.objects[i]);
+          break;
+        default:
+          strings[i][count] = row.objects[i].toString();
+          break;
+      }
+    }
+    if (++count == rowGroupSize) {
+      writeRowGroup();
+    }
+  }
+
+  private static long toEpochMicros(final Timestamp ts) {
+    return Math.floorDiv(ts.getTime(), 1000L) * 1_000_000L + ts.getNanos() / 1000;
+  }
+
+  private void writeRowGroup() throws IOException {
+    rowGroups.add(new long[] { counter.getCount(), count });
+    out.writeByte(ROW_GROUP);
+    writeVarint(out, count);
+    for (var i = 0; i < plan.size(); i++) {
+      final var present = writeNulls(nulls[i]);
+      if (longs[i] != null) {
+        writeLongs(longs[i], nulls[i], present);
+      } else {
+        writeStrings(strings[i], nulls[i], present);
+      }
+    }
+    totalRows += count;
+    count = 0;
+  }
+
+  /**
+   * Writes the null bitmap, if there are nulls.
+   *
+   * @return the number of non-null values
+   */
+  private int writeNulls(final boolean[] isNull) throws IOException {
+    var nullCount = 0;
+    for (var r = 0; r < count; r++) {
+      if (isNull[r]) {
+        nullCount++;
+      }
+    }
+    out.writeBoolean(nullCount > 0);
+    if (nullCount > 0) {
+      final var bitmap = new byte[(count + 7) >>> 3];
+      for (var r = 0; r < count; r++) {
+        if (isNull[r]) {
+          bitmap[r >>> 3] |= 1 << (r & 7);
+        }
+      }
+      out.write(bitmap);
+    }
+    return count - nullCount;
+  }
+
+  private void writeLongs(final long[] values, final boolean[] isNull, final int present)
+      throws IOException {
+    var runs = 0;
+    var first = true;
+    var previous = 0L;
+    for (var r = 0; r < count; r++) {
+      if (!isNull[r] && (first || values[r] != previous)) {
+        runs++;
+        previous = values[r];
+        first = false;
+      }
+    }
+    // a run costs its value and, mostly, a one or two byte length
+    if (runs * 10L < present * 8L) {
+      out.writeByte(RLE_LONG);
+      writeVarint(out, runs);
+      var length = 0;
+      for (var r = 0; r < count; r++) {
+        if (isNull[r]) {
+          continue;
+        }
+        if (length > 0 && values[r] != previous) {
+          out.writeLong(previous);
+          writeVarint(out, length);
+          length = 0;
+        }
+        previous = values[r];
+        length++;
+      }
+      if (length > 0) {
+        out.writeLong(previous);
+        writeVarint(out, length);
+      }
+    } else {
+      out.writeByte(PLAIN_LONG);
+      for (var r = 0; r < count; r++) {
+        if (!isNull[r]) {
+          out.writeLong(values[r]);
+        }
+      }
+    }
+  }
+
+  private void writeStrings(final String[] values, final boolean[] isNull, final int present)
+      throws IOException {
+    final var dictionary = dictionary(values, isNull, present);
+    if (dictionary == null) {
+      out.writeByte(PLAIN_STRING);
+      for (var r = 0; r < count; r++) {
+        if (!isNull[r]) {
+          writeString(out, values[r]);
+        }
+      }
+      return;
+    }
+    out.writeByte(DICTIONARY_STRING);
+    final var entries = new String[dictionary.size()];
+    dictionary.forEach((value, index) -> entries[index] = value);
+    writeVarint(out, entries.length);
+    for (final var entry : entries) {
+      writeString(out, entry);
+    }
+    for (var r = 0; r < count; r++) {
+      if (!isNull[r]) {
+        writeVarint(out, dictionary.get(values[r]));
+      }
+    }
+  }
+
+  /**
+   * Numbers the distinct values, giving up if they are more than half of all
+   * values, since a dictionary would then save little.
+   *
+   * @return the index of each distinct value, or null if there are too many
+   */
+  private HashMap<String, Integer> dictionary(final String[] values, final boolean[] isNull,
+      final int present) {
+    final var maxSize = present / 2;
+    final var dictionary = new HashMap<String, Integer>();
+    for (var r = 0; r < count; r++) {
+      if (!isNull[r] && dictionary.putIfAbsent(values[r], dictionary.size()) == null
+          && dictionary.size() > maxSize) {
+        return null;
+      }
+    }
+    return dictionary;
+  }
+
+  @Override
+  public void end() throws IOException {
+    if (count > 0) {
+      writeRowGroup();
+    }
+    out.writeByte(END);
+    final var footerStart = counter.getCount();
+    writeSchema(out, plan.names, plan.types);
+    writeVarint(out, rowGroups.size());
+    for (final var rowGroup : rowGroups) {
+      writeVarint(out, rowGroup[0]);
+      writeVarint(out, rowGroup[1]);
+    }
+    writeVarint(out, totalRows);
+    out.writeInt((int) (counter.getCount() - footerStart));
+    out.write(MAGIC);
+  }
+
+  @Override
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+}
@@ -0,0 +1,172 @@
+package com.sharfah.util.sql;
+
+import java.io.OutputStream;
+import java.util.concurrent.Executor;
+import java.util.zip.Deflater;
+
+/**
+ * How the output of an export is compressed. Instances are immutable; the
+ * {@code with} methods return a modified copy.
+ * <p>
+ * Compression uses a {@link Deflater} directly, so the size of its output
+ * buffer and when it emits a sync flush, which lets a reader decompress
+ * everything written so far, can be controlled. With a parallelism above 1,
+ * the output is cut into blocks which are compressed on several threads and
+ * written as consecutive gzip members, which any gzip reader accepts as one
+ * stream. The blocks are compressed by a shared executor, so compressing
+ * an export does not start threads of its own.
+ */
+public final class Compression {
+
+  /**
+   * The compressed format.
+   */
+  public enum Format {
+    /** The gzip file format, RFC 1952. */
+    GZIP,
+    /** The zlib format, RFC 1950, used by HTTP's "deflate" content coding. */
+    DEFLATE
+  }
+
+  /** The default size of the compressed output buffer, in bytes. */
+  public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+  /** The default size of each block compressed in parallel, in bytes. */
+  public static final int DEFAULT_BLOCK_SIZE = 1024 * 1024;
+
+  private final Format format;
+  private final int level;
+  private final int bufferSize;
+  private final long syncFlushInterval;
+  private final int parallelism;
+  private final int blockSize;
+  private final Executor executor;
+
+  private Compression(final Format format, final int level, final int bufferSize,
+      final long syncFlushInterval, final int parallelism, final int blockSize,
+      final Executor executor) {
+    this.format = format;
+    this.level = level;
+    this.bufferSize = bufferSize;
+    this.syncFlushInterval = syncFlushInterval;
+    this.parallelism = parallelism;
+    this.blockSize = blockSize;
+    this.executor = executor;
+  }
+
+  /**
+   * @return gzip compression with the default level
+   */
+  public static Compression gzip() {
+    return new Compression(Format.GZIP, Deflater.DEFAULT_COMPRESSION, DEFAULT_BUFFER_SIZE, 0, 1,
+        DEFAULT_BLOCK_SIZE, null);
+  }
+
+  /**
+   * @return zlib compression with the default level
+   */
+  public static Compression deflate() {
+    return new Compression(Format.DEFLATE, Deflater.DEFAULT_COMPRESSION, DEFAULT_BUFFER_SIZE, 0, 1,
+        DEFAULT_BLOCK_SIZE, null);
+  }
+
+  /**
+   * @param level the compression level, from 0 to 9, or -1 for the default
+   * @return a copy with the given level
+   */
+  public Compression withLevel(final int level) {
+    if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+      throw new IllegalArgumentException("Invalid compression level: " + level);
+    }
+    return new Compression(format, level, bufferSize, syncFlushInterval, parallelism, blockSize,
+        executor);
+  }
+
+  /**
+   * @param bufferSize the size of the compressed output buffer, in bytes
+   * @return a copy with the given buffer size
+   */
+  public Compression withBufferSize(final int bufferSize) {
+    if (bufferSize <= 0) {
+      throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+    }
+    return new Compression(format, level, bufferSize, syncFlushInterval, parallelism, blockSize,
+        executor);
+  }
+
+  /**
+   * Sets how much uncompressed data is written between sync flushes. Output
+   * is always sync flushed when the stream is flushed.
+   *
+   * @param syncFlushInterval the number of uncompressed bytes, or 0 to only
+   *        sync flush when the stream is flushed
+   * @return a copy with the given interval
+   */
+  public Compression withSyncFlushInterval(final long syncFlushInterval) {
+    if (syncFlushInterval < 0) {
+      throw new IllegalArgumentException("Sync flush interval must not be negative: " + syncFlushInterval);
+    }
+    return new Compression(format, level, bufferSize, syncFlushInterval, parallelism, blockSize,
+        executor);
+  }
+
+  /**
+   * Compresses blocks of the output on several threads. Only gzip supports
+   * this. The sync flush interval does not apply, since each block ends a
+   * gzip member.
+   *
+   * @param parallelism the number of threads
+   * @param blockSize the number of uncompressed bytes in each block
+   * @return a copy with the given parallelism
+   */
+  public Compression withParallelism(final int parallelism, final int blockSize) {
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+    }
+    if (blockSize <= 0) {
+      throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+    }
+    if (parallelism > 1 && format != Format.GZIP) {
+      throw new IllegalArgumentException("Parallel compression requires gzip");
+    }
+    return new Compression(format, level, bufferSize, syncFlushInterval, parallelism, blockSize,
+        executor);
+  }
+
+  /**
+   * Sets the executor which compresses blocks in parallel. Defaults to a
+   * pool of daemon threads, one per processor, shared by every stream.
+   * The parallelism still limits how many blocks of one stream are in
+   * flight.
+   *
+   * @param executor the executor, or null for the shared pool
+   * @return a copy with the given executor
+   */
+  public Compression withExecutor(final Executor executor) {
+    return new Compression(format, level, bufferSize, syncFlushInterval, parallelism, blockSize,
+        executor);
+  }
+
+  /**
+   * @return the format
+   */
+  public Format getFormat() {
+    return format;
+  }
+
+  /**
+   * Wraps the OutputStream so that what is written to it is compressed.
+   * Closing the returned stream finishes the compressed data and closes the
+   * given stream.
+   *
+   * @param os the stream to write the compressed data to
+   * @return the compressing stream
+   */
+  public OutputStream wrap(final OutputStream os) {
+    if (parallelism > 1) {
+      return new ParallelGzipOutputStream(os, level, blockSize, parallelism,
+          executor == null ? ParallelGzipOutputStream.sharedExecutor() : executor);
+    }
+    return new DeflatingOutputStream(os, format == Format.GZIP, level, bufferSize, syncFlushInterval);
+  }
+}
@@ -0,0 +1,36 @@
+package com.sharfah.util.sql;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Counts the bytes written through it.
+ */
+final class CountingOutputStream extends FilterOutputStream {
+
+  private long count;
+
+  CountingOutputStream(final OutputStream os) {
+    super(os);
+  }
+
+  @Override
+  public void write(final int b) throws IOException {
+    out.write(b);
+    count++;
+  }
+
+  @Override
+  public void write(final byte[] b, final int off, final int len) throws IOException {
+    out.write(b, off, len);
+    count += len;
+  }
+
+  /**
+   * @return the number of bytes written
+   */
+  long getCount() {
+    return count;
+  }
+}
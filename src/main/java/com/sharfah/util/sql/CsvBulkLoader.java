@@ -0,0 +1,376 @@
+package com.sharfah.util.sql;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+/**
+ * Loads a CSV file, as written by {@link StreamingCsvResultSetExtractor},
+ * into a table with batched inserts over several connections.
+ * <p>
+ * The file is memory mapped and cut into chunks at record boundaries; line
+ * breaks inside quoted fields are skipped, which takes one pass over the
+ * bytes. Each connection then parses chunks on its own thread and binds the
+ * values, converted to the types of the table's columns, into batches.
+ * <p>
+ * The first line of the file names the columns to insert into; the names
+ * are matched to the table's columns ignoring case, and a name the table
+ * does not have fails the load before anything is inserted. An unquoted
+ * empty field is inserted as null. Each batch is committed once executed,
+ * so a failed load leaves the batches already committed in the table.
+ *
+ * @author fahd
+ */
+public class CsvBulkLoader {
+
+  /** The default number of rows in a batch. */
+  public static final int DEFAULT_BATCH_SIZE = 1000;
+
+  /** The default size of a chunk of the file, in bytes. */
+  public static final long DEFAULT_CHUNK_SIZE = 16L * 1024 * 1024;
+
+  // the size of each mapping of the file while looking for chunk boundaries
+  private static final long SCAN_WINDOW = 64L * 1024 * 1024;
+
+  private final DataSource dataSource;
+  private final String table;
+  private int batchSize = DEFAULT_BATCH_SIZE;
+  private int connections = Runtime.getRuntime().availableProcessors();
+  private long chunkSize = DEFAULT_CHUNK_SIZE;
+
+  /**
+   * @param dataSource provides a connection for each loading thread
+   * @param table the table to insert into
+   */
+  public CsvBulkLoader(final DataSource dataSource, final String table) {
+    this.dataSource = dataSource;
+    this.table = table;
+  }
+
+  /**
+   * Sets the number of rows in a batch. Defaults to {@link #DEFAULT_BATCH_SIZE}.
+   *
+   * @param batchSize the number of rows
+   */
+  public void setBatchSize(final int batchSize) {
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+    }
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Sets the number of connections, each with its own thread. Defaults to
+   * the number of processors.
+   *
+   * @param connections the number of connections
+   */
+  public void setConnections(final int connections) {
+    if (connections <= 0) {
+      throw new IllegalArgumentException("Connections must be positive: " + connections);
+    }
+    this.connections = connections;
+  }
+
+  /**
+   * Sets the approximate size of the chunks the file is cut into. Defaults
+   * to {@link #DEFAULT_CHUNK_SIZE}.
+   *
+   * @param chunkSize the size, in bytes
+   */
+  public void setChunkSize(final long chunkSize) {
+    if (chunkSize <= 0 || chunkSize > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+    }
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Loads the file.
+   *
+   * @param file the CSV file
+   * @return the number of rows inserted
+   */
+  public long load(final Path file) {
+    try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      final var size = channel.size();
+      if (size == 0) {
+        return 0;
+      }
+      final var header = new CsvParser(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+          Math.min(size, Integer.MAX_VALUE)));
+      header.next();
+      final var columns = new String[header.fieldCount()];
+      for (var i = 0; i < columns.length; i++) {
+        columns[i] = header.getString(i);
+      }
+      return new Run(channel, columns, chunks(channel, header.position(), size)).load();
+    } catch (IOException | SQLException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Cuts the file into chunks of whole records, of about the chunk size.
+   *
+   * @return the start and end offset of each chunk
+   */
+  private List<long[]> chunks(final FileChannel channel, final long start, final long size)
+      throws IOException {
+    final var chunks = new ArrayList<long[]>();
+    var chunkStart = start;
+    var inQuotes = false;
+    for (var windowStart = start; windowStart < size; windowStart += SCAN_WINDOW) {
+      final var windowSize = Math.min(SCAN_WINDOW, size - windowStart);
+      final var window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, windowSize);
+      // only the bytes from the chunk size onwards can end a chunk, but all
+      // quotes have to be counted
+      for (var i = 0; i < windowSize; i++) {
+        final var b = window.get(i);
+        if (b == '"') {
+          inQuotes = !inQuotes;
+        } else if (b == '\n' && !inQuotes && windowStart + i + 1 - chunkStart >= chunkSize) {
+          chunks.add(new long[] { chunkStart, windowStart + i + 1 });
+          chunkStart = windowStart + i + 1;
+        }
+      }
+    }
+    if (chunkStart < size) {
+      if (size - chunkStart > Integer.MAX_VALUE) {
+        throw new IOException("Record too long at byte " + chunkStart);
+      }
+      chunks.add(new long[] { chunkStart, size });
+    }
+    return chunks;
+  }
+
+  /**
+   * The state of one load.
+   */
+  private final class Run {
+
+    private final FileChannel channel;
+    private final String[] columns;
+    private final List<long[]> chunks;
+    private final AtomicInteger nextChunk = new AtomicInteger();
+    private final String insert;
+    private final ColumnType[] types;
+    private final int[] sqlTypes;
+    private volatile boolean cancelled;
+
+    Run(final FileChannel channel, final String[] columns, final List<long[]> chunks)
+        throws IOException, SQLException {
+      this.channel = channel;
+      this.columns = columns;
+      this.chunks = chunks;
+      this.types = new ColumnType[columns.length];
+      this.sqlTypes = new int[columns.length];
+      // the table's columns, by upper case name
+      final var tableColumns = new HashMap<String, Integer>();
+      final String[] tableNames;
+      final int[] tableSqlTypes;
+      try (var connection = dataSource.getConnection();
+           var statement = connection.createStatement();
+           var rs = statement.executeQuery("select * from " + table + " where 1 = 0")) {
+        final var rsmd = rs.getMetaData();
+        final var count = rsmd.getColumnCount();
+        tableNames = new String[count];
+        tableSqlTypes = new int[count];
+        for (var i = 0; i < count; i++) {
+          tableNames[i] = rsmd.getColumnName(i + 1);
+          tableSqlTypes[i] = rsmd.getColumnType(i + 1);
+          tableColumns.put(tableNames[i].toUpperCase(Locale.ROOT), i);
+        }
+      }
+      // only the table's own column names go into the insert
+      final var names = new StringBuilder();
+      final var seen = new boolean[tableNames.length];
+      for (var i = 0; i < columns.length; i++) {
+        final var column = tableColumns.get(columns[i].toUpperCase(Locale.ROOT));
+        if (column == null) {
+          throw new IOException("Unknown column " + columns[i] + " in the header");
+        }
+        if (seen[column]) {
+          throw new IOException("Duplicate column " + columns[i] + " in the header");
+        }
+        seen[column] = true;
+        names.append(i == 0 ? "" : ", ").append(tableNames[column]);
+        sqlTypes[i] = tableSqlTypes[column];
+        types[i] = ColumnType.of(sqlTypes[i]);
+      }
+      this.insert = "insert into " + table + " (" + names + ") values ("
+          + "?, ".repeat(columns.length - 1) + "?)";
+    }
+
+    long load() throws IOException, SQLException {
+      final var threads = Math.min(connections, chunks.size());
+      if (threads == 0) {
+        return 0;
+      }
+      final var executor = Executors.newFixedThreadPool(threads, task -> {
+        final var thread = new Thread(task, "csv-bulk-loader");
+        thread.setDaemon(true);
+        return thread;
+      });
+      try {
+        final var futures = new ArrayList<Future<Long>>();
+        for (var i = 0; i < threads; i++) {
+          futures.add(executor.submit(this::loadChunks));
+        }
+        var rows = 0L;
+        Throwable failure = null;
+        for (final var future : futures) {
+          try {
+            rows += future.get();
+          } catch (final ExecutionException e) {
+            if (failure == null || failure instanceof CancellationException) {
+              failure = e.getCause();
+            }
+          }
+        }
+        if (failure instanceof IOException) {
+          throw (IOException) failure;
+        }
+        if (failure instanceof SQLException) {
+          throw (SQLException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+          throw (RuntimeException) failure;
+        }
+        if (failure != null) {
+          throw new RuntimeException(failure);
+        }
+        return rows;
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      } finally {
+        executor.shutdownNow();
+      }
+    }
+
+    /**
+     * Loads chunks on one connection until there are none left.
+     *
+     * @return the number of rows inserted
+     */
+    private long loadChunks() throws IOException, SQLException {
+      try (var connection = dataSource.getConnection()) {
+        connection.setAutoCommit(false);
+        try (var ps = connection.prepareStatement(insert)) {
+          var rows = 0L;
+          int chunk;
+          while ((chunk = nextChunk.getAndIncrement()) < chunks.size()) {
+            final var range = chunks.get(chunk);
+            rows += loadChunk(channel.map(FileChannel.MapMode.READ_ONLY, range[0],
+                range[1] - range[0]), ps);
+            connection.commit();
+          }
+          return rows;
+        } catch (final Throwable t) {
+          cancelled = true;
+          connection.rollback();
+          throw t;
+        } finally {
+          connection.setAutoCommit(true);
+        }
+      }
+    }
+
+    private long loadChunk(final MappedByteBuffer chunk, final PreparedStatement ps)
+        throws IOException, SQLException {
+      final var parser = new CsvParser(chunk);
+      var rows = 0L;
+      var batched = 0;
+      while (parser.next()) {
+        if (cancelled) {
+          throw new CancellationException();
+        }
+        if (parser.fieldCount() != columns.length) {
+          throw new IOException("Record has " + parser.fieldCount() + " fields instead of "
+              + columns.length + ", before byte " + parser.position() + " of its chunk");
+        }
+        bind(parser, ps);
+        ps.addBatch();
+        rows++;
+        if (++batched == batchSize) {
+          ps.executeBatch();
+          ps.getConnection().commit();
+          batched = 0;
+        }
+      }
+      if (batched > 0) {
+        ps.executeBatch();
+      }
+      return rows;
+    }
+
+    private void bind(final CsvParser parser, final PreparedStatement ps)
+        throws IOException, SQLException {
+      for (var i = 0; i < columns.length; i++) {
+        final var index = i + 1;
+        if (parser.isNull(i)) {
+          ps.setNull(index, sqlTypes[i]);
+          continue;
+        }
+        try {
+          switch (types[i]) {
+            case LONG:
+              ps.setLong(index, parser.getLong(i));
+              break;
+            case DOUBLE:
+              ps.setDouble(index, Double.parseDouble(parser.getString(i)));
+              break;
+            case FLOAT:
+              ps.setFloat(index, Float.parseFloat(parser.getString(i)));
+              break;
+            case DECIMAL:
+              ps.setBigDecimal(index, new BigDecimal(parser.getString(i)));
+              break;
+            case BOOLEAN:
+              ps.setBoolean(index, Boolean.parseBoolean(parser.getString(i)));
+              break;
+            case STRING:
+            case CLOB:
+              ps.setString(index, parser.getString(i));
+              break;
+            case BLOB:
+              ps.setBytes(index, Base64.getDecoder().decode(parser.getString(i)));
+              break;
+            case DATE:
+              ps.setDate(index, TemporalFormatter.parseDate(parser.getString(i)));
+              break;
+            case TIME:
+              ps.setTime(index, TemporalFormatter.parseTime(parser.getString(i)));
+              break;
+            case TIMESTAMP:
+              ps.setTimestamp(index, TemporalFormatter.parseTimestamp(parser.getString(i)));
+              break;
+            default:
+              ps.setObject(index, parser.getString(i));
+              break;
+          }
+        } catch (final IllegalArgumentException e) {
+          throw new IOException("Invalid value for column " + columns[i] + ": " + parser.getString(i), e);
+        }
+      }
+    }
+  }
+}
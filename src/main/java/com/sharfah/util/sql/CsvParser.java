@@ -0,0 +1,179 @@
+package com.sharfah.util.sql;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Parses UTF-8 CSV records, as written by {@link CsvRowEncoder}, from a
+ * ByteBuffer. Delimiters, quotes and line breaks are ASCII, which never
+ * occur inside a multi-byte UTF-8 sequence, so the bytes are scanned without
+ * being decoded; only the values are decoded, when asked for.
+ * <p>
+ * The fields of the current record are unquoted into one reusable array.
+ * An unquoted empty field is a null; a quoted empty field an empty string.
+ */
+final class CsvParser {
+
+  private static final byte DELIMITER = ',';
+  private static final byte QUOTE = '"';
+  private static final byte CR = '\r';
+  private static final byte LF = '\n';
+
+  private final ByteBuffer in;
+  private byte[] bytes = new byte[256];
+  private int size;
+  private int[] starts = new int[16];
+  private int[] lengths = new int[16];
+  private boolean[] quoted = new boolean[16];
+  private int count;
+
+  /**
+   * @param in the records, from its position to its limit
+   */
+  CsvParser(final ByteBuffer in) {
+    this.in = in;
+  }
+
+  /**
+   * Parses the next record.
+   *
+   * @return false if there are no more records
+   * @throws IOException if the record is malformed
+   */
+  boolean next() throws IOException {
+    if (!in.hasRemaining()) {
+      return false;
+    }
+    count = 0;
+    size = 0;
+    while (true) {
+      if (count == starts.length) {
+        starts = Arrays.copyOf(starts, count * 2);
+        lengths = Arrays.copyOf(lengths, count * 2);
+        quoted = Arrays.copyOf(quoted, count * 2);
+      }
+      starts[count] = size;
+      quoted[count] = in.hasRemaining() && in.get(in.position()) == QUOTE;
+      if (quoted[count]) {
+        readQuoted();
+      } else {
+        while (in.hasRemaining()) {
+          final var b = in.get(in.position());
+          if (b == DELIMITER || b == LF || b == CR) {
+            break;
+          }
+          put(in.get());
+        }
+      }
+      lengths[count] = size - starts[count];
+      count++;
+      if (!in.hasRemaining()) {
+        return true;
+      }
+      final var b = in.get();
+      if (b == LF) {
+        return true;
+      }
+      if (b == CR) {
+        if (in.hasRemaining() && in.get(in.position()) == LF) {
+          in.get();
+        }
+        return true;
+      }
+      if (b != DELIMITER) {
+        throw new IOException("Unexpected character after a quoted field at byte " + (in.position() - 1));
+      }
+    }
+  }
+
+  private void readQuoted() throws IOException {
+    final var start = in.position();
+    in.get();
+    while (true) {
+      if (!in.hasRemaining()) {
+        throw new IOException("Unterminated quoted field from byte " + start);
+      }
+      final var b = in.get();
+      if (b == QUOTE) {
+        if (in.hasRemaining() && in.get(in.position()) == QUOTE) {
+          in.get();
+        } else {
+          return;
+        }
+      }
+      put(b);
+    }
+  }
+
+  private void put(final byte b) {
+    if (size == bytes.length) {
+      bytes = Arrays.copyOf(bytes, size * 2);
+    }
+    bytes[size++] = b;
+  }
+
+  /**
+   * @return the position in the buffer after the current record
+   */
+  int position() {
+    return in.position();
+  }
+
+  /**
+   * @return the number of fields in the current record
+   */
+  int fieldCount() {
+    return count;
+  }
+
+  /**
+   * @param i the field index
+   * @return true if the field is null, that is unquoted and empty
+   */
+  boolean isNull(final int i) {
+    return lengths[i] == 0 && !quoted[i];
+  }
+
+  /**
+   * @param i the field index
+   * @return the field, decoded
+   */
+  String getString(final int i) {
+    return new String(bytes, starts[i], lengths[i], StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Parses a field as a long without decoding it to a String.
+   *
+   * @param i the field index
+   * @return the value
+   * @throws NumberFormatException if the field is not an integer
+   */
+  long getLong(final int i) {
+    final var start = starts[i];
+    final var end = start + lengths[i];
+    var pos = start;
+    final var negative = pos < end && bytes[pos] == '-';
+    if (negative || pos < end && bytes[pos] == '+') {
+      pos++;
+    }
+    if (pos == end || end - pos > 19) {
+      return Long.parseLong(getString(i));
+    }
+    // accumulate negatively, so that Long.MIN_VALUE does not overflow
+    var value = 0L;
+    for (; pos < end; pos++) {
+      final var digit = bytes[pos] - '0';
+      if (digit < 0 || digit > 9 || value < (Long.MIN_VALUE + digit) / 10) {
+        return Long.parseLong(getString(i));
+      }
+      value = value * 10 - digit;
+    }
+    if (!negative && value == Long.MIN_VALUE) {
+      return Long.parseLong(getString(i));
+    }
+    return negative ? value : -value;
+  }
+}
@@ -0,0 +1,277 @@
+package com.sharfah.util.sql;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+
+/**
+ * Encodes rows as CSV lines, with a header line of column names.
+ * <p>
+ * Strings are quoted as in RFC 4180 when they contain a delimiter, a quote or
+ * a line break, and empty strings are written as {@code ""} so that they can
+ * be told apart from nulls, which are written as nothing. Dates and times
+ * are written in ISO-8601, see {@link TemporalFormat}.
+ * <p>
+ * CLOBs are always quoted and BLOBs are written in base64. Both are read in
+ * chunks when streamed, and written out as the row buffer fills up, so that
+ * a large value is never held whole.
+ */
+final class CsvRowEncoder implements RowSink {
+
+  private static final char DELIMITER = ',';
+  private static final char QUOTE = '"';
+  private static final String LINE_SEPARATOR = System.lineSeparator();
+  // the size of the chunks LOBs are read in; a multiple of 3 for base64
+  private static final int LOB_CHUNK_SIZE = 8193;
+
+  private final BufferedTextOutput out;
+  private final TextBuffer buf = new TextBuffer(256);
+  private final boolean header;
+  private final TemporalFormatter temporalFormatter;
+  private char[] lobChars;
+  private byte[] lobBytes;
+
+  /**
+   * @param os the OutputStream to write to
+   * @param bufferSize the size of the output buffer
+   * @param flushPolicy when to flush the OutputStream
+   */
+  CsvRowEncoder(final OutputStream os, final int bufferSize, final FlushPolicy flushPolicy) {
+    this(os, bufferSize, flushPolicy, true, TemporalFormat.iso());
+  }
+
+  /**
+   * @param os the OutputStream to write to
+   * @param bufferSize the size of the output buffer
+   * @param flushPolicy when to flush the OutputStream
+   * @param header false to leave out the header line, when appending
+   * @param temporalFormat how dates and times are written
+   */
+  CsvRowEncoder(final OutputStream os, final int bufferSize, final FlushPolicy flushPolicy,
+      final boolean header, final TemporalFormat temporalFormat) {
+    this.out = new BufferedTextOutput(os, bufferSize, flushPolicy);
+    this.header = header;
+    this.temporalFormatter = new TemporalFormatter(temporalFormat);
+  }
+
+  @Override
+  public void start(final ColumnPlan plan) throws IOException {
+    if (!header) {
+      return;
+    }
+    for (var i = 0; i < plan.size(); i++) {
+      if (i != 0) {
+        buf.append(DELIMITER);
+      }
+      appendQuoted(plan.names[i]);
+    }
+    writeRow();
+  }
+
+  @Override
+  public void write(final RowValues row) throws IOException {
+    for (var i = 0; i < row.types.length; i++) {
+      if (i != 0) {
+        buf.append(DELIMITER);
+      }
+      if (!row.nulls[i]) {
+        writeValue(row, i);
+      }
+    }
+    writeRow();
+  }
+
+  private void writeValue(final RowValues row, final int i) throws IOException {
+    switch (row.types[i]) {
+      case LONG:
+        buf.appendLong(row.longs[i]);
+        break;
+      case DOUBLE:
+        buf.appendDouble(row.doubles[i]);
+        break;
+      case FLOAT:
+        buf.appendFloat((float) row.doubles[i]);
+        break;
+      case BOOLEAN:
+        buf.append(row.longs[i] != 0 ? "true" : "false");
+        break;
+      case STRING:
+        appendQuoted((String) row.objects[i]);
+        break;
+      case DECIMAL:
+        buf.appendDecimal((BigDecimal) row.objects[i]);
+        break;
+      case DATE:
+        temporalFormatter.appendDate(buf, (Date) row.objects[i]);
+        break;
+      case TIME:
+        temporalFormatter.appendTime(buf, (Time) row.objects[i]);
+        break;
+      case TIMESTAMP:
+        temporalFormatter.appendTimestamp(buf, (Timestamp) row.objects[i]);
+        break;
+      case CLOB:
+        if (row.objects[i] instanceof Reader) {
+          appendClob((Reader) row.objects[i]);
+        } else {
+          appendInQuotes((String) row.objects[i]);
+        }
+        break;
+      case BLOB:
+        if (row.objects[i] instanceof InputStream) {
+          appendBlob((InputStream) row.objects[i]);
+        } else {
+          final var bytes = (byte[]) row.objects[i];
+          if (bytes.length == 0) {
+            appendEmpty();
+          } else {
+            buf.appendBase64(bytes, 0, bytes.length);
+          }
+        }
+        break;
+      default:
+        if (row.objects[i] instanceof OffsetDateTime) {
+          temporalFormatter.appendOffsetDateTime(buf, (OffsetDateTime) row.objects[i]);
+        } else {
+          appendQuoted(row.objects[i].toString());
+        }
+        break;
+    }
+  }
+
+  private void appendQuoted(final String s) {
+    if (!needsQuotes(s)) {
+      buf.append(s);
+      return;
+    }
+    appendInQuotes(s);
+  }
+
+  private void appendInQuotes(final String s) {
+    buf.append(QUOTE);
+    for (var i = 0; i < s.length(); i++) {
+      final var c = s.charAt(i);
+      if (c == QUOTE) {
+        buf.append(QUOTE);
+      }
+      buf.append(c);
+    }
+    buf.append(QUOTE);
+  }
+
+  private void appendClob(final Reader reader) throws IOException {
+    if (lobChars == null) {
+      lobChars = new char[LOB_CHUNK_SIZE];
+    }
+    try (reader) {
+      buf.append(QUOTE);
+      var carry = 0;
+      int n;
+      while ((n = reader.read(lobChars, carry, lobChars.length - carry)) != -1) {
+        final var end = carry + n;
+        // hold back a high surrogate, so that a pair is not split across writes
+        carry = end > 0 && Character.isHighSurrogate(lobChars[end - 1]) ? 1 : 0;
+        for (var i = 0; i < end - carry; i++) {
+          final var c = lobChars[i];
+          if (c == QUOTE) {
+            buf.append(QUOTE);
+          }
+          buf.append(c);
+        }
+        if (carry != 0) {
+          lobChars[0] = lobChars[end - 1];
+        }
+        writePart();
+      }
+      if (carry != 0) {
+        buf.append(lobChars[0]);
+      }
+      buf.append(QUOTE);
+    }
+  }
+
+  private void appendBlob(final InputStream in) throws IOException {
+    if (lobBytes == null) {
+      lobBytes = new byte[LOB_CHUNK_SIZE];
+    }
+    try (in) {
+      var first = true;
+      int n;
+      do {
+        // a full chunk, so that only the last is padded
+        n = in.readNBytes(lobBytes, 0, lobBytes.length);
+        if (first && n == 0) {
+          appendEmpty();
+        }
+        first = false;
+        buf.appendBase64(lobBytes, 0, n);
+        writePart();
+      } while (n == lobBytes.length);
+    }
+  }
+
+  /**
+   * Appends an empty value in quotes, to tell it apart from null. Base64
+   * never needs quotes otherwise.
+   */
+  private void appendEmpty() {
+    buf.append(QUOTE);
+    buf.append(QUOTE);
+  }
+
+  /**
+   * Writes out the row so far, if it has outgrown a LOB chunk, so that the
+   * row buffer stays bounded.
+   */
+  private void writePart() throws IOException {
+    if (buf.length() >= LOB_CHUNK_SIZE) {
+      out.write(buf);
+      buf.reset();
+    }
+  }
+
+  private static boolean needsQuotes(final String s) {
+    if (s.isEmpty()) {
+      return true;
+    }
+    for (var i = 0; i < s.length(); i++) {
+      final var c = s.charAt(i);
+      if (c == DELIMITER || c == QUOTE || c == '\n' || c == '\r') {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void writeRow() throws IOException {
+    buf.append(LINE_SEPARATOR);
+    out.writeRow(buf);
+    buf.reset();
+  }
+
+  @Override
+  public boolean acceptsLobStreams() {
+    return true;
+  }
+
+  @Override
+  public void end() {
+    // no trailer
+  }
+
+  @Override
+  public void flush() throws IOException {
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+}
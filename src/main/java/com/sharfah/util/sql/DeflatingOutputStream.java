@@ -0,0 +1,152 @@
+package com.sharfah.util.sql;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compresses what is written to it in the gzip or zlib format, driving a
+ * {@link Deflater} directly. Unlike {@link java.util.zip.GZIPOutputStream}
+ * it sync flushes when flushed, and optionally after a fixed amount of input.
+ */
+final class DeflatingOutputStream extends OutputStream {
+
+  private static final byte[] GZIP_HEADER = {
+    0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff
+  };
+
+  private final OutputStream os;
+  private final boolean gzip;
+  private final Deflater deflater;
+  private final CRC32 crc;
+  private final byte[] buf;
+  private final long syncFlushInterval;
+  private long sinceSyncFlush;
+  private boolean headerWritten;
+  private boolean closed;
+
+  /**
+   * @param os the stream to write the compressed data to
+   * @param gzip true for the gzip format, false for zlib
+   * @param level the compression level
+   * @param bufferSize the size of the compressed output buffer
+   * @param syncFlushInterval the number of input bytes between sync flushes,
+   *        or 0 for none
+   */
+  DeflatingOutputStream(final OutputStream os, final boolean gzip, final int level,
+      final int bufferSize, final long syncFlushInterval) {
+    this.os = os;
+    this.gzip = gzip;
+    this.deflater = new Deflater(level, gzip);
+    this.crc = gzip ? new CRC32() : null;
+    this.buf = new byte[bufferSize];
+    this.syncFlushInterval = syncFlushInterval;
+  }
+
+  @Override
+  public void write(final int b) throws IOException {
+    write(new byte[] { (byte) b }, 0, 1);
+  }
+
+  @Override
+  public void write(final byte[] b, final int off, final int len) throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    if (len == 0) {
+      return;
+    }
+    writeHeader();
+    if (crc != null) {
+      crc.update(b, off, len);
+    }
+    deflater.setInput(b, off, len);
+    while (!deflater.needsInput()) {
+      deflate(Deflater.NO_FLUSH);
+    }
+    sinceSyncFlush += len;
+    if (syncFlushInterval > 0 && sinceSyncFlush >= syncFlushInterval) {
+      syncFlush();
+    }
+  }
+
+  /**
+   * Sync flushes the compressed data, so that a reader can decompress all
+   * of the input so far, and flushes the underlying stream.
+   */
+  @Override
+  public void flush() throws IOException {
+    if (!closed) {
+      writeHeader();
+      syncFlush();
+    }
+    os.flush();
+  }
+
+  private void syncFlush() throws IOException {
+    // a full output buffer means the deflater may have more to write
+    while (deflate(Deflater.SYNC_FLUSH) == buf.length) {
+      // keep flushing
+    }
+    sinceSyncFlush = 0;
+  }
+
+  private int deflate(final int flush) throws IOException {
+    final var len = deflater.deflate(buf, 0, buf.length, flush);
+    if (len > 0) {
+      os.write(buf, 0, len);
+    }
+    return len;
+  }
+
+  private void writeHeader() throws IOException {
+    if (gzip && !headerWritten) {
+      os.write(GZIP_HEADER);
+    }
+    headerWritten = true;
+  }
+
+  /**
+   * Finishes the compressed data and closes the underlying stream.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try (os) {
+      writeHeader();
+      deflater.finish();
+      while (!deflater.finished()) {
+        deflate(Deflater.NO_FLUSH);
+      }
+      if (gzip) {
+        writeTrailer(os, crc.getValue(), deflater.getBytesRead());
+      }
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Writes the gzip trailer: the CRC-32 and the input size, little-endian.
+   */
+  static void writeTrailer(final OutputStream os, final long crc, final long size)
+      throws IOException {
+    final var trailer = new byte[8];
+    for (var i = 0; i < 4; i++) {
+      trailer[i] = (byte) (crc >>> (8 * i));
+      trailer[i + 4] = (byte) (size >>> (8 * i));
+    }
+    os.write(trailer);
+  }
+
+  /**
+   * @return the gzip member header
+   */
+  static byte[] gzipHeader() {
+    return GZIP_HEADER.clone();
+  }
+}
@@ -0,0 +1,443 @@
+package com.sharfah.util.sql;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Caches the output of exports, keyed by the query, its arguments and the
+ * format, so that repeated exports are streamed from memory instead of
+ * running the query and encoding the rows again.
+ * <p>
+ * On a miss the query is exported with an extractor from the
+ * {@link ExtractorFactory}, and what it writes is copied into the cache as
+ * it is streamed to the caller. The bytes are cached as written, so they
+ * are compressed if the factory's extractors compress their output. Exports
+ * larger than the maximum entry size are streamed without being cached.
+ * <p>
+ * The cache holds at most a given number of bytes, evicting the least
+ * recently used exports when it is full, and each export expires after a
+ * time to live. The bytes can be kept in direct buffers, outside the heap.
+ * <p>
+ * Entries are removed with the invalidate methods when the data they were
+ * exported from changes; an export running at the time is then not cached.
+ * Concurrent misses for the same export each run the query.
+ *
+ * @author fahd
+ */
+public class ExportCache {
+
+  /** The default maximum number of cached bytes. */
+  public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+  /** The default time after which a cached export expires. */
+  public static final Duration DEFAULT_TIME_TO_LIVE = Duration.ofMinutes(5);
+
+  // the size of the buffers an export is copied into
+  private static final int CHUNK_SIZE = 64 * 1024;
+
+  /**
+   * The query, arguments and format of an export.
+   */
+  private static final class Key {
+    final String sql;
+    final ExportFormat format;
+    final Object[] args;
+    final int hash;
+
+    Key(final String sql, final ExportFormat format, final Object[] args) {
+      this.sql = sql;
+      this.format = format;
+      this.args = args.clone();
+      this.hash = 31 * (31 * sql.hashCode() + format.hashCode()) + Arrays.deepHashCode(args);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      final var other = (Key) obj;
+      return hash == other.hash
+          && format == other.format
+          && sql.equals(other.sql)
+          && Arrays.deepEquals(args, other.args);
+    }
+  }
+
+  /**
+   * The bytes of a cached export. The buffers are never modified once
+   * cached, and are read through duplicates so that hits can be streamed
+   * concurrently.
+   */
+  private static final class Entry {
+    final ByteBuffer[] chunks;
+    final long size;
+    final long expiresNanos;
+
+    Entry(final ByteBuffer[] chunks, final long size, final long expiresNanos) {
+      this.chunks = chunks;
+      this.size = size;
+      this.expiresNanos = expiresNanos;
+    }
+
+    void writeTo(final OutputStream os) throws IOException {
+      byte[] copy = null;
+      for (final var chunk : chunks) {
+        final var buffer = chunk.duplicate();
+        if (buffer.hasArray()) {
+          os.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+          continue;
+        }
+        if (copy == null) {
+          copy = new byte[Math.min(CHUNK_SIZE, (int) Math.min(size, Integer.MAX_VALUE))];
+        }
+        while (buffer.hasRemaining()) {
+          final var len = Math.min(copy.length, buffer.remaining());
+          buffer.get(copy, 0, len);
+          os.write(copy, 0, len);
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes through to the caller's stream and copies what is written into
+   * buffers, until it exceeds the maximum entry size.
+   */
+  private static final class CapturingOutputStream extends OutputStream {
+    private final OutputStream os;
+    private final long maxBytes;
+    private final boolean direct;
+    private List<ByteBuffer> chunks = new ArrayList<>();
+    private ByteBuffer chunk;
+    private long size;
+
+    CapturingOutputStream(final OutputStream os, final long maxBytes, final boolean direct) {
+      this.os = os;
+      this.maxBytes = maxBytes;
+      this.direct = direct;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+      os.write(b);
+      if (capture(1)) {
+        chunk.put((byte) b);
+      }
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+      os.write(b, off, len);
+      if (capture(len)) {
+        var offset = off;
+        var remaining = len;
+        while (remaining > 0) {
+          if (!chunk.hasRemaining()) {
+            addChunk();
+          }
+          final var n = Math.min(remaining, chunk.remaining());
+          chunk.put(b, offset, n);
+          offset += n;
+          remaining -= n;
+        }
+      }
+    }
+
+    /**
+     * @return true if the bytes are to be captured, with room for at least
+     *         one byte in the current chunk
+     */
+    private boolean capture(final int len) {
+      if (chunks == null) {
+        return false;
+      }
+      size += len;
+      if (size > maxBytes) {
+        // too large to cache; let the buffers be collected
+        chunks = null;
+        chunk = null;
+        return false;
+      }
+      if (chunk == null || !chunk.hasRemaining()) {
+        addChunk();
+      }
+      return true;
+    }
+
+    private void addChunk() {
+      chunk = allocate(CHUNK_SIZE, direct);
+      chunks.add(chunk);
+    }
+
+    /**
+     * Returns what was captured, with the last buffer trimmed to its
+     * contents, or null if it was too large.
+     */
+    Entry entry(final long expiresNanos) {
+      if (chunks == null) {
+        return null;
+      }
+      final var result = new ByteBuffer[chunks.size()];
+      for (var i = 0; i < result.length; i++) {
+        final var buffer = chunks.get(i).flip();
+        if (buffer.limit() < buffer.capacity()) {
+          result[i] = allocate(buffer.limit(), direct).put(buffer).flip();
+        } else {
+          result[i] = buffer;
+        }
+      }
+      return new Entry(result, size, expiresNanos);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      os.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      os.close();
+    }
+  }
+
+  private final ExtractorFactory extractorFactory;
+  private final long maxBytes;
+  private volatile long maxEntryBytes;
+  private volatile long timeToLiveNanos = DEFAULT_TIME_TO_LIVE.toNanos();
+  private volatile boolean direct;
+
+  // guarded by this; in access order, for eviction
+  private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+  // guarded by this
+  private long cachedBytes;
+  // guarded by this; changes on every invalidation, so that exports running
+  // at the time are not cached
+  private long generation;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * Creates a cache of up to {@link #DEFAULT_MAX_BYTES} bytes.
+   *
+   * @param extractorFactory creates the extractors which run the exports
+   */
+  public ExportCache(final ExtractorFactory extractorFactory) {
+    this(extractorFactory, DEFAULT_MAX_BYTES);
+  }
+
+  /**
+   * @param extractorFactory creates the extractors which run the exports
+   * @param maxBytes the maximum number of cached bytes
+   */
+  public ExportCache(final ExtractorFactory extractorFactory, final long maxBytes) {
+    if (maxBytes <= 0) {
+      throw new IllegalArgumentException("Max bytes must be positive: " + maxBytes);
+    }
+    this.extractorFactory = extractorFactory;
+    this.maxBytes = maxBytes;
+    this.maxEntryBytes = Math.max(1, maxBytes / 4);
+  }
+
+  /**
+   * Sets the size of the largest export which is cached. Defaults to a
+   * quarter of the maximum number of cached bytes.
+   *
+   * @param maxEntryBytes the size, in bytes
+   */
+  public void setMaxEntryBytes(final long maxEntryBytes) {
+    if (maxEntryBytes <= 0 || maxEntryBytes > maxBytes) {
+      throw new IllegalArgumentException("Invalid max entry bytes: " + maxEntryBytes);
+    }
+    this.maxEntryBytes = maxEntryBytes;
+  }
+
+  /**
+   * Sets how long an export is cached for. Defaults to {@link #DEFAULT_TIME_TO_LIVE}.
+   *
+   * @param timeToLive the time to live
+   */
+  public void setTimeToLive(final Duration timeToLive) {
+    if (timeToLive.isNegative() || timeToLive.isZero()) {
+      throw new IllegalArgumentException("Time to live must be positive: " + timeToLive);
+    }
+    this.timeToLiveNanos = timeToLive.toNanos();
+  }
+
+  /**
+   * Sets whether exports are cached in direct buffers, outside the heap.
+   * Defaults to false.
+   *
+   * @param direct true to use direct buffers
+   */
+  public void setDirect(final boolean direct) {
+    this.direct = direct;
+  }
+
+  /**
+   * Exports the rows of a query to the OutputStream, from the cache if the
+   * same export is cached, and closes the stream.
+   *
+   * @param jdbcTemplate runs the query on a miss
+   * @param sql the query
+   * @param format the format to export in
+   * @param os the OutputStream to stream the export to
+   * @param args the arguments of the query
+   * @return true if the export was streamed from the cache
+   */
+  public boolean export(final JdbcTemplate jdbcTemplate, final String sql, final ExportFormat format,
+      final OutputStream os, final Object... args) {
+    final var key = new Key(sql, format, args);
+    final var entry = get(key);
+    if (entry != null) {
+      hits.incrementAndGet();
+      try (os) {
+        entry.writeTo(os);
+      } catch (final IOException e) {
+        throw new RuntimeException(e);
+      }
+      return true;
+    }
+    misses.incrementAndGet();
+    final long startGeneration;
+    synchronized (this) {
+      startGeneration = generation;
+    }
+    final var capture = new CapturingOutputStream(os, maxEntryBytes, direct);
+    new StreamingQuery(sql, args).query(jdbcTemplate, extractorFactory.extractor(format, capture));
+    final var captured = capture.entry(System.nanoTime() + timeToLiveNanos);
+    if (captured != null) {
+      put(key, captured, startGeneration);
+    }
+    return false;
+  }
+
+  private synchronized Entry get(final Key key) {
+    final var entry = entries.get(key);
+    if (entry != null && System.nanoTime() - entry.expiresNanos >= 0) {
+      remove(key);
+      return null;
+    }
+    return entry;
+  }
+
+  private synchronized void put(final Key key, final Entry entry, final long startGeneration) {
+    if (generation != startGeneration) {
+      return;
+    }
+    final var previous = entries.put(key, entry);
+    if (previous != null) {
+      cachedBytes -= previous.size;
+    }
+    cachedBytes += entry.size;
+    final var eldest = entries.values().iterator();
+    while (cachedBytes > maxBytes) {
+      cachedBytes -= eldest.next().size;
+      eldest.remove();
+    }
+  }
+
+  private void remove(final Key key) {
+    final var entry = entries.remove(key);
+    if (entry != null) {
+      cachedBytes -= entry.size;
+    }
+  }
+
+  /**
+   * Removes an export from the cache.
+   *
+   * @param sql the query
+   * @param format the format
+   * @param args the arguments of the query
+   * @return true if the export was cached
+   */
+  public synchronized boolean invalidate(final String sql, final ExportFormat format,
+      final Object... args) {
+    generation++;
+    final var key = new Key(sql, format, args);
+    final var cached = entries.containsKey(key);
+    remove(key);
+    return cached;
+  }
+
+  /**
+   * Removes the exports of a query, with any arguments and in any format,
+   * from the cache.
+   *
+   * @param sql the query
+   * @return the number of exports removed
+   */
+  public synchronized int invalidate(final String sql) {
+    generation++;
+    var removed = 0;
+    for (final var i = entries.entrySet().iterator(); i.hasNext();) {
+      final var entry = i.next();
+      if (sql.equals(entry.getKey().sql)) {
+        cachedBytes -= entry.getValue().size;
+        i.remove();
+        removed++;
+      }
+    }
+    return removed;
+  }
+
+  /**
+   * Removes every export from the cache.
+   */
+  public synchronized void invalidateAll() {
+    generation++;
+    entries.clear();
+    cachedBytes = 0;
+  }
+
+  /**
+   * @return the number of exports cached, including expired ones not yet removed
+   */
+  public synchronized int getEntryCount() {
+    return entries.size();
+  }
+
+  /**
+   * @return the number of bytes cached
+   */
+  public synchronized long getCachedBytes() {
+    return cachedBytes;
+  }
+
+  /**
+   * @return the number of exports streamed from the cache
+   */
+  public long getHits() {
+    return hits.get();
+  }
+
+  /**
+   * @return the number of exports which ran their query
+   */
+  public long getMisses() {
+    return misses.get();
+  }
+
+  private static ByteBuffer allocate(final int capacity, final boolean direct) {
+    return direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+  }
+}
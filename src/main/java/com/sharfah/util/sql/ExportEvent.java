@@ -0,0 +1,59 @@
+package com.sharfah.util.sql;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * A Flight Recorder event for each export, with the same measurements as
+ * {@link ExportStats}.
+ */
+@Name("com.sharfah.util.sql.Export")
+@Label("Result Set Export")
+@Description("An export of a ResultSet by one of the streaming extractors")
+@Category({ "Java Utils", "SQL" })
+@StackTrace(false)
+final class ExportEvent extends jdk.jfr.Event {
+
+  @Label("Format")
+  String format;
+
+  @Label("Columns")
+  int columns;
+
+  @Label("Rows")
+  long rows;
+
+  @Label("Bytes")
+  @DataAmount
+  long bytes;
+
+  @Label("Fetch Time")
+  @Description("Time spent in ResultSet.next()")
+  @Timespan
+  long fetchTime;
+
+  @Label("Read Time")
+  @Description("Time spent getting values from the ResultSet")
+  @Timespan
+  long readTime;
+
+  @Label("Encode Time")
+  @Timespan
+  long encodeTime;
+
+  @Label("Write Time")
+  @Description("Time spent writing to the OutputStream")
+  @Timespan
+  long writeTime;
+
+  @Label("Slowest Column")
+  String slowestColumn;
+
+  @Label("Failed")
+  boolean failed;
+}
@@ -0,0 +1,13 @@
+package com.sharfah.util.sql;
+
+/**
+ * The formats a ResultSet can be exported in.
+ */
+public enum ExportFormat {
+  /** Comma separated values, with a header line of column names. */
+  CSV,
+  /** A JSON array of objects, one per row, keyed by column name. */
+  JSON,
+  /** Newline delimited JSON, one object per row, see {@link JsonLayout#NDJSON}. */
+  NDJSON
+}
@@ -0,0 +1,28 @@
+package com.sharfah.util.sql;
+
+/**
+ * Is told how an export went: how many rows and bytes it produced, and where
+ * its time was spent. See {@link ExportStats}.
+ * <p>
+ * Without a listener, and with the {@code com.sharfah.util.sql.Export} Flight
+ * Recorder event disabled, an export takes no measurements at all.
+ */
+@FunctionalInterface
+public interface ExportListener {
+
+  /**
+   * Called once an export has written all its rows and closed its output.
+   *
+   * @param stats the measurements of the export
+   */
+  void exportFinished(ExportStats stats);
+
+  /**
+   * Called when an export fails. Does nothing by default.
+   *
+   * @param stats the measurements of the export, up to the failure
+   * @param error the failure
+   */
+  default void exportFailed(final ExportStats stats, final Throwable error) {
+  }
+}
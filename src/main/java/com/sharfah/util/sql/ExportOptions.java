@@ -0,0 +1,109 @@
+package com.sharfah.util.sql;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.Executor;
+
+/**
+ * The settings shared by the extractors and the {@link ExtractorFactory}
+ * which configures them, and how an export runs with them.
+ * <p>
+ * The fields are volatile so that the options of a factory can be
+ * configured once and then read by exports on any thread.
+ */
+final class ExportOptions {
+
+  /** The size of the output buffer, for the formats which have one. */
+  volatile int bufferSize = StreamingCsvResultSetExtractor.DEFAULT_BUFFER_SIZE;
+  /** The number of rows fetched ahead of the encoding, or 0 to not pipeline. */
+  volatile int pipelineCapacity;
+  /** Runs the encoding when pipelined. */
+  volatile Executor pipelineExecutor = ResultSetExport.NEW_THREAD;
+  /** How the output is compressed, may be null. */
+  volatile Compression compression;
+  /** Adjusts the fetch size as rows are read, may be null. */
+  volatile FetchSizeTuner fetchSizeTuner;
+  /** Told how each export went, may be null. */
+  volatile ExportListener exportListener;
+  /** How dates and times are written, or null for the format's default. */
+  volatile TemporalFormat temporalFormat;
+
+  void setBufferSize(final int bufferSize) {
+    if (bufferSize <= 0) {
+      throw new IllegalArgumentException("Buffer size must be positive: " + bufferSize);
+    }
+    this.bufferSize = bufferSize;
+  }
+
+  void setPipelineCapacity(final int pipelineCapacity) {
+    if (pipelineCapacity < 0) {
+      throw new IllegalArgumentException("Pipeline capacity must not be negative: " + pipelineCapacity);
+    }
+    this.pipelineCapacity = pipelineCapacity;
+  }
+
+  /**
+   * @param defaultFormat the format's default
+   * @return how dates and times are written
+   */
+  TemporalFormat temporalFormat(final TemporalFormat defaultFormat) {
+    final var format = temporalFormat;
+    return format == null ? defaultFormat : format;
+  }
+
+  /**
+   * Sets these options to those of another.
+   *
+   * @param other the options to copy
+   */
+  void copyFrom(final ExportOptions other) {
+    bufferSize = other.bufferSize;
+    pipelineCapacity = other.pipelineCapacity;
+    pipelineExecutor = other.pipelineExecutor;
+    compression = other.compression;
+    fetchSizeTuner = other.fetchSizeTuner;
+    exportListener = other.exportListener;
+    temporalFormat = other.temporalFormat;
+  }
+
+  /**
+   * Runs an export, measured for the listener.
+   *
+   * @param format the name of the output format
+   * @param export the export
+   * @see ResultSetExport#measure(String, ExportListener, ResultSetExport.Measured)
+   */
+  void measure(final String format, final ResultSetExport.Measured export) {
+    ResultSetExport.measure(format, exportListener, export);
+  }
+
+  /**
+   * Copies the rows to the sink, pipelined if there is a pipeline capacity.
+   *
+   * @param rs the ResultSet
+   * @param plan the columns of the ResultSet
+   * @param sink the sink to write to
+   * @param stats the stats to add the measurements to, may be null
+   * @throws SQLException if the ResultSet cannot be read
+   * @throws IOException if the sink cannot be written to
+   */
+  void run(final ResultSet rs, final ColumnPlan plan, final RowSink sink, final ExportStats stats)
+      throws SQLException, IOException {
+    ResultSetExport.run(rs, plan, sink, pipelineCapacity, pipelineExecutor, fetchSizeTuner, stats);
+  }
+
+  /**
+   * Wraps an OutputStream to meter and compress what is written to it.
+   *
+   * @param os the OutputStream of the export
+   * @param stats the stats of the export, may be null
+   * @return the stream to encode the rows to
+   */
+  OutputStream output(final OutputStream os, final ExportStats stats) {
+    final var metered = stats == null ? os : stats.meter(os);
+    final var compression = this.compression;
+    return compression == null ? metered : compression.wrap(metered);
+  }
+}
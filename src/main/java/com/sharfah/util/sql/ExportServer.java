@@ -0,0 +1,462 @@
+package com.sharfah.util.sql;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * An HTTP server which streams the rows of registered queries as CSV, JSON
+ * or NDJSON.
+ * <p>
+ * A query registered under a name is exported by a GET request to
+ * {@code /name}. The {@code format} parameter picks the format, {@code csv}
+ * by default, and the other parameters of the request are passed to the
+ * query. The rows are encoded by an extractor from the
+ * {@link ExtractorFactory} straight into the response body, which is sent
+ * with chunked transfer encoding, and compressed if a {@link Compression}
+ * is set and the client accepts its content coding.
+ * <p>
+ * The response is only committed once the extractor writes to it, so a
+ * query which fails before returning rows gets an error status: 400 for an
+ * IllegalArgumentException, such as a missing parameter, and 500 otherwise.
+ * A failure after that closes the connection, so that the client sees the
+ * body is incomplete.
+ * <p>
+ * When a write to the client fails because it has disconnected, the
+ * statement of the ResultSet being exported is cancelled, so that the
+ * database stops working on the query even if the rows are being read on
+ * another thread. A disconnect is only noticed at a write, so not while the
+ * query runs before its first row.
+ * <p>
+ * Each export holds a thread of the executor for as long as it lasts. By
+ * default the server runs at most {@link #DEFAULT_THREADS} exports at once
+ * and queues the other requests.
+ *
+ * @author fahd
+ */
+public class ExportServer implements AutoCloseable {
+
+  /** The default number of exports run at once. */
+  public static final int DEFAULT_THREADS = 16;
+
+  /**
+   * A query which can be exported.
+   */
+  @FunctionalInterface
+  public interface Query {
+    /**
+     * Runs the query for a request and streams its rows to the extractor.
+     *
+     * @param parameters the parameters of the request, other than the format
+     * @param extractor the extractor
+     * @throws SQLException if the query fails
+     * @throws IllegalArgumentException if the parameters are invalid
+     */
+    void run(Map<String, String> parameters, ResultSetExtractor<?> extractor) throws SQLException;
+
+    /**
+     * Creates a query run as a {@link StreamingQuery} on a JdbcTemplate,
+     * with the values of the named request parameters as its arguments.
+     * The values are bound as strings, so the SQL may need to cast them.
+     *
+     * @param jdbcTemplate runs the query
+     * @param sql the query
+     * @param parameterNames the names of the request parameters, in the
+     *        order of the query's parameters
+     * @return the query
+     */
+    static Query of(final JdbcTemplate jdbcTemplate, final String sql,
+        final String... parameterNames) {
+      final var names = parameterNames.clone();
+      return (parameters, extractor) -> {
+        final var args = new Object[names.length];
+        for (var i = 0; i < names.length; i++) {
+          final var value = parameters.get(names[i]);
+          if (value == null) {
+            throw new IllegalArgumentException("Missing parameter: " + names[i]);
+          }
+          args[i] = value;
+        }
+        new StreamingQuery(sql, args).query(jdbcTemplate, extractor);
+      };
+    }
+  }
+
+  /**
+   * The response body of an export, which sends the headers on the first
+   * write and cancels the statement of the export if a write fails.
+   */
+  private static final class ResponseStream extends OutputStream {
+    private final HttpExchange exchange;
+    private OutputStream body;
+    private volatile Statement statement;
+    private boolean disconnected;
+
+    ResponseStream(final HttpExchange exchange) {
+      this.exchange = exchange;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+      try {
+        body().write(b);
+      } catch (final IOException e) {
+        throw disconnected(e);
+      }
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+      try {
+        body().write(b, off, len);
+      } catch (final IOException e) {
+        throw disconnected(e);
+      }
+    }
+
+    /**
+     * Flushes what has been written. Nothing is sent before the first write.
+     */
+    @Override
+    public void flush() throws IOException {
+      if (body == null) {
+        return;
+      }
+      try {
+        body.flush();
+      } catch (final IOException e) {
+        throw disconnected(e);
+      }
+    }
+
+    /**
+     * Does nothing: the response is ended by {@link #finish()} only if the
+     * export succeeds.
+     */
+    @Override
+    public void close() {
+    }
+
+    boolean isCommitted() {
+      return body != null;
+    }
+
+    /**
+     * Ends the response, sending the headers if nothing was written.
+     */
+    void finish() throws IOException {
+      try (exchange) {
+        body().close();
+      } catch (final IOException e) {
+        throw disconnected(e);
+      }
+    }
+
+    private OutputStream body() throws IOException {
+      if (body == null) {
+        // a length of 0 means chunked transfer encoding
+        exchange.sendResponseHeaders(200, 0);
+        body = exchange.getResponseBody();
+      }
+      return body;
+    }
+
+    private IOException disconnected(final IOException e) {
+      if (!disconnected) {
+        disconnected = true;
+        final var s = statement;
+        if (s != null) {
+          try {
+            s.cancel();
+          } catch (final SQLException ce) {
+            e.addSuppressed(ce);
+          }
+        }
+      }
+      return e;
+    }
+  }
+
+  private final HttpServer server;
+  private final ExecutorService ownedExecutor;
+  private final Map<String, Query> queries = new ConcurrentHashMap<>();
+  private volatile ExtractorFactory extractorFactory = new ExtractorFactory();
+  private volatile Compression compression;
+
+  /**
+   * Creates a server which runs up to {@link #DEFAULT_THREADS} exports at once.
+   *
+   * @param address the address to listen on, with a port of 0 for any free port
+   */
+  public ExportServer(final InetSocketAddress address) {
+    this(address, DEFAULT_THREADS);
+  }
+
+  /**
+   * @param address the address to listen on, with a port of 0 for any free port
+   * @param threads the number of exports run at once
+   */
+  public ExportServer(final InetSocketAddress address, final int threads) {
+    this(address, newExecutor(threads), true);
+  }
+
+  /**
+   * Creates a server whose exports are run by the executor, which is not
+   * shut down when the server is closed. An executor with a thread per task,
+   * such as one of virtual threads, lets any number of exports run at once.
+   *
+   * @param address the address to listen on, with a port of 0 for any free port
+   * @param executor runs the exports
+   */
+  public ExportServer(final InetSocketAddress address, final Executor executor) {
+    this(address, executor, false);
+  }
+
+  private ExportServer(final InetSocketAddress address, final Executor executor,
+      final boolean owned) {
+    try {
+      this.server = HttpServer.create(address, 0);
+    } catch (final IOException e) {
+      if (owned) {
+        ((ExecutorService) executor).shutdown();
+      }
+      throw new RuntimeException(e);
+    }
+    this.ownedExecutor = owned ? (ExecutorService) executor : null;
+    server.setExecutor(executor);
+    server.createContext("/", this::handle);
+  }
+
+  private static ExecutorService newExecutor(final int threads) {
+    if (threads <= 0) {
+      throw new IllegalArgumentException("Threads must be positive: " + threads);
+    }
+    return Executors.newFixedThreadPool(threads, task -> {
+      final var thread = new Thread(task, "export-server");
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  /**
+   * Sets the factory of the extractors which encode the rows. Defaults to a
+   * new ExtractorFactory. The factory should not compress, since the server
+   * does so depending on the request.
+   *
+   * @param extractorFactory the factory
+   */
+  public void setExtractorFactory(final ExtractorFactory extractorFactory) {
+    this.extractorFactory = extractorFactory;
+  }
+
+  /**
+   * Sets how responses are compressed for clients which accept its content
+   * coding. Defaults to null, for no compression.
+   *
+   * @param compression the compression, or null
+   */
+  public void setCompression(final Compression compression) {
+    this.compression = compression;
+  }
+
+  /**
+   * Registers a query, exported by requests to {@code /name}.
+   *
+   * @param name the name of the query
+   * @param query the query
+   */
+  public void register(final String name, final Query query) {
+    if (name.isEmpty() || name.indexOf('/') >= 0) {
+      throw new IllegalArgumentException("Invalid query name: " + name);
+    }
+    queries.put(name, query);
+  }
+
+  /**
+   * Starts accepting requests.
+   */
+  public void start() {
+    server.start();
+  }
+
+  /**
+   * @return the address the server listens on
+   */
+  public InetSocketAddress getAddress() {
+    return server.getAddress();
+  }
+
+  /**
+   * Stops the server, closing the connections of exports still running, and
+   * shuts down the executor if the server created it.
+   */
+  @Override
+  public void close() {
+    server.stop(0);
+    if (ownedExecutor != null) {
+      ownedExecutor.shutdownNow();
+    }
+  }
+
+  private void handle(final HttpExchange exchange) throws IOException {
+    if (!"GET".equals(exchange.getRequestMethod())) {
+      exchange.getResponseHeaders().set("Allow", "GET");
+      sendError(exchange, 405, "Method not allowed");
+      return;
+    }
+    final var query = queries.get(exchange.getRequestURI().getPath().substring(1));
+    if (query == null) {
+      sendError(exchange, 404, "No such query");
+      return;
+    }
+    final Map<String, String> parameters;
+    final ExportFormat format;
+    try {
+      parameters = parameters(exchange.getRequestURI().getRawQuery());
+      format = format(parameters.remove("format"));
+    } catch (final IllegalArgumentException e) {
+      sendError(exchange, 400, e.getMessage());
+      return;
+    }
+    final var response = new ResponseStream(exchange);
+    try {
+      final var compression = this.compression;
+      final var compressed = compression != null && accepts(exchange, compression.getFormat());
+      final var headers = exchange.getResponseHeaders();
+      headers.set("Content-Type", contentType(format));
+      if (compression != null) {
+        headers.set("Vary", "Accept-Encoding");
+      }
+      if (compressed) {
+        headers.set("Content-Encoding", contentEncoding(compression.getFormat()));
+      }
+      final var extractor = extractorFactory.extractor(format,
+          compressed ? compression.wrap(response) : response);
+      query.run(parameters, rs -> {
+        response.statement = rs.getStatement();
+        return extractor.extractData(rs);
+      });
+      response.finish();
+    } catch (final SQLException | RuntimeException e) {
+      if (response.isCommitted()) {
+        // the connection is closed without ending the body
+        throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+      }
+      exchange.getResponseHeaders().remove("Content-Encoding");
+      final var status = e instanceof IllegalArgumentException ? 400 : 500;
+      sendError(exchange, status, String.valueOf(e.getMessage()));
+    }
+  }
+
+  private static void sendError(final HttpExchange exchange, final int status, final String message)
+      throws IOException {
+    final var bytes = message.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+    try (exchange) {
+      exchange.sendResponseHeaders(status, bytes.length);
+      exchange.getResponseBody().write(bytes);
+    }
+  }
+
+  /**
+   * Decodes the query string of a request. The first value of a repeated
+   * parameter is used.
+   */
+  private static Map<String, String> parameters(final String rawQuery) {
+    final var parameters = new LinkedHashMap<String, String>();
+    if (rawQuery == null || rawQuery.isEmpty()) {
+      return parameters;
+    }
+    for (final var pair : rawQuery.split("&")) {
+      if (pair.isEmpty()) {
+        continue;
+      }
+      final var eq = pair.indexOf('=');
+      final var name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), StandardCharsets.UTF_8);
+      final var value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8);
+      parameters.putIfAbsent(name, value);
+    }
+    return parameters;
+  }
+
+  private static ExportFormat format(final String name) {
+    if (name == null) {
+      return ExportFormat.CSV;
+    }
+    try {
+      return ExportFormat.valueOf(name.toUpperCase(Locale.ROOT));
+    } catch (final IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unknown format: " + name);
+    }
+  }
+
+  private static String contentType(final ExportFormat format) {
+    switch (format) {
+      case CSV:
+        return "text/csv; charset=utf-8";
+      case NDJSON:
+        return "application/x-ndjson";
+      default:
+        return "application/json";
+    }
+  }
+
+  private static String contentEncoding(final Compression.Format format) {
+    return format == Compression.Format.GZIP ? "gzip" : "deflate";
+  }
+
+  /**
+   * @return true if the Accept-Encoding header of the request accepts the
+   *         content coding of the format, by name or by wildcard, with a
+   *         non-zero quality
+   */
+  private static boolean accepts(final HttpExchange exchange, final Compression.Format format) {
+    final var coding = contentEncoding(format);
+    var wildcard = false;
+    for (final var header : exchange.getRequestHeaders().getOrDefault("Accept-Encoding", List.of())) {
+      for (final var element : header.split(",")) {
+        final var parts = element.split(";");
+        final var name = parts[0].trim();
+        if (name.equalsIgnoreCase(coding)) {
+          return quality(parts) > 0;
+        }
+        if (name.equals("*")) {
+          wildcard = quality(parts) > 0;
+        }
+      }
+    }
+    return wildcard;
+  }
+
+  private static double quality(final String[] parts) {
+    for (var i = 1; i < parts.length; i++) {
+      final var param = parts[i].trim();
+      if (param.startsWith("q=")) {
+        try {
+          return Double.parseDouble(param.substring(2));
+        } catch (final NumberFormatException e) {
+          return 0;
+        }
+      }
+    }
+    return 1;
+  }
+}
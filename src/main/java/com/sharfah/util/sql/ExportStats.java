@@ -0,0 +1,228 @@
+package com.sharfah.util.sql;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The measurements of one export.
+ * <p>
+ * The time of an export is split into:
+ * <ul>
+ * <li>fetching: in {@code ResultSet.next()}, including waiting for the
+ * database</li>
+ * <li>reading: getting the values of each row from the ResultSet</li>
+ * <li>encoding: turning rows into bytes, including compression</li>
+ * <li>writing: in the OutputStream given to the extractor</li>
+ * </ul>
+ * When an export is pipelined, fetching and reading happen on one thread and
+ * encoding and writing on another, so they overlap.
+ * <p>
+ * The time taken to read each column is measured on a sample of the rows and
+ * scaled up, which is enough to tell which columns are slow.
+ */
+public final class ExportStats {
+
+  /** The columns are timed on one row in this many. */
+  static final int COLUMN_SAMPLE_INTERVAL = 64;
+
+  private final String format;
+  private final long startNanos = System.nanoTime();
+  private final ExportEvent event;
+  private final ExportListener listener;
+  private List<String> columnNames = List.of();
+  long[] columnNanos = new long[0];
+  long elapsedNanos;
+  long rows;
+  long fetchNanos;
+  long readNanos;
+  long encodeNanos;
+  long writeNanos;
+  long bytes;
+
+  private ExportStats(final String format, final ExportListener listener, final ExportEvent event) {
+    this.format = format;
+    this.listener = listener;
+    this.event = event;
+  }
+
+  /**
+   * Starts measuring an export, if there is a listener or the Flight
+   * Recorder event is enabled.
+   *
+   * @param format the name of the output format
+   * @param listener the listener, may be null
+   * @return the stats, or null if nothing is to be measured
+   */
+  static ExportStats start(final String format, final ExportListener listener) {
+    final var event = new ExportEvent();
+    if (listener == null && !event.isEnabled()) {
+      return null;
+    }
+    event.begin();
+    return new ExportStats(format, listener, event);
+  }
+
+  /**
+   * Sets the columns, once known.
+   *
+   * @param plan the columns of the ResultSet
+   */
+  void columns(final ColumnPlan plan) {
+    columnNames = List.of(plan.names);
+    columnNanos = new long[plan.size()];
+  }
+
+  /**
+   * Wraps the OutputStream so that the bytes written to it and the time
+   * spent writing are counted.
+   *
+   * @param os the OutputStream
+   * @return the metered OutputStream
+   */
+  OutputStream meter(final OutputStream os) {
+    if (os instanceof ByteBufferOutput) {
+      // meters itself, so that encoders still see its buffers
+      return ((ByteBufferOutput) os).metered(this);
+    }
+    return new MeteredOutputStream(os, this);
+  }
+
+  /**
+   * @param rows the number of rows read so far
+   * @return true if the columns of the next row are to be timed
+   */
+  static boolean sampleColumns(final long rows) {
+    return rows % COLUMN_SAMPLE_INTERVAL == 0;
+  }
+
+  /**
+   * Ends the measurements and reports them.
+   *
+   * @param error what the export failed with, or null if it succeeded
+   */
+  void finish(final Throwable error) {
+    elapsedNanos = System.nanoTime() - startNanos;
+    if (event.shouldCommit()) {
+      event.format = format;
+      event.columns = columnNames.size();
+      event.rows = rows;
+      event.bytes = bytes;
+      event.fetchTime = fetchNanos;
+      event.readTime = readNanos;
+      event.encodeTime = encodeNanos;
+      event.writeTime = writeNanos;
+      event.slowestColumn = getSlowestColumn();
+      event.failed = error != null;
+      event.commit();
+    }
+    if (listener != null) {
+      if (error == null) {
+        listener.exportFinished(this);
+      } else {
+        listener.exportFailed(this, error);
+      }
+    }
+  }
+
+  /**
+   * @return the name of the output format
+   */
+  public String getFormat() {
+    return format;
+  }
+
+  /**
+   * @return the names of the columns, empty if the export failed before
+   *         reading them
+   */
+  public List<String> getColumnNames() {
+    return columnNames;
+  }
+
+  /**
+   * @return the number of rows exported
+   */
+  public long getRows() {
+    return rows;
+  }
+
+  /**
+   * @return the number of bytes written to the OutputStream, after compression
+   */
+  public long getBytes() {
+    return bytes;
+  }
+
+  /**
+   * @return the duration of the export, in nanoseconds
+   */
+  public long getElapsedNanos() {
+    return elapsedNanos;
+  }
+
+  /**
+   * @return the time spent in {@code ResultSet.next()}, in nanoseconds
+   */
+  public long getFetchNanos() {
+    return fetchNanos;
+  }
+
+  /**
+   * @return the time spent getting values from the ResultSet, in nanoseconds
+   */
+  public long getReadNanos() {
+    return readNanos;
+  }
+
+  /**
+   * @return the time spent encoding and compressing rows, in nanoseconds
+   */
+  public long getEncodeNanos() {
+    return encodeNanos;
+  }
+
+  /**
+   * @return the time spent writing to the OutputStream, in nanoseconds
+   */
+  public long getWriteNanos() {
+    return writeNanos;
+  }
+
+  /**
+   * Returns the estimated time spent reading a column, from a sample of the
+   * rows.
+   *
+   * @param column the column index, from 0
+   * @return the time, in nanoseconds
+   */
+  public long getColumnReadNanos(final int column) {
+    return columnNanos[column] * COLUMN_SAMPLE_INTERVAL;
+  }
+
+  /**
+   * @return the name of the column which took longest to read, or null if
+   *         no row was read
+   */
+  public String getSlowestColumn() {
+    var slowest = -1;
+    for (var i = 0; i < columnNanos.length; i++) {
+      if (columnNanos[i] > 0 && (slowest < 0 || columnNanos[i] > columnNanos[slowest])) {
+        slowest = i;
+      }
+    }
+    return slowest < 0 ? null : columnNames.get(slowest);
+  }
+
+  @Override
+  public String toString() {
+    final var nanos = TimeUnit.NANOSECONDS;
+    return "ExportStats[format=" + format + ", rows=" + rows + ", bytes=" + bytes
+        + ", elapsedMs=" + nanos.toMillis(elapsedNanos) + ", fetchMs=" + nanos.toMillis(fetchNanos)
+        + ", readMs=" + nanos.toMillis(readNanos) + ", encodeMs=" + nanos.toMillis(encodeNanos)
+        + ", writeMs=" + nanos.toMillis(writeNanos) + ", slowestColumn=" + getSlowestColumn()
+        + ", columnReadNanos=" + Arrays.toString(Arrays.stream(columnNanos)
+            .map(n -> n * COLUMN_SAMPLE_INTERVAL).toArray()) + "]";
+  }
+}
@@ -0,0 +1,224 @@
+package com.sharfah.util.sql;
+
+import java.io.OutputStream;
+import java.util.concurrent.Executor;
+
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.MappingJsonFactory;
+
+/**
+ * Creates streaming CSV, JSON, columnar and fan-out extractors which share one configuration,
+ * one JsonFactory and a cache of column plans.
+ * <p>
+ * An extractor writes to a single OutputStream, so one is needed per
+ * export, but creating it from a factory is cheap: the JsonFactory is
+ * reused, and the analysis of the ResultSet metadata is done once per
+ * distinct set of column names and types rather than once per export.
+ * <p>
+ * A factory is thread-safe once configured and is meant to be shared.
+ *
+ * @author fahd
+ */
+public class ExtractorFactory {
+
+  /** The default maximum number of cached column plans. */
+  public static final int DEFAULT_MAX_CACHED_PLANS = 1024;
+
+  private final JsonFactory jsonFactory;
+  private final ColumnPlanCache planCache;
+  private volatile FlushPolicy flushPolicy = FlushPolicy.atEnd();
+  private volatile JsonLayout jsonLayout = JsonLayout.OBJECTS;
+  private final ExportOptions options = new ExportOptions();
+
+  /**
+   * Creates a factory with a default JsonFactory.
+   */
+  public ExtractorFactory() {
+    this(new MappingJsonFactory());
+  }
+
+  /**
+   * @param jsonFactory the JsonFactory used to create JSON generators
+   */
+  public ExtractorFactory(final JsonFactory jsonFactory) {
+    this(jsonFactory, DEFAULT_MAX_CACHED_PLANS);
+  }
+
+  /**
+   * @param jsonFactory the JsonFactory used to create JSON generators
+   * @param maxCachedPlans the maximum number of column plans to cache
+   */
+  public ExtractorFactory(final JsonFactory jsonFactory, final int maxCachedPlans) {
+    this.jsonFactory = jsonFactory;
+    this.planCache = new ColumnPlanCache(maxCachedPlans);
+  }
+
+  /**
+   * Sets when the CSV extractors flush their OutputStream.
+   *
+   * @param flushPolicy the flush policy
+   * @see StreamingCsvResultSetExtractor#setFlushPolicy(FlushPolicy)
+   */
+  public void setFlushPolicy(final FlushPolicy flushPolicy) {
+    this.flushPolicy = flushPolicy;
+  }
+
+  /**
+   * Sets the size of the CSV extractors' output buffer.
+   *
+   * @param bufferSize the buffer size, in bytes
+   * @see StreamingCsvResultSetExtractor#setBufferSize(int)
+   */
+  public void setBufferSize(final int bufferSize) {
+    options.setBufferSize(bufferSize);
+  }
+
+  /**
+   * Sets the number of rows the extractors may fetch ahead of the encoding.
+   *
+   * @param pipelineCapacity the number of rows, or 0 to not pipeline
+   * @see StreamingCsvResultSetExtractor#setPipelineCapacity(int)
+   */
+  public void setPipelineCapacity(final int pipelineCapacity) {
+    options.setPipelineCapacity(pipelineCapacity);
+  }
+
+  /**
+   * Sets the executor which runs the encoding when pipelined.
+   *
+   * @param pipelineExecutor the executor
+   * @see StreamingCsvResultSetExtractor#setPipelineExecutor(Executor)
+   */
+  public void setPipelineExecutor(final Executor pipelineExecutor) {
+    options.pipelineExecutor = pipelineExecutor;
+  }
+
+  /**
+   * Sets how the extractors compress their output.
+   *
+   * @param compression the compression, or null for none
+   * @see StreamingCsvResultSetExtractor#setCompression(Compression)
+   */
+  public void setCompression(final Compression compression) {
+    options.compression = compression;
+  }
+
+  /**
+   * Sets how the JSON extractors lay out rows.
+   *
+   * @param jsonLayout the layout
+   * @see StreamingJsonResultSetExtractor#setLayout(JsonLayout)
+   */
+  public void setJsonLayout(final JsonLayout jsonLayout) {
+    this.jsonLayout = jsonLayout;
+  }
+
+  /**
+   * Sets what adjusts the fetch size of the ResultSets as they are read.
+   *
+   * @param fetchSizeTuner the fetch size tuner, or null
+   * @see StreamingCsvResultSetExtractor#setFetchSizeTuner(FetchSizeTuner)
+   */
+  public void setFetchSizeTuner(final FetchSizeTuner fetchSizeTuner) {
+    options.fetchSizeTuner = fetchSizeTuner;
+  }
+
+  /**
+   * Sets the listener told how each export went.
+   *
+   * @param exportListener the listener, or null
+   * @see StreamingCsvResultSetExtractor#setExportListener(ExportListener)
+   */
+  public void setExportListener(final ExportListener exportListener) {
+    options.exportListener = exportListener;
+  }
+
+  /**
+   * Sets how the extractors write dates and times. Defaults to null, for
+   * each extractor's default.
+   *
+   * @param temporalFormat the format, or null
+   * @see StreamingCsvResultSetExtractor#setTemporalFormat(TemporalFormat)
+   * @see StreamingJsonResultSetExtractor#setTemporalFormat(TemporalFormat)
+   */
+  public void setTemporalFormat(final TemporalFormat temporalFormat) {
+    options.temporalFormat = temporalFormat;
+  }
+
+  /**
+   * Creates an extractor which streams a ResultSet as CSV.
+   *
+   * @param os the OutputStream to stream the CSV to
+   * @return the extractor
+   */
+  public StreamingCsvResultSetExtractor csv(final OutputStream os) {
+    final var extractor = new StreamingCsvResultSetExtractor(os, planCache);
+    extractor.options.copyFrom(options);
+    extractor.setFlushPolicy(flushPolicy);
+    return extractor;
+  }
+
+  /**
+   * Creates an extractor which streams a ResultSet as JSON.
+   *
+   * @param os the OutputStream to stream the JSON to
+   * @return the extractor
+   */
+  public StreamingJsonResultSetExtractor json(final OutputStream os) {
+    final var extractor = new StreamingJsonResultSetExtractor(os, jsonFactory, planCache);
+    extractor.options.copyFrom(options);
+    extractor.setLayout(jsonLayout);
+    return extractor;
+  }
+
+  /**
+   * Creates an extractor which streams a ResultSet in the binary columnar
+   * format.
+   *
+   * @param os the OutputStream to stream the rows to
+   * @return the extractor
+   */
+  public ColumnarResultSetExtractor columnar(final OutputStream os) {
+    final var extractor = new ColumnarResultSetExtractor(os, planCache);
+    extractor.options.copyFrom(options);
+    return extractor;
+  }
+
+  /**
+   * Creates an extractor which streams a ResultSet in the given format, with
+   * the JSON layout given by the format rather than the configured one.
+   *
+   * @param format the format
+   * @param os the OutputStream to stream the rows to
+   * @return the extractor
+   */
+  public ResultSetExtractor<Void> extractor(final ExportFormat format, final OutputStream os) {
+    if (format == ExportFormat.CSV) {
+      return csv(os);
+    }
+    final var extractor = json(os);
+    extractor.setLayout(format == ExportFormat.NDJSON ? JsonLayout.NDJSON : JsonLayout.OBJECTS);
+    return extractor;
+  }
+
+  /**
+   * Creates an extractor which reads a ResultSet once and writes it to
+   * several outputs, to which the outputs are then added.
+   *
+   * @return the extractor
+   */
+  public FanOutResultSetExtractor fanOut() {
+    final var extractor = new FanOutResultSetExtractor(jsonFactory, planCache);
+    extractor.options.copyFrom(options);
+    return extractor;
+  }
+
+  /**
+   * @return the number of column plans currently cached
+   */
+  int cachedPlans() {
+    return planCache.size();
+  }
+}
@@ -0,0 +1,211 @@
+package com.sharfah.util.sql;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.MappingJsonFactory;
+
+/**
+ * Reads a ResultSet once and writes it in several formats, each to its own
+ * stream: CSV, JSON and the columnar format, and any custom
+ * {@link RowSink}, such as one computing a checksum of the rows.
+ * <p>
+ * Each row is read into one set of values, which every output encodes in
+ * turn, so the query runs and its values are decoded once however many
+ * outputs there are.
+ * <p>
+ * The outputs of the built-in formats are compressed if a
+ * {@link Compression} is set. If a pipeline capacity is set, rows are
+ * fetched on the calling thread and written to the outputs on another.
+ *
+ * @author fahd
+ */
+public class FanOutResultSetExtractor implements ResultSetExtractor<Void> {
+
+  // thread-safe, and expensive enough to create that it is shared
+  private static final JsonFactory DEFAULT_JSON_FACTORY = new MappingJsonFactory();
+
+  /**
+   * Creates an output's sink when the export starts.
+   */
+  private interface Output {
+    RowSink open(ExportStats stats) throws IOException;
+  }
+
+  private final JsonFactory jsonFactory;
+  private final ColumnPlanCache planCache;
+  private final List<Output> outputs = new ArrayList<>();
+  final ExportOptions options = new ExportOptions();
+
+  /**
+   * Creates an extractor with no outputs.
+   */
+  public FanOutResultSetExtractor() {
+    this(DEFAULT_JSON_FACTORY, null);
+  }
+
+  /**
+   * @param jsonFactory the JsonFactory to create JSON generators with
+   * @param planCache the cache to get column plans from, may be null
+   */
+  FanOutResultSetExtractor(final JsonFactory jsonFactory, final ColumnPlanCache planCache) {
+    this.jsonFactory = jsonFactory;
+    this.planCache = planCache;
+  }
+
+  /**
+   * Adds a CSV output.
+   *
+   * @param os the OutputStream to stream the CSV to
+   * @return this extractor
+   */
+  public FanOutResultSetExtractor addCsv(final OutputStream os) {
+    outputs.add(stats -> new CsvRowEncoder(options.output(os, stats), options.bufferSize,
+        FlushPolicy.atEnd(), true, options.temporalFormat(TemporalFormat.iso())));
+    return this;
+  }
+
+  /**
+   * Adds a JSON output.
+   *
+   * @param os the OutputStream to stream the JSON to
+   * @param layout how the rows are laid out
+   * @return this extractor
+   */
+  public FanOutResultSetExtractor addJson(final OutputStream os, final JsonLayout layout) {
+    outputs.add(stats -> new JsonRowEncoder(
+        jsonFactory.createGenerator(options.output(os, stats), JsonEncoding.UTF8), layout,
+        FlushPolicy.atEnd(), false, options.temporalFormat));
+    return this;
+  }
+
+  /**
+   * Adds an output in the binary columnar format, with the default row
+   * group size.
+   *
+   * @param os the OutputStream to stream the rows to
+   * @return this extractor
+   * @see ColumnarResultSetExtractor
+   */
+  public FanOutResultSetExtractor addColumnar(final OutputStream os) {
+    outputs.add(stats -> new ColumnarRowEncoder(options.output(os, stats), options.bufferSize,
+        ColumnarResultSetExtractor.DEFAULT_ROW_GROUP_SIZE));
+    return this;
+  }
+
+  /**
+   * Adds a custom sink. It is given the values of each row only until it
+   * returns, and is closed at the end of the export.
+   *
+   * @param sink the sink
+   * @return this extractor
+   */
+  public FanOutResultSetExtractor addSink(final RowSink sink) {
+    outputs.add(stats -> sink);
+    return this;
+  }
+
+  /**
+   * Sets the size of the output buffer of each built-in format. Defaults to
+   * {@link StreamingCsvResultSetExtractor#DEFAULT_BUFFER_SIZE}.
+   *
+   * @param bufferSize the buffer size, in bytes
+   */
+  public void setBufferSize(final int bufferSize) {
+    options.setBufferSize(bufferSize);
+  }
+
+  /**
+   * Sets the number of rows which may be fetched ahead of the writing.
+   * If positive, rows are written on a separate thread; if 0, the default,
+   * rows are fetched and written on the calling thread.
+   *
+   * @param pipelineCapacity the number of rows, rounded up to a power of two
+   */
+  public void setPipelineCapacity(final int pipelineCapacity) {
+    options.setPipelineCapacity(pipelineCapacity);
+  }
+
+  /**
+   * Sets the executor which runs the writing when pipelined. Defaults to a
+   * new thread per export.
+   *
+   * @param pipelineExecutor the executor
+   */
+  public void setPipelineExecutor(final Executor pipelineExecutor) {
+    options.pipelineExecutor = pipelineExecutor;
+  }
+
+  /**
+   * Sets how the outputs of the built-in formats are compressed. Defaults
+   * to null, for no compression.
+   *
+   * @param compression the compression, or null
+   */
+  public void setCompression(final Compression compression) {
+    options.compression = compression;
+  }
+
+  /**
+   * Sets what adjusts the fetch size of the ResultSet as it is read.
+   * Defaults to null, for the fetch size to be left as it is.
+   *
+   * @param fetchSizeTuner the fetch size tuner, or null
+   */
+  public void setFetchSizeTuner(final FetchSizeTuner fetchSizeTuner) {
+    options.fetchSizeTuner = fetchSizeTuner;
+  }
+
+  /**
+   * Sets the listener told how each export went. The bytes reported are
+   * those written to all the outputs of the built-in formats. Defaults to null.
+   *
+   * @param exportListener the listener, or null
+   */
+  public void setExportListener(final ExportListener exportListener) {
+    options.exportListener = exportListener;
+  }
+
+  /**
+   * Sets how the CSV and JSON outputs write dates and times. Defaults to
+   * null, for ISO-8601 in CSV and epoch millis in JSON, as with the
+   * single format extractors.
+   *
+   * @param temporalFormat the format, or null
+   */
+  public void setTemporalFormat(final TemporalFormat temporalFormat) {
+    options.temporalFormat = temporalFormat;
+  }
+
+  @Override
+  public Void extractData(final ResultSet rs) {
+    options.measure("fan-out", stats -> {
+      final var sinks = new ArrayList<RowSink>(outputs.size());
+      try {
+        for (final var output : outputs) {
+          sinks.add(output.open(stats));
+        }
+      } catch (IOException | RuntimeException e) {
+        try {
+          FanOutRowSink.close(sinks);
+        } catch (IOException | RuntimeException suppressed) {
+          e.addSuppressed(suppressed);
+        }
+        throw e;
+      }
+      try (var sink = new FanOutRowSink(sinks)) {
+        final var plan = ColumnPlan.of(rs.getMetaData(), planCache);
+        options.run(rs, plan, sink, stats);
+      }
+    });
+    return null;
+  }
+}
@@ -0,0 +1,86 @@
+package com.sharfah.util.sql;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Passes each call on to several sinks, in order, so that the rows of a
+ * ResultSet are read once and written by all of them.
+ */
+final class FanOutRowSink implements RowSink {
+
+  private final RowSink[] sinks;
+
+  /**
+   * @param sinks the sinks to pass the rows to
+   */
+  FanOutRowSink(final List<RowSink> sinks) {
+    this.sinks = sinks.toArray(new RowSink[0]);
+  }
+
+  @Override
+  public void start(final ColumnPlan plan) throws IOException {
+    for (final var sink : sinks) {
+      sink.start(plan);
+    }
+  }
+
+  @Override
+  public void write(final RowValues row) throws IOException {
+    for (final var sink : sinks) {
+      sink.write(row);
+    }
+  }
+
+  @Override
+  public void end() throws IOException {
+    for (final var sink : sinks) {
+      sink.end();
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    for (final var sink : sinks) {
+      sink.flush();
+    }
+  }
+
+  /**
+   * Closes every sink, even if closing one of them fails.
+   */
+  @Override
+  public void close() throws IOException {
+    close(List.of(sinks));
+  }
+
+  /**
+   * Closes every sink, rethrowing the first failure with the others suppressed.
+   *
+   * @param sinks the sinks to close
+   * @throws IOException if a sink cannot be closed
+   */
+  static void close(final List<RowSink> sinks) throws IOException {
+    Throwable failure = null;
+    for (final var sink : sinks) {
+      try {
+        sink.close();
+      } catch (IOException | RuntimeException | Error e) {
+        if (failure == null) {
+          failure = e;
+        } else {
+          failure.addSuppressed(e);
+        }
+      }
+    }
+    if (failure instanceof IOException) {
+      throw (IOException) failure;
+    }
+    if (failure instanceof RuntimeException) {
+      throw (RuntimeException) failure;
+    }
+    if (failure != null) {
+      throw (Error) failure;
+    }
+  }
+}
@@ -0,0 +1,187 @@
+package com.sharfah.util.sql;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Adjusts the fetch size of a ResultSet while it is read, so that the rows a
+ * driver buffers stay within a memory budget. Instances are immutable; the
+ * {@code with} methods return a modified copy.
+ * <p>
+ * Every so many rows, the size of the row just read is estimated from its
+ * values and folded into a moving average. The fetch size is set to the
+ * number of such rows which fit in the budget, within a minimum and a
+ * maximum, when it differs from the current one by more than a quarter.
+ * Drivers apply a new fetch size from their next round trip.
+ * <p>
+ * The estimate assumes values are held as Java objects, strings as UTF-16,
+ * which is what most drivers buffer.
+ */
+public final class FetchSizeTuner {
+
+  /** The default minimum fetch size. */
+  public static final int DEFAULT_MIN_FETCH_SIZE = 10;
+
+  /** The default maximum fetch size. */
+  public static final int DEFAULT_MAX_FETCH_SIZE = 10_000;
+
+  /** The default number of rows between two estimates. */
+  public static final int DEFAULT_SAMPLE_INTERVAL = 100;
+
+  // the row size assumed before any row has been read
+  private static final int INITIAL_ROW_BYTES = 256;
+  private static final int ROW_OVERHEAD = 32;
+  private static final int REFERENCE = 8;
+  private static final int OBJECT = 24;
+  private static final int STRING = 40;
+
+  // the weight of the older estimates in the moving average is (n - 1) / n
+  private static final int AVERAGE_WINDOW = 16;
+
+  private final long budget;
+  private final int minFetchSize;
+  private final int maxFetchSize;
+  private final int sampleInterval;
+
+  private FetchSizeTuner(final long budget, final int minFetchSize, final int maxFetchSize,
+      final int sampleInterval) {
+    this.budget = budget;
+    this.minFetchSize = minFetchSize;
+    this.maxFetchSize = maxFetchSize;
+    this.sampleInterval = sampleInterval;
+  }
+
+  /**
+   * @param bytes the memory the rows of one fetch may use
+   * @return a tuner with the default fetch size range and sample interval
+   */
+  public static FetchSizeTuner withinBudget(final long bytes) {
+    if (bytes <= 0) {
+      throw new IllegalArgumentException("Budget must be positive: " + bytes);
+    }
+    return new FetchSizeTuner(bytes, DEFAULT_MIN_FETCH_SIZE, DEFAULT_MAX_FETCH_SIZE,
+        DEFAULT_SAMPLE_INTERVAL);
+  }
+
+  /**
+   * @param minFetchSize the smallest fetch size to set
+   * @param maxFetchSize the largest fetch size to set
+   * @return a copy with the given range
+   */
+  public FetchSizeTuner withFetchSizeRange(final int minFetchSize, final int maxFetchSize) {
+    if (minFetchSize <= 0 || maxFetchSize < minFetchSize) {
+      throw new IllegalArgumentException("Invalid fetch size range: " + minFetchSize + ".." + maxFetchSize);
+    }
+    return new FetchSizeTuner(budget, minFetchSize, maxFetchSize, sampleInterval);
+  }
+
+  /**
+   * @param sampleInterval the number of rows between two estimates
+   * @return a copy with the given interval
+   */
+  public FetchSizeTuner withSampleInterval(final int sampleInterval) {
+    if (sampleInterval <= 0) {
+      throw new IllegalArgumentException("Sample interval must be positive: " + sampleInterval);
+    }
+    return new FetchSizeTuner(budget, minFetchSize, maxFetchSize, sampleInterval);
+  }
+
+  /**
+   * Returns the fetch size to start with, before any row has been seen,
+   * based on a row of 256 bytes.
+   *
+   * @return the initial fetch size
+   */
+  public int getInitialFetchSize() {
+    return fetchSizeFor(INITIAL_ROW_BYTES);
+  }
+
+  /**
+   * @param rowBytes the estimated size of a row
+   * @return the number of rows which fit in the budget, within the range
+   */
+  int fetchSizeFor(final double rowBytes) {
+    final var rows = (long) (budget / Math.max(rowBytes, 1));
+    return (int) Math.max(minFetchSize, Math.min(maxFetchSize, rows));
+  }
+
+  /**
+   * Starts tuning the given ResultSet.
+   *
+   * @param rs the ResultSet
+   * @return the tuning, to be told of every row read
+   * @throws SQLException if the current fetch size cannot be read
+   */
+  Tuning start(final ResultSet rs) throws SQLException {
+    return new Tuning(rs);
+  }
+
+  /**
+   * Estimates the memory a driver uses to hold the row.
+   *
+   * @param row the row
+   * @return the size, in bytes
+   */
+  static long estimateBytes(final RowValues row) {
+    var bytes = (long) ROW_OVERHEAD;
+    for (var i = 0; i < row.types.length; i++) {
+      bytes += REFERENCE;
+      if (row.nulls[i]) {
+        continue;
+      }
+      final var value = row.objects[i];
+      if (value instanceof CharSequence) {
+        bytes += STRING + 2L * ((CharSequence) value).length();
+      } else if (value instanceof byte[]) {
+        bytes += OBJECT + ((byte[]) value).length;
+      } else {
+        bytes += OBJECT;
+      }
+    }
+    return bytes;
+  }
+
+  /**
+   * The state of the tuning of one ResultSet. It must be used by the thread
+   * reading the ResultSet.
+   */
+  final class Tuning {
+
+    private final ResultSet rs;
+    private int fetchSize;
+    private long rows;
+    private long samples;
+    private double averageBytes;
+
+    private Tuning(final ResultSet rs) throws SQLException {
+      this.rs = rs;
+      this.fetchSize = rs.getFetchSize();
+    }
+
+    /**
+     * Called after each row is read, which is occasionally sampled.
+     *
+     * @param row the row just read
+     * @throws SQLException if the fetch size cannot be set
+     */
+    void rowRead(final RowValues row) throws SQLException {
+      if (rows++ % sampleInterval != 0) {
+        return;
+      }
+      samples++;
+      averageBytes += (estimateBytes(row) - averageBytes) / Math.min(samples, AVERAGE_WINDOW);
+      final var target = fetchSizeFor(averageBytes);
+      if (Math.abs(target - fetchSize) > fetchSize / 4) {
+        rs.setFetchSize(target);
+        fetchSize = target;
+      }
+    }
+
+    /**
+     * @return the fetch size last set, or read from the ResultSet
+     */
+    int fetchSize() {
+      return fetchSize;
+    }
+  }
+}
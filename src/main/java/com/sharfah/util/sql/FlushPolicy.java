@@ -0,0 +1,68 @@
+package com.sharfah.util.sql;
+
+import java.time.Duration;
+
+/**
+ * Decides when buffered output is flushed to the underlying stream.
+ * It is consulted after every row; output is always flushed at the end.
+ * <p>
+ * Batch exports are usually best served by {@link #atEnd()}, which lets the
+ * buffer fill before anything is written, while interactive downloads can
+ * flush {@link #everyRows(long) every few rows} or
+ * {@link #every(Duration) every few milliseconds} so that the client sees
+ * data early.
+ */
+@FunctionalInterface
+public interface FlushPolicy {
+
+  /**
+   * Returns true if the output should be flushed now.
+   *
+   * @param rows the number of rows written since the last flush
+   * @param bytes the number of bytes written since the last flush
+   * @param lastFlushNanos the {@link System#nanoTime()} of the last flush
+   * @return true to flush
+   */
+  boolean shouldFlush(long rows, long bytes, long lastFlushNanos);
+
+  /**
+   * @return a policy which only flushes at the end of the output
+   */
+  static FlushPolicy atEnd() {
+    return (rows, bytes, lastFlushNanos) -> false;
+  }
+
+  /**
+   * @param n the number of rows
+   * @return a policy which flushes after every n rows
+   */
+  static FlushPolicy everyRows(final long n) {
+    if (n <= 0) {
+      throw new IllegalArgumentException("Rows must be positive: " + n);
+    }
+    return (rows, bytes, lastFlushNanos) -> rows >= n;
+  }
+
+  /**
+   * @param n the number of bytes
+   * @return a policy which flushes once at least n bytes have been written
+   */
+  static FlushPolicy everyBytes(final long n) {
+    if (n <= 0) {
+      throw new IllegalArgumentException("Bytes must be positive: " + n);
+    }
+    return (rows, bytes, lastFlushNanos) -> bytes >= n;
+  }
+
+  /**
+   * @param interval the maximum time between flushes
+   * @return a policy which flushes once the interval has elapsed
+   */
+  static FlushPolicy every(final Duration interval) {
+    final var nanos = interval.toNanos();
+    if (nanos <= 0) {
+      throw new IllegalArgumentException("Interval must be positive: " + interval);
+    }
+    return (rows, bytes, lastFlushNanos) -> System.nanoTime() - lastFlushNanos >= nanos;
+  }
+}
@@ -0,0 +1,108 @@
+package com.sharfah.util.sql;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Fills pooled direct buffers and writes several at a time to a channel,
+ * with a single gathering write if the channel supports it.
+ */
+final class GatheringChannelOutput extends ByteBufferOutput {
+
+  private final WritableByteChannel channel;
+  private final ByteBufferPool pool;
+  private final ByteBuffer[] pending;
+  private int pendingCount;
+  private boolean closed;
+
+  /**
+   * @param channel the channel to write to
+   * @param pool the pool of buffers
+   * @param gather the number of full buffers written at once
+   */
+  GatheringChannelOutput(final WritableByteChannel channel, final ByteBufferPool pool,
+      final int gather) {
+    if (gather <= 0) {
+      throw new IllegalArgumentException("Gather must be positive: " + gather);
+    }
+    this.channel = channel;
+    this.pool = pool;
+    this.pending = new ByteBuffer[gather];
+    this.buffer = pool.acquire();
+  }
+
+  @Override
+  void next() throws IOException {
+    pending[pendingCount++] = buffer.flip();
+    buffer = pool.acquire();
+    if (pendingCount == pending.length) {
+      writePending();
+    }
+  }
+
+  /**
+   * Writes the full buffers and what has been put into the current one.
+   */
+  @Override
+  public void flush() throws IOException {
+    if (buffer.position() > 0) {
+      pending[pendingCount++] = buffer.flip();
+      buffer = pool.acquire();
+    }
+    writePending();
+  }
+
+  private void writePending() throws IOException {
+    if (pendingCount == 0) {
+      return;
+    }
+    final var start = stats == null ? 0 : System.nanoTime();
+    var written = 0L;
+    if (channel instanceof GatheringByteChannel) {
+      final var gathering = (GatheringByteChannel) channel;
+      var first = 0;
+      while (first < pendingCount) {
+        written += gathering.write(pending, first, pendingCount - first);
+        while (first < pendingCount && !pending[first].hasRemaining()) {
+          first++;
+        }
+      }
+    } else {
+      for (var i = 0; i < pendingCount; i++) {
+        while (pending[i].hasRemaining()) {
+          written += channel.write(pending[i]);
+        }
+      }
+    }
+    if (stats != null) {
+      stats.writeNanos += System.nanoTime() - start;
+      stats.bytes += written;
+    }
+    for (var i = 0; i < pendingCount; i++) {
+      pool.release(pending[i]);
+      pending[i] = null;
+    }
+    pendingCount = 0;
+  }
+
+  /**
+   * Writes what remains, returns the buffers to the pool and closes the channel.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try (channel) {
+      flush();
+    } finally {
+      pool.release(buffer);
+      for (var i = 0; i < pendingCount; i++) {
+        pool.release(pending[i]);
+      }
+    }
+  }
+}
@@ -0,0 +1,603 @@
+package com.sharfah.util.sql;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.sql.DataSource;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Loads JSON, as written by {@link StreamingJsonResultSetExtractor} in any of
+ * its {@link JsonLayout layouts}, into a table with batched inserts.
+ * <p>
+ * The JSON is read token by token, never as a tree. Values are parsed, on
+ * the calling thread, straight into the column arrays of a batch, and full
+ * batches are queued for threads which bind and execute them, each on its
+ * own connection. Batches are recycled and the queue is bounded, so the
+ * memory used does not depend on the size of the input.
+ * <p>
+ * The fields of the first row, or the {@code columns} of the
+ * {@link JsonLayout#COLUMNS_AND_ROWS} layout, name the columns to insert
+ * into; their names are matched to the table's columns ignoring case. A
+ * field missing from a later row is inserted as null. Field names are
+ * resolved to parameter indexes once: rows whose fields come in the same
+ * order as the previous row's do not look them up. Dates and timestamps are
+ * read from epoch millis or from ISO-8601 or JDBC escape format strings, and
+ * times from strings. Each batch is committed once executed.
+ *
+ * @author fahd
+ */
+public class JsonBulkLoader {
+
+  /** The default number of rows in a batch. */
+  public static final int DEFAULT_BATCH_SIZE = 1000;
+
+  /** The default number of full batches which may wait to be executed. */
+  public static final int DEFAULT_QUEUED_BATCHES = 4;
+
+  private static final long POLL_MILLIS = 100;
+
+  private final DataSource dataSource;
+  private final String table;
+  private JsonLayout layout = JsonLayout.OBJECTS;
+  private int batchSize = DEFAULT_BATCH_SIZE;
+  private int connections = Runtime.getRuntime().availableProcessors();
+  private int queuedBatches = DEFAULT_QUEUED_BATCHES;
+  private JsonFactory jsonFactory = new JsonFactory();
+
+  /**
+   * @param dataSource provides a connection for each executing thread
+   * @param table the table to insert into
+   */
+  public JsonBulkLoader(final DataSource dataSource, final String table) {
+    this.dataSource = dataSource;
+    this.table = table;
+  }
+
+  /**
+   * Sets the layout of the JSON. Defaults to {@link JsonLayout#OBJECTS}.
+   *
+   * @param layout the layout
+   */
+  public void setLayout(final JsonLayout layout) {
+    this.layout = layout;
+  }
+
+  /**
+   * Sets the number of rows in a batch. Defaults to {@link #DEFAULT_BATCH_SIZE}.
+   *
+   * @param batchSize the number of rows
+   */
+  public void setBatchSize(final int batchSize) {
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+    }
+    this.batchSize = batchSize;
+  }
+
+  /**
+   * Sets the number of connections, each with its own thread. Defaults to
+   * the number of processors.
+   *
+   * @param connections the number of connections
+   */
+  public void setConnections(final int connections) {
+    if (connections <= 0) {
+      throw new IllegalArgumentException("Connections must be positive: " + connections);
+    }
+    this.connections = connections;
+  }
+
+  /**
+   * Sets the number of full batches which may wait to be executed before
+   * parsing waits. Defaults to {@link #DEFAULT_QUEUED_BATCHES}.
+   *
+   * @param queuedBatches the number of batches
+   */
+  public void setQueuedBatches(final int queuedBatches) {
+    if (queuedBatches <= 0) {
+      throw new IllegalArgumentException("Queued batches must be positive: " + queuedBatches);
+    }
+    this.queuedBatches = queuedBatches;
+  }
+
+  /**
+   * Sets the JsonFactory which creates the parser. Defaults to a plain JsonFactory.
+   *
+   * @param jsonFactory the JsonFactory
+   */
+  public void setJsonFactory(final JsonFactory jsonFactory) {
+    this.jsonFactory = jsonFactory;
+  }
+
+  /**
+   * Loads a JSON file.
+   *
+   * @param file the JSON file
+   * @return the number of rows inserted
+   */
+  public long load(final Path file) {
+    try (var in = Files.newInputStream(file)) {
+      return load(in);
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Loads the JSON. The stream is not closed.
+   *
+   * @param in the JSON, encoded as UTF-8
+   * @return the number of rows inserted
+   */
+  public long load(final InputStream in) {
+    final var executor = Executors.newFixedThreadPool(connections, task -> {
+      final var thread = new Thread(task, "json-bulk-loader");
+      thread.setDaemon(true);
+      return thread;
+    });
+    try (var parser = jsonFactory.createParser(in)) {
+      parser.disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+      return new Run(parser).load(executor);
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (IOException | SQLException e) {
+      throw new RuntimeException(e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * The values of a batch of rows, by column. Numbers, booleans, and dates
+   * and timestamps given as epoch millis are kept in primitive arrays.
+   */
+  private static final class Batch {
+    final long[][] longs;
+    final double[][] doubles;
+    final Object[][] objects;
+    final boolean[][] nulls;
+    int size;
+
+    Batch(final int columns, final int rows) {
+      longs = new long[columns][rows];
+      doubles = new double[columns][rows];
+      objects = new Object[columns][rows];
+      nulls = new boolean[columns][rows];
+    }
+  }
+
+  /**
+   * The state of one load.
+   */
+  private final class Run {
+
+    private final JsonParser parser;
+    // the table's columns, by upper case name
+    private final Map<String, Integer> tableColumns = new HashMap<>();
+    private final String[] tableNames;
+    private final int[] tableSqlTypes;
+    // the columns inserted into, in parameter order
+    private final ArrayList<Integer> columns = new ArrayList<>();
+    private final Map<String, Integer> parameters = new HashMap<>();
+    private ColumnType[] types;
+    private boolean columnsFixed;
+    // the field names of the previous row, by position, and their parameters
+    private String[] previousNames = new String[0];
+    private int[] previousParameters = new int[0];
+
+    private final BlockingQueue<Batch> free;
+    private final BlockingQueue<Batch> full;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final AtomicLong rows = new AtomicLong();
+    private volatile boolean cancelled;
+    private Batch batch;
+
+    Run(final JsonParser parser) throws SQLException {
+      this.parser = parser;
+      try (var connection = dataSource.getConnection();
+           var statement = connection.createStatement();
+           var rs = statement.executeQuery("select * from " + table + " where 1 = 0")) {
+        final var rsmd = rs.getMetaData();
+        final var count = rsmd.getColumnCount();
+        tableNames = new String[count];
+        tableSqlTypes = new int[count];
+        for (var i = 0; i < count; i++) {
+          tableNames[i] = rsmd.getColumnName(i + 1);
+          tableSqlTypes[i] = rsmd.getColumnType(i + 1);
+          tableColumns.put(tableNames[i].toUpperCase(Locale.ROOT), i);
+        }
+      }
+      // one batch being filled, one per queue slot and one per executing thread
+      final var batches = queuedBatches + connections + 1;
+      free = new ArrayBlockingQueue<>(batches);
+      full = new ArrayBlockingQueue<>(batches);
+      for (var i = 0; i < batches; i++) {
+        free.add(new Batch(tableNames.length, batchSize));
+      }
+    }
+
+    long load(final ExecutorService executor) throws IOException, SQLException, InterruptedException {
+      final var finished = new CountDownLatch(connections);
+      var started = false;
+      try {
+        batch = take(free);
+        var token = parser.nextToken();
+        if (layout == JsonLayout.OBJECTS) {
+          expect(token, JsonToken.START_ARRAY);
+          token = parser.nextToken();
+        } else if (layout == JsonLayout.COLUMNS_AND_ROWS) {
+          readColumns(token);
+          fixColumns();
+          token = parser.nextToken();
+        }
+        // the rows end with the input for NDJSON, or with the enclosing array
+        while (token != null && token != JsonToken.END_ARRAY) {
+          readRow(token);
+          if (!columnsFixed) {
+            fixColumns();
+          }
+          if (!started) {
+            for (var i = 0; i < connections; i++) {
+              executor.execute(() -> executeBatches(finished));
+            }
+            started = true;
+          }
+          if (++batch.size == batchSize) {
+            put(full, batch);
+            batch = take(free);
+          }
+          token = parser.nextToken();
+        }
+        if (layout != JsonLayout.NDJSON) {
+          expect(token, JsonToken.END_ARRAY);
+        }
+        if (layout == JsonLayout.COLUMNS_AND_ROWS) {
+          expect(parser.nextToken(), JsonToken.END_OBJECT);
+        }
+        if (batch.size > 0) {
+          put(full, batch);
+        }
+      } catch (final CancellationException e) {
+        // an executing thread has failed; its exception is rethrown below
+      } catch (final IOException | RuntimeException e) {
+        cancelled = true;
+        throw e;
+      } finally {
+        if (started) {
+          // an empty batch tells each executing thread to stop
+          for (var i = 0; i < connections; i++) {
+            final var end = free.take();
+            end.size = 0;
+            full.put(end);
+          }
+          finished.await();
+        }
+      }
+      final var error = failure.get();
+      if (error instanceof SQLException) {
+        throw (SQLException) error;
+      }
+      if (error instanceof RuntimeException) {
+        throw (RuntimeException) error;
+      }
+      if (error != null) {
+        throw new RuntimeException(error);
+      }
+      return rows.get();
+    }
+
+    private void readColumns(final JsonToken token) throws IOException {
+      expect(token, JsonToken.START_OBJECT);
+      expect(parser.nextToken(), JsonToken.FIELD_NAME);
+      if (!"columns".equals(parser.getCurrentName())) {
+        throw new IOException("Expected columns but found " + parser.getCurrentName());
+      }
+      expect(parser.nextToken(), JsonToken.START_ARRAY);
+      while (parser.nextToken() == JsonToken.VALUE_STRING) {
+        parameter(parser.getText());
+      }
+      expect(parser.currentToken(), JsonToken.END_ARRAY);
+      expect(parser.nextToken(), JsonToken.FIELD_NAME);
+      if (!"rows".equals(parser.getCurrentName())) {
+        throw new IOException("Expected rows but found " + parser.getCurrentName());
+      }
+      expect(parser.nextToken(), JsonToken.START_ARRAY);
+    }
+
+    private void readRow(final JsonToken token) throws IOException {
+      final var row = batch.size;
+      for (var p = 0; p < tableNames.length; p++) {
+        batch.nulls[p][row] = true;
+      }
+      if (layout == JsonLayout.COLUMNS_AND_ROWS) {
+        expect(token, JsonToken.START_ARRAY);
+        var p = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+          if (p == columns.size()) {
+            throw new IOException("Row has more values than columns at " + parser.getCurrentLocation());
+          }
+          readValue(p++, row);
+        }
+        return;
+      }
+      expect(token, JsonToken.START_OBJECT);
+      var position = 0;
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        final var parameter = parameterAt(position++, parser.getCurrentName());
+        parser.nextToken();
+        readValue(parameter, row);
+      }
+      expect(parser.currentToken(), JsonToken.END_OBJECT);
+    }
+
+    /**
+     * Returns the parameter of the field at a position in the row, without a
+     * lookup if the previous row had the same field there.
+     */
+    private int parameterAt(final int position, final String name) throws IOException {
+      if (position < previousNames.length && previousNames[position] == name) {
+        return previousParameters[position];
+      }
+      final var parameter = parameter(name);
+      if (position >= previousNames.length) {
+        previousNames = Arrays.copyOf(previousNames, position + 1);
+        previousParameters = Arrays.copyOf(previousParameters, position + 1);
+      }
+      // field names are canonicalized by the parser, so they can be compared by identity
+      previousNames[position] = name;
+      previousParameters[position] = parameter;
+      return parameter;
+    }
+
+    private int parameter(final String name) throws IOException {
+      final var known = parameters.get(name);
+      if (known != null) {
+        return known;
+      }
+      final var column = tableColumns.get(name.toUpperCase(Locale.ROOT));
+      // the same column under a name in another case
+      var parameter = column == null ? -1 : columns.indexOf(column);
+      if (parameter < 0) {
+        if (column == null || columnsFixed) {
+          throw new IOException("Unknown column " + name + " at " + parser.getCurrentLocation());
+        }
+        parameter = columns.size();
+        columns.add(column);
+      } else if (!columnsFixed) {
+        throw new IOException("Duplicate column " + name);
+      }
+      parameters.put(name, parameter);
+      return parameter;
+    }
+
+    private void fixColumns() {
+      types = new ColumnType[columns.size()];
+      for (var p = 0; p < types.length; p++) {
+        types[p] = ColumnType.of(tableSqlTypes[columns.get(p)]);
+      }
+      columnsFixed = true;
+    }
+
+    private void readValue(final int p, final int row) throws IOException {
+      final var token = parser.currentToken();
+      if (token == JsonToken.VALUE_NULL) {
+        return;
+      }
+      if (token.isStructStart()) {
+        throw new IOException("Nested values are not supported, at " + parser.getCurrentLocation());
+      }
+      batch.nulls[p][row] = false;
+      // the type of a column is only known once the first row has been read
+      final var type = types == null ? ColumnType.of(tableSqlTypes[columns.get(p)]) : types[p];
+      batch.objects[p][row] = null;
+      switch (type) {
+        case LONG:
+          batch.longs[p][row] = token == JsonToken.VALUE_STRING
+              ? Long.parseLong(parser.getText()) : parser.getLongValue();
+          break;
+        case DOUBLE:
+        case FLOAT:
+          batch.doubles[p][row] = token == JsonToken.VALUE_STRING
+              ? Double.parseDouble(parser.getText()) : parser.getDoubleValue();
+          break;
+        case BOOLEAN:
+          batch.longs[p][row] = (token == JsonToken.VALUE_STRING
+              ? Boolean.parseBoolean(parser.getText()) : parser.getBooleanValue()) ? 1 : 0;
+          break;
+        case DECIMAL:
+          batch.objects[p][row] = token == JsonToken.VALUE_STRING
+              ? new BigDecimal(parser.getText()) : parser.getDecimalValue();
+          break;
+        case DATE:
+        case TIMESTAMP:
+          // epoch millis, or an ISO-8601 or JDBC escape format string
+          if (token == JsonToken.VALUE_STRING) {
+            batch.objects[p][row] = parser.getText();
+          } else {
+            batch.longs[p][row] = parser.getLongValue();
+          }
+          break;
+        case BLOB:
+          // base64, as the extractor writes it
+          batch.objects[p][row] = parser.getBinaryValue();
+          break;
+        default:
+          batch.objects[p][row] = parser.getText();
+          break;
+      }
+    }
+
+    private void expect(final JsonToken token, final JsonToken expected) throws IOException {
+      if (token != expected) {
+        throw new IOException("Expected " + expected + " but found " + token + " at "
+            + parser.getCurrentLocation());
+      }
+    }
+
+    /**
+     * Executes batches on one connection until given an empty one, on a
+     * thread of the executor. Once the load is cancelled, batches are
+     * returned without being executed.
+     */
+    private void executeBatches(final CountDownLatch finished) {
+      String insert = null;
+      try (var connection = dataSource.getConnection()) {
+        connection.setAutoCommit(false);
+        final var names = new StringBuilder();
+        for (final var column : columns) {
+          names.append(names.length() == 0 ? "" : ", ").append(tableNames[column]);
+        }
+        insert = "insert into " + table + " (" + names + ") values ("
+            + "?, ".repeat(columns.size() - 1) + "?)";
+        try (var ps = connection.prepareStatement(insert)) {
+          Batch next;
+          while ((next = take(full)).size > 0) {
+            if (!cancelled) {
+              execute(next, ps);
+              connection.commit();
+              rows.addAndGet(next.size);
+            }
+            next.size = 0;
+            put(free, next);
+          }
+          put(free, next);
+        } catch (final Throwable t) {
+          connection.rollback();
+          throw t;
+        } finally {
+          connection.setAutoCommit(true);
+        }
+      } catch (final CancellationException e) {
+        // the load has failed elsewhere
+      } catch (final Throwable t) {
+        failure.compareAndSet(null, t);
+        cancelled = true;
+        // keep taking batches, so that the parsing thread is not blocked
+        drain();
+      } finally {
+        finished.countDown();
+      }
+    }
+
+    private void drain() {
+      try {
+        Batch next;
+        while ((next = full.take()).size > 0) {
+          next.size = 0;
+          free.put(next);
+        }
+        free.put(next);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    private void execute(final Batch batch, final PreparedStatement ps) throws SQLException {
+      for (var r = 0; r < batch.size; r++) {
+        for (var p = 0; p < types.length; p++) {
+          bind(batch, p, r, ps);
+        }
+        ps.addBatch();
+      }
+      ps.executeBatch();
+    }
+
+    private void bind(final Batch batch, final int p, final int r, final PreparedStatement ps)
+        throws SQLException {
+      final var index = p + 1;
+      if (batch.nulls[p][r]) {
+        ps.setNull(index, tableSqlTypes[columns.get(p)]);
+        return;
+      }
+      final var object = batch.objects[p][r];
+      switch (types[p]) {
+        case LONG:
+          ps.setLong(index, batch.longs[p][r]);
+          break;
+        case DOUBLE:
+          ps.setDouble(index, batch.doubles[p][r]);
+          break;
+        case FLOAT:
+          ps.setFloat(index, (float) batch.doubles[p][r]);
+          break;
+        case BOOLEAN:
+          ps.setBoolean(index, batch.longs[p][r] != 0);
+          break;
+        case DECIMAL:
+          ps.setBigDecimal(index, (BigDecimal) object);
+          break;
+        case STRING:
+        case CLOB:
+          ps.setString(index, (String) object);
+          break;
+        case BLOB:
+          ps.setBytes(index, (byte[]) object);
+          break;
+        case DATE:
+          ps.setDate(index, object == null ? new Date(batch.longs[p][r]) : TemporalFormatter.parseDate((String) object));
+          break;
+        case TIME:
+          ps.setTime(index, TemporalFormatter.parseTime((String) object));
+          break;
+        case TIMESTAMP:
+          ps.setTimestamp(index, object == null
+              ? new Timestamp(batch.longs[p][r]) : TemporalFormatter.parseTimestamp((String) object));
+          break;
+        default:
+          ps.setObject(index, object);
+          break;
+      }
+    }
+
+    private Batch take(final BlockingQueue<Batch> queue) {
+      try {
+        Batch next;
+        while ((next = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+          if (cancelled && queue == free) {
+            throw new CancellationException();
+          }
+        }
+        return next;
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new CancellationException();
+      }
+    }
+
+    private void put(final BlockingQueue<Batch> queue, final Batch next) {
+      try {
+        queue.put(next);
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new CancellationException();
+      }
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package com.sharfah.util.sql;
+
+/**
+ * How the rows of a ResultSet are laid out as JSON.
+ */
+public enum JsonLayout {
+
+  /**
+   * An array of objects, one per row, keyed by column name:
+   * <pre>
+   * [{"name":"Alice","age":20},{"name":"Bob","age":35}]
+   * </pre>
+   */
+  OBJECTS,
+
+  /**
+   * Newline delimited JSON, also known as JSON Lines: one object per row,
+   * each on its own line. The output can be split at line breaks and the
+   * pieces processed independently.
+   * <pre>
+   * {"name":"Alice","age":20}
+   * {"name":"Bob","age":35}
+   * </pre>
+   */
+  NDJSON,
+
+  /**
+   * An object holding the column names once, and the rows as arrays of
+   * values. For wide tables this is around half the size of {@link #OBJECTS}.
+   * <pre>
+   * {"columns":["name","age"],"rows":[["Alice",20],["Bob",35]]}
+   * </pre>
+   */
+  COLUMNS_AND_ROWS
+}
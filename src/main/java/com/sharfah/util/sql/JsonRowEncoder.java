@@ -0,0 +1,272 @@
+package com.sharfah.util.sql;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.OffsetDateTime;
+import java.util.Date;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+/**
+ * Encodes rows as JSON, in one of the {@link JsonLayout layouts}.
+ * <p>
+ * Alternatively, the rows can be written without what encloses them, as a
+ * comma separated sequence of objects, or lines of NDJSON, so that sequences
+ * written by several encoders can be joined.
+ * <p>
+ * Dates and timestamps are written as epoch millis, unless a
+ * {@link TemporalFormat} is given, in which case they, times and
+ * OffsetDateTimes are written as ISO-8601 strings.
+ * <p>
+ * CLOBs are written as strings and BLOBs as base64 strings. When streamed,
+ * the generator copies them through its buffer in chunks.
+ */
+final class JsonRowEncoder implements RowSink {
+
+  private static final SerializedString ROW_SEPARATOR = new SerializedString(",");
+  private static final SerializedString COLUMNS = new SerializedString("columns");
+  private static final SerializedString ROWS = new SerializedString("rows");
+
+  private final JsonGenerator jg;
+  private final JsonLayout layout;
+  private final FlushPolicy flushPolicy;
+  private final boolean rowsOnly;
+  private final TemporalFormatter temporalFormatter;
+  private final TextBuffer temporal;
+  // doubles and decimals are formatted here and written raw, unless the
+  // generator quotes numbers
+  private final TextBuffer numbers;
+  private SerializedString[] names;
+  private long rowsSinceFlush;
+  private long lastFlushNanos;
+
+  /**
+   * @param jg the generator to write to
+   * @param layout the layout of the rows
+   */
+  JsonRowEncoder(final JsonGenerator jg, final JsonLayout layout) {
+    this(jg, layout, FlushPolicy.atEnd(), false, null);
+  }
+
+  /**
+   * @param jg the generator to write to
+   * @param layout the layout of the rows
+   * @param flushPolicy when to flush the generator; the bytes it is given
+   *        are those buffered by the generator
+   * @param rowsOnly true to write the rows without what encloses them, which
+   *        is not supported for {@link JsonLayout#COLUMNS_AND_ROWS}
+   * @param temporalFormat how dates and times are written, or null for
+   *        epoch millis
+   */
+  JsonRowEncoder(final JsonGenerator jg, final JsonLayout layout, final FlushPolicy flushPolicy,
+      final boolean rowsOnly, final TemporalFormat temporalFormat) {
+    if (rowsOnly && layout == JsonLayout.COLUMNS_AND_ROWS) {
+      throw new IllegalArgumentException("Rows cannot be written alone in layout " + layout);
+    }
+    this.jg = jg;
+    this.layout = layout;
+    this.flushPolicy = flushPolicy;
+    this.rowsOnly = rowsOnly;
+    this.temporalFormatter = temporalFormat == null ? null : new TemporalFormatter(temporalFormat);
+    this.temporal = temporalFormat == null ? null : new TextBuffer(64);
+    this.numbers = jg.isEnabled(JsonGenerator.Feature.WRITE_NUMBERS_AS_STRINGS) ? null : new TextBuffer(64);
+    if (layout == JsonLayout.NDJSON) {
+      // each row is followed by a line break instead
+      jg.setRootValueSeparator(null);
+    } else if (rowsOnly) {
+      jg.setRootValueSeparator(ROW_SEPARATOR);
+    }
+  }
+
+  @Override
+  public void start(final ColumnPlan plan) throws IOException {
+    names = plan.jsonNames();
+    lastFlushNanos = System.nanoTime();
+    if (rowsOnly) {
+      return;
+    }
+    switch (layout) {
+      case OBJECTS:
+        jg.writeStartArray();
+        break;
+      case COLUMNS_AND_ROWS:
+        jg.writeStartObject();
+        jg.writeFieldName(COLUMNS);
+        jg.writeStartArray();
+        for (final var name : plan.names) {
+          jg.writeString(name);
+        }
+        jg.writeEndArray();
+        jg.writeFieldName(ROWS);
+        jg.writeStartArray();
+        break;
+      default:
+        break;
+    }
+  }
+
+  @Override
+  public void write(final RowValues row) throws IOException {
+    if (layout == JsonLayout.COLUMNS_AND_ROWS) {
+      jg.writeStartArray();
+      for (var i = 0; i < names.length; i++) {
+        writeValue(row, i);
+      }
+      jg.writeEndArray();
+    } else {
+      jg.writeStartObject();
+      for (var i = 0; i < names.length; i++) {
+        jg.writeFieldName(names[i]);
+        writeValue(row, i);
+      }
+      jg.writeEndObject();
+      if (layout == JsonLayout.NDJSON) {
+        jg.writeRaw('\n');
+      }
+    }
+    rowsSinceFlush++;
+    if (flushPolicy.shouldFlush(rowsSinceFlush, jg.getOutputBuffered(), lastFlushNanos)) {
+      jg.flush();
+      rowsSinceFlush = 0;
+      lastFlushNanos = System.nanoTime();
+    }
+  }
+
+  private void writeValue(final RowValues row, final int i) throws IOException {
+    if (row.nulls[i]) {
+      jg.writeNull();
+      return;
+    }
+    switch (row.types[i]) {
+      case LONG:
+        jg.writeNumber(row.longs[i]);
+        break;
+      case DOUBLE:
+        if (numbers != null && Double.isFinite(row.doubles[i])) {
+          numbers.appendDouble(row.doubles[i]);
+          writeNumber();
+        } else {
+          jg.writeNumber(row.doubles[i]);
+        }
+        break;
+      case FLOAT:
+        jg.writeNumber((float) row.doubles[i]);
+        break;
+      case BOOLEAN:
+        jg.writeBoolean(row.longs[i] != 0);
+        break;
+      case DECIMAL:
+        if (numbers != null) {
+          numbers.appendDecimal((BigDecimal) row.objects[i]);
+          writeNumber();
+        } else {
+          jg.writeNumber((BigDecimal) row.objects[i]);
+        }
+        break;
+      case STRING:
+        jg.writeString((String) row.objects[i]);
+        break;
+      case CLOB:
+        if (row.objects[i] instanceof Reader) {
+          try (var reader = (Reader) row.objects[i]) {
+            jg.writeString(reader, -1);
+          }
+        } else {
+          jg.writeString((String) row.objects[i]);
+        }
+        break;
+      case BLOB:
+        if (row.objects[i] instanceof InputStream) {
+          try (var in = (InputStream) row.objects[i]) {
+            jg.writeBinary(in, -1);
+          }
+        } else {
+          jg.writeBinary((byte[]) row.objects[i]);
+        }
+        break;
+      case DATE:
+        if (temporalFormatter != null) {
+          temporalFormatter.appendDate(temporal, (java.sql.Date) row.objects[i]);
+          writeTemporal();
+        } else {
+          // as epoch millis, the ObjectMapper's default for dates
+          jg.writeNumber(((Date) row.objects[i]).getTime());
+        }
+        break;
+      case TIMESTAMP:
+        if (temporalFormatter != null) {
+          temporalFormatter.appendTimestamp(temporal, (Timestamp) row.objects[i]);
+          writeTemporal();
+        } else {
+          jg.writeNumber(((Date) row.objects[i]).getTime());
+        }
+        break;
+      case TIME:
+        if (temporalFormatter != null) {
+          temporalFormatter.appendTime(temporal, (Time) row.objects[i]);
+          writeTemporal();
+        } else {
+          jg.writeString(row.objects[i].toString());
+        }
+        break;
+      default:
+        if (temporalFormatter != null && row.objects[i] instanceof OffsetDateTime) {
+          temporalFormatter.appendOffsetDateTime(temporal, (OffsetDateTime) row.objects[i]);
+          writeTemporal();
+        } else if (jg.getCodec() == null) {
+          jg.writeString(row.objects[i].toString());
+        } else {
+          jg.writeObject(row.objects[i]);
+        }
+        break;
+    }
+  }
+
+  private void writeNumber() throws IOException {
+    jg.writeRawValue(numbers.chars(), 0, numbers.length());
+    numbers.reset();
+  }
+
+  private void writeTemporal() throws IOException {
+    jg.writeString(temporal.chars(), 0, temporal.length());
+    temporal.reset();
+  }
+
+  @Override
+  public boolean acceptsLobStreams() {
+    return true;
+  }
+
+  @Override
+  public void end() throws IOException {
+    if (rowsOnly) {
+      return;
+    }
+    switch (layout) {
+      case OBJECTS:
+        jg.writeEndArray();
+        break;
+      case COLUMNS_AND_ROWS:
+        jg.writeEndArray();
+        jg.writeEndObject();
+        break;
+      default:
+        break;
+    }
+  }
+
+  @Override
+  public void flush() throws IOException {
+    jg.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    jg.close();
+  }
+}
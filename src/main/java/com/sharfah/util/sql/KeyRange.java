@@ -0,0 +1,58 @@
+package com.sharfah.util.sql;
+
+/**
+ * A range of keys, from a lower bound (inclusive) to an upper bound (exclusive).
+ */
+public final class KeyRange {
+
+  private final long lower;
+  private final long upper;
+
+  /**
+   * @param lower the lower bound, inclusive
+   * @param upper the upper bound, exclusive
+   */
+  public KeyRange(final long lower, final long upper) {
+    if (upper < lower) {
+      throw new IllegalArgumentException("Upper bound " + upper + " is below lower bound " + lower);
+    }
+    this.lower = lower;
+    this.upper = upper;
+  }
+
+  /**
+   * @return the lower bound, inclusive
+   */
+  public long getLower() {
+    return lower;
+  }
+
+  /**
+   * @return the upper bound, exclusive
+   */
+  public long getUpper() {
+    return upper;
+  }
+
+  @Override
+  public boolean equals(final Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof KeyRange)) {
+      return false;
+    }
+    final var other = (KeyRange) obj;
+    return lower == other.lower && upper == other.upper;
+  }
+
+  @Override
+  public int hashCode() {
+    return Long.hashCode(lower) * 31 + Long.hashCode(upper);
+  }
+
+  @Override
+  public String toString() {
+    return "[" + lower + ", " + upper + ")";
+  }
+}
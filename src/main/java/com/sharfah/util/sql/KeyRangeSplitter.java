@@ -0,0 +1,56 @@
+package com.sharfah.util.sql;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a key space into ranges, each of which is exported by its own query.
+ */
+@FunctionalInterface
+public interface KeyRangeSplitter {
+
+  /**
+   * Splits the key space into at most the given number of ranges, in
+   * ascending key order, which together cover the whole key space.
+   *
+   * @param partitions the number of ranges wanted
+   * @return the ranges
+   */
+  List<KeyRange> split(int partitions);
+
+  /**
+   * Returns a splitter which divides the keys from min (inclusive) to max
+   * (exclusive) into ranges of equal width. This suits dense keys, such as
+   * generated ids.
+   *
+   * @param min the lowest key, inclusive
+   * @param max the highest key, exclusive
+   * @return the splitter
+   */
+  static KeyRangeSplitter uniform(final long min, final long max) {
+    if (max < min) {
+      throw new IllegalArgumentException("Max " + max + " is below min " + min);
+    }
+    return partitions -> {
+      if (partitions <= 0) {
+        throw new IllegalArgumentException("Partitions must be positive: " + partitions);
+      }
+      // the width overflows a long for wide key spaces, but as max is not
+      // below min it is exact when taken as unsigned
+      final var width = max - min;
+      final var count = Long.compareUnsigned(width, partitions) >= 0 ? partitions
+          : (int) Math.max(1, width);
+      final var step = Long.divideUnsigned(width, count);
+      final var remainder = Long.remainderUnsigned(width, count);
+      final var ranges = new ArrayList<KeyRange>(count);
+      var lower = min;
+      for (var i = 0; i < count; i++) {
+        // the first ranges take one extra key each, to spread the remainder
+        final var upper = lower + step + (i < remainder ? 1 : 0);
+        ranges.add(new KeyRange(lower, upper));
+        lower = upper;
+      }
+      return ranges;
+    };
+  }
+}
@@ -0,0 +1,92 @@
+package com.sharfah.util.sql;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes to a file through memory mapped regions of it, so that bytes put
+ * into the buffer are already in the file's pages and are never copied by a
+ * write call. The file is grown a region at a time and truncated to what was
+ * written when closed.
+ * <p>
+ * A mapping is released only when its buffer is garbage collected, and some
+ * platforms, Windows in particular, do not allow a mapped file to be
+ * truncated.
+ */
+final class MappedFileOutput extends ByteBufferOutput {
+
+  private final FileChannel channel;
+  private final long regionSize;
+  // the file position of the start of the current region
+  private long regionStart;
+  private boolean closed;
+
+  /**
+   * Creates or truncates the file and maps its first region.
+   *
+   * @param file the file to write to
+   * @param regionSize the size of each mapped region, in bytes, raised to
+   *     {@link BufferedTextOutput#MIN_BUFFER_SIZE} so that text can be
+   *     encoded into it
+   * @throws IOException if the file cannot be opened or mapped
+   */
+  MappedFileOutput(final Path file, final long regionSize) throws IOException {
+    if (regionSize <= 0 || regionSize > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Invalid region size: " + regionSize);
+    }
+    this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    this.regionSize = Math.max(regionSize, BufferedTextOutput.MIN_BUFFER_SIZE);
+    try {
+      this.buffer = map();
+    } catch (final IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  private MappedByteBuffer map() throws IOException {
+    return channel.map(FileChannel.MapMode.READ_WRITE, regionStart, regionSize);
+  }
+
+  @Override
+  void next() throws IOException {
+    final var start = stats == null ? 0 : System.nanoTime();
+    final var length = buffer.position();
+    regionStart += length;
+    buffer = map();
+    if (stats != null) {
+      stats.writeNanos += System.nanoTime() - start;
+      stats.bytes += length;
+    }
+  }
+
+  /**
+   * Does nothing: what is put into a mapped buffer is already visible to
+   * readers of the file.
+   */
+  @Override
+  public void flush() {
+  }
+
+  /**
+   * Truncates the file to what was written and closes it.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try (channel) {
+      final var length = buffer.position();
+      if (stats != null) {
+        stats.bytes += length;
+      }
+      channel.truncate(regionStart + length);
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package com.sharfah.util.sql;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Adds the bytes written through it, and the time spent writing and
+ * flushing, to an export's stats.
+ */
+final class MeteredOutputStream extends FilterOutputStream {
+
+  private final ExportStats stats;
+  private boolean closed;
+
+  MeteredOutputStream(final OutputStream os, final ExportStats stats) {
+    super(os);
+    this.stats = stats;
+  }
+
+  @Override
+  public void write(final int b) throws IOException {
+    final var start = System.nanoTime();
+    out.write(b);
+    stats.writeNanos += System.nanoTime() - start;
+    stats.bytes++;
+  }
+
+  @Override
+  public void write(final byte[] b, final int off, final int len) throws IOException {
+    final var start = System.nanoTime();
+    out.write(b, off, len);
+    stats.writeNanos += System.nanoTime() - start;
+    stats.bytes += len;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    final var start = System.nanoTime();
+    out.flush();
+    stats.writeNanos += System.nanoTime() - start;
+  }
+
+  /**
+   * Flushes and closes the stream, adding the time spent closing it to that
+   * of the flush, which is added by {@link #flush()}.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      flush();
+    } catch (final IOException | RuntimeException e) {
+      try {
+        out.close();
+      } catch (final IOException | RuntimeException ce) {
+        e.addSuppressed(ce);
+      }
+      throw e;
+    }
+    final var start = System.nanoTime();
+    try {
+      out.close();
+    } finally {
+      stats.writeNanos += System.nanoTime() - start;
+    }
+  }
+}
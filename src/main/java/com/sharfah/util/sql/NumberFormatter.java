@@ -0,0 +1,395 @@
+package com.sharfah.util.sql;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * Writes numbers as text into char arrays, without creating Strings.
+ * <p>
+ * Doubles are written with the Schubfach algorithm (R. Giulietti, "The
+ * Schubfach way to render doubles", 2020), which finds the shortest decimal
+ * that rounds back to the same double. The output has the layout of
+ * {@link Double#toString(double)}, but unlike it on Java 15, never has
+ * more digits than needed.
+ * <p>
+ * BigDecimals are written in plain notation, never in scientific notation.
+ */
+final class NumberFormatter {
+
+  /** The most chars a double can be written with, as in -2.2250738585072014E-308. */
+  static final int MAX_DOUBLE_LENGTH = 24;
+
+  // the precision of a double, in bits, and its exponent range
+  private static final int P = 53;
+  private static final int Q_MIN = -1074;
+  private static final long C_MIN = 1L << (P - 1);
+  private static final int BQ_MASK = 0x7FF;
+  private static final long T_MASK = (1L << (P - 1)) - 1;
+  // subnormal significands below this are scaled up by 10, see the paper
+  private static final long C_TINY = 3;
+  // the number of decimal digits the significand is normalized to
+  private static final int H = 17;
+
+  private static final int K_MIN = -324;
+  private static final int K_MAX = 292;
+
+  private static final long MASK_63 = (1L << 63) - 1;
+  private static final int MASK_28 = (1 << 28) - 1;
+
+  private static final long[] POW10 = new long[19];
+
+  /**
+   * For each k from K_MIN to K_MAX, g = floor(b) + 1 where 10^-k = b 2^r and
+   * 2^125 &lt;= b &lt; 2^126, split into its high and low 63 bits.
+   */
+  private static final long[] G = new long[(K_MAX - K_MIN + 1) * 2];
+
+  static {
+    POW10[0] = 1;
+    for (var i = 1; i < POW10.length; i++) {
+      POW10[i] = POW10[i - 1] * 10;
+    }
+    for (var k = K_MIN; k <= K_MAX; k++) {
+      final BigInteger floor;
+      if (k <= 0) {
+        final var n = BigInteger.TEN.pow(-k);
+        final var shift = 126 - n.bitLength();
+        floor = shift >= 0 ? n.shiftLeft(shift) : n.shiftRight(-shift);
+      } else {
+        final var d = BigInteger.TEN.pow(k);
+        floor = BigInteger.ONE.shiftLeft(125 + d.bitLength()).divide(d);
+      }
+      final var g = floor.add(BigInteger.ONE);
+      G[(k - K_MIN) << 1] = g.shiftRight(63).longValueExact();
+      G[(k - K_MIN) << 1 | 1] = g.longValue() & MASK_63;
+    }
+  }
+
+  private NumberFormatter() {
+  }
+
+  /**
+   * Writes a double in the layout of {@link Double#toString(double)}, with
+   * the fewest digits which round back to it.
+   *
+   * @param value the value
+   * @param buf the array to write to, with at least {@link #MAX_DOUBLE_LENGTH}
+   *        chars from the position
+   * @param pos the position to write at
+   * @return the position after the last char written
+   */
+  static int appendDouble(final double value, final char[] buf, final int pos) {
+    final var bits = Double.doubleToRawLongBits(value);
+    final var t = bits & T_MASK;
+    final var bq = (int) (bits >>> (P - 1)) & BQ_MASK;
+    if (bq == BQ_MASK) {
+      return appendString(t != 0 ? "NaN" : bits > 0 ? "Infinity" : "-Infinity", buf, pos);
+    }
+    var p = pos;
+    if (bits < 0) {
+      buf[p++] = '-';
+    }
+    if (bq != 0) {
+      // a normal value, c 2^q with q = -mq
+      final var mq = -Q_MIN + 1 - bq;
+      final var c = C_MIN | t;
+      if (0 < mq && mq < P) {
+        // an integer, written exactly
+        final var f = c >> mq;
+        if (f << mq == c) {
+          return toChars(f, 0, buf, p);
+        }
+      }
+      return toDecimal(-mq, c, 0, buf, p);
+    }
+    if (t != 0) {
+      // a subnormal value
+      return t < C_TINY ? toDecimal(Q_MIN, 10 * t, -1, buf, p) : toDecimal(Q_MIN, t, 0, buf, p);
+    }
+    return appendString("0.0", buf, p);
+  }
+
+  /**
+   * Finds the shortest decimal in the rounding interval of c 2^q and writes it.
+   */
+  private static int toDecimal(final int q, final long c, final int dk, final char[] buf, final int pos) {
+    final var out = (int) c & 0x1;
+    final var cb = c << 2;
+    final var cbr = cb + 2;
+    final long cbl;
+    final int k;
+    if (c != C_MIN || q == Q_MIN) {
+      cbl = cb - 2;
+      k = flog10pow2(q);
+    } else {
+      // the interval is asymmetric at a power of two
+      cbl = cb - 1;
+      k = flog10threeQuartersPow2(q);
+    }
+    final var h = q + flog2pow10(-k) + 2;
+    final var g1 = G[(k - K_MIN) << 1];
+    final var g0 = G[(k - K_MIN) << 1 | 1];
+
+    final var vb = rop(g1, g0, cb << h);
+    final var vbl = rop(g1, g0, cbl << h);
+    final var vbr = rop(g1, g0, cbr << h);
+
+    final var s = vb >> 2;
+    if (s >= 100) {
+      // try one digit less first: s' 10 and t' 10, with s' = floor(s / 10)
+      final var sp10 = 10 * Math.multiplyHigh(s, 115_292_150_460_684_698L << 4);
+      final var tp10 = sp10 + 10;
+      final var upin = vbl + out <= sp10 << 2;
+      final var wpin = (tp10 << 2) + out <= vbr;
+      if (upin != wpin) {
+        return toChars(upin ? sp10 : tp10, k, buf, pos);
+      }
+    }
+    final var t = s + 1;
+    final var uin = vbl + out <= s << 2;
+    final var win = (t << 2) + out <= vbr;
+    if (uin != win) {
+      return toChars(uin ? s : t, k + dk, buf, pos);
+    }
+    // both are in the interval: pick the closest, or the even one on a tie
+    final var cmp = vb - ((s + t) << 1);
+    return toChars(cmp < 0 || cmp == 0 && (s & 0x1) == 0 ? s : t, k + dk, buf, pos);
+  }
+
+  /**
+   * Rounds to odd the product of g and cp, scaled by 2^-127.
+   */
+  private static long rop(final long g1, final long g0, final long cp) {
+    final var x1 = Math.multiplyHigh(g0, cp);
+    final var y0 = g1 * cp;
+    final var y1 = Math.multiplyHigh(g1, cp);
+    final var z = (y0 >>> 1) + x1;
+    final var vbp = y1 + (z >>> 63);
+    return vbp | ((z & MASK_63) + MASK_63) >>> 63;
+  }
+
+  /**
+   * Writes f 10^e in the layout of Double.toString.
+   */
+  private static int toChars(final long value, final int exponent, final char[] buf, final int pos) {
+    var f = value;
+    var e = exponent;
+    // 10^(len - 1) <= f < 10^len
+    var len = flog10pow2(Long.SIZE - Long.numberOfLeadingZeros(f));
+    if (f >= POW10[len]) {
+      len++;
+    }
+    // normalize to H digits, so that f 10^(e - H) = 0.f 10^e
+    f *= POW10[H - len];
+    e += len;
+
+    // split into the most significant digit, the next 8 and the last 8
+    final var hm = Math.multiplyHigh(f, 193_428_131_138_340_668L) >>> 20;
+    final var l = (int) (f - 100_000_000L * hm);
+    final var h = (int) (hm * 1_441_151_881L >>> 57);
+    final var m = (int) (hm - 100_000_000 * h);
+
+    if (0 < e && e <= 7) {
+      return toChars1(h, m, l, e, buf, pos);
+    }
+    if (-3 < e && e <= 0) {
+      return toChars2(h, m, l, e, buf, pos);
+    }
+    return toChars3(h, m, l, e, buf, pos);
+  }
+
+  /**
+   * Plain notation without leading zeros.
+   */
+  private static int toChars1(final int h, final int m, final int l, final int e, final char[] buf,
+      final int pos) {
+    var p = pos;
+    buf[p++] = (char) ('0' + h);
+    var y = y(m);
+    var i = 1;
+    for (; i < e; i++) {
+      final var t = 10 * y;
+      buf[p++] = (char) ('0' + (t >>> 28));
+      y = t & MASK_28;
+    }
+    buf[p++] = '.';
+    for (; i <= 8; i++) {
+      final var t = 10 * y;
+      buf[p++] = (char) ('0' + (t >>> 28));
+      y = t & MASK_28;
+    }
+    return lowDigits(l, buf, p);
+  }
+
+  /**
+   * Plain notation with leading zeros.
+   */
+  private static int toChars2(final int h, final int m, final int l, final int e, final char[] buf,
+      final int pos) {
+    var p = pos;
+    buf[p++] = '0';
+    buf[p++] = '.';
+    for (var i = e; i < 0; i++) {
+      buf[p++] = '0';
+    }
+    buf[p++] = (char) ('0' + h);
+    p = append8Digits(m, buf, p);
+    return lowDigits(l, buf, p);
+  }
+
+  /**
+   * Scientific notation.
+   */
+  private static int toChars3(final int h, final int m, final int l, final int e, final char[] buf,
+      final int pos) {
+    var p = pos;
+    buf[p++] = (char) ('0' + h);
+    buf[p++] = '.';
+    p = append8Digits(m, buf, p);
+    p = lowDigits(l, buf, p);
+    return exponent(e - 1, buf, p);
+  }
+
+  private static int lowDigits(final int l, final char[] buf, final int pos) {
+    var p = pos;
+    if (l != 0) {
+      p = append8Digits(l, buf, p);
+    }
+    // remove trailing zeros, but keep the one right after the point
+    while (buf[p - 1] == '0') {
+      p--;
+    }
+    if (buf[p - 1] == '.') {
+      p++;
+    }
+    return p;
+  }
+
+  /**
+   * Writes 8 digits, left to right, with one multiplication each.
+   */
+  private static int append8Digits(final int m, final char[] buf, final int pos) {
+    var p = pos;
+    var y = y(m);
+    for (var i = 0; i < 8; i++) {
+      final var t = 10 * y;
+      buf[p++] = (char) ('0' + (t >>> 28));
+      y = t & MASK_28;
+    }
+    return p;
+  }
+
+  /**
+   * Returns floor((a + 1) 2^28 / 10^8) - 1, for a &lt; 10^8.
+   */
+  private static int y(final int a) {
+    return (int) (Math.multiplyHigh((long) (a + 1) << 28, 193_428_131_138_340_668L) >>> 20) - 1;
+  }
+
+  private static int exponent(final int exponent, final char[] buf, final int pos) {
+    var p = pos;
+    var e = exponent;
+    buf[p++] = 'E';
+    if (e < 0) {
+      buf[p++] = '-';
+      e = -e;
+    }
+    if (e >= 100) {
+      final var d = e * 1_311 >>> 17;
+      buf[p++] = (char) ('0' + d);
+      e -= 100 * d;
+      final var d2 = e * 103 >>> 10;
+      buf[p++] = (char) ('0' + d2);
+      buf[p++] = (char) ('0' + e - 10 * d2);
+      return p;
+    }
+    if (e >= 10) {
+      final var d = e * 103 >>> 10;
+      buf[p++] = (char) ('0' + d);
+      e -= 10 * d;
+    }
+    buf[p++] = (char) ('0' + e);
+    return p;
+  }
+
+  /**
+   * Returns floor(log10(2^e)).
+   */
+  private static int flog10pow2(final int e) {
+    return (int) (e * 661_971_961_083L >> 41);
+  }
+
+  /**
+   * Returns floor(log10(3/4 2^e)).
+   */
+  private static int flog10threeQuartersPow2(final int e) {
+    return (int) (e * 661_971_961_083L - 274_743_187_321L >> 41);
+  }
+
+  /**
+   * Returns floor(log2(10^e)).
+   */
+  private static int flog2pow10(final int e) {
+    return (int) (e * 913_124_641_741L >> 38);
+  }
+
+  private static int appendString(final String s, final char[] buf, final int pos) {
+    s.getChars(0, s.length(), buf, pos);
+    return pos + s.length();
+  }
+
+  /**
+   * Appends a BigDecimal in plain notation, as {@link BigDecimal#toPlainString()}
+   * does. Values of up to 18 digits are written from a long.
+   *
+   * @param buf the buffer to append to
+   * @param value the value
+   */
+  static void appendPlain(final TextBuffer buf, final BigDecimal value) {
+    if (value.precision() > 18) {
+      buf.append(value.toPlainString());
+      return;
+    }
+    final var scale = value.scale();
+    final var unscaled = scale == 0 ? value.longValue() : value.unscaledValue().longValue();
+    if (scale <= 0) {
+      buf.appendLong(unscaled);
+      if (unscaled != 0) {
+        for (var i = scale; i < 0; i++) {
+          buf.append('0');
+        }
+      }
+      return;
+    }
+    if (unscaled < 0) {
+      buf.append('-');
+    }
+    final var abs = Math.abs(unscaled);
+    final var pow = POW10[Math.min(scale, 18)];
+    if (scale > 18 || abs < pow) {
+      // no integer part
+      buf.append('0').append('.');
+      for (var i = TextBuffer.digitCount(abs); i < scale; i++) {
+        buf.append('0');
+      }
+      buf.appendLong(abs);
+      return;
+    }
+    buf.appendLong(abs / pow).append('.');
+    appendPaddedLong(buf, abs % pow, scale);
+  }
+
+  /**
+   * Appends the digits of a non-negative long, padded with leading zeros
+   * to the given width.
+   */
+  private static void appendPaddedLong(final TextBuffer buf, final long value, final int width) {
+    if (value <= Integer.MAX_VALUE && width <= 9) {
+      buf.appendPadded((int) value, width);
+      return;
+    }
+    // at most 18 digits: split into 9 and 9
+    buf.appendPadded((int) (value / 1_000_000_000L), width - 9);
+    buf.appendPadded((int) (value % 1_000_000_000L), 9);
+  }
+}
@@ -0,0 +1,193 @@
+package com.sharfah.util.sql;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Cuts what is written to it into blocks, compresses the blocks on several
+ * threads, and writes each one, in order, as a complete gzip member. The
+ * concatenated members form a valid gzip stream.
+ * <p>
+ * At most twice as many blocks as threads are in flight; writing waits for
+ * the oldest block to be written when that limit is reached.
+ */
+final class ParallelGzipOutputStream extends OutputStream {
+
+  /**
+   * The pool shared by streams not given an executor, created on first use.
+   */
+  private static final class SharedExecutor {
+    static final ExecutorService INSTANCE = Executors.newFixedThreadPool(
+        Runtime.getRuntime().availableProcessors(), task -> {
+          final var thread = new Thread(task, "parallel-gzip");
+          thread.setDaemon(true);
+          return thread;
+        });
+  }
+
+  private final OutputStream os;
+  private final int level;
+  private final int maxPending;
+  private final Executor executor;
+  private final ArrayDeque<FutureTask<byte[]>> pending = new ArrayDeque<>();
+  private byte[] block;
+  private int count;
+  private boolean written;
+  private boolean closed;
+
+  /**
+   * @param os the stream to write the compressed data to
+   * @param level the compression level
+   * @param blockSize the number of uncompressed bytes in each block
+   * @param parallelism the number of blocks compressed at once
+   * @param executor compresses the blocks
+   */
+  ParallelGzipOutputStream(final OutputStream os, final int level, final int blockSize,
+      final int parallelism, final Executor executor) {
+    this.os = os;
+    this.level = level;
+    this.maxPending = parallelism * 2;
+    this.block = new byte[blockSize];
+    this.executor = executor;
+  }
+
+  /**
+   * @return the pool of daemon threads, one per processor, which compresses
+   *         the blocks of streams not given an executor
+   */
+  static Executor sharedExecutor() {
+    return SharedExecutor.INSTANCE;
+  }
+
+  @Override
+  public void write(final int b) throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    block[count++] = (byte) b;
+    if (count == block.length) {
+      submitBlock();
+    }
+  }
+
+  @Override
+  public void write(final byte[] b, final int off, final int len) throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    var offset = off;
+    var remaining = len;
+    while (remaining > 0) {
+      final var n = Math.min(remaining, block.length - count);
+      System.arraycopy(b, offset, block, count, n);
+      count += n;
+      offset += n;
+      remaining -= n;
+      if (count == block.length) {
+        submitBlock();
+      }
+    }
+  }
+
+  /**
+   * Compresses the buffered data as a block, even if it is not full, waits
+   * for every block to be written and flushes the underlying stream.
+   */
+  @Override
+  public void flush() throws IOException {
+    if (!closed) {
+      submitBlock();
+      while (!pending.isEmpty()) {
+        writeOldest();
+      }
+    }
+    os.flush();
+  }
+
+  private void submitBlock() throws IOException {
+    if (count == 0) {
+      return;
+    }
+    final var data = block;
+    final var length = count;
+    final var task = new FutureTask<>(() -> compress(data, length, level));
+    pending.add(task);
+    executor.execute(task);
+    block = new byte[block.length];
+    count = 0;
+    while (pending.size() >= maxPending) {
+      writeOldest();
+    }
+  }
+
+  private void writeOldest() throws IOException {
+    try {
+      os.write(pending.remove().get());
+      written = true;
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException(e);
+    } catch (final ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /**
+   * Compresses the data as a complete gzip member.
+   */
+  private static byte[] compress(final byte[] data, final int length, final int level) {
+    final var deflater = new Deflater(level, true);
+    try {
+      final var out = new ByteArrayOutputStream(length / 2 + 64);
+      out.writeBytes(DeflatingOutputStream.gzipHeader());
+      deflater.setInput(data, 0, length);
+      deflater.finish();
+      final var buf = new byte[64 * 1024];
+      while (!deflater.finished()) {
+        out.write(buf, 0, deflater.deflate(buf));
+      }
+      final var crc = new CRC32();
+      crc.update(data, 0, length);
+      DeflatingOutputStream.writeTrailer(out, crc.getValue(), length);
+      return out.toByteArray();
+    } catch (final IOException e) {
+      // a ByteArrayOutputStream does not throw
+      throw new IllegalStateException(e);
+    } finally {
+      deflater.end();
+    }
+  }
+
+  /**
+   * Writes the remaining blocks and closes the underlying stream. An empty
+   * stream is written as a single empty member.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    try (os) {
+      flush();
+      if (!written) {
+        os.write(compress(block, 0, level));
+      }
+    } finally {
+      closed = true;
+      // blocks left by a failed write are of no use
+      for (final var task : pending) {
+        task.cancel(false);
+      }
+      pending.clear();
+    }
+  }
+}
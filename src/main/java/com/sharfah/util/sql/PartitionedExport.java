@@ -0,0 +1,454 @@
+package com.sharfah.util.sql;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.sql.DataSource;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.MappingJsonFactory;
+
+/**
+ * Exports a large table by running one query per range of keys, several at
+ * a time on their own connections, and joining their output into a single
+ * CSV, JSON or NDJSON stream.
+ * <p>
+ * The query must select the rows whose key is in a range, taking the lower
+ * bound (inclusive) and upper bound (exclusive) as its two parameters:
+ * <pre>
+ * select id, name from people where id &gt;= ? and id &lt; ? order by id
+ * </pre>
+ * Each query encodes its rows into chunks, which are queued until they are
+ * written. Chunks are written either strictly in key range order, or in the
+ * order they are produced, which is faster but interleaves the rows of the
+ * ranges. Queues are bounded, so a query which gets too far ahead of the
+ * output waits.
+ * <p>
+ * Each query runs as a {@link StreamingQuery}, so that its rows are read
+ * from a cursor rather than loaded into memory.
+ *
+ * @author fahd
+ */
+public class PartitionedExport {
+
+  /**
+   * The order in which the rows of different key ranges are written.
+   */
+  public enum Order {
+    /** All rows of a range are written before those of the next range. */
+    STRICT,
+    /** Chunks of rows are written as soon as any range produces them. */
+    ARRIVAL
+  }
+
+  private static final byte[] JSON_START = "[".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] JSON_SEPARATOR = ",".getBytes(StandardCharsets.UTF_8);
+  private static final byte[] JSON_END = "]".getBytes(StandardCharsets.UTF_8);
+  private static final long POLL_MILLIS = 100;
+
+  private final DataSource dataSource;
+  private final String query;
+  private final KeyRangeSplitter splitter;
+  private int partitions = Runtime.getRuntime().availableProcessors();
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+  private Order order = Order.STRICT;
+  private int fetchSize;
+  private FetchSizeTuner fetchSizeTuner;
+  private int chunkRows = 1000;
+  private int queuedChunks = 4;
+  private JsonFactory jsonFactory = new MappingJsonFactory();
+
+  /**
+   * @param dataSource provides a connection for each query
+   * @param query the query, with parameters for the lower and upper bound of
+   *        a key range
+   * @param splitter splits the keys into ranges
+   */
+  public PartitionedExport(final DataSource dataSource, final String query,
+      final KeyRangeSplitter splitter) {
+    this.dataSource = dataSource;
+    this.query = query;
+    this.splitter = splitter;
+  }
+
+  /**
+   * Sets the number of key ranges to split the export into. Defaults to the
+   * number of processors.
+   *
+   * @param partitions the number of key ranges
+   */
+  public void setPartitions(final int partitions) {
+    if (partitions <= 0) {
+      throw new IllegalArgumentException("Partitions must be positive: " + partitions);
+    }
+    this.partitions = partitions;
+  }
+
+  /**
+   * Sets the number of queries, and therefore connections, which run at the
+   * same time. Defaults to the number of processors.
+   *
+   * @param parallelism the number of concurrent queries
+   */
+  public void setParallelism(final int parallelism) {
+    if (parallelism <= 0) {
+      throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+    }
+    this.parallelism = parallelism;
+  }
+
+  /**
+   * Sets the order in which rows are written. Defaults to {@link Order#STRICT}.
+   *
+   * @param order the order
+   */
+  public void setOrder(final Order order) {
+    this.order = order;
+  }
+
+  /**
+   * Sets the fetch size of each query. Defaults to 0, the driver's default.
+   *
+   * @param fetchSize the fetch size
+   */
+  public void setFetchSize(final int fetchSize) {
+    this.fetchSize = fetchSize;
+  }
+
+  /**
+   * Sets what adjusts the fetch size of each query as its rows are read.
+   * Defaults to null, for the fetch size to be left as it is.
+   *
+   * @param fetchSizeTuner the fetch size tuner, or null
+   */
+  public void setFetchSizeTuner(final FetchSizeTuner fetchSizeTuner) {
+    this.fetchSizeTuner = fetchSizeTuner;
+  }
+
+  /**
+   * Sets the number of rows in each chunk. Defaults to 1000.
+   *
+   * @param chunkRows the number of rows
+   */
+  public void setChunkRows(final int chunkRows) {
+    if (chunkRows <= 0) {
+      throw new IllegalArgumentException("Chunk rows must be positive: " + chunkRows);
+    }
+    this.chunkRows = chunkRows;
+  }
+
+  /**
+   * Sets the number of chunks each query may queue before it waits for the
+   * output. Defaults to 4.
+   *
+   * @param queuedChunks the number of chunks
+   */
+  public void setQueuedChunks(final int queuedChunks) {
+    if (queuedChunks <= 0) {
+      throw new IllegalArgumentException("Queued chunks must be positive: " + queuedChunks);
+    }
+    this.queuedChunks = queuedChunks;
+  }
+
+  /**
+   * Sets the JsonFactory used to create JSON generators.
+   *
+   * @param jsonFactory the JsonFactory
+   */
+  public void setJsonFactory(final JsonFactory jsonFactory) {
+    this.jsonFactory = jsonFactory;
+  }
+
+  /**
+   * Runs the export. The OutputStream is not closed.
+   *
+   * @param format the format to export in
+   * @param os the OutputStream to write to
+   */
+  public void export(final ExportFormat format, final OutputStream os) {
+    final var ranges = splitter.split(partitions);
+    final var executor = Executors.newFixedThreadPool(parallelism, task -> {
+      final var thread = new Thread(task, "partitioned-export");
+      thread.setDaemon(true);
+      return thread;
+    });
+    try {
+      new Run(format, ranges).export(executor, os);
+    } catch (final IOException e) {
+      throw new RuntimeException(e);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * The kind of a chunk.
+   */
+  private enum ChunkKind {
+    /** What a range writes before its rows, such as the CSV header. */
+    PROLOGUE,
+    /** Rows of a range. */
+    ROWS,
+    /** The final rows of a range, which may be empty. */
+    LAST
+  }
+
+  /**
+   * A piece of the encoded output of a key range, containing whole rows.
+   */
+  private static final class Chunk {
+    final int partition;
+    final ChunkKind kind;
+    final byte[] bytes;
+
+    Chunk(final int partition, final ChunkKind kind, final byte[] bytes) {
+      this.partition = partition;
+      this.kind = kind;
+      this.bytes = bytes;
+    }
+  }
+
+  /**
+   * One run of the export.
+   */
+  private final class Run {
+    private final ExportFormat format;
+    private final List<KeyRange> ranges;
+    private final List<BlockingQueue<Chunk>> queues;
+    private final ColumnPlanCache planCache = new ColumnPlanCache(1);
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private volatile boolean cancelled;
+
+    Run(final ExportFormat format, final List<KeyRange> ranges) {
+      this.format = format;
+      this.ranges = ranges;
+      this.queues = new ArrayList<>();
+      if (order == Order.STRICT) {
+        for (var i = 0; i < ranges.size(); i++) {
+          queues.add(new ArrayBlockingQueue<>(queuedChunks));
+        }
+      } else {
+        queues.add(new ArrayBlockingQueue<>(queuedChunks * ranges.size()));
+      }
+    }
+
+    void export(final ExecutorService executor, final OutputStream os) throws IOException {
+      for (var i = 0; i < ranges.size(); i++) {
+        final var partition = i;
+        executor.execute(() -> exportRange(partition));
+      }
+      try {
+        write(os);
+      } finally {
+        cancelled = true;
+      }
+    }
+
+    /**
+     * Writes the chunks to the OutputStream, on the calling thread.
+     */
+    private void write(final OutputStream os) throws IOException {
+      final var json = format == ExportFormat.JSON;
+      if (json) {
+        os.write(JSON_START);
+      }
+      final var started = new boolean[ranges.size()];
+      var wroteProlog = false;
+      var wroteRows = false;
+      var remaining = ranges.size();
+      var current = 0;
+      while (remaining > 0) {
+        final var chunk = take(queues.get(order == Order.STRICT ? current : 0));
+        if (chunk.kind == ChunkKind.PROLOGUE) {
+          // every range has the same prologue, so only the first is written
+          if (!wroteProlog) {
+            os.write(chunk.bytes);
+            wroteProlog = true;
+          }
+        } else if (chunk.bytes.length > 0) {
+          if (json && !started[chunk.partition] && wroteRows) {
+            os.write(JSON_SEPARATOR);
+          }
+          os.write(chunk.bytes);
+          started[chunk.partition] = true;
+          wroteRows = true;
+        }
+        if (chunk.kind == ChunkKind.LAST) {
+          remaining--;
+          current++;
+        }
+      }
+      if (json) {
+        os.write(JSON_END);
+      }
+      os.flush();
+    }
+
+    private Chunk take(final BlockingQueue<Chunk> queue) throws IOException {
+      try {
+        while (true) {
+          final var chunk = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+          final var error = failure.get();
+          if (error != null) {
+            if (error instanceof IOException) {
+              throw (IOException) error;
+            }
+            throw new RuntimeException(error);
+          }
+          if (chunk != null) {
+            return chunk;
+          }
+        }
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new RuntimeException(e);
+      }
+    }
+
+    private void put(final Chunk chunk) {
+      final var queue = queues.get(order == Order.STRICT ? chunk.partition : 0);
+      try {
+        while (!queue.offer(chunk, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+          if (cancelled) {
+            throw new CancellationException();
+          }
+        }
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new CancellationException();
+      }
+    }
+
+    private void exportRows(final ResultSet rs, final ChunkOutputStream chunks)
+        throws SQLException, IOException {
+      final var plan = planCache.get(rs.getMetaData());
+      final var sink = newSink(chunks);
+      sink.start(plan);
+      sink.flush();
+      chunks.emit(ChunkKind.PROLOGUE);
+      final var tuning = fetchSizeTuner == null ? null : fetchSizeTuner.start(rs);
+      final var row = new RowValues(plan.types);
+      while (rs.next()) {
+        if (cancelled) {
+          throw new CancellationException();
+        }
+        row.read(rs);
+        if (tuning != null) {
+          tuning.rowRead(row);
+        }
+        sink.write(row);
+      }
+      sink.end();
+      sink.close();
+    }
+
+    /**
+     * Queries one key range and queues its encoded rows, on a thread of the executor.
+     */
+    private void exportRange(final int partition) {
+      if (cancelled) {
+        return;
+      }
+      final var range = ranges.get(partition);
+      final var chunks = new ChunkOutputStream(partition);
+      final var rangeQuery = new StreamingQuery(query, range.getLower(), range.getUpper());
+      rangeQuery.setFetchSize(fetchSize);
+      try (var connection = dataSource.getConnection()) {
+        rangeQuery.query(connection, rs -> {
+          try {
+            exportRows(rs, chunks);
+          } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+          }
+          return null;
+        });
+      } catch (final CancellationException e) {
+        // the export has failed elsewhere
+      } catch (final UncheckedIOException e) {
+        failure.compareAndSet(null, e.getCause());
+        cancelled = true;
+      } catch (final Throwable t) {
+        failure.compareAndSet(null, t);
+        cancelled = true;
+      }
+    }
+
+    private RowSink newSink(final ChunkOutputStream chunks) throws IOException {
+      final var policy = FlushPolicy.everyRows(chunkRows);
+      if (format == ExportFormat.CSV) {
+        return new CsvRowEncoder(chunks, StreamingCsvResultSetExtractor.DEFAULT_BUFFER_SIZE, policy);
+      }
+      final var layout = format == ExportFormat.NDJSON ? JsonLayout.NDJSON : JsonLayout.OBJECTS;
+      return new JsonRowEncoder(jsonFactory.createGenerator(chunks, JsonEncoding.UTF8), layout,
+          policy, true, null);
+    }
+
+    /**
+     * Collects the bytes written by an encoder, and queues them as a chunk
+     * when the encoder flushes, which it only does after a whole row.
+     */
+    private final class ChunkOutputStream extends OutputStream {
+      private final int partition;
+      private byte[] buf = new byte[8192];
+      private int count;
+      private boolean prologueEmitted;
+
+      ChunkOutputStream(final int partition) {
+        this.partition = partition;
+      }
+
+      @Override
+      public void write(final int b) {
+        ensureCapacity(1);
+        buf[count++] = (byte) b;
+      }
+
+      @Override
+      public void write(final byte[] b, final int off, final int len) {
+        ensureCapacity(len);
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+      }
+
+      private void ensureCapacity(final int extra) {
+        if (count + extra > buf.length) {
+          buf = Arrays.copyOf(buf, Math.max(buf.length * 2, count + extra));
+        }
+      }
+
+      void emit(final ChunkKind kind) {
+        put(new Chunk(partition, kind, Arrays.copyOf(buf, count)));
+        count = 0;
+        prologueEmitted = true;
+      }
+
+      @Override
+      public void flush() {
+        // the prologue is emitted explicitly, once the encoder has started
+        if (prologueEmitted && count > 0) {
+          emit(ChunkKind.ROWS);
+        }
+      }
+
+      @Override
+      public void close() {
+        emit(ChunkKind.LAST);
+      }
+    }
+  }
+}
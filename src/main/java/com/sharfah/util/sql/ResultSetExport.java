@@ -0,0 +1,274 @@
+package com.sharfah.util.sql;
+
+import java.io.IOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Copies the rows of a ResultSet to a {@link RowSink}, either on the calling
+ * thread or pipelined across two threads.
+ */
+final class ResultSetExport {
+
+  /** Runs each task on a new daemon thread. */
+  static final Executor NEW_THREAD = task -> {
+    final var thread = new Thread(task, "result-set-export");
+    thread.setDaemon(true);
+    thread.start();
+  };
+
+  /**
+   * An export, given the stats to measure it with.
+   */
+  @FunctionalInterface
+  interface Measured {
+    /**
+     * @param stats the stats, or null if the export is not measured
+     */
+    void run(ExportStats stats) throws IOException, SQLException;
+  }
+
+  private ResultSetExport() {
+  }
+
+  /**
+   * Runs an export, measuring it if there is a listener or the Flight
+   * Recorder event is enabled, and reports the outcome. Checked exceptions
+   * are rethrown wrapped in a RuntimeException.
+   *
+   * @param format the name of the output format
+   * @param listener the listener, may be null
+   * @param export the export
+   */
+  static void measure(final String format, final ExportListener listener, final Measured export) {
+    final var stats = ExportStats.start(format, listener);
+    try {
+      export.run(stats);
+    } catch (IOException | SQLException e) {
+      if (stats != null) {
+        stats.finish(e);
+      }
+      throw new RuntimeException(e);
+    } catch (RuntimeException | Error e) {
+      if (stats != null) {
+        stats.finish(e);
+      }
+      throw e;
+    }
+    if (stats != null) {
+      stats.finish(null);
+    }
+  }
+
+  /**
+   * Copies the rows to the sink, pipelined if the capacity is positive.
+   *
+   * @param rs the ResultSet
+   * @param plan the columns of the ResultSet
+   * @param sink the sink to write to
+   * @param pipelineCapacity the number of rows buffered between the reading
+   *        and the writing thread, or 0 to read and write on the calling thread;
+   *        ignored if there are LOBs and the sink streams them
+   * @param executor runs the writing of rows to the sink when pipelined
+   * @param fetchSizeTuner adjusts the fetch size as rows are read, may be null
+   * @param stats the stats to add the measurements to, may be null
+   * @throws SQLException if the ResultSet cannot be read
+   * @throws IOException if the sink cannot be written to
+   */
+  static void run(final ResultSet rs, final ColumnPlan plan, final RowSink sink,
+      final int pipelineCapacity, final Executor executor, final FetchSizeTuner fetchSizeTuner,
+      final ExportStats stats) throws SQLException, IOException {
+    final var tuning = fetchSizeTuner == null ? null : fetchSizeTuner.start(rs);
+    if (stats != null) {
+      stats.columns(plan);
+    }
+    // streamed LOBs must be read before the ResultSet moves on, and holding
+    // whole LOBs in the ring buffer would take too much memory
+    if (pipelineCapacity > 0 && !(plan.hasLobs() && sink.acceptsLobStreams())) {
+      runPipelined(rs, plan, sink, pipelineCapacity, executor, tuning, stats);
+    } else {
+      run(rs, plan, sink, tuning, stats);
+    }
+  }
+
+  /**
+   * Reads each row and writes it to the sink, on the calling thread.
+   *
+   * @param rs the ResultSet
+   * @param plan the columns of the ResultSet
+   * @param sink the sink to write to
+   * @param tuning the fetch size tuning, may be null
+   * @param stats the stats to add the measurements to, may be null
+   * @throws SQLException if the ResultSet cannot be read
+   * @throws IOException if the sink cannot be written to
+   */
+  static void run(final ResultSet rs, final ColumnPlan plan, final RowSink sink,
+      final FetchSizeTuner.Tuning tuning, final ExportStats stats)
+      throws SQLException, IOException {
+    start(sink, plan, stats);
+    final var row = new RowValues(plan.types, sink.acceptsLobStreams());
+    while (next(rs, stats)) {
+      read(rs, row, stats);
+      if (tuning != null) {
+        tuning.rowRead(row);
+      }
+      write(sink, row, stats);
+    }
+    end(sink, stats);
+  }
+
+  /**
+   * Reads the rows on the calling thread into a ring buffer, from which they
+   * are written to the sink on a thread of the executor. Waiting for the
+   * database and encoding therefore overlap. The calling thread waits while
+   * the ring is full.
+   *
+   * @param rs the ResultSet
+   * @param plan the columns of the ResultSet
+   * @param sink the sink to write to
+   * @param capacity the number of rows the ring buffer holds
+   * @param executor runs the writing of rows to the sink
+   * @param tuning the fetch size tuning, may be null
+   * @param stats the stats to add the measurements to, may be null
+   * @throws SQLException if the ResultSet cannot be read
+   * @throws IOException if the sink cannot be written to
+   */
+  static void runPipelined(final ResultSet rs, final ColumnPlan plan, final RowSink sink,
+      final int capacity, final Executor executor, final FetchSizeTuner.Tuning tuning,
+      final ExportStats stats) throws SQLException, IOException {
+    start(sink, plan, stats);
+    final var ring = new RowRingBuffer(capacity, plan.types);
+    final var writer = new FutureTask<Void>(() -> {
+      try {
+        RowValues row;
+        while ((row = ring.take()) != null) {
+          write(sink, row, stats);
+          ring.release();
+        }
+        return null;
+      } catch (final Throwable t) {
+        ring.abort();
+        throw t;
+      }
+    });
+    executor.execute(writer);
+    try {
+      while (next(rs, stats)) {
+        final var row = ring.claim();
+        read(rs, row, stats);
+        if (tuning != null) {
+          tuning.rowRead(row);
+        }
+        ring.publish();
+      }
+    } catch (final CancellationException e) {
+      // the writer failed; its exception is rethrown below
+    } finally {
+      ring.close();
+      awaitWriter(writer);
+    }
+    end(sink, stats);
+  }
+
+  private static boolean next(final ResultSet rs, final ExportStats stats) throws SQLException {
+    if (stats == null) {
+      return rs.next();
+    }
+    final var start = System.nanoTime();
+    try {
+      return rs.next();
+    } finally {
+      stats.fetchNanos += System.nanoTime() - start;
+    }
+  }
+
+  private static void read(final ResultSet rs, final RowValues row, final ExportStats stats)
+      throws SQLException {
+    if (stats == null) {
+      row.read(rs);
+      return;
+    }
+    final var start = System.nanoTime();
+    if (ExportStats.sampleColumns(stats.rows)) {
+      row.read(rs, stats.columnNanos);
+    } else {
+      row.read(rs);
+    }
+    stats.readNanos += System.nanoTime() - start;
+    stats.rows++;
+  }
+
+  private static void start(final RowSink sink, final ColumnPlan plan, final ExportStats stats)
+      throws IOException {
+    final var writeNanos = stats == null ? 0 : stats.writeNanos;
+    final var start = stats == null ? 0 : System.nanoTime();
+    sink.start(plan);
+    if (stats != null) {
+      encoded(stats, start, writeNanos);
+    }
+  }
+
+  private static void write(final RowSink sink, final RowValues row, final ExportStats stats)
+      throws IOException {
+    if (stats == null) {
+      sink.write(row);
+      return;
+    }
+    final var writeNanos = stats.writeNanos;
+    final var start = System.nanoTime();
+    sink.write(row);
+    encoded(stats, start, writeNanos);
+  }
+
+  private static void end(final RowSink sink, final ExportStats stats) throws IOException {
+    final var writeNanos = stats == null ? 0 : stats.writeNanos;
+    final var start = stats == null ? 0 : System.nanoTime();
+    sink.end();
+    if (stats != null) {
+      encoded(stats, start, writeNanos);
+    }
+  }
+
+  /**
+   * Adds the time since the start, less the time spent writing to the
+   * OutputStream meanwhile, to the encoding time.
+   */
+  private static void encoded(final ExportStats stats, final long start, final long writeNanos) {
+    stats.encodeNanos += System.nanoTime() - start - (stats.writeNanos - writeNanos);
+  }
+
+  private static void awaitWriter(final FutureTask<Void> writer) throws IOException {
+    var interrupted = false;
+    try {
+      while (true) {
+        try {
+          writer.get();
+          return;
+        } catch (final InterruptedException e) {
+          // the writer must finish with the rows before the sink is closed
+          interrupted = true;
+        } catch (final ExecutionException e) {
+          final var cause = e.getCause();
+          if (cause instanceof IOException) {
+            throw (IOException) cause;
+          }
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          }
+          if (cause instanceof Error) {
+            throw (Error) cause;
+          }
+          throw new RuntimeException(cause);
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+}
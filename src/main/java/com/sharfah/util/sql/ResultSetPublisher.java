@@ -0,0 +1,247 @@
+package com.sharfah.util.sql;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Publishes the rows of a query as chunks of encoded CSV, JSON or NDJSON,
+ * emitted only as the subscriber requests them.
+ * <p>
+ * Each subscription runs the query anew, on a thread of the executor, once
+ * the subscriber first requests a chunk. The rows are encoded by an
+ * extractor from the {@link ExtractorFactory} into buffers of the chunk
+ * size, each of which is handed to the subscriber when full, or when the
+ * extractor flushes. While the subscriber has no outstanding demand the
+ * extractor waits, and with it the cursor, so no more rows are fetched than
+ * fit in the chunk being filled and the driver's fetch buffer. The
+ * connection and the query's transaction stay open meanwhile.
+ * <p>
+ * The chunks are heap buffers which belong to the subscriber once
+ * emitted. Cancelling the subscription stops the export at the next chunk,
+ * rolls back the query's transaction and signals nothing further.
+ *
+ * @author fahd
+ */
+public class ResultSetPublisher implements Flow.Publisher<ByteBuffer> {
+
+  /** The default size of the emitted chunks. */
+  public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+  private final JdbcTemplate jdbcTemplate;
+  private final StreamingQuery query;
+  private final ExportFormat format;
+  private volatile ExtractorFactory extractorFactory = new ExtractorFactory();
+  private volatile int chunkSize = DEFAULT_CHUNK_SIZE;
+  private volatile Executor executor = ResultSetExport.NEW_THREAD;
+
+  /**
+   * @param jdbcTemplate runs the query
+   * @param query the query
+   * @param format the format to encode the rows in
+   */
+  public ResultSetPublisher(final JdbcTemplate jdbcTemplate, final StreamingQuery query,
+      final ExportFormat format) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.query = query;
+    this.format = format;
+  }
+
+  /**
+   * Sets the factory of the extractors which encode the rows. Defaults to a
+   * new ExtractorFactory.
+   *
+   * @param extractorFactory the factory
+   */
+  public void setExtractorFactory(final ExtractorFactory extractorFactory) {
+    this.extractorFactory = extractorFactory;
+  }
+
+  /**
+   * Sets the size of the emitted chunks. Defaults to {@link #DEFAULT_CHUNK_SIZE}.
+   *
+   * @param chunkSize the size, in bytes
+   */
+  public void setChunkSize(final int chunkSize) {
+    if (chunkSize <= 0) {
+      throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+    }
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Sets the executor which runs the queries, one task per subscription,
+   * each holding its thread for as long as the export lasts. Defaults to a
+   * new daemon thread per subscription.
+   *
+   * @param executor the executor
+   */
+  public void setExecutor(final Executor executor) {
+    this.executor = executor;
+  }
+
+  @Override
+  public void subscribe(final Flow.Subscriber<? super ByteBuffer> subscriber) {
+    Objects.requireNonNull(subscriber, "subscriber");
+    final var subscription = new RowSubscription(subscriber, extractorFactory, chunkSize);
+    subscriber.onSubscribe(subscription);
+    try {
+      executor.execute(subscription);
+    } catch (final RejectedExecutionException e) {
+      subscription.cancel();
+      subscriber.onError(e);
+    }
+  }
+
+  /**
+   * Runs the export of one subscription, writing the encoded rows into
+   * buffers which are emitted as demand allows.
+   */
+  private final class RowSubscription extends ByteBufferOutput
+      implements Flow.Subscription, Runnable {
+
+    private final Flow.Subscriber<? super ByteBuffer> subscriber;
+    private final ExtractorFactory factory;
+    private final int size;
+    private boolean closed;
+
+    // guarded by this
+    private long demand;
+    // guarded by this
+    private boolean cancelled;
+    // guarded by this; set if the subscriber requested an invalid number
+    private Throwable error;
+
+    RowSubscription(final Flow.Subscriber<? super ByteBuffer> subscriber,
+        final ExtractorFactory factory, final int size) {
+      this.subscriber = subscriber;
+      this.factory = factory;
+      this.size = size;
+      this.buffer = ByteBuffer.allocate(size);
+    }
+
+    @Override
+    public synchronized void request(final long n) {
+      if (cancelled) {
+        return;
+      }
+      if (n <= 0) {
+        error = new IllegalArgumentException("Requested chunks must be positive: " + n);
+        cancelled = true;
+      } else {
+        demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+      }
+      notifyAll();
+    }
+
+    @Override
+    public synchronized void cancel() {
+      cancelled = true;
+      notifyAll();
+    }
+
+    @Override
+    public void run() {
+      try {
+        // the query is not run until the subscriber wants the rows
+        awaitDemand();
+        query.query(jdbcTemplate, factory.extractor(format, this));
+      } catch (final Throwable t) {
+        final Throwable failure;
+        synchronized (this) {
+          failure = error != null ? error : cancelled ? null : t;
+        }
+        if (failure != null) {
+          subscriber.onError(failure);
+        }
+        return;
+      }
+      final Throwable failure;
+      synchronized (this) {
+        if (cancelled && error == null) {
+          return;
+        }
+        failure = error;
+      }
+      // an invalid request may come after the last chunk, while the query closes
+      if (failure != null) {
+        subscriber.onError(failure);
+      } else {
+        subscriber.onComplete();
+      }
+    }
+
+    /**
+     * Waits until there is demand.
+     *
+     * @throws CancellationException if the subscription is cancelled
+     * @throws InterruptedIOException if the thread is interrupted
+     */
+    private synchronized void awaitDemand() throws InterruptedIOException {
+      try {
+        while (demand == 0 && !cancelled) {
+          wait();
+        }
+      } catch (final InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for demand");
+      }
+      if (cancelled) {
+        throw new CancellationException("Subscription cancelled");
+      }
+    }
+
+    @Override
+    void next() throws IOException {
+      emit();
+    }
+
+    /**
+     * Emits what has been put into the current buffer.
+     */
+    @Override
+    public void flush() throws IOException {
+      if (buffer.position() > 0) {
+        emit();
+      }
+    }
+
+    /**
+     * Waits for demand, then emits the current buffer and replaces it.
+     */
+    private void emit() throws IOException {
+      final var start = stats == null ? 0 : System.nanoTime();
+      awaitDemand();
+      synchronized (this) {
+        demand--;
+      }
+      final var chunk = buffer.flip();
+      buffer = ByteBuffer.allocate(size);
+      final var len = chunk.remaining();
+      subscriber.onNext(chunk);
+      if (stats != null) {
+        stats.writeNanos += System.nanoTime() - start;
+        stats.bytes += len;
+      }
+    }
+
+    /**
+     * Emits what remains.
+     */
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      flush();
+    }
+  }
+}
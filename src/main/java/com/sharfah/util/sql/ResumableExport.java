@@ -0,0 +1,296 @@
+package com.sharfah.util.sql;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Properties;
+
+import javax.sql.DataSource;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.MappingJsonFactory;
+
+/**
+ * Exports a query to a file as CSV or NDJSON, in a way which can be resumed
+ * after a failure rather than started over.
+ * <p>
+ * The rows are exported in the order of a unique key column. Every so many
+ * rows, the output is flushed and synced and a checkpoint is written to a
+ * small properties file: the last key exported, the length of the output up
+ * to and including its row, and the number of rows. The checkpoint file is
+ * replaced atomically and deleted once the export completes.
+ * <p>
+ * If a checkpoint exists when the export starts, the output is truncated to
+ * the length it records and the query is rewritten to select only the rows
+ * after its key:
+ * <pre>
+ * select * from (query) t where t.key &gt; ? order by t.key
+ * </pre>
+ * The query must therefore not have an ORDER BY clause of its own, and the
+ * key must be an integer or character column. A JSON array cannot be
+ * appended to, so JSON is exported as NDJSON.
+ *
+ * @author fahd
+ */
+public class ResumableExport {
+
+  /** The default number of rows between two checkpoints. */
+  public static final long DEFAULT_CHECKPOINT_INTERVAL = 10_000;
+
+  private final DataSource dataSource;
+  private final String query;
+  private final String keyColumn;
+  private final Path output;
+  private final Path checkpointFile;
+  private ExportFormat format = ExportFormat.CSV;
+  private long checkpointInterval = DEFAULT_CHECKPOINT_INTERVAL;
+  private int fetchSize = StreamingQuery.DEFAULT_FETCH_SIZE;
+  private JsonFactory jsonFactory = new MappingJsonFactory();
+
+  /**
+   * @param dataSource provides the connection for the query
+   * @param query the query, without an ORDER BY clause
+   * @param keyColumn the unique column the rows are exported in the order of
+   * @param output the file to export to
+   * @param checkpointFile the file to record checkpoints in
+   */
+  public ResumableExport(final DataSource dataSource, final String query, final String keyColumn,
+      final Path output, final Path checkpointFile) {
+    this.dataSource = dataSource;
+    this.query = query;
+    this.keyColumn = keyColumn;
+    this.output = output;
+    this.checkpointFile = checkpointFile;
+  }
+
+  /**
+   * Sets the output format, CSV or NDJSON. Defaults to CSV.
+   *
+   * @param format the format
+   */
+  public void setFormat(final ExportFormat format) {
+    if (format == ExportFormat.JSON) {
+      throw new IllegalArgumentException("A JSON array cannot be resumed, use NDJSON");
+    }
+    this.format = format;
+  }
+
+  /**
+   * Sets the number of rows between two checkpoints. Defaults to
+   * {@link #DEFAULT_CHECKPOINT_INTERVAL}.
+   *
+   * @param checkpointInterval the number of rows
+   */
+  public void setCheckpointInterval(final long checkpointInterval) {
+    if (checkpointInterval <= 0) {
+      throw new IllegalArgumentException("Checkpoint interval must be positive: " + checkpointInterval);
+    }
+    this.checkpointInterval = checkpointInterval;
+  }
+
+  /**
+   * Sets the fetch size of the query. Defaults to
+   * {@link StreamingQuery#DEFAULT_FETCH_SIZE}.
+   *
+   * @param fetchSize the fetch size
+   */
+  public void setFetchSize(final int fetchSize) {
+    this.fetchSize = fetchSize;
+  }
+
+  /**
+   * Sets the JsonFactory used for NDJSON. Defaults to a MappingJsonFactory.
+   *
+   * @param jsonFactory the JsonFactory
+   */
+  public void setJsonFactory(final JsonFactory jsonFactory) {
+    this.jsonFactory = jsonFactory;
+  }
+
+  /**
+   * Runs the export, resuming it from the checkpoint if there is one.
+   *
+   * @return the number of rows in the output, including those exported
+   *         before resuming
+   * @throws IOException if the output or the checkpoint cannot be written
+   * @throws SQLException if the query fails
+   */
+  public long export() throws IOException, SQLException {
+    final var checkpoint = Files.exists(checkpointFile) ? readCheckpoint() : null;
+    final StreamingQuery streamingQuery;
+    if (checkpoint == null) {
+      streamingQuery = new StreamingQuery(
+          "select * from (" + query + ") t order by t." + keyColumn);
+    } else {
+      streamingQuery = new StreamingQuery(
+          "select * from (" + query + ") t where t." + keyColumn + " > ? order by t." + keyColumn,
+          checkpoint.lastKey);
+    }
+    streamingQuery.setFetchSize(fetchSize);
+    try (var channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+         var connection = dataSource.getConnection()) {
+      final var offset = checkpoint == null ? 0 : checkpoint.offset;
+      if (channel.size() < offset) {
+        throw new IllegalStateException("Output " + output + " is shorter than its checkpoint");
+      }
+      channel.truncate(offset);
+      channel.position(offset);
+      final var run = new Run(channel, checkpoint);
+      streamingQuery.query(connection, rs -> {
+        try {
+          run.export(rs);
+        } catch (final IOException e) {
+          throw new UncheckedIOException(e);
+        }
+        return null;
+      });
+      Files.deleteIfExists(checkpointFile);
+      return run.rows;
+    } catch (final UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  private Checkpoint readCheckpoint() throws IOException {
+    final var properties = new Properties();
+    try (var reader = Files.newBufferedReader(checkpointFile)) {
+      properties.load(reader);
+    }
+    if (!query.equals(properties.getProperty("query"))
+        || !keyColumn.equals(properties.getProperty("keyColumn"))
+        || !format.name().equals(properties.getProperty("format"))) {
+      throw new IllegalStateException("Checkpoint " + checkpointFile + " is for a different export");
+    }
+    final var key = properties.getProperty("lastKey");
+    final Object lastKey = "LONG".equals(properties.getProperty("keyType")) ? (Object) Long.valueOf(key) : key;
+    return new Checkpoint(lastKey, Long.parseLong(properties.getProperty("offset")),
+        Long.parseLong(properties.getProperty("rows")));
+  }
+
+  private void writeCheckpoint(final Checkpoint checkpoint) throws IOException {
+    final var properties = new Properties();
+    properties.setProperty("query", query);
+    properties.setProperty("keyColumn", keyColumn);
+    properties.setProperty("format", format.name());
+    properties.setProperty("keyType", checkpoint.lastKey instanceof Long ? "LONG" : "STRING");
+    properties.setProperty("lastKey", checkpoint.lastKey.toString());
+    properties.setProperty("offset", Long.toString(checkpoint.offset));
+    properties.setProperty("rows", Long.toString(checkpoint.rows));
+    final var temp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+    try (var writer = Files.newBufferedWriter(temp)) {
+      properties.store(writer, "Resumable export checkpoint");
+    }
+    Files.move(temp, checkpointFile, StandardCopyOption.ATOMIC_MOVE,
+        StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * The last key exported, the length of the output up to its row and the
+   * number of rows.
+   */
+  private static final class Checkpoint {
+    final Object lastKey;
+    final long offset;
+    final long rows;
+
+    Checkpoint(final Object lastKey, final long offset, final long rows) {
+      this.lastKey = lastKey;
+      this.offset = offset;
+      this.rows = rows;
+    }
+  }
+
+  /**
+   * The state of one run of the export.
+   */
+  private final class Run {
+
+    private final FileChannel channel;
+    private final CountingOutputStream counter;
+    private final long offset;
+    private final boolean resumed;
+    long rows;
+
+    Run(final FileChannel channel, final Checkpoint checkpoint) {
+      this.channel = channel;
+      this.counter = new CountingOutputStream(Channels.newOutputStream(channel));
+      this.offset = checkpoint == null ? 0 : checkpoint.offset;
+      this.resumed = checkpoint != null;
+      this.rows = checkpoint == null ? 0 : checkpoint.rows;
+    }
+
+    void export(final ResultSet rs) throws SQLException, IOException {
+      final var plan = ColumnPlan.of(rs.getMetaData());
+      final var key = keyIndex(plan);
+      try (var sink = newSink(nonClosing(counter))) {
+        sink.start(plan);
+        final var row = new RowValues(plan.types);
+        var sinceCheckpoint = 0L;
+        while (rs.next()) {
+          row.read(rs);
+          sink.write(row);
+          rows++;
+          if (++sinceCheckpoint == checkpointInterval) {
+            sink.flush();
+            channel.force(false);
+            writeCheckpoint(new Checkpoint(keyOf(row, key), offset + counter.getCount(), rows));
+            sinceCheckpoint = 0;
+          }
+        }
+        sink.end();
+      }
+      channel.force(false);
+    }
+
+    private RowSink newSink(final OutputStream os) throws IOException {
+      if (format == ExportFormat.CSV) {
+        return new CsvRowEncoder(os, StreamingCsvResultSetExtractor.DEFAULT_BUFFER_SIZE,
+            FlushPolicy.atEnd(), !resumed, TemporalFormat.iso());
+      }
+      return new JsonRowEncoder(jsonFactory.createGenerator(os, JsonEncoding.UTF8), JsonLayout.NDJSON);
+    }
+
+    private int keyIndex(final ColumnPlan plan) {
+      for (var i = 0; i < plan.size(); i++) {
+        if (plan.names[i].equalsIgnoreCase(keyColumn)) {
+          return i;
+        }
+      }
+      throw new IllegalArgumentException("Key column " + keyColumn + " is not selected");
+    }
+
+    private Object keyOf(final RowValues row, final int key) {
+      if (row.nulls[key]) {
+        throw new IllegalStateException("Key column " + keyColumn + " is null");
+      }
+      return row.types[key] == ColumnType.LONG ? (Object) row.longs[key] : row.objects[key].toString();
+    }
+  }
+
+  /**
+   * The sink closes its stream, but the channel is closed by the export.
+   */
+  private static OutputStream nonClosing(final OutputStream os) {
+    return new FilterOutputStream(os) {
+      @Override
+      public void write(final byte[] b, final int off, final int len) throws IOException {
+        out.write(b, off, len);
+      }
+
+      @Override
+      public void close() throws IOException {
+        flush();
+      }
+    };
+  }
+}
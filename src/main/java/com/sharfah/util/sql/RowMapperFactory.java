@@ -0,0 +1,621 @@
+package com.sharfah.util.sql;
+
+import java.beans.ConstructorProperties;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.ObjDoubleConsumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.ObjLongConsumer;
+import java.util.function.Supplier;
+
+import org.springframework.jdbc.core.RowMapper;
+
+/**
+ * Creates RowMappers which map each row to a new instance of a class: a
+ * bean, through its no-argument constructor and setters, or a record (on
+ * Java 16 or later) or a class with a constructor annotated with
+ * {@link ConstructorProperties}, through that constructor.
+ * <p>
+ * Columns are matched to properties by their labels, ignoring case and
+ * underscores, as with Spring's BeanPropertyRowMapper. Columns without a
+ * property are ignored, and constructor parameters without a column are
+ * given null, or zero for primitives. A null is not set into a primitive
+ * bean property.
+ * <p>
+ * How a class is mapped from a given set of column labels and types is
+ * worked out once and cached. Rows are then mapped without reflection:
+ * constructors and setters are bound with LambdaMetafactory, and each value
+ * is read with the ResultSet getter for its property's type, without boxing
+ * for long, int and double setters.
+ * <p>
+ * A factory, and the mappers it creates, are thread-safe.
+ *
+ * @author fahd
+ */
+public class RowMapperFactory {
+
+  /** The default maximum number of cached mapping plans. */
+  public static final int DEFAULT_MAX_CACHED_PLANS = 1024;
+
+  /**
+   * How a value is read from the ResultSet, by the type it is mapped to.
+   * The first three are set through primitive setters of beans.
+   */
+  private enum Getter {
+    PRIMITIVE_LONG,
+    PRIMITIVE_INT,
+    PRIMITIVE_DOUBLE,
+    LONG,
+    INT,
+    SHORT,
+    BYTE,
+    DOUBLE,
+    FLOAT,
+    BOOLEAN,
+    STRING,
+    DECIMAL,
+    DATE,
+    TIME,
+    TIMESTAMP,
+    UTIL_DATE,
+    INSTANT,
+    BYTES,
+    OBJECT
+  }
+
+  /**
+   * A class and the labels and JDBC types of the columns it is mapped from.
+   */
+  private static final class Key {
+    final Class<?> type;
+    final String[] labels;
+    final int[] sqlTypes;
+    final int hash;
+
+    Key(final Class<?> type, final String[] labels, final int[] sqlTypes) {
+      this.type = type;
+      this.labels = labels;
+      this.sqlTypes = sqlTypes;
+      this.hash = 31 * (31 * type.hashCode() + Arrays.hashCode(labels)) + Arrays.hashCode(sqlTypes);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      final var other = (Key) obj;
+      return hash == other.hash
+          && type == other.type
+          && Arrays.equals(sqlTypes, other.sqlTypes)
+          && Arrays.equals(labels, other.labels);
+    }
+  }
+
+  /**
+   * A column and how its value is read and, for beans, set.
+   */
+  private static final class Column {
+    final int index;
+    final Getter getter;
+    final Class<?> type;
+    final ObjLongConsumer<Object> longSetter;
+    final ObjIntConsumer<Object> intSetter;
+    final ObjDoubleConsumer<Object> doubleSetter;
+    final BiConsumer<Object, Object> setter;
+    // the value of a constructor parameter whose column is null
+    final Object defaultValue;
+
+    Column(final int index, final Getter getter, final Class<?> type, final Object setter) {
+      this.index = index;
+      this.getter = getter;
+      this.type = type;
+      this.longSetter = getter == Getter.PRIMITIVE_LONG ? cast(setter) : null;
+      this.intSetter = getter == Getter.PRIMITIVE_INT ? cast(setter) : null;
+      this.doubleSetter = getter == Getter.PRIMITIVE_DOUBLE ? cast(setter) : null;
+      this.setter = longSetter == null && intSetter == null && doubleSetter == null ? cast(setter) : null;
+      this.defaultValue = type.isPrimitive() ? Array.get(Array.newInstance(type, 1), 0) : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <S> S cast(final Object setter) {
+      return (S) setter;
+    }
+
+    /**
+     * Reads the value and sets it into the bean.
+     */
+    void set(final ResultSet rs, final Object bean) throws SQLException {
+      switch (getter) {
+        case PRIMITIVE_LONG: {
+          final var value = rs.getLong(index);
+          if (!rs.wasNull()) {
+            longSetter.accept(bean, value);
+          }
+          break;
+        }
+        case PRIMITIVE_INT: {
+          final var value = rs.getInt(index);
+          if (!rs.wasNull()) {
+            intSetter.accept(bean, value);
+          }
+          break;
+        }
+        case PRIMITIVE_DOUBLE: {
+          final var value = rs.getDouble(index);
+          if (!rs.wasNull()) {
+            doubleSetter.accept(bean, value);
+          }
+          break;
+        }
+        default:
+          final var value = read(rs);
+          if (value != null || !type.isPrimitive()) {
+            setter.accept(bean, value);
+          }
+          break;
+      }
+    }
+
+    /**
+     * Reads the value as an object, null if it is SQL NULL.
+     */
+    Object read(final ResultSet rs) throws SQLException {
+      switch (getter) {
+        case PRIMITIVE_LONG:
+        case LONG: {
+          final var value = rs.getLong(index);
+          return rs.wasNull() ? null : value;
+        }
+        case PRIMITIVE_INT:
+        case INT: {
+          final var value = rs.getInt(index);
+          return rs.wasNull() ? null : value;
+        }
+        case SHORT: {
+          final var value = rs.getShort(index);
+          return rs.wasNull() ? null : value;
+        }
+        case BYTE: {
+          final var value = rs.getByte(index);
+          return rs.wasNull() ? null : value;
+        }
+        case PRIMITIVE_DOUBLE:
+        case DOUBLE: {
+          final var value = rs.getDouble(index);
+          return rs.wasNull() ? null : value;
+        }
+        case FLOAT: {
+          final var value = rs.getFloat(index);
+          return rs.wasNull() ? null : value;
+        }
+        case BOOLEAN: {
+          final var value = rs.getBoolean(index);
+          return rs.wasNull() ? null : value;
+        }
+        case STRING:
+          return rs.getString(index);
+        case DECIMAL:
+          return rs.getBigDecimal(index);
+        case DATE:
+          return rs.getDate(index);
+        case TIME:
+          return rs.getTime(index);
+        case TIMESTAMP:
+        case UTIL_DATE:
+          return rs.getTimestamp(index);
+        case INSTANT: {
+          final var value = rs.getTimestamp(index);
+          return value == null ? null : value.toInstant();
+        }
+        case BYTES:
+          return rs.getBytes(index);
+        default:
+          return rs.getObject(index, type);
+      }
+    }
+  }
+
+  /**
+   * How a class is mapped from a set of columns.
+   */
+  private static final class Plan<T> {
+    final Class<T> type;
+    // for beans
+    final Supplier<Object> constructor;
+    // for constructors, taking an Object[] of arguments
+    final MethodHandle spreader;
+    // for beans, the mapped columns; for constructors, one per parameter,
+    // null if it has no column
+    final Column[] columns;
+
+    Plan(final Class<T> type, final Supplier<Object> constructor, final MethodHandle spreader,
+        final Column[] columns) {
+      this.type = type;
+      this.constructor = constructor;
+      this.spreader = spreader;
+      this.columns = columns;
+    }
+
+    T map(final ResultSet rs) throws SQLException {
+      if (constructor != null) {
+        final var bean = constructor.get();
+        for (final var column : columns) {
+          column.set(rs, bean);
+        }
+        return type.cast(bean);
+      }
+      final var args = new Object[columns.length];
+      for (var i = 0; i < args.length; i++) {
+        final var column = columns[i];
+        if (column != null) {
+          final var value = column.read(rs);
+          args[i] = value == null ? column.defaultValue : value;
+        } else {
+          args[i] = null;
+        }
+      }
+      try {
+        return type.cast((Object) spreader.invokeExact(args));
+      } catch (RuntimeException | Error e) {
+        throw e;
+      } catch (final Throwable t) {
+        throw new RuntimeException(t);
+      }
+    }
+  }
+
+  /**
+   * Maps rows to a class with the plan for the columns of the ResultSet it
+   * was last used with.
+   */
+  private final class Mapper<T> implements RowMapper<T> {
+
+    /**
+     * A ResultSet and its plan, replaced together.
+     */
+    private final class Bound {
+      final ResultSet rs;
+      final Plan<T> plan;
+
+      Bound(final ResultSet rs, final Plan<T> plan) {
+        this.rs = rs;
+        this.plan = plan;
+      }
+    }
+
+    private final Class<T> type;
+    private volatile Bound bound;
+
+    Mapper(final Class<T> type) {
+      this.type = type;
+    }
+
+    @Override
+    public T mapRow(final ResultSet rs, final int rowNum) throws SQLException {
+      var current = bound;
+      if (current == null || current.rs != rs) {
+        current = new Bound(rs, plan(type, rs.getMetaData()));
+        bound = current;
+      }
+      return current.plan.map(rs);
+    }
+  }
+
+  private final Map<Key, Plan<?>> plans;
+
+  /**
+   * Creates a factory which caches up to {@link #DEFAULT_MAX_CACHED_PLANS} plans.
+   */
+  public RowMapperFactory() {
+    this(DEFAULT_MAX_CACHED_PLANS);
+  }
+
+  /**
+   * @param maxCachedPlans the maximum number of plans to keep; the least
+   *        recently used plan is evicted when it is exceeded
+   */
+  public RowMapperFactory(final int maxCachedPlans) {
+    this.plans = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<Key, Plan<?>> eldest) {
+        return size() > maxCachedPlans;
+      }
+    });
+  }
+
+  /**
+   * Returns a RowMapper which maps each row to a new instance of the class.
+   *
+   * @param <T> the type to map to
+   * @param type a bean or record class, or a class with a constructor
+   *        annotated with {@link ConstructorProperties}
+   * @return the row mapper
+   */
+  public <T> RowMapper<T> getRowMapper(final Class<T> type) {
+    return new Mapper<>(type);
+  }
+
+  /**
+   * @return the number of cached plans
+   */
+  int size() {
+    return plans.size();
+  }
+
+  @SuppressWarnings("unchecked")
+  private <T> Plan<T> plan(final Class<T> type, final ResultSetMetaData rsmd) throws SQLException {
+    final var columnCount = rsmd.getColumnCount();
+    final var labels = new String[columnCount];
+    final var sqlTypes = new int[columnCount];
+    for (var i = 0; i < columnCount; i++) {
+      labels[i] = rsmd.getColumnLabel(i + 1);
+      sqlTypes[i] = rsmd.getColumnType(i + 1);
+    }
+    return (Plan<T>) plans.computeIfAbsent(new Key(type, labels, sqlTypes), k -> build(type, labels));
+  }
+
+  /**
+   * Works out how the class is mapped from columns with the given labels.
+   */
+  private static <T> Plan<T> build(final Class<T> type, final String[] labels) {
+    final var indexes = new HashMap<String, Integer>();
+    for (var i = labels.length - 1; i >= 0; i--) {
+      // the first of several columns with the same name wins
+      indexes.put(normalize(labels[i]), i + 1);
+    }
+    try {
+      final var lookup = lookup(type);
+      final var constructor = propertiesConstructor(type);
+      if (constructor != null) {
+        final var parameters = constructor.getParameterTypes();
+        final var names = constructorProperties(type, constructor);
+        final var columns = new Column[parameters.length];
+        for (var i = 0; i < parameters.length; i++) {
+          final var index = indexes.get(normalize(names[i]));
+          if (index != null) {
+            columns[i] = new Column(index, getter(parameters[i], false), parameters[i], null);
+          }
+        }
+        final var spreader = lookup.unreflectConstructor(constructor)
+            .asSpreader(Object[].class, parameters.length)
+            .asType(MethodType.methodType(Object.class, Object[].class));
+        return new Plan<>(type, null, spreader, columns);
+      }
+      final var columns = new ArrayList<Column>();
+      final var mapped = new HashMap<Integer, Method>();
+      for (final var method : type.getMethods()) {
+        final var name = method.getName();
+        if (name.length() > 3 && name.startsWith("set") && method.getParameterCount() == 1
+            && !Modifier.isStatic(method.getModifiers())) {
+          final var index = indexes.get(normalize(name.substring(3)));
+          if (index != null && mapped.putIfAbsent(index, method) == null) {
+            final var parameter = method.getParameterTypes()[0];
+            final var getter = getter(parameter, true);
+            columns.add(new Column(index, getter, parameter, setter(lookup, type, method, getter)));
+          }
+        }
+      }
+      final var noArgs = lookup.findConstructor(type, MethodType.methodType(void.class));
+      final var site = LambdaMetafactory.metafactory(lookup, "get",
+          MethodType.methodType(Supplier.class), MethodType.methodType(Object.class), noArgs,
+          MethodType.methodType(type));
+      @SuppressWarnings("unchecked")
+      final var supplier = (Supplier<Object>) site.getTarget().invoke();
+      return new Plan<>(type, supplier, null, columns.toArray(new Column[0]));
+    } catch (RuntimeException | Error e) {
+      throw e;
+    } catch (final Throwable t) {
+      throw new IllegalArgumentException("Cannot map to " + type.getName(), t);
+    }
+  }
+
+  /**
+   * Returns a lookup which can bind the class's constructors and methods:
+   * one with private access to it, if possible, or otherwise one which
+   * can bind public members of public classes.
+   */
+  private static MethodHandles.Lookup lookup(final Class<?> type) {
+    try {
+      final var lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+      if (lookup.hasFullPrivilegeAccess()) {
+        return lookup;
+      }
+    } catch (final IllegalAccessException e) {
+      // fall back to public access
+    }
+    return MethodHandles.lookup();
+  }
+
+  /**
+   * Returns the canonical constructor of a record, or the constructor
+   * annotated with ConstructorProperties, or null for a bean.
+   */
+  private static Constructor<?> propertiesConstructor(final Class<?> type) throws NoSuchMethodException {
+    if (isRecord(type)) {
+      final var components = recordComponents(type);
+      final var types = new Class<?>[components.length];
+      for (var i = 0; i < components.length; i++) {
+        types[i] = (Class<?>) invoke(components[i], "getType");
+      }
+      return type.getDeclaredConstructor(types);
+    }
+    for (final var constructor : type.getDeclaredConstructors()) {
+      if (constructor.isAnnotationPresent(ConstructorProperties.class)) {
+        return constructor;
+      }
+    }
+    return null;
+  }
+
+  private static String[] constructorProperties(final Class<?> type, final Constructor<?> constructor) {
+    if (isRecord(type)) {
+      return Arrays.stream(recordComponents(type)).map(c -> (String) invoke(c, "getName")).toArray(String[]::new);
+    }
+    final var names = constructor.getAnnotation(ConstructorProperties.class).value();
+    if (names.length != constructor.getParameterCount()) {
+      throw new IllegalArgumentException("ConstructorProperties of " + type.getName()
+          + " do not match its parameters");
+    }
+    return names;
+  }
+
+  /*
+   * Records are read without Class.isRecord() and RecordComponent, which
+   * are preview APIs on Java 15; records themselves need Java 16 or later.
+   */
+
+  private static boolean isRecord(final Class<?> type) {
+    final var superclass = type.getSuperclass();
+    return superclass != null && "java.lang.Record".equals(superclass.getName());
+  }
+
+  private static Object[] recordComponents(final Class<?> type) {
+    return (Object[]) invoke(type, "getRecordComponents");
+  }
+
+  /**
+   * Calls a public no-argument method.
+   */
+  private static Object invoke(final Object target, final String method) {
+    try {
+      return target.getClass().getMethod(method).invoke(target);
+    } catch (final ReflectiveOperationException e) {
+      throw new IllegalStateException("Cannot call " + method + " on " + target, e);
+    }
+  }
+
+  /**
+   * Binds a setter to the functional interface matching its getter.
+   */
+  private static Object setter(final MethodHandles.Lookup lookup, final Class<?> type,
+      final Method method, final Getter getter) throws Throwable {
+    final var handle = lookup.unreflect(method);
+    final var parameter = method.getParameterTypes()[0];
+    final Class<?> sam;
+    final MethodType samType;
+    switch (getter) {
+      case PRIMITIVE_LONG:
+        sam = ObjLongConsumer.class;
+        samType = MethodType.methodType(void.class, Object.class, long.class);
+        break;
+      case PRIMITIVE_INT:
+        sam = ObjIntConsumer.class;
+        samType = MethodType.methodType(void.class, Object.class, int.class);
+        break;
+      case PRIMITIVE_DOUBLE:
+        sam = ObjDoubleConsumer.class;
+        samType = MethodType.methodType(void.class, Object.class, double.class);
+        break;
+      default:
+        sam = BiConsumer.class;
+        samType = MethodType.methodType(void.class, Object.class, Object.class);
+        break;
+    }
+    final var instantiated = MethodType.methodType(void.class, type,
+        getter.ordinal() <= Getter.PRIMITIVE_DOUBLE.ordinal()
+            ? parameter : MethodType.methodType(parameter).wrap().returnType());
+    final var site = LambdaMetafactory.metafactory(lookup, "accept", MethodType.methodType(sam),
+        samType, handle, instantiated);
+    return site.getTarget().invoke();
+  }
+
+  /**
+   * Returns how a value of the type is read.
+   *
+   * @param primitives true if long, int and double values may be read as primitives
+   */
+  private static Getter getter(final Class<?> type, final boolean primitives) {
+    if (type == long.class) {
+      return primitives ? Getter.PRIMITIVE_LONG : Getter.LONG;
+    }
+    if (type == int.class) {
+      return primitives ? Getter.PRIMITIVE_INT : Getter.INT;
+    }
+    if (type == double.class) {
+      return primitives ? Getter.PRIMITIVE_DOUBLE : Getter.DOUBLE;
+    }
+    if (type == Long.class) {
+      return Getter.LONG;
+    }
+    if (type == Integer.class) {
+      return Getter.INT;
+    }
+    if (type == Double.class) {
+      return Getter.DOUBLE;
+    }
+    if (type == short.class || type == Short.class) {
+      return Getter.SHORT;
+    }
+    if (type == byte.class || type == Byte.class) {
+      return Getter.BYTE;
+    }
+    if (type == float.class || type == Float.class) {
+      return Getter.FLOAT;
+    }
+    if (type == boolean.class || type == Boolean.class) {
+      return Getter.BOOLEAN;
+    }
+    if (type == String.class) {
+      return Getter.STRING;
+    }
+    if (type == BigDecimal.class) {
+      return Getter.DECIMAL;
+    }
+    if (type == Date.class) {
+      return Getter.DATE;
+    }
+    if (type == Time.class) {
+      return Getter.TIME;
+    }
+    if (type == Timestamp.class) {
+      return Getter.TIMESTAMP;
+    }
+    if (type == java.util.Date.class) {
+      return Getter.UTIL_DATE;
+    }
+    if (type == Instant.class) {
+      return Getter.INSTANT;
+    }
+    if (type == byte[].class) {
+      return Getter.BYTES;
+    }
+    return Getter.OBJECT;
+  }
+
+  private static String normalize(final String name) {
+    return name.replace("_", "").toLowerCase(Locale.ROOT);
+  }
+}
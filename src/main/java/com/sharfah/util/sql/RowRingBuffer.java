@@ -0,0 +1,136 @@
+package com.sharfah.util.sql;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded ring of preallocated rows passed from a single producer thread,
+ * which reads them from the ResultSet, to a single consumer thread, which
+ * encodes them. The producer blocks while the ring is full and the consumer
+ * while it is empty.
+ * <p>
+ * Slots are claimed and released in order, so a row is never copied: the
+ * producer reads straight into a slot and the consumer encodes straight from it.
+ */
+final class RowRingBuffer {
+
+  private final RowValues[] slots;
+  private final int mask;
+
+  // the sequence of the next slot to be published, written by the producer
+  private volatile long tail;
+  // the sequence of the next slot to be consumed, written by the consumer
+  private volatile long head;
+  private volatile boolean closed;
+  private volatile boolean aborted;
+
+  private volatile Thread waitingProducer;
+  private volatile Thread waitingConsumer;
+
+  /**
+   * @param capacity the number of rows, rounded up to a power of two
+   * @param types the column types of the rows
+   */
+  RowRingBuffer(final int capacity, final ColumnType[] types) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+    }
+    var size = 1;
+    while (size < capacity) {
+      size <<= 1;
+    }
+    this.slots = new RowValues[size];
+    for (var i = 0; i < size; i++) {
+      slots[i] = new RowValues(types);
+    }
+    this.mask = size - 1;
+  }
+
+  /**
+   * @return the number of slots
+   */
+  int capacity() {
+    return slots.length;
+  }
+
+  /**
+   * Returns the next free slot for the producer to fill, waiting for one if
+   * the ring is full. The slot is handed to the consumer by {@link #publish()}.
+   *
+   * @return the slot
+   * @throws CancellationException if the consumer has {@link #abort() aborted}
+   */
+  RowValues claim() {
+    final var sequence = tail;
+    while (sequence - head == slots.length) {
+      waitingProducer = Thread.currentThread();
+      if (sequence - head == slots.length && !aborted) {
+        LockSupport.park(this);
+      }
+      waitingProducer = null;
+      checkNotAborted();
+    }
+    checkNotAborted();
+    return slots[(int) sequence & mask];
+  }
+
+  /**
+   * Hands the slot returned by {@link #claim()} to the consumer.
+   */
+  void publish() {
+    tail = tail + 1;
+    LockSupport.unpark(waitingConsumer);
+  }
+
+  /**
+   * Signals that the producer will not publish any more rows.
+   */
+  void close() {
+    closed = true;
+    LockSupport.unpark(waitingConsumer);
+  }
+
+  /**
+   * Returns the next published row, waiting for one if the ring is empty.
+   * The slot must be handed back by {@link #release()}.
+   *
+   * @return the row, or null if the ring is empty and closed
+   */
+  RowValues take() {
+    final var sequence = head;
+    while (sequence == tail) {
+      if (closed) {
+        // re-read, since the last row may have been published just before closing
+        return sequence == tail ? null : slots[(int) sequence & mask];
+      }
+      waitingConsumer = Thread.currentThread();
+      if (sequence == tail && !closed) {
+        LockSupport.park(this);
+      }
+      waitingConsumer = null;
+    }
+    return slots[(int) sequence & mask];
+  }
+
+  /**
+   * Hands the slot returned by {@link #take()} back to the producer.
+   */
+  void release() {
+    head = head + 1;
+    LockSupport.unpark(waitingProducer);
+  }
+
+  /**
+   * Signals that the consumer has failed, so the producer should stop.
+   */
+  void abort() {
+    aborted = true;
+    LockSupport.unpark(waitingProducer);
+  }
+
+  private void checkNotAborted() {
+    if (aborted) {
+      throw new CancellationException("Row consumer has stopped");
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package com.sharfah.util.sql;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Receives the rows of a ResultSet, usually to encode them to a stream.
+ * The methods are called in order: {@link #start(ColumnPlan)} once,
+ * {@link #write(RowValues)} for each row, {@link #end()} once if every row
+ * was read, and {@link #close()} in all cases.
+ * <p>
+ * Custom sinks can be given to a {@link FanOutResultSetExtractor}.
+ */
+public interface RowSink extends Closeable {
+
+  /**
+   * Called before the first row.
+   *
+   * @param plan the columns of the rows
+   * @throws IOException if the output cannot be written
+   */
+  void start(ColumnPlan plan) throws IOException;
+
+  /**
+   * Called for each row. The values are only valid until the method returns.
+   *
+   * @param row the values of the row
+   * @throws IOException if the output cannot be written
+   */
+  void write(RowValues row) throws IOException;
+
+  /**
+   * Called after the last row.
+   *
+   * @throws IOException if the output cannot be written
+   */
+  void end() throws IOException;
+
+  /**
+   * Writes any rows buffered by the sink to its output.
+   *
+   * @throws IOException if the output cannot be written
+   */
+  void flush() throws IOException;
+
+  /**
+   * Whether the sink can take {@link ColumnType#CLOB} and {@link ColumnType#BLOB}
+   * values as a Reader and InputStream, read while {@link #write(RowValues)}
+   * runs, rather than whole. Sinks which do are given rows on the thread
+   * reading the ResultSet, so that large values never have to be held.
+   *
+   * @return true if LOBs can be streamed to the sink; false by default
+   */
+  default boolean acceptsLobStreams() {
+    return false;
+  }
+}
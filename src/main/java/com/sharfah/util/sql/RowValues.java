@@ -0,0 +1,188 @@
+package com.sharfah.util.sql;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Holds the values of one row, read with the primitive getter matching each
+ * column's type. Numeric and boolean values are kept in primitive slots so
+ * that reading a row does not box them. An instance is reused for every row.
+ * <p>
+ * {@link ColumnType#CLOB} and {@link ColumnType#BLOB} values are read whole,
+ * as a String or byte array, unless the instance streams them, in which case
+ * they are a Reader or InputStream which must be consumed before the
+ * ResultSet moves to the next row.
+ */
+public final class RowValues {
+
+  final ColumnType[] types;
+  final long[] longs;
+  final double[] doubles;
+  final Object[] objects;
+  final boolean[] nulls;
+  private final boolean streamLobs;
+
+  RowValues(final ColumnType[] types) {
+    this(types, false);
+  }
+
+  /**
+   * @param types the types of the columns
+   * @param streamLobs true to read LOB columns as streams rather than whole
+   */
+  RowValues(final ColumnType[] types, final boolean streamLobs) {
+    this.types = types;
+    this.streamLobs = streamLobs;
+    this.longs = new long[types.length];
+    this.doubles = new double[types.length];
+    this.objects = new Object[types.length];
+    this.nulls = new boolean[types.length];
+  }
+
+  /**
+   * @return the number of columns
+   */
+  public int getColumnCount() {
+    return types.length;
+  }
+
+  /**
+   * @param i the index of the column, from 0
+   * @return the type of the column
+   */
+  public ColumnType getType(final int i) {
+    return types[i];
+  }
+
+  /**
+   * @param i the index of the column, from 0
+   * @return true if the value is SQL NULL
+   */
+  public boolean isNull(final int i) {
+    return nulls[i];
+  }
+
+  /**
+   * @param i the index of a {@link ColumnType#LONG} or {@link ColumnType#BOOLEAN}
+   *        column, from 0; a boolean is 1 for true and 0 for false
+   * @return the value, 0 if it is null
+   */
+  public long getLong(final int i) {
+    return longs[i];
+  }
+
+  /**
+   * @param i the index of a {@link ColumnType#DOUBLE} or {@link ColumnType#FLOAT}
+   *        column, from 0
+   * @return the value, 0 if it is null
+   */
+  public double getDouble(final int i) {
+    return doubles[i];
+  }
+
+  /**
+   * Returns the value of any column as an object, boxing primitive values.
+   * A LOB is a String or byte array, or a Reader or InputStream if streamed.
+   *
+   * @param i the index of the column, from 0
+   * @return the value, null if it is null
+   */
+  public Object getObject(final int i) {
+    if (nulls[i]) {
+      return null;
+    }
+    switch (types[i]) {
+      case LONG:
+        return longs[i];
+      case DOUBLE:
+        return doubles[i];
+      case FLOAT:
+        return (float) doubles[i];
+      case BOOLEAN:
+        return longs[i] != 0;
+      default:
+        return objects[i];
+    }
+  }
+
+  /**
+   * Reads the current row of the ResultSet into this instance.
+   *
+   * @param rs the ResultSet, positioned on a row
+   * @throws SQLException if a value cannot be read
+   */
+  void read(final ResultSet rs) throws SQLException {
+    for (var i = 0; i < types.length; i++) {
+      read(rs, i);
+    }
+  }
+
+  /**
+   * Reads the current row of the ResultSet into this instance, adding the
+   * time taken to read each column to the given totals.
+   *
+   * @param rs the ResultSet, positioned on a row
+   * @param columnNanos the nanoseconds spent reading each column
+   * @throws SQLException if a value cannot be read
+   */
+  void read(final ResultSet rs, final long[] columnNanos) throws SQLException {
+    var start = System.nanoTime();
+    for (var i = 0; i < types.length; i++) {
+      read(rs, i);
+      final var end = System.nanoTime();
+      columnNanos[i] += end - start;
+      start = end;
+    }
+  }
+
+  private void read(final ResultSet rs, final int i) throws SQLException {
+    final var column = i + 1;
+    switch (types[i]) {
+      case LONG:
+        longs[i] = rs.getLong(column);
+        nulls[i] = rs.wasNull();
+        break;
+      case DOUBLE:
+        doubles[i] = rs.getDouble(column);
+        nulls[i] = rs.wasNull();
+        break;
+      case FLOAT:
+        doubles[i] = rs.getFloat(column);
+        nulls[i] = rs.wasNull();
+        break;
+      case BOOLEAN:
+        longs[i] = rs.getBoolean(column) ? 1 : 0;
+        nulls[i] = rs.wasNull();
+        break;
+      case DECIMAL:
+        setObject(i, rs.getBigDecimal(column));
+        break;
+      case STRING:
+        setObject(i, rs.getString(column));
+        break;
+      case DATE:
+        setObject(i, rs.getDate(column));
+        break;
+      case TIME:
+        setObject(i, rs.getTime(column));
+        break;
+      case TIMESTAMP:
+        setObject(i, rs.getTimestamp(column));
+        break;
+      case CLOB:
+        setObject(i, streamLobs ? rs.getCharacterStream(column) : rs.getString(column));
+        break;
+      case BLOB:
+        setObject(i, streamLobs ? rs.getBinaryStream(column) : rs.getBytes(column));
+        break;
+      default:
+        setObject(i, rs.getObject(column));
+        break;
+    }
+  }
+
+  private void setObject(final int i, final Object value) {
+    objects[i] = value;
+    nulls[i] = value == null;
+  }
+}
@@ -1,60 +1,143 @@
 package com.sharfah.util.sql;
 
 import java.io.OutputStream;
-import java.io.PrintWriter;
 import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
-import java.sql.SQLException;
+import java.util.concurrent.Executor;
 
 import org.springframework.jdbc.core.ResultSetExtractor;
 
 /**
  * Streams a ResultSet as CSV.
+ * <p>
+ * The columns are analysed once, from the ResultSet metadata, into a plan
+ * which reads numeric columns with primitive getters and writes their digits
+ * straight into a reusable row buffer, so no value is boxed or turned into a
+ * temporary String.
+ * <p>
+ * The CSV is encoded as UTF-8 into a large buffer, which is written out when
+ * full. The OutputStream is flushed according to the {@link FlushPolicy},
+ * by default only at the end.
+ * <p>
+ * If a pipeline capacity is set, rows are fetched on the calling thread and
+ * encoded on another, so that waiting for the database and encoding overlap.
+ * <p>
+ * The output can be gzip or zlib compressed, see {@link Compression}.
+ * <p>
+ * Dates and times are written in ISO-8601, straight into the row buffer,
+ * see {@link TemporalFormat}.
  */
 public class StreamingCsvResultSetExtractor implements ResultSetExtractor<Void> {
 
-  private static char DELIMITER = ',';
+  /** The default size of the output buffer, in bytes. */
+  public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
 
   private final OutputStream os;
+  private final ColumnPlanCache planCache;
+  private FlushPolicy flushPolicy = FlushPolicy.atEnd();
+  final ExportOptions options = new ExportOptions();
 
   /**
    * @param os the OutputStream to stream the CSV to
    */
   public StreamingCsvResultSetExtractor(final OutputStream os) {
+    this(os, null);
+  }
+
+  /**
+   * @param os the OutputStream to stream the CSV to
+   * @param planCache the cache to get column plans from, may be null
+   */
+  StreamingCsvResultSetExtractor(final OutputStream os, final ColumnPlanCache planCache) {
     this.os = os;
+    this.planCache = planCache;
+  }
+
+  /**
+   * Sets when the OutputStream is flushed. Defaults to {@link FlushPolicy#atEnd()}.
+   *
+   * @param flushPolicy the flush policy
+   */
+  public void setFlushPolicy(final FlushPolicy flushPolicy) {
+    this.flushPolicy = flushPolicy;
+  }
+
+  /**
+   * Sets the size of the output buffer. Defaults to {@link #DEFAULT_BUFFER_SIZE}.
+   *
+   * @param bufferSize the buffer size, in bytes
+   */
+  public void setBufferSize(final int bufferSize) {
+    options.setBufferSize(bufferSize);
+  }
+
+  /**
+   * Sets the number of rows which may be fetched ahead of the encoding.
+   * If positive, rows are encoded on a separate thread; if 0, the default,
+   * rows are fetched and encoded on the calling thread. Rows with CLOB or
+   * BLOB columns are always encoded on the calling thread, streaming the LOBs.
+   *
+   * @param pipelineCapacity the number of rows, rounded up to a power of two
+   */
+  public void setPipelineCapacity(final int pipelineCapacity) {
+    options.setPipelineCapacity(pipelineCapacity);
+  }
+
+  /**
+   * Sets the executor which runs the encoding when pipelined. Defaults to a
+   * new thread per export.
+   *
+   * @param pipelineExecutor the executor
+   */
+  public void setPipelineExecutor(final Executor pipelineExecutor) {
+    options.pipelineExecutor = pipelineExecutor;
+  }
+
+  /**
+   * Sets how the output is compressed. Defaults to null, for no compression.
+   *
+   * @param compression the compression, or null
+   */
+  public void setCompression(final Compression compression) {
+    options.compression = compression;
+  }
+
+  /**
+   * Sets what adjusts the fetch size of the ResultSet as it is read.
+   * Defaults to null, for the fetch size to be left as it is.
+   *
+   * @param fetchSizeTuner the fetch size tuner, or null
+   */
+  public void setFetchSizeTuner(final FetchSizeTuner fetchSizeTuner) {
+    options.fetchSizeTuner = fetchSizeTuner;
+  }
+
+  /**
+   * Sets the listener told how each export went. Defaults to null.
+   *
+   * @param exportListener the listener, or null
+   */
+  public void setExportListener(final ExportListener exportListener) {
+    options.exportListener = exportListener;
+  }
+
+  /**
+   * Sets how dates and times are written. Defaults to {@link TemporalFormat#iso()}.
+   *
+   * @param temporalFormat the format
+   */
+  public void setTemporalFormat(final TemporalFormat temporalFormat) {
+    options.temporalFormat = temporalFormat;
   }
 
   @Override
   public Void extractData(final ResultSet rs) {
-    try (var pw = new PrintWriter(os, true)) {
-      final var rsmd = rs.getMetaData();
-      final var columnCount = rsmd.getColumnCount();
-      writeHeader(rsmd, columnCount, pw);
-      while (rs.next()) {
-        for (var i = 1; i <= columnCount; i++) {
-          final var value = rs.getObject(i);
-          pw.write(value == null ? "" : value.toString());
-          if (i != columnCount) {
-            pw.append(DELIMITER);
-          }
-        }
-        pw.println();
+    options.measure("csv", stats -> {
+      try (var encoder = new CsvRowEncoder(options.output(os, stats), options.bufferSize, flushPolicy,
+          true, options.temporalFormat(TemporalFormat.iso()))) {
+        final var plan = ColumnPlan.of(rs.getMetaData(), planCache);
+        options.run(rs, plan, encoder, stats);
       }
-      pw.flush();
-    } catch (final SQLException e) {
-      throw new RuntimeException(e);
-    }
+    });
     return null;
   }
-
-  private static void writeHeader(final ResultSetMetaData rsmd,
-      final int columnCount, final PrintWriter pw) throws SQLException {
-    for (var i = 1; i <= columnCount; i++) {
-      pw.write(rsmd.getColumnName(i));
-      if (i != columnCount) {
-        pw.append(DELIMITER);
-      }
-    }
-    pw.println();
-  }
 }
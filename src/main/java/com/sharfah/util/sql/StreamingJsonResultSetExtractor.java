@@ -1,55 +1,144 @@
 package com.sharfah.util.sql;
 
-import java.io.IOException;
 import java.io.OutputStream;
 import java.sql.ResultSet;
-import java.sql.SQLException;
+import java.util.concurrent.Executor;
 
 import org.springframework.jdbc.core.ResultSetExtractor;
 
 import com.fasterxml.jackson.core.JsonEncoding;
-import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.MappingJsonFactory;
 
 /**
  * Streams a ResultSet as JSON.
+ * <p>
+ * By default the JSON is an array of objects, one per row; see
+ * {@link JsonLayout} for the alternatives.
+ * <p>
+ * The column names are resolved once into pre-encoded field names, and each
+ * value is written with the JsonGenerator method matching its column type,
+ * so only columns of unknown type go through the ObjectMapper.
+ * <p>
+ * Use an {@link ExtractorFactory} to share the JsonFactory and the column
+ * analysis between exports.
+ * <p>
+ * If a pipeline capacity is set, rows are fetched on the calling thread and
+ * encoded on another, so that waiting for the database and encoding overlap.
+ * <p>
+ * The output can be gzip or zlib compressed, see {@link Compression}.
+ *
  * @author fahd
  */
 public class StreamingJsonResultSetExtractor implements ResultSetExtractor<Void> {
 
+  // thread-safe, and expensive enough to create that it is shared
+  private static final JsonFactory DEFAULT_JSON_FACTORY = new MappingJsonFactory();
+
   private final OutputStream os;
+  private final JsonFactory jsonFactory;
+  private final ColumnPlanCache planCache;
+  final ExportOptions options = new ExportOptions();
+  private JsonLayout layout = JsonLayout.OBJECTS;
 
   /**
    * @param os the OutputStream to stream the JSON to
    */
   public StreamingJsonResultSetExtractor(final OutputStream os) {
+    this(os, DEFAULT_JSON_FACTORY, null);
+  }
+
+  /**
+   * @param os the OutputStream to stream the JSON to
+   * @param jsonFactory the JsonFactory to create the generator with
+   * @param planCache the cache to get column plans from, may be null
+   */
+  StreamingJsonResultSetExtractor(final OutputStream os, final JsonFactory jsonFactory,
+      final ColumnPlanCache planCache) {
     this.os = os;
+    this.jsonFactory = jsonFactory;
+    this.planCache = planCache;
   }
 
-  @Override
-  public Void extractData(final ResultSet rs) {
-    final var objectMapper = new ObjectMapper();
-    try (var jg = objectMapper.getFactory().createGenerator(os, JsonEncoding.UTF8)) {
-      writeResultSetToJson(rs, jg);
-      jg.flush();
-    } catch (IOException | SQLException e) {
-      throw new RuntimeException(e);
-    }
-    return null;
+  /**
+   * Sets the number of rows which may be fetched ahead of the encoding.
+   * If positive, rows are encoded on a separate thread; if 0, the default,
+   * rows are fetched and encoded on the calling thread. Rows with CLOB or
+   * BLOB columns are always encoded on the calling thread, streaming the LOBs.
+   *
+   * @param pipelineCapacity the number of rows, rounded up to a power of two
+   */
+  public void setPipelineCapacity(final int pipelineCapacity) {
+    options.setPipelineCapacity(pipelineCapacity);
+  }
+
+  /**
+   * Sets the executor which runs the encoding when pipelined. Defaults to a
+   * new thread per export.
+   *
+   * @param pipelineExecutor the executor
+   */
+  public void setPipelineExecutor(final Executor pipelineExecutor) {
+    options.pipelineExecutor = pipelineExecutor;
+  }
+
+  /**
+   * Sets how the output is compressed. Defaults to null, for no compression.
+   *
+   * @param compression the compression, or null
+   */
+  public void setCompression(final Compression compression) {
+    options.compression = compression;
   }
 
-  private static void writeResultSetToJson(final ResultSet rs, final JsonGenerator jg)
-      throws SQLException, IOException {
-    final var rsmd = rs.getMetaData();
-    final var columnCount = rsmd.getColumnCount();
-    jg.writeStartArray();
-    while (rs.next()) {
-      jg.writeStartObject();
-      for (var i = 1; i <= columnCount; i++) {
-        jg.writeObjectField(rsmd.getColumnName(i), rs.getObject(i));
+  /**
+   * Sets how the rows are laid out. Defaults to {@link JsonLayout#OBJECTS}.
+   *
+   * @param layout the layout
+   */
+  public void setLayout(final JsonLayout layout) {
+    this.layout = layout;
+  }
+
+  /**
+   * Sets what adjusts the fetch size of the ResultSet as it is read.
+   * Defaults to null, for the fetch size to be left as it is.
+   *
+   * @param fetchSizeTuner the fetch size tuner, or null
+   */
+  public void setFetchSizeTuner(final FetchSizeTuner fetchSizeTuner) {
+    options.fetchSizeTuner = fetchSizeTuner;
+  }
+
+  /**
+   * Sets the listener told how each export went. Defaults to null.
+   *
+   * @param exportListener the listener, or null
+   */
+  public void setExportListener(final ExportListener exportListener) {
+    options.exportListener = exportListener;
+  }
+
+  /**
+   * Sets how dates and times are written. Defaults to null, for dates and
+   * timestamps to be written as epoch millis and times as strings.
+   *
+   * @param temporalFormat the format, or null
+   */
+  public void setTemporalFormat(final TemporalFormat temporalFormat) {
+    options.temporalFormat = temporalFormat;
+  }
+
+  @Override
+  public Void extractData(final ResultSet rs) {
+    options.measure("json", stats -> {
+      try (var encoder = new JsonRowEncoder(
+          jsonFactory.createGenerator(options.output(os, stats), JsonEncoding.UTF8), layout,
+          FlushPolicy.atEnd(), false, options.temporalFormat)) {
+        final var plan = ColumnPlan.of(rs.getMetaData(), planCache);
+        options.run(rs, plan, encoder, stats);
       }
-      jg.writeEndObject();
-    }
-    jg.writeEndArray();
+    });
+    return null;
   }
 }
@@ -0,0 +1,152 @@
+package com.sharfah.util.sql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.SqlProvider;
+
+/**
+ * A query whose rows are streamed from the database rather than loaded into
+ * memory by the driver.
+ * <p>
+ * As a {@link PreparedStatementCreator}, it prepares a forward-only,
+ * read-only statement with a fetch size. Many drivers, PostgreSQL's among
+ * them, only use a cursor when, in addition, the connection is not in
+ * auto-commit mode, which {@link #query(JdbcTemplate, ResultSetExtractor)}
+ * takes care of. MySQL's driver only streams with a fetch size of
+ * {@link Integer#MIN_VALUE}.
+ * <p>
+ * Giving the extractor a {@link FetchSizeTuner} keeps the fetched rows
+ * within a memory budget as the query runs.
+ */
+public class StreamingQuery implements PreparedStatementCreator, SqlProvider {
+
+  /** The default fetch size. */
+  public static final int DEFAULT_FETCH_SIZE = 1000;
+
+  private final String sql;
+  private final Object[] args;
+  private int fetchSize = DEFAULT_FETCH_SIZE;
+  private int queryTimeout;
+
+  /**
+   * @param sql the query
+   * @param args the values of its parameters
+   */
+  public StreamingQuery(final String sql, final Object... args) {
+    this.sql = sql;
+    this.args = args;
+  }
+
+  /**
+   * Sets the fetch size of the statement. Defaults to {@link #DEFAULT_FETCH_SIZE}.
+   *
+   * @param fetchSize the number of rows fetched per round trip
+   * @see FetchSizeTuner#getInitialFetchSize()
+   */
+  public void setFetchSize(final int fetchSize) {
+    this.fetchSize = fetchSize;
+  }
+
+  /**
+   * Sets the query timeout. Defaults to 0, for none.
+   *
+   * @param queryTimeout the timeout, in seconds
+   */
+  public void setQueryTimeout(final int queryTimeout) {
+    if (queryTimeout < 0) {
+      throw new IllegalArgumentException("Query timeout must not be negative: " + queryTimeout);
+    }
+    this.queryTimeout = queryTimeout;
+  }
+
+  @Override
+  public String getSql() {
+    return sql;
+  }
+
+  @Override
+  public PreparedStatement createPreparedStatement(final Connection con) throws SQLException {
+    final var ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+    try {
+      ps.setFetchDirection(ResultSet.FETCH_FORWARD);
+      ps.setFetchSize(fetchSize);
+      ps.setQueryTimeout(queryTimeout);
+      new ArgumentPreparedStatementSetter(args).setValues(ps);
+      return ps;
+    } catch (final SQLException | RuntimeException e) {
+      ps.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Runs the query on a connection of the JdbcTemplate and streams its rows
+   * to the extractor. If the connection is in auto-commit mode, it is
+   * switched off for the query, whose transaction is then committed, or
+   * rolled back if the extraction fails, and switched back on.
+   *
+   * @param <T> the type of the result
+   * @param jdbcTemplate the JdbcTemplate
+   * @param rse the extractor
+   * @return the result of the extractor
+   */
+  public <T> T query(final JdbcTemplate jdbcTemplate, final ResultSetExtractor<T> rse) {
+    return jdbcTemplate.execute((ConnectionCallback<T>) con -> query(con, rse));
+  }
+
+  /**
+   * Runs the query on the connection and streams its rows to the extractor,
+   * switching auto-commit off for the query if it is on.
+   *
+   * @param <T> the type of the result
+   * @param con the connection
+   * @param rse the extractor
+   * @return the result of the extractor
+   * @throws SQLException if the query fails
+   */
+  public <T> T query(final Connection con, final ResultSetExtractor<T> rse) throws SQLException {
+    final var autoCommit = con.getAutoCommit();
+    if (autoCommit) {
+      con.setAutoCommit(false);
+    }
+    final T result;
+    try (var ps = createPreparedStatement(con); var rs = ps.executeQuery()) {
+      result = rse.extractData(rs);
+    } catch (final Throwable t) {
+      if (autoCommit) {
+        // a failed rollback must not hide why the query failed
+        try {
+          endTransaction(con, false);
+        } catch (final SQLException | RuntimeException e) {
+          t.addSuppressed(e);
+        }
+      }
+      throw t;
+    }
+    if (autoCommit) {
+      endTransaction(con, true);
+    }
+    return result;
+  }
+
+  private static void endTransaction(final Connection con, final boolean commit)
+      throws SQLException {
+    try {
+      if (commit) {
+        con.commit();
+      } else {
+        con.rollback();
+      }
+    } finally {
+      con.setAutoCommit(true);
+    }
+  }
+}
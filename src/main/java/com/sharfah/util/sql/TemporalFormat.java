@@ -0,0 +1,93 @@
+package com.sharfah.util.sql;
+
+import java.time.ZoneId;
+
+/**
+ * How date and time values are written as text, in ISO-8601: dates as
+ * {@code 2020-01-31}, times as {@code 13:45:30} and timestamps as
+ * {@code 2020-01-31T13:45:30.123}. Instances are immutable; the {@code with}
+ * methods return a modified copy.
+ * <p>
+ * Timestamps are written as local date-times in a zone, by default the
+ * system default zone, optionally followed by the zone's offset. As in
+ * JDBC, dates and times are always those of the system default zone.
+ * {@link java.time.OffsetDateTime OffsetDateTime} values are written with
+ * their own offset.
+ * <p>
+ * By default the fraction of a second is written with as many digits as it
+ * needs, in groups of three, and left out if it is zero.
+ */
+public final class TemporalFormat {
+
+  /** The number of fraction digits which means as many as the value needs. */
+  static final int AUTO_PRECISION = -1;
+
+  private static final TemporalFormat ISO = new TemporalFormat(null, AUTO_PRECISION, false);
+
+  private final ZoneId zone;
+  private final int precision;
+  private final boolean offset;
+
+  private TemporalFormat(final ZoneId zone, final int precision, final boolean offset) {
+    this.zone = zone;
+    this.precision = precision;
+    this.offset = offset;
+  }
+
+  /**
+   * @return ISO-8601 in the system default zone, with as many fraction
+   *         digits as needed and no offset
+   */
+  public static TemporalFormat iso() {
+    return ISO;
+  }
+
+  /**
+   * @param zone the zone timestamps are written in
+   * @return a copy with the given zone
+   */
+  public TemporalFormat withZone(final ZoneId zone) {
+    return new TemporalFormat(zone, precision, offset);
+  }
+
+  /**
+   * @param precision the number of fraction digits of seconds, from 0 to 9
+   * @return a copy with the given precision
+   */
+  public TemporalFormat withPrecision(final int precision) {
+    if (precision < 0 || precision > 9) {
+      throw new IllegalArgumentException("Invalid precision: " + precision);
+    }
+    return new TemporalFormat(zone, precision, offset);
+  }
+
+  /**
+   * @param offset true to follow timestamps with the offset of their zone,
+   *        {@code Z} for UTC
+   * @return a copy which does or does not write offsets
+   */
+  public TemporalFormat withOffset(final boolean offset) {
+    return new TemporalFormat(zone, precision, offset);
+  }
+
+  /**
+   * @return the zone of timestamps, resolved now if it is the system default
+   */
+  ZoneId zone() {
+    return zone == null ? ZoneId.systemDefault() : zone;
+  }
+
+  /**
+   * @return the number of fraction digits, or {@link #AUTO_PRECISION}
+   */
+  int precision() {
+    return precision;
+  }
+
+  /**
+   * @return true if timestamps are followed by their offset
+   */
+  boolean offset() {
+    return offset;
+  }
+}
@@ -0,0 +1,211 @@
+package com.sharfah.util.sql;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+
+/**
+ * Writes date and time values as ISO-8601 text into a {@link TextBuffer},
+ * as set out by a {@link TemporalFormat}, without allocating.
+ * <p>
+ * The date part of the last value, and the span of time over which it and
+ * the zone offset stay the same, are cached, so consecutive values from the
+ * same day only have their time of day worked out. An instance is not
+ * thread-safe and is meant to be used by one encoder.
+ */
+final class TemporalFormatter {
+
+  private static final long MILLIS_PER_DAY = 86_400_000L;
+  private static final int[] POWERS_OF_TEN = {
+    1, 10, 100, 1_000, 10_000, 100_000, 1_000_000, 10_000_000, 100_000_000, 1_000_000_000
+  };
+
+  /**
+   * The local day and offset of the last value formatted in a zone, and the
+   * instants between which they apply.
+   */
+  private static final class Day {
+    private final ZoneRules rules;
+    private final TextBuffer date = new TextBuffer(16);
+    private long validFrom = Long.MAX_VALUE;
+    private long validUntil = Long.MIN_VALUE;
+    private long localDayStart;
+    private int offsetSeconds;
+
+    Day(final ZoneId zone) {
+      this.rules = zone.getRules();
+    }
+
+    /**
+     * Makes this the day of the given instant.
+     *
+     * @return the local milliseconds since the start of the day
+     */
+    long resolve(final long millis) {
+      if (millis < validFrom || millis >= validUntil) {
+        // allocates, but only once per day or offset change
+        final var instant = Instant.ofEpochMilli(millis);
+        offsetSeconds = rules.getOffset(instant).getTotalSeconds();
+        final var epochDay = Math.floorDiv(millis + offsetSeconds * 1000L, MILLIS_PER_DAY);
+        localDayStart = epochDay * MILLIS_PER_DAY;
+        validFrom = localDayStart - offsetSeconds * 1000L;
+        validUntil = validFrom + MILLIS_PER_DAY;
+        if (!rules.isFixedOffset()) {
+          final var next = rules.nextTransition(instant);
+          if (next != null) {
+            validUntil = Math.min(validUntil, next.toEpochSecond() * 1000);
+          }
+          final var previous = rules.previousTransition(instant.plusMillis(1));
+          if (previous != null) {
+            validFrom = Math.max(validFrom, previous.toEpochSecond() * 1000);
+          }
+        }
+        final var local = LocalDate.ofEpochDay(epochDay);
+        date.reset();
+        appendDate(date, local.getYear(), local.getMonthValue(), local.getDayOfMonth());
+      }
+      return millis + offsetSeconds * 1000L - localDayStart;
+    }
+  }
+
+  private final int precision;
+  private final boolean offset;
+  private final Day timestampDay;
+  private final Day localDay;
+
+  /**
+   * @param format how to format values
+   */
+  TemporalFormatter(final TemporalFormat format) {
+    this.precision = format.precision();
+    this.offset = format.offset();
+    final var zone = format.zone();
+    this.localDay = new Day(ZoneId.systemDefault());
+    this.timestampDay = zone.equals(ZoneId.systemDefault()) ? localDay : new Day(zone);
+  }
+
+  /**
+   * Appends a date as {@code yyyy-MM-dd}.
+   */
+  void appendDate(final TextBuffer buf, final Date value) {
+    localDay.resolve(value.getTime());
+    buf.append(localDay.date.chars(), 0, localDay.date.length());
+  }
+
+  /**
+   * Appends a time as {@code HH:mm:ss}, with a fraction if it has milliseconds.
+   */
+  void appendTime(final TextBuffer buf, final Time value) {
+    final var millisOfDay = localDay.resolve(value.getTime());
+    appendTimeOfDay(buf, millisOfDay / 1000, (int) (millisOfDay % 1000) * 1_000_000);
+  }
+
+  /**
+   * Appends a timestamp as {@code yyyy-MM-ddTHH:mm:ss}, with a fraction and
+   * an offset as set out by the format.
+   */
+  void appendTimestamp(final TextBuffer buf, final Timestamp value) {
+    final var millisOfDay = timestampDay.resolve(value.getTime());
+    buf.append(timestampDay.date.chars(), 0, timestampDay.date.length()).append('T');
+    appendTimeOfDay(buf, millisOfDay / 1000, value.getNanos());
+    if (offset) {
+      appendOffset(buf, timestampDay.offsetSeconds);
+    }
+  }
+
+  /**
+   * Appends a date-time with its own offset.
+   */
+  void appendOffsetDateTime(final TextBuffer buf, final OffsetDateTime value) {
+    appendDate(buf, value.getYear(), value.getMonthValue(), value.getDayOfMonth());
+    buf.append('T');
+    appendTimeOfDay(buf, value.getHour() * 3600 + value.getMinute() * 60 + value.getSecond(),
+        value.getNano());
+    appendOffset(buf, value.getOffset().getTotalSeconds());
+  }
+
+  private static void appendDate(final TextBuffer buf, final int year, final int month, final int day) {
+    if (year < 0) {
+      buf.append('-');
+    } else if (year > 9999) {
+      buf.append('+');
+    }
+    buf.appendPadded(Math.abs(year), 4).append('-')
+        .appendPadded(month, 2).append('-')
+        .appendPadded(day, 2);
+  }
+
+  private void appendTimeOfDay(final TextBuffer buf, final long secondOfDay, final int nanos) {
+    final var seconds = (int) secondOfDay;
+    buf.appendPadded(seconds / 3600, 2).append(':')
+        .appendPadded(seconds / 60 % 60, 2).append(':')
+        .appendPadded(seconds % 60, 2);
+    var digits = precision;
+    if (digits == TemporalFormat.AUTO_PRECISION) {
+      digits = nanos == 0 ? 0 : nanos % 1_000_000 == 0 ? 3 : nanos % 1_000 == 0 ? 6 : 9;
+    }
+    if (digits > 0) {
+      buf.append('.').appendPadded(nanos / POWERS_OF_TEN[9 - digits], digits);
+    }
+  }
+
+  private static void appendOffset(final TextBuffer buf, final int offsetSeconds) {
+    if (offsetSeconds == 0) {
+      buf.append('Z');
+      return;
+    }
+    final var abs = Math.abs(offsetSeconds);
+    buf.append(offsetSeconds < 0 ? '-' : '+')
+        .appendPadded(abs / 3600, 2).append(':')
+        .appendPadded(abs / 60 % 60, 2);
+    if (abs % 60 != 0) {
+      buf.append(':').appendPadded(abs % 60, 2);
+    }
+  }
+
+  /**
+   * Parses a date written by a formatter, or in the JDBC escape format.
+   *
+   * @param s the text
+   * @return the date
+   */
+  static Date parseDate(final String s) {
+    return Date.valueOf(s);
+  }
+
+  /**
+   * Parses a time written by a formatter, or in the JDBC escape format.
+   *
+   * @param s the text
+   * @return the time
+   */
+  static Time parseTime(final String s) {
+    final var time = LocalTime.parse(s);
+    return new Time(Time.valueOf(time).getTime() + time.getNano() / 1_000_000);
+  }
+
+  /**
+   * Parses a timestamp written by a formatter, with or without an offset, or
+   * in the JDBC escape format.
+   *
+   * @param s the text
+   * @return the timestamp
+   */
+  static Timestamp parseTimestamp(final String s) {
+    if (s.length() <= 10 || s.charAt(10) != 'T') {
+      return Timestamp.valueOf(s);
+    }
+    final var last = s.charAt(s.length() - 1);
+    if (last == 'Z' || s.indexOf('+', 10) >= 0 || s.indexOf('-', 10) >= 0) {
+      return Timestamp.from(OffsetDateTime.parse(s).toInstant());
+    }
+    return Timestamp.valueOf(LocalDateTime.parse(s));
+  }
+}
@@ -0,0 +1,216 @@
+package com.sharfah.util.sql;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+/**
+ * A growable char buffer that is reused across rows. Numbers are written into
+ * it directly, without creating intermediate Strings.
+ */
+final class TextBuffer {
+
+  private static final char[] LONG_MIN_VALUE = Long.toString(Long.MIN_VALUE).toCharArray();
+  private static final char[] BASE64 =
+      "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+  private char[] chars;
+  private int length;
+
+  // used for floats, whose digits StringBuilder generates without allocating
+  private final StringBuilder scratch = new StringBuilder(32);
+
+  TextBuffer(final int initialCapacity) {
+    this.chars = new char[initialCapacity];
+  }
+
+  /**
+   * @return the underlying array, valid up to {@link #length()}
+   */
+  char[] chars() {
+    return chars;
+  }
+
+  /**
+   * @return the number of chars in the buffer
+   */
+  int length() {
+    return length;
+  }
+
+  /**
+   * Empties the buffer, keeping its capacity.
+   */
+  void reset() {
+    length = 0;
+  }
+
+  TextBuffer append(final char c) {
+    ensureCapacity(1);
+    chars[length++] = c;
+    return this;
+  }
+
+  TextBuffer append(final String s) {
+    final var len = s.length();
+    ensureCapacity(len);
+    s.getChars(0, len, chars, length);
+    length += len;
+    return this;
+  }
+
+  TextBuffer append(final char[] src, final int offset, final int len) {
+    ensureCapacity(len);
+    System.arraycopy(src, offset, chars, length, len);
+    length += len;
+    return this;
+  }
+
+  /**
+   * Appends the decimal digits of a long.
+   *
+   * @param value the value to append
+   * @return this buffer
+   */
+  TextBuffer appendLong(final long value) {
+    if (value == Long.MIN_VALUE) {
+      return append(LONG_MIN_VALUE, 0, LONG_MIN_VALUE.length);
+    }
+    ensureCapacity(20);
+    var v = value;
+    if (v < 0) {
+      chars[length++] = '-';
+      v = -v;
+    }
+    var pos = length + digitCount(v);
+    length = pos;
+    do {
+      final var q = v / 10;
+      chars[--pos] = (char) ('0' + (v - q * 10));
+      v = q;
+    } while (v != 0);
+    return this;
+  }
+
+  /**
+   * Appends the decimal digits of a non-negative int, padded with leading
+   * zeros to the given width.
+   *
+   * @param value the value to append
+   * @param width the minimum number of digits
+   * @return this buffer
+   */
+  TextBuffer appendPadded(final int value, final int width) {
+    final var digits = Math.max(width, digitCount(value));
+    ensureCapacity(digits);
+    var v = value;
+    for (var pos = length + digits - 1; pos >= length; pos--) {
+      final var q = v / 10;
+      chars[pos] = (char) ('0' + (v - q * 10));
+      v = q;
+    }
+    length += digits;
+    return this;
+  }
+
+  /**
+   * Appends a double in the format of {@link Double#toString(double)}, with
+   * the fewest digits which round back to it.
+   *
+   * @param value the value to append
+   * @return this buffer
+   */
+  TextBuffer appendDouble(final double value) {
+    ensureCapacity(NumberFormatter.MAX_DOUBLE_LENGTH);
+    length = NumberFormatter.appendDouble(value, chars, length);
+    return this;
+  }
+
+  /**
+   * Appends a BigDecimal in the format of {@link BigDecimal#toPlainString()}.
+   *
+   * @param value the value to append
+   * @return this buffer
+   */
+  TextBuffer appendDecimal(final BigDecimal value) {
+    NumberFormatter.appendPlain(this, value);
+    return this;
+  }
+
+  /**
+   * Appends a float in the format of {@link Float#toString(float)}.
+   *
+   * @param value the value to append
+   * @return this buffer
+   */
+  TextBuffer appendFloat(final float value) {
+    scratch.setLength(0);
+    scratch.append(value);
+    return appendScratch();
+  }
+
+  /**
+   * Appends bytes in base64, as {@link java.util.Base64#getEncoder()} does.
+   * Only the last of several calls encoding one value may be given a length
+   * which is not a multiple of 3, as the remainder is padded.
+   *
+   * @param src the bytes
+   * @param offset the index of the first byte
+   * @param len the number of bytes
+   * @return this buffer
+   */
+  TextBuffer appendBase64(final byte[] src, final int offset, final int len) {
+    ensureCapacity((len + 2) / 3 * 4);
+    final var end = offset + len - len % 3;
+    var i = offset;
+    while (i < end) {
+      final var bits = (src[i++] & 0xFF) << 16 | (src[i++] & 0xFF) << 8 | (src[i++] & 0xFF);
+      chars[length++] = BASE64[bits >>> 18];
+      chars[length++] = BASE64[bits >>> 12 & 0x3F];
+      chars[length++] = BASE64[bits >>> 6 & 0x3F];
+      chars[length++] = BASE64[bits & 0x3F];
+    }
+    if (i < offset + len) {
+      final var b0 = src[i++] & 0xFF;
+      final var two = i < offset + len;
+      final var b1 = two ? src[i] & 0xFF : 0;
+      chars[length++] = BASE64[b0 >>> 2];
+      chars[length++] = BASE64[(b0 << 4 | b1 >>> 4) & 0x3F];
+      chars[length++] = two ? BASE64[b1 << 2 & 0x3F] : '=';
+      chars[length++] = '=';
+    }
+    return this;
+  }
+
+  private TextBuffer appendScratch() {
+    final var len = scratch.length();
+    ensureCapacity(len);
+    scratch.getChars(0, len, chars, length);
+    length += len;
+    return this;
+  }
+
+  private void ensureCapacity(final int extra) {
+    if (length + extra > chars.length) {
+      chars = Arrays.copyOf(chars, Math.max(chars.length * 2, length + extra));
+    }
+  }
+
+  /**
+   * Returns the number of decimal digits in a non-negative long.
+   */
+  static int digitCount(final long v) {
+    var p = 10L;
+    for (var i = 1; i < 19; i++) {
+      if (v < p) {
+        return i;
+      }
+      p *= 10;
+    }
+    return 19;
+  }
+
+  @Override
+  public String toString() {
+    return new String(chars, 0, length);
+  }
+}
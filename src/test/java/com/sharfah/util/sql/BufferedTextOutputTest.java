@@ -0,0 +1,98 @@
+package com.sharfah.util.sql;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+public class BufferedTextOutputTest {
+
+  /**
+   * Counts the flushes and records whether the stream was closed.
+   */
+  private static class RecordingOutputStream extends ByteArrayOutputStream {
+    int flushes;
+    boolean closed;
+
+    @Override
+    public void flush() {
+      flushes++;
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+
+  private static TextBuffer text(final String s) {
+    return new TextBuffer(4).append(s);
+  }
+
+  @Test
+  public void testEncodesUtf8() throws IOException {
+    final var os = new RecordingOutputStream();
+    try (var out = new BufferedTextOutput(os, 4, FlushPolicy.atEnd())) {
+      out.writeRow(text("caf\u00e9,\u20ac,\ud83d\ude00\n"));
+      assertThat(out.bytesWritten(), is(15L));
+    }
+    assertThat(os.toString(StandardCharsets.UTF_8), is("caf\u00e9,\u20ac,\ud83d\ude00\n"));
+    assertThat(os.closed, is(true));
+  }
+
+  @Test
+  public void testFlushAtEnd() throws IOException {
+    final var os = new RecordingOutputStream();
+    try (var out = new BufferedTextOutput(os, 1024, FlushPolicy.atEnd())) {
+      for (var i = 0; i < 100; i++) {
+        out.writeRow(text("row\n"));
+      }
+      assertThat(os.size(), is(0));
+      assertThat(os.flushes, is(0));
+    }
+    assertThat(os.size(), is(400));
+    assertThat(os.flushes, is(1));
+  }
+
+  @Test
+  public void testBufferFull() throws IOException {
+    final var os = new RecordingOutputStream();
+    try (var out = new BufferedTextOutput(os, 16, FlushPolicy.atEnd())) {
+      for (var i = 0; i < 10; i++) {
+        out.writeRow(text("row\n"));
+      }
+      assertThat(os.size(), is(32));
+      assertThat(os.flushes, is(0));
+    }
+    assertThat(os.size(), is(40));
+  }
+
+  @Test
+  public void testFlushEveryRows() throws IOException {
+    final var os = new RecordingOutputStream();
+    try (var out = new BufferedTextOutput(os, 1024, FlushPolicy.everyRows(3))) {
+      for (var i = 0; i < 10; i++) {
+        out.writeRow(text("row\n"));
+      }
+      assertThat(os.flushes, is(3));
+      assertThat(os.size(), is(36));
+    }
+    assertThat(os.flushes, is(4));
+  }
+
+  @Test
+  public void testFlushEveryBytes() throws IOException {
+    final var os = new RecordingOutputStream();
+    try (var out = new BufferedTextOutput(os, 1024, FlushPolicy.everyBytes(10))) {
+      for (var i = 0; i < 10; i++) {
+        out.writeRow(text("row\n"));
+      }
+      assertThat(os.flushes, is(3));
+      assertThat(os.size(), is(36));
+    }
+  }
+}
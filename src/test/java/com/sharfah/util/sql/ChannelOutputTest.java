@@ -0,0 +1,123 @@
+package com.sharfah.util.sql;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ChannelOutputTest {
+
+  private static final int ROWS = 500;
+
+  @TempDir
+  Path dir;
+
+  private static ResultSet resultSet() throws SQLException {
+    final var data = new Object[ROWS][];
+    for (var i = 0; i < ROWS; i++) {
+      data[i] = new Object[] { (long) i, "Zo\u00eb " + i };
+    }
+    return MockResultSet.create(new String[] { "id", "name" }, new int[] { Types.BIGINT, Types.VARCHAR }, data);
+  }
+
+  private static String expectedCsv() {
+    final var lines = new ArrayList<String>();
+    lines.add("id,name");
+    for (var i = 0; i < ROWS; i++) {
+      lines.add(i + ",Zo\u00eb " + i);
+    }
+    return String.join(System.lineSeparator(), lines) + System.lineSeparator();
+  }
+
+  @Test
+  public void testCsvToChannel() throws SQLException {
+    final var bos = new ByteArrayOutputStream();
+    final var pool = new ByteBufferPool(64, 8);
+    final var extractor = new StreamingCsvResultSetExtractor(ChannelOutput.of(Channels.newChannel(bos), pool, 3));
+    extractor.setFlushPolicy(FlushPolicy.everyRows(100));
+    extractor.extractData(resultSet());
+    assertThat(bos.toString(StandardCharsets.UTF_8), is(expectedCsv()));
+    assertThat(pool.pooled(), is(greaterThan(0)));
+  }
+
+  @Test
+  public void testCsvToFileChannel() throws SQLException, IOException {
+    final var file = dir.resolve("out.csv");
+    final var channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    final var reported = new ArrayList<ExportStats>();
+    final var extractor = new StreamingCsvResultSetExtractor(ChannelOutput.of(channel, new ByteBufferPool(100, 4), 4));
+    extractor.setExportListener(reported::add);
+    extractor.extractData(resultSet());
+    assertThat(Files.readString(file), is(expectedCsv()));
+    assertThat(channel.isOpen(), is(false));
+    assertThat(reported.get(0).getBytes(), is(Files.size(file)));
+  }
+
+  @Test
+  public void testCsvToMappedFile() throws SQLException, IOException {
+    final var file = dir.resolve("out.csv");
+    Files.writeString(file, "x".repeat(100_000));
+    final var reported = new ArrayList<ExportStats>();
+    final var extractor = new StreamingCsvResultSetExtractor(ChannelOutput.mapped(file, 1000));
+    extractor.setExportListener(reported::add);
+    extractor.extractData(resultSet());
+    assertThat(Files.readString(file), is(expectedCsv()));
+    assertThat(reported.get(0).getBytes(), is(Files.size(file)));
+  }
+
+  @Test
+  public void testJsonToMappedFile() throws SQLException, IOException {
+    final var file = dir.resolve("out.json");
+    new StreamingJsonResultSetExtractor(ChannelOutput.mapped(file, 333)).extractData(resultSet());
+    final var json = new ObjectMapper().readTree(file.toFile());
+    assertThat(json.size(), is(ROWS));
+    assertThat(json.get(ROWS - 1).get("name").asText(), is("Zo\u00eb " + (ROWS - 1)));
+  }
+
+  @Test
+  public void testTinyBuffers() throws SQLException, IOException {
+    final var file = dir.resolve("out.csv");
+    new StreamingCsvResultSetExtractor(ChannelOutput.mapped(file, 1)).extractData(resultSet());
+    assertThat(Files.readString(file), is(expectedCsv()));
+    final var bos = new ByteArrayOutputStream();
+    new StreamingCsvResultSetExtractor(ChannelOutput.of(Channels.newChannel(bos), new ByteBufferPool(1, 4), 2))
+        .extractData(resultSet());
+    assertThat(bos.toString(StandardCharsets.UTF_8), is(expectedCsv()));
+  }
+
+  @Test
+  public void testCompressedToChannel()throws SQLException, IOException {
+    final var file = dir.resolve("out.csv.gz");
+    final var extractor = new StreamingCsvResultSetExtractor(
+        ChannelOutput.of(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)));
+    extractor.setCompression(Compression.gzip());
+    extractor.extractData(resultSet());
+    try (var in = new GZIPInputStream(Files.newInputStream(file))) {
+      assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8), is(expectedCsv()));
+    }
+  }
+
+  @Test
+  public void testInvalidArguments() {
+    assertThrows(IllegalArgumentException.class, () -> new ByteBufferPool(0, 1));
+    assertThrows(IllegalArgumentException.class, () -> ChannelOutput.mapped(dir.resolve("x"), 0));
+  }
+}
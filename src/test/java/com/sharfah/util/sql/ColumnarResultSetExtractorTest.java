@@ -0,0 +1,125 @@
+package com.sharfah.util.sql;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class ColumnarResultSetExtractorTest {
+
+  private static List<List<Object>> readAll(final byte[] bytes) throws IOException {
+    final var rows = new ArrayList<List<Object>>();
+    try (var reader = new ColumnarReader(new ByteArrayInputStream(bytes))) {
+      ColumnarReader.RowGroup group;
+      while ((group = reader.next()) != null) {
+        for (var r = 0; r < group.getRowCount(); r++) {
+          final var row = new ArrayList<Object>();
+          for (var c = 0; c < reader.getColumnCount(); c++) {
+            row.add(group.getObject(c, r));
+          }
+          rows.add(row);
+        }
+      }
+      assertThat(reader.getTotalRows(), is((long) rows.size()));
+    }
+    return rows;
+  }
+
+  @Test
+  public void testRoundTrip() throws SQLException, IOException {
+    final var bos = new ByteArrayOutputStream();
+    final var extractor = new ColumnarResultSetExtractor(bos);
+    extractor.setRowGroupSize(2);
+    final var ts = Timestamp.valueOf("2020-01-02 03:04:05.123456");
+    final var rs = MockResultSet.create(new String[] { "id", "price", "ratio", "amount", "active", "name", "day", "at" },
+        new int[] { Types.BIGINT, Types.DOUBLE, Types.REAL, Types.DECIMAL, Types.BOOLEAN, Types.VARCHAR, Types.DATE, Types.TIMESTAMP },
+        new Object[][] {
+          { 1L, 1.5, 0.1f, new BigDecimal("10.25"), true, "Alice", new Date(0), ts },
+          { -42L, -0.001, 2.5f, new BigDecimal("-3"), false, "Zo\u00eb", new Date(86_400_000L), ts },
+          { null, null, null, null, null, null, null, null },
+          { Long.MIN_VALUE, 1e20, 1e10f, BigDecimal.ZERO, true, "", new Date(-86_400_000L), new Timestamp(-1) }
+      });
+    extractor.extractData(rs);
+
+    try (var reader = new ColumnarReader(new ByteArrayInputStream(bos.toByteArray()))) {
+      assertThat(reader.getColumnCount(), is(8));
+      assertThat(reader.getColumnName(5), is("name"));
+      assertThat(reader.getColumnType(3), is(ColumnType.DECIMAL));
+    }
+    final var rows = readAll(bos.toByteArray());
+    assertThat(rows.size(), is(4));
+    assertThat(rows.get(0), contains(1L, 1.5, 0.1f, new BigDecimal("10.25"), true, "Alice", new Date(0), ts));
+    assertThat(rows.get(1), contains(-42L, -0.001, 2.5f, new BigDecimal("-3"), false, "Zo\u00eb", new Date(86_400_000L), ts));
+    assertThat(rows.get(2), everyItem(nullValue()));
+    assertThat(rows.get(3), contains(Long.MIN_VALUE, 1e20, 1e10f, BigDecimal.ZERO, true, "", new Date(-86_400_000L), new Timestamp(-1)));
+  }
+
+  @Test
+  public void testEmptyResultSet() throws SQLException, IOException {
+    final var bos = new ByteArrayOutputStream();
+    final var extractor = new ColumnarResultSetExtractor(bos);
+    final var rs = MockResultSet.create(new String[] { "name", "age" },
+        new int[] { Types.VARCHAR, Types.INTEGER },
+        new Object[][] {});
+    extractor.extractData(rs);
+    try (var reader = new ColumnarReader(new ByteArrayInputStream(bos.toByteArray()))) {
+      assertThat(reader.getColumnCount(), is(2));
+      assertThat(reader.next(), is(nullValue()));
+      assertThat(reader.getTotalRows(), is(0L));
+    }
+  }
+
+  @Test
+  public void testRepeatedValuesAreCompact() throws SQLException, IOException {
+    final var data = new Object[1000][];
+    for (var i = 0; i < data.length; i++) {
+      data[i] = new Object[] { i < 500 ? 1L : 2L, i % 3 == 0 ? "red" : i % 3 == 1 ? "green" : null };
+    }
+    final var bos = new ByteArrayOutputStream();
+    new ColumnarResultSetExtractor(bos).extractData(
+        MockResultSet.create(new String[] { "status", "colour" }, new int[] { Types.INTEGER, Types.VARCHAR }, data));
+
+    // two runs, a two-entry dictionary, one byte per index and a null bitmap
+    assertThat(bos.size(), is(lessThan(1000)));
+    final var rows = readAll(bos.toByteArray());
+    assertThat(rows.size(), is(1000));
+    for (var i = 0; i < data.length; i++) {
+      assertThat(rows.get(i), contains(data[i]));
+    }
+  }
+
+  @Test
+  public void testPipelined() throws SQLException, IOException {
+    final var data = new Object[100][];
+    for (var i = 0; i < data.length; i++) {
+      data[i] = new Object[] { (long) i, "name" + i };
+    }
+    final var bos = new ByteArrayOutputStream();
+    final var extractor = new ColumnarResultSetExtractor(bos);
+    extractor.setRowGroupSize(7);
+    extractor.setPipelineCapacity(4);
+    extractor.extractData(MockResultSet.create(new String[] { "id", "name" },
+        new int[] { Types.BIGINT, Types.VARCHAR }, data));
+    final var rows = readAll(bos.toByteArray());
+    for (var i = 0; i < data.length; i++) {
+      assertThat(rows.get(i), contains(data[i]));
+    }
+  }
+
+  @Test
+  public void testNotColumnar() {
+    assertThrows(IOException.class, () -> new ColumnarReader(new ByteArrayInputStream("a,b\n".getBytes())));
+  }
+}
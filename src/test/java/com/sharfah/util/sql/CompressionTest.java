@@ -0,0 +1,175 @@
+package com.sharfah.util.sql;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.jupiter.api.Test;
+
+public class CompressionTest {
+
+  private static byte[] sample(final int lines) {
+    final var sb = new StringBuilder();
+    for (var i = 0; i < lines; i++) {
+      sb.append(i).append(",name").append(i % 100).append(",").append(i * 31 % 977).append('\n');
+    }
+    return sb.toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static byte[] compress(final Compression compression, final byte[] data,
+      final int writeSize) throws IOException {
+    final var bos = new ByteArrayOutputStream();
+    try (var os = compression.wrap(bos)) {
+      for (var off = 0; off < data.length; off += writeSize) {
+        os.write(data, off, Math.min(writeSize, data.length - off));
+      }
+    }
+    return bos.toByteArray();
+  }
+
+  private static byte[] gunzip(final byte[] data) throws IOException {
+    try (var is = new GZIPInputStream(new ByteArrayInputStream(data))) {
+      return is.readAllBytes();
+    }
+  }
+
+  private static byte[] inflate(final byte[] data) throws IOException {
+    try (var is = new InflaterInputStream(new ByteArrayInputStream(data))) {
+      return is.readAllBytes();
+    }
+  }
+
+  @Test
+  public void testGzip() throws IOException {
+    final var data = sample(10_000);
+    final var compressed = compress(Compression.gzip().withBufferSize(512), data, 1000);
+    assertThat(compressed.length, is(lessThan(data.length / 3)));
+    assertThat(gunzip(compressed), is(data));
+  }
+
+  @Test
+  public void testDeflate() throws IOException {
+    final var data = sample(10_000);
+    final var compressed = compress(Compression.deflate().withLevel(9), data, 777);
+    assertThat(inflate(compressed), is(data));
+  }
+
+  @Test
+  public void testEmpty() throws IOException {
+    assertThat(gunzip(compress(Compression.gzip(), new byte[0], 1)), is(new byte[0]));
+    assertThat(gunzip(compress(Compression.gzip().withParallelism(2, 100), new byte[0], 1)),
+        is(new byte[0]));
+  }
+
+  @Test
+  public void testSyncFlushInterval() throws IOException {
+    final var data = sample(1000);
+    final var bos = new ByteArrayOutputStream();
+    final var os = Compression.deflate().withSyncFlushInterval(1).wrap(bos);
+    os.write(data);
+    // everything written so far can be decompressed without the end of the stream
+    final var inflater = new Inflater();
+    inflater.setInput(bos.toByteArray());
+    final var out = new byte[data.length];
+    var n = 0;
+    try {
+      while (n < data.length) {
+        final var read = inflater.inflate(out, n, out.length - n);
+        if (read == 0) {
+          break;
+        }
+        n += read;
+      }
+    } catch (final DataFormatException e) {
+      fail(e);
+    }
+    assertThat(n, is(data.length));
+    assertThat(out, is(data));
+    os.close();
+  }
+
+  @Test
+  public void testFlushSyncFlushes() throws IOException {
+    final var bos = new ByteArrayOutputStream();
+    final var os = Compression.gzip().wrap(bos);
+    os.write("hello".getBytes(StandardCharsets.UTF_8));
+    final var before = bos.size();
+    os.flush();
+    assertThat(bos.size(), is(greaterThan(before)));
+    os.close();
+    assertThat(new String(gunzip(bos.toByteArray()), StandardCharsets.UTF_8), is("hello"));
+  }
+
+  @Test
+  public void testParallelGzip() throws IOException {
+    final var data = sample(50_000);
+    final var compressed = compress(Compression.gzip().withParallelism(4, 10_000), data, 4096);
+    assertThat(gunzip(compressed), is(data));
+    // each block is a gzip member of its own
+    var members = 0;
+    for (var i = 0; i + 2 < compressed.length; i++) {
+      if (compressed[i] == 0x1f && compressed[i + 1] == (byte) 0x8b && compressed[i + 2] == 8) {
+        members++;
+      }
+    }
+    assertThat(members, is(greaterThanOrEqualTo(data.length / 10_000)));
+  }
+
+  @Test
+  public void testParallelGzipExecutor() throws IOException {
+    final var tasks = new AtomicInteger();
+    final var compression = Compression.gzip().withParallelism(2, 1000).withExecutor(task -> {
+      tasks.incrementAndGet();
+      task.run();
+    });
+    final var data = sample(1000);
+    final var bos = new ByteArrayOutputStream();
+    try (var os = compression.wrap(bos)) {
+      for (final var b : data) {
+        os.write(b);
+      }
+    }
+    assertThat(gunzip(bos.toByteArray()), is(data));
+    assertThat(tasks.get(), is((data.length + 999) / 1000));
+  }
+
+  @Test
+  public void testInvalid() {
+    assertThrows(IllegalArgumentException.class, () -> Compression.gzip().withLevel(10));
+    assertThrows(IllegalArgumentException.class, () -> Compression.gzip().withBufferSize(0));
+    assertThrows(IllegalArgumentException.class, () -> Compression.deflate().withParallelism(2, 100));
+  }
+
+  @Test
+  public void testCompressedExtractors() throws IOException, SQLException {
+    final var columns = new String[] { "name", "age" };
+    final var types = new int[] { Types.VARCHAR, Types.INTEGER };
+    final var data = new Object[][] { { "Alice", 20 }, { "Bob", 35 } };
+
+    final var csv = new ByteArrayOutputStream();
+    final var csvExtractor = new StreamingCsvResultSetExtractor(csv);
+    csvExtractor.setCompression(Compression.gzip());
+    csvExtractor.extractData(MockResultSet.create(columns, types, data));
+    assertThat(new String(gunzip(csv.toByteArray())),
+        is(String.join(System.lineSeparator(), "name,age", "Alice,20", "Bob,35") + System.lineSeparator()));
+
+    final var json = new ByteArrayOutputStream();
+    final var jsonExtractor = new StreamingJsonResultSetExtractor(json);
+    jsonExtractor.setCompression(Compression.gzip().withParallelism(2, 8));
+    jsonExtractor.extractData(MockResultSet.create(columns, types, data));
+    assertThat(new String(gunzip(json.toByteArray())),
+        is("[{\"name\":\"Alice\",\"age\":20},{\"name\":\"Bob\",\"age\":35}]"));
+  }
+}
@@ -0,0 +1,141 @@
+package com.sharfah.util.sql;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.Random;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public class CsvBulkLoaderTest {
+
+  private static final int ROWS = 1000;
+  private static final String COLUMNS = "id bigint primary key, name varchar(50), price decimal(10, 2), "
+      + "ratio double, active boolean, born date, seen timestamp";
+  private static final String SELECT = "select id, name, price, ratio, active, born, seen from %s order by id";
+
+  private static JdbcDataSource dataSource;
+  private static JdbcTemplate jdbcTemplate;
+
+  @TempDir
+  Path dir;
+
+  @BeforeAll
+  public static void setUp() {
+    dataSource = new JdbcDataSource();
+    dataSource.setURL("jdbc:h2:mem:bulk;DB_CLOSE_DELAY=-1");
+    jdbcTemplate = new JdbcTemplate(dataSource);
+    jdbcTemplate.execute("create table source (" + COLUMNS + ")");
+    jdbcTemplate.execute("create table target (" + COLUMNS + ")");
+    jdbcTemplate.execute("insert into source select x, "
+        + "casewhen(mod(x, 7) = 0, null, casewhen(mod(x, 5) = 0, '', 'name ' || x || ', \"quoted\"' || casewhen(mod(x, 3) = 0, char(10) || 'line', ''))), "
+        + "x / 100.0, x / 3.0, mod(x, 2) = 0, dateadd('day', x, date '2000-01-01'), "
+        + "dateadd('millisecond', x * 1001, timestamp '2020-01-01 00:00:00') "
+        + "from system_range(1, " + ROWS + ")");
+  }
+
+  @AfterAll
+  public static void tearDown() {
+    jdbcTemplate.execute("drop table source");
+    jdbcTemplate.execute("drop table target");
+  }
+
+  @BeforeEach
+  public void truncate() {
+    jdbcTemplate.execute("truncate table target");
+  }
+
+  private Path export() throws IOException {
+    final var file = dir.resolve("source.csv");
+    try (var os = Files.newOutputStream(file)) {
+      jdbcTemplate.query(String.format(SELECT, "source"), new StreamingCsvResultSetExtractor(os));
+    }
+    return file;
+  }
+
+  @Test
+  public void testLoad() throws IOException {
+    final var loader = new CsvBulkLoader(dataSource, "target");
+    loader.setChunkSize(500);
+    loader.setConnections(3);
+    loader.setBatchSize(7);
+    assertThat(loader.load(export()), is((long) ROWS));
+    assertThat(jdbcTemplate.queryForList(String.format(SELECT, "target")),
+        is(jdbcTemplate.queryForList(String.format(SELECT, "source"))));
+  }
+
+  @Test
+  public void testLoadSingleChunk() throws IOException {
+    final var loader = new CsvBulkLoader(dataSource, "target");
+    loader.setConnections(4);
+    assertThat(loader.load(export()), is((long) ROWS));
+    assertThat(jdbcTemplate.queryForObject("select count(*) from target where name = ''", Long.class), is(
+        jdbcTemplate.queryForObject("select count(*) from source where name = ''", Long.class)));
+  }
+
+  @Test
+  public void testHeaderOnly() throws IOException {
+    final var file = dir.resolve("empty.csv");
+    Files.writeString(file, "id,name" + System.lineSeparator());
+    assertThat(new CsvBulkLoader(dataSource, "target").load(file), is(0L));
+  }
+
+  @Test
+  public void testInvalidRecord() throws IOException, SQLException {
+    final var file = dir.resolve("invalid.csv");
+    Files.writeString(file, "id,name\n1,a\n2,b,c\n");
+    final var e = assertThrows(RuntimeException.class, () -> new CsvBulkLoader(dataSource, "target").load(file));
+    assertThat(e.getCause(), is(instanceOf(IOException.class)));
+  }
+
+  @Test
+  public void testHeaderColumns() throws IOException {
+    final var file = dir.resolve("columns.csv");
+    Files.writeString(file, "NAME,Id\na,1\n");
+    assertThat(new CsvBulkLoader(dataSource, "target").load(file), is(1L));
+    assertThat(jdbcTemplate.queryForObject("select name from target where id = 1", String.class), is("a"));
+    for (final var header : new String[] { "id,colour", "\"id) values (1); drop table target; --\"", "id,ID" }) {
+      Files.writeString(file, header + "\n1\n");
+      final var e = assertThrows(RuntimeException.class, () -> new CsvBulkLoader(dataSource, "target").load(file));
+      assertThat(e.getCause(), is(instanceOf(IOException.class)));
+    }
+    assertThat(jdbcTemplate.queryForObject("select count(*) from target", Long.class), is(1L));
+  }
+
+  @Test
+  public void testLobs() throws IOException {
+    jdbcTemplate.execute("create table lob_source (id bigint primary key, doc clob, data blob)");
+    jdbcTemplate.execute("create table lob_target (id bigint primary key, doc clob, data blob)");
+    try {
+      final var text = "line, \"quoted\"\n".repeat(100_000);
+      final var bytes = new byte[1_000_000];
+      new Random(0).nextBytes(bytes);
+      jdbcTemplate.update("insert into lob_source values (1, ?, ?), (2, null, null), (3, ?, ?)", text, bytes,
+          "", new byte[0]);
+      final var file = dir.resolve("lobs.csv");
+      try (var os = Files.newOutputStream(file)) {
+        jdbcTemplate.query("select id, doc, data from lob_source order by id", new StreamingCsvResultSetExtractor(os));
+      }
+      assertThat(new CsvBulkLoader(dataSource, "lob_target").load(file), is(3L));
+      assertThat(jdbcTemplate.queryForObject("select doc from lob_target where id = 1", String.class), is(text));
+      assertThat(jdbcTemplate.queryForObject("select data from lob_target where id = 1", byte[].class), is(bytes));
+      assertThat(jdbcTemplate.queryForObject("select count(*) from lob_target where doc is null and data is null", Long.class), is(1L));
+      assertThat(jdbcTemplate.queryForObject("select doc from lob_target where id = 3", String.class), is(""));
+      assertThat(jdbcTemplate.queryForObject("select data from lob_target where id = 3", byte[].class), is(new byte[0]));
+    } finally {
+      jdbcTemplate.execute("drop table lob_source");
+      jdbcTemplate.execute("drop table lob_target");
+    }
+  }
+}
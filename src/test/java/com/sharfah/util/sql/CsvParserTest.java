@@ -0,0 +1,65 @@
+package com.sharfah.util.sql;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+public class CsvParserTest {
+
+  private static CsvParser parser(final String csv) {
+    return new CsvParser(ByteBuffer.wrap(csv.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  public void testRecords() throws IOException {
+    final var parser = parser("a,\"b,c\",\"say \"\"hi\"\"\"\r\n,\"\",\"two\nlines\"\nZo\u00eb,x,y");
+    assertThat(parser.next(), is(true));
+    assertThat(parser.fieldCount(), is(3));
+    assertThat(parser.getString(0), is("a"));
+    assertThat(parser.getString(1), is("b,c"));
+    assertThat(parser.getString(2), is("say \"hi\""));
+
+    assertThat(parser.next(), is(true));
+    assertThat(parser.isNull(0), is(true));
+    assertThat(parser.isNull(1), is(false));
+    assertThat(parser.getString(1), is(""));
+    assertThat(parser.getString(2), is("two\nlines"));
+
+    assertThat(parser.next(), is(true));
+    assertThat(parser.getString(0), is("Zo\u00eb"));
+    assertThat(parser.next(), is(false));
+  }
+
+  @Test
+  public void testLongs() throws IOException {
+    final var parser = parser("0,-42,+7,9223372036854775807,-9223372036854775808,00012\n");
+    parser.next();
+    assertThat(parser.getLong(0), is(0L));
+    assertThat(parser.getLong(1), is(-42L));
+    assertThat(parser.getLong(2), is(7L));
+    assertThat(parser.getLong(3), is(Long.MAX_VALUE));
+    assertThat(parser.getLong(4), is(Long.MIN_VALUE));
+    assertThat(parser.getLong(5), is(12L));
+  }
+
+  @Test
+  public void testInvalidLongs() throws IOException {
+    final var parser = parser("9223372036854775808,1.5,-\n");
+    parser.next();
+    assertThrows(NumberFormatException.class, () -> parser.getLong(0));
+    assertThrows(NumberFormatException.class, () -> parser.getLong(1));
+    assertThrows(NumberFormatException.class, () -> parser.getLong(2));
+  }
+
+  @Test
+  public void testMalformed() {
+    assertThrows(IOException.class, () -> parser("\"unterminated\n").next());
+    assertThrows(IOException.class, () -> parser("\"a\"b\n").next());
+  }
+}
@@ -0,0 +1,144 @@
+package com.sharfah.util.sql;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public class ExportCacheTest {
+
+  private static final String SELECT = "select id, name from people where id <= ? order by id";
+
+  private static JdbcTemplate jdbcTemplate;
+
+  @BeforeAll
+  public static void setUp() {
+    jdbcTemplate = new JdbcTemplate(TestDatabase.people("exportcache", 10000));
+  }
+
+  @AfterAll
+  public static void tearDown() {
+    TestDatabase.drop(jdbcTemplate.getDataSource());
+  }
+
+  private static String export(final ExportCache cache, final ExportFormat format, final Object... args) {
+    final var os = new ByteArrayOutputStream();
+    cache.export(jdbcTemplate, SELECT, format, os, args);
+    return os.toString(StandardCharsets.UTF_8);
+  }
+
+  private static String expected(final ExportFormat format, final long maxId) {
+    final var os = new ByteArrayOutputStream();
+    final var factory = new ExtractorFactory();
+    if (format == ExportFormat.CSV) {
+      jdbcTemplate.query(SELECT, factory.csv(os), maxId);
+    } else {
+      final var extractor = factory.json(os);
+      extractor.setLayout(format == ExportFormat.NDJSON ? JsonLayout.NDJSON : JsonLayout.OBJECTS);
+      jdbcTemplate.query(SELECT, extractor, maxId);
+    }
+    return os.toString(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testHit() {
+    for (final var direct : new boolean[] { false, true }) {
+      final var cache = new ExportCache(new ExtractorFactory());
+      cache.setDirect(direct);
+      final var first = export(cache, ExportFormat.CSV, 10000L);
+      assertThat(first, is(expected(ExportFormat.CSV, 10000L)));
+      assertThat(cache.getMisses(), is(1L));
+      assertThat(cache.getCachedBytes(), is((long) first.length()));
+      assertThat(export(cache, ExportFormat.CSV, 10000L), is(first));
+      assertThat(cache.getHits(), is(1L));
+      assertThat(cache.getEntryCount(), is(1));
+    }
+  }
+
+  @Test
+  public void testKeyedByArgumentsAndFormat() {
+    final var cache = new ExportCache(new ExtractorFactory());
+    assertThat(export(cache, ExportFormat.CSV, 5L), is(expected(ExportFormat.CSV, 5L)));
+    assertThat(export(cache, ExportFormat.CSV, 6L), is(expected(ExportFormat.CSV, 6L)));
+    assertThat(export(cache, ExportFormat.JSON, 5L), is(expected(ExportFormat.JSON, 5L)));
+    assertThat(export(cache, ExportFormat.NDJSON, 5L), is(expected(ExportFormat.NDJSON, 5L)));
+    assertThat(cache.getMisses(), is(4L));
+    assertThat(export(cache, ExportFormat.NDJSON, 5L), is(expected(ExportFormat.NDJSON, 5L)));
+    assertThat(cache.getHits(), is(1L));
+    assertThat(cache.getEntryCount(), is(4));
+  }
+
+  @Test
+  public void testInvalidate() {
+    final var cache = new ExportCache(new ExtractorFactory());
+    export(cache, ExportFormat.CSV, 5L);
+    export(cache, ExportFormat.CSV, 6L);
+    export(cache, ExportFormat.JSON, 5L);
+    assertThat(cache.invalidate(SELECT, ExportFormat.CSV, 5L), is(true));
+    assertThat(cache.invalidate(SELECT, ExportFormat.CSV, 5L), is(false));
+    assertThat(cache.getEntryCount(), is(2));
+    assertThat(cache.invalidate(SELECT), is(2));
+    assertThat(cache.getCachedBytes(), is(0L));
+    export(cache, ExportFormat.CSV, 5L);
+    cache.invalidateAll();
+    assertThat(cache.getEntryCount(), is(0));
+    export(cache, ExportFormat.CSV, 5L);
+    assertThat(cache.getHits(), is(0L));
+  }
+
+  @Test
+  public void testTimeToLive() throws InterruptedException {
+    final var cache = new ExportCache(new ExtractorFactory());
+    cache.setTimeToLive(Duration.ofMillis(50));
+    export(cache, ExportFormat.CSV, 5L);
+    Thread.sleep(100);
+    assertThat(export(cache, ExportFormat.CSV, 5L), is(expected(ExportFormat.CSV, 5L)));
+    assertThat(cache.getHits(), is(0L));
+    assertThat(cache.getMisses(), is(2L));
+  }
+
+  @Test
+  public void testEviction() {
+    final var size = expected(ExportFormat.CSV, 100L).length();
+    final var cache = new ExportCache(new ExtractorFactory(), size * 2L);
+    cache.setMaxEntryBytes(size);
+    export(cache, ExportFormat.CSV, 100L);
+    export(cache, ExportFormat.JSON, 5L);
+    // used more recently than the JSON export, so it is kept
+    export(cache, ExportFormat.CSV, 100L);
+    export(cache, ExportFormat.CSV, 99L);
+    assertThat(cache.getEntryCount(), is(2));
+    assertThat(cache.getCachedBytes(), is(lessThanOrEqualTo(size * 2L)));
+    export(cache, ExportFormat.CSV, 100L);
+    assertThat(cache.getHits(), is(2L));
+    // too large to be cached, but still exported
+    assertThat(export(cache, ExportFormat.CSV, 10000L), is(expected(ExportFormat.CSV, 10000L)));
+    assertThat(cache.getEntryCount(), is(2));
+  }
+
+  @Test
+  public void testCompressed() throws IOException {
+    final var factory = new ExtractorFactory();
+    factory.setCompression(Compression.gzip());
+    final var cache = new ExportCache(factory);
+    final var first = new ByteArrayOutputStream();
+    cache.export(jdbcTemplate, SELECT, ExportFormat.CSV, first, 1000L);
+    final var second = new ByteArrayOutputStream();
+    assertThat(cache.export(jdbcTemplate, SELECT, ExportFormat.CSV, second, 1000L), is(true));
+    assertThat(second.toByteArray(), is(first.toByteArray()));
+    assertThat(cache.getCachedBytes(), is((long) first.size()));
+    try (var in = new GZIPInputStream(new ByteArrayInputStream(second.toByteArray()))) {
+      assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8), is(expected(ExportFormat.CSV, 1000L)));
+    }
+  }
+}
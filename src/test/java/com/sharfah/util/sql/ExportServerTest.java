@@ -0,0 +1,194 @@
+package com.sharfah.util.sql;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public class ExportServerTest {
+
+  private static final String[] NAMES = { "id", "name" };
+  private static final int[] TYPES = { Types.BIGINT, Types.VARCHAR };
+
+  private static JdbcTemplate jdbcTemplate;
+
+  private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+  private ExportServer server;
+
+  @BeforeAll
+  public static void setUpDatabase() {
+    jdbcTemplate = new JdbcTemplate(TestDatabase.people("exportserver", 100));
+  }
+
+  @AfterAll
+  public static void tearDownDatabase() {
+    TestDatabase.drop(jdbcTemplate.getDataSource());
+  }
+
+  @BeforeEach
+  public void setUp() {
+    server = new ExportServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4);
+    server.register("people", (parameters, extractor) -> extractor.extractData(people(1000)));
+    server.register("person", ExportServer.Query.of(jdbcTemplate,
+        "select id, name from people where id <= ? order by id", "maxId"));
+    server.start();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    server.close();
+  }
+
+  private static InMemoryResultSet people(final long rows) {
+    return InMemoryResultSet.generate(NAMES, TYPES, rows,
+        (row, values) -> values.setLong(1, row).setObject(2, "name \"" + row + "\""));
+  }
+
+  private static String expected(final ExportFormat format, final ResultSet rs) {
+    final var os = new ByteArrayOutputStream();
+    try {
+      new ExtractorFactory().extractor(format, os).extractData(rs);
+    } catch (final Exception e) {
+      throw new RuntimeException(e);
+    }
+    return os.toString(StandardCharsets.UTF_8);
+  }
+
+  private HttpRequest.Builder request(final String pathAndQuery) {
+    return HttpRequest.newBuilder(URI.create("http://localhost:" + server.getAddress().getPort() + pathAndQuery));
+  }
+
+  private HttpResponse<String> get(final String pathAndQuery) throws IOException, InterruptedException {
+    return client.send(request(pathAndQuery).build(), HttpResponse.BodyHandlers.ofString());
+  }
+
+  @Test
+  public void testFormats() throws Exception {
+    for (final var format : ExportFormat.values()) {
+      final var response = get("/people?format=" + format.name().toLowerCase());
+      assertThat(response.statusCode(), is(200));
+      assertThat(response.headers().firstValue("Transfer-Encoding").orElse(null), is("chunked"));
+      assertThat(response.headers().firstValue("Content-Encoding").isPresent(), is(false));
+      assertThat(response.body(), is(expected(format, people(1000))));
+    }
+    final var response = get("/people");
+    assertThat(response.headers().firstValue("Content-Type").orElse(null), is("text/csv; charset=utf-8"));
+    assertThat(response.body(), is(expected(ExportFormat.CSV, people(1000))));
+  }
+
+  @Test
+  public void testGzip() throws Exception {
+    server.setCompression(Compression.gzip());
+    final var response = client.send(request("/people?format=ndjson")
+        .header("Accept-Encoding", "br, gzip;q=0.5").build(), HttpResponse.BodyHandlers.ofInputStream());
+    assertThat(response.headers().firstValue("Content-Encoding").orElse(null), is("gzip"));
+    try (var in = new GZIPInputStream(response.body())) {
+      assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8),
+          is(expected(ExportFormat.NDJSON, people(1000))));
+    }
+    final var refused = client.send(request("/people").header("Accept-Encoding", "gzip;q=0").build(),
+        HttpResponse.BodyHandlers.ofString());
+    assertThat(refused.headers().firstValue("Content-Encoding").isPresent(), is(false));
+    assertThat(refused.body(), is(expected(ExportFormat.CSV, people(1000))));
+  }
+
+  @Test
+  public void testQueryParameters() throws Exception {
+    final var response = get("/person?maxId=2&format=json");
+    assertThat(response.statusCode(), is(200));
+    assertThat(response.headers().firstValue("Content-Type").orElse(null), is("application/json"));
+    assertThat(response.body(), is(expected(ExportFormat.JSON,
+        InMemoryResultSet.of(new String[] { "ID", "NAME" }, TYPES,
+            new Object[][] { { 0L, "name0" }, { 1L, "name1" }, { 2L, "name2" } }))));
+    final var missing = get("/person");
+    assertThat(missing.statusCode(), is(400));
+    assertThat(missing.body(), is("Missing parameter: maxId"));
+  }
+
+  @Test
+  public void testErrors() throws Exception {
+    assertThat(get("/unknown").statusCode(), is(404));
+    assertThat(get("/people?format=xml").statusCode(), is(400));
+    assertThat(get("/people?format=").statusCode(), is(400));
+    final var post = client.send(request("/people").POST(HttpRequest.BodyPublishers.noBody()).build(),
+        HttpResponse.BodyHandlers.ofString());
+    assertThat(post.statusCode(), is(405));
+    assertThat(post.headers().firstValue("Allow").orElse(null), is("GET"));
+    server.register("broken", ExportServer.Query.of(jdbcTemplate, "select * from missing"));
+    assertThat(get("/broken").statusCode(), is(500));
+  }
+
+  @Test
+  public void testFailureAfterCommitTruncates() {
+    server.register("failing", (parameters, extractor) -> extractor.extractData(
+        InMemoryResultSet.generate(NAMES, TYPES, 1_000_000, (row, values) -> {
+          if (row == 100_000) {
+            throw new IllegalStateException("failed");
+          }
+          values.setLong(1, row);
+        })));
+    assertThrows(IOException.class, () -> get("/failing"));
+  }
+
+  @Test
+  public void testDisconnectCancelsStatement() throws Exception {
+    final var cancelled = new CountDownLatch(1);
+    final var statement = (Statement) Proxy.newProxyInstance(getClass().getClassLoader(),
+        new Class<?>[] { Statement.class }, (proxy, method, args) -> {
+          if (method.getName().equals("cancel")) {
+            cancelled.countDown();
+          }
+          return null;
+        });
+    server.register("endless", (parameters, extractor) -> extractor.extractData(
+        withStatement(people(Long.MAX_VALUE), statement)));
+    final var response = client.send(request("/endless").build(), HttpResponse.BodyHandlers.ofInputStream());
+    try (InputStream in = response.body()) {
+      assertThat(in.readNBytes(1024).length, is(1024));
+    }
+    assertThat(cancelled.await(10, TimeUnit.SECONDS), is(true));
+  }
+
+  /**
+   * Returns a ResultSet which delegates to the given one but belongs to the
+   * statement.
+   */
+  private static ResultSet withStatement(final ResultSet rs, final Statement statement) {
+    return (ResultSet) Proxy.newProxyInstance(ExportServerTest.class.getClassLoader(),
+        new Class<?>[] { ResultSet.class }, (proxy, method, args) -> {
+          if (method.getName().equals("getStatement")) {
+            return statement;
+          }
+          try {
+            return method.invoke(rs, args);
+          } catch (final InvocationTargetException e) {
+            throw e.getCause();
+          }
+        });
+  }
+}
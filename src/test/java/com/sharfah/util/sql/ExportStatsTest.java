@@ -0,0 +1,146 @@
+package com.sharfah.util.sql;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+
+public class ExportStatsTest {
+
+  private static final String[] NAMES = { "id", "name" };
+  private static final int[] TYPES = { Types.BIGINT, Types.VARCHAR };
+
+  private static Object[][] data(final int rows) {
+    final var data = new Object[rows][];
+    for (var i = 0; i < rows; i++) {
+      data[i] = new Object[] { (long) i, "name" + i };
+    }
+    return data;
+  }
+
+  @Test
+  public void testExportFinished() throws SQLException {
+    final var bos = new ByteArrayOutputStream();
+    final var reported = new ArrayList<ExportStats>();
+    final var extractor = new StreamingCsvResultSetExtractor(bos);
+    extractor.setExportListener(reported::add);
+    extractor.extractData(MockResultSet.create(NAMES, TYPES, data(200)));
+
+    assertThat(reported.size(), is(1));
+    final var stats = reported.get(0);
+    assertThat(stats.getFormat(), is("csv"));
+    assertThat(stats.getColumnNames(), is(List.of("id", "name")));
+    assertThat(stats.getRows(), is(200L));
+    assertThat(stats.getBytes(), is((long) bos.size()));
+    assertThat(stats.getFetchNanos(), is(greaterThan(0L)));
+    assertThat(stats.getReadNanos(), is(greaterThan(0L)));
+    assertThat(stats.getEncodeNanos(), is(greaterThan(0L)));
+    assertThat(stats.getElapsedNanos(), is(greaterThanOrEqualTo(stats.getFetchNanos() + stats.getReadNanos())));
+    assertThat(stats.getColumnReadNanos(0), is(greaterThan(0L)));
+    assertThat(stats.getSlowestColumn(), is(oneOf("id", "name")));
+  }
+
+  @Test
+  public void testCloseTimesFlushOnce() throws IOException {
+    final var stats = ExportStats.start("csv", s -> { });
+    final var slowFlush = new OutputStream() {
+      @Override
+      public void write(final int b) {
+      }
+
+      @Override
+      public void flush() throws IOException {
+        try {
+          Thread.sleep(100);
+        } catch (final InterruptedException e) {
+          throw new IOException(e);
+        }
+      }
+    };
+    final var start = System.nanoTime();
+    new MeteredOutputStream(slowFlush, stats).close();
+    final var elapsed = System.nanoTime() - start;
+    assertThat(stats.writeNanos, is(greaterThanOrEqualTo(100_000_000L)));
+    // counting the flush twice would add more than the whole close took
+    assertThat(stats.writeNanos, is(lessThanOrEqualTo(elapsed)));
+  }
+
+  @Test
+  public void testCompressedBytes() throws SQLException {
+    final var bos = new ByteArrayOutputStream();
+    final var reported = new ArrayList<ExportStats>();
+    final var extractor = new StreamingJsonResultSetExtractor(bos);
+    extractor.setCompression(Compression.gzip());
+    extractor.setPipelineCapacity(16);
+    extractor.setExportListener(reported::add);
+    extractor.extractData(MockResultSet.create(NAMES, TYPES, data(500)));
+
+    final var stats = reported.get(0);
+    assertThat(stats.getFormat(), is("json"));
+    assertThat(stats.getRows(), is(500L));
+    assertThat(stats.getBytes(), is((long) bos.size()));
+  }
+
+  @Test
+  public void testExportFailed() throws SQLException {
+    final var failures = new ArrayList<Throwable>();
+    final var extractor = new StreamingCsvResultSetExtractor(new OutputStream() {
+      @Override
+      public void write(final int b) throws IOException {
+        throw new IOException("disk full");
+      }
+    });
+    extractor.setBufferSize(16);
+    extractor.setExportListener(new ExportListener() {
+      @Override
+      public void exportFinished(final ExportStats stats) {
+        fail("not finished");
+      }
+
+      @Override
+      public void exportFailed(final ExportStats stats, final Throwable error) {
+        failures.add(error);
+      }
+    });
+    assertThrows(RuntimeException.class,
+        () -> extractor.extractData(MockResultSet.create(NAMES, TYPES, data(10))));
+    assertThat(failures.size(), is(1));
+    assertThat(failures.get(0), is(instanceOf(IOException.class)));
+  }
+
+  @Test
+  public void testFlightRecorderEvent() throws Exception {
+    final var file = Files.createTempFile("export", ".jfr");
+    try (var recording = new Recording()) {
+      recording.enable("com.sharfah.util.sql.Export");
+      recording.start();
+      new ColumnarResultSetExtractor(new ByteArrayOutputStream())
+          .extractData(MockResultSet.create(NAMES, TYPES, data(100)));
+      recording.stop();
+      recording.dump(file);
+    }
+    final var events = RecordingFile.readAllEvents(file);
+    Files.delete(file);
+    final var exports = events.stream()
+        .filter(event -> event.getEventType().getName().equals("com.sharfah.util.sql.Export"))
+        .toArray(jdk.jfr.consumer.RecordedEvent[]::new);
+    assertThat(exports.length, is(1));
+    assertThat(exports[0].getString("format"), is("columnar"));
+    assertThat(exports[0].getLong("rows"), is(100L));
+    assertThat(exports[0].getInt("columns"), is(2));
+    assertThat(exports[0].getBoolean("failed"), is(false));
+  }
+}
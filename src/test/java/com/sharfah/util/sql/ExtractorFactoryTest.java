@@ -0,0 +1,101 @@
+package com.sharfah.util.sql;
+
+import static com.sharfah.util.hamcrest.IsEqualJSON.*;
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.io.ByteArrayOutputStream;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.core.JsonFactory;
+
+public class ExtractorFactoryTest {
+
+  private static ResultSet people() throws SQLException {
+    return MockResultSet.create(new String[] { "name", "age" },
+        new int[] { Types.VARCHAR, Types.INTEGER },
+        new Object[][] {
+          { "Alice", 20 },
+          { "Bob", 35 }
+      });
+  }
+
+  @Test
+  public void testCsv() throws SQLException {
+    final var factory = new ExtractorFactory();
+    final var bos = new ByteArrayOutputStream();
+    factory.csv(bos).extractData(people());
+    assertThat(new String(bos.toByteArray()),
+        is(String.join(System.lineSeparator(), "name,age", "Alice,20", "Bob,35") + System.lineSeparator()));
+  }
+
+  @Test
+  public void testJson() throws SQLException {
+    final var factory = new ExtractorFactory();
+    final var bos = new ByteArrayOutputStream();
+    factory.json(bos).extractData(people());
+    assertThat(new String(bos.toByteArray()),
+        equalToJSON("[{\"name\":\"Alice\",\"age\":20},{\"name\":\"Bob\",\"age\":35}]"));
+  }
+
+  @Test
+  public void testJsonFactoryWithoutCodec() throws SQLException {
+    final var factory = new ExtractorFactory(new JsonFactory());
+    final var bos = new ByteArrayOutputStream();
+    factory.json(bos).extractData(MockResultSet.create(new String[] { "name" },
+        new Object[][] { { "Alice" } }));
+    assertThat(new String(bos.toByteArray()), equalToJSON("[{\"name\":\"Alice\"}]"));
+  }
+
+  @Test
+  public void testPlansAreCached() throws SQLException {
+    final var factory = new ExtractorFactory();
+    factory.csv(new ByteArrayOutputStream()).extractData(people());
+    factory.json(new ByteArrayOutputStream()).extractData(people());
+    assertThat(factory.cachedPlans(), is(1));
+    factory.csv(new ByteArrayOutputStream()).extractData(MockResultSet.create(
+        new String[] { "name", "age" }, new Object[][] {}));
+    assertThat(factory.cachedPlans(), is(2));
+  }
+
+  @Test
+  public void testPlanCacheIsBounded() throws SQLException {
+    final var factory = new ExtractorFactory(new JsonFactory(), 1);
+    factory.csv(new ByteArrayOutputStream()).extractData(people());
+    factory.csv(new ByteArrayOutputStream()).extractData(MockResultSet.create(
+        new String[] { "name", "age" }, new Object[][] {}));
+    assertThat(factory.cachedPlans(), is(1));
+  }
+
+  @Test
+  public void testConcurrentExports() throws Exception {
+    final var factory = new ExtractorFactory();
+    final var executor = Executors.newFixedThreadPool(4);
+    try {
+      final var results = new ArrayList<Future<String>>();
+      for (var i = 0; i < 20; i++) {
+        final var rs = people();
+        results.add(executor.submit((Callable<String>) () -> {
+          final var bos = new ByteArrayOutputStream();
+          factory.json(bos).extractData(rs);
+          return new String(bos.toByteArray());
+        }));
+      }
+      for (final var result : results) {
+        assertThat(result.get(),
+            equalToJSON("[{\"name\":\"Alice\",\"age\":20},{\"name\":\"Bob\",\"age\":35}]"));
+      }
+    } finally {
+      executor.shutdown();
+    }
+    assertThat(factory.cachedPlans(), is(1));
+  }
+}
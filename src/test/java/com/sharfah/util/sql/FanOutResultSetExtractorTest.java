@@ -0,0 +1,168 @@
+package com.sharfah.util.sql;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.jupiter.api.Test;
+
+public class FanOutResultSetExtractorTest {
+
+  private static final String[] NAMES = { "id", "name", "price", "day" };
+  private static final int[] TYPES = { Types.BIGINT, Types.VARCHAR, Types.DECIMAL, Types.DATE };
+
+  private static ResultSet resultSet() throws SQLException {
+    return MockResultSet.create(NAMES, TYPES, new Object[][] {
+      { 1L, "Alice", new BigDecimal("10.25"), new Date(0) },
+      { 2L, "Bob, \"Jr\"", null, new Date(86_400_000L) },
+      { null, null, BigDecimal.ONE, null }
+    });
+  }
+
+  /**
+   * Computes a checksum of the values of the rows.
+   */
+  private static final class ChecksumSink implements RowSink {
+    private final CRC32 crc = new CRC32();
+    private int columns;
+    private long rows;
+    private boolean ended;
+    private boolean closed;
+
+    @Override
+    public void start(final ColumnPlan plan) {
+      columns = plan.getColumnCount();
+      assertThat(plan.getColumnName(1), is("name"));
+      assertThat(plan.getColumnType(2), is(ColumnType.DECIMAL));
+    }
+
+    @Override
+    public void write(final RowValues row) {
+      for (var i = 0; i < columns; i++) {
+        crc.update(String.valueOf(row.getObject(i)).getBytes(StandardCharsets.UTF_8));
+      }
+      rows++;
+    }
+
+    @Override
+    public void end() {
+      ended = true;
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+
+  @Test
+  public void testFanOut() throws SQLException, IOException {
+    final var csv = new ByteArrayOutputStream();
+    final var json = new ByteArrayOutputStream();
+    final var ndjson = new ByteArrayOutputStream();
+    final var columnar = new ByteArrayOutputStream();
+    final var checksum = new ChecksumSink();
+    final var rs = resultSet();
+    new FanOutResultSetExtractor()
+        .addCsv(csv)
+        .addJson(json, JsonLayout.OBJECTS)
+        .addJson(ndjson, JsonLayout.NDJSON)
+        .addColumnar(columnar)
+        .addSink(checksum)
+        .extractData(rs);
+
+    final var expectedCsv = new ByteArrayOutputStream();
+    new StreamingCsvResultSetExtractor(expectedCsv).extractData(resultSet());
+    assertThat(csv.toString(StandardCharsets.UTF_8), is(expectedCsv.toString(StandardCharsets.UTF_8)));
+
+    final var expectedJson = new ByteArrayOutputStream();
+    new StreamingJsonResultSetExtractor(expectedJson).extractData(resultSet());
+    assertThat(json.toString(StandardCharsets.UTF_8), is(expectedJson.toString(StandardCharsets.UTF_8)));
+
+    final var expectedNdjson = new ByteArrayOutputStream();
+    final var ndjsonExtractor = new StreamingJsonResultSetExtractor(expectedNdjson);
+    ndjsonExtractor.setLayout(JsonLayout.NDJSON);
+    ndjsonExtractor.extractData(resultSet());
+    assertThat(ndjson.toString(StandardCharsets.UTF_8), is(expectedNdjson.toString(StandardCharsets.UTF_8)));
+
+    final var expectedColumnar = new ByteArrayOutputStream();
+    new ColumnarResultSetExtractor(expectedColumnar).extractData(resultSet());
+    assertThat(columnar.toByteArray(), is(expectedColumnar.toByteArray()));
+
+    assertThat(checksum.rows, is(3L));
+    assertThat(checksum.ended, is(true));
+    assertThat(checksum.closed, is(true));
+    final var expectedCrc = new CRC32();
+    for (final var value : new String[] { "1", "Alice", "10.25", new Date(0).toString(),
+        "2", "Bob, \"Jr\"", "null", new Date(86_400_000L).toString(), "null", "null", "1", "null" }) {
+      expectedCrc.update(value.getBytes(StandardCharsets.UTF_8));
+    }
+    assertThat(checksum.crc.getValue(), is(expectedCrc.getValue()));
+  }
+
+  @Test
+  public void testPipelinedAndCompressed() throws SQLException, IOException {
+    final var factory = new ExtractorFactory();
+    factory.setPipelineCapacity(2);
+    factory.setCompression(Compression.gzip());
+    final var csv = new ByteArrayOutputStream();
+    final var json = new ByteArrayOutputStream();
+    final var stats = new ExportStats[1];
+    factory.setExportListener(s -> stats[0] = s);
+    factory.fanOut().addCsv(csv).addJson(json, JsonLayout.COLUMNS_AND_ROWS).extractData(resultSet());
+
+    final var expectedCsv = new ByteArrayOutputStream();
+    new StreamingCsvResultSetExtractor(expectedCsv).extractData(resultSet());
+    assertThat(gunzip(csv.toByteArray()), is(expectedCsv.toString(StandardCharsets.UTF_8)));
+    assertThat(gunzip(json.toByteArray()), startsWith("{\"columns\":[\"id\",\"name\",\"price\",\"day\"],\"rows\":[[1,"));
+    assertThat(stats[0].getRows(), is(3L));
+    assertThat(stats[0].getBytes(), is((long) (csv.size() + json.size())));
+  }
+
+  @Test
+  public void testAllOutputsClosedOnFailure() throws SQLException {
+    final var closed = new int[1];
+    final var failing = new OutputStream() {
+      @Override
+      public void write(final int b) throws IOException {
+        throw new IOException("disk full");
+      }
+
+      @Override
+      public void close() {
+        closed[0]++;
+      }
+    };
+    final var checksum = new ChecksumSink();
+    final var e = assertThrows(RuntimeException.class, () -> new FanOutResultSetExtractor()
+        .addSink(checksum)
+        .addCsv(failing)
+        .extractData(resultSet()));
+    assertThat(e.getCause(), is(instanceOf(IOException.class)));
+    assertThat(checksum.closed, is(true));
+    assertThat(closed[0], is(1));
+  }
+
+  private static String gunzip(final byte[] bytes) throws IOException {
+    try (var in = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+}
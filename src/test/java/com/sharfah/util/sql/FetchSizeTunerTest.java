@@ -0,0 +1,65 @@
+package com.sharfah.util.sql;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayOutputStream;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import org.junit.jupiter.api.Test;
+
+public class FetchSizeTunerTest {
+
+  @Test
+  public void testFetchSizeWithinRange() {
+    final var tuner = FetchSizeTuner.withinBudget(10_000).withFetchSizeRange(5, 50);
+    assertThat(tuner.fetchSizeFor(500), is(20));
+    assertThat(tuner.fetchSizeFor(100_000), is(5));
+    assertThat(tuner.fetchSizeFor(1), is(50));
+    assertThat(tuner.getInitialFetchSize(), is(39));
+  }
+
+  @Test
+  public void testEstimateBytes() throws SQLException {
+    final var rs = MockResultSet.create(new String[] { "id", "name" },
+        new int[] { Types.BIGINT, Types.VARCHAR },
+        new Object[][] { { 1L, "abcd" }, { 2L, null } });
+    final var row = new RowValues(new ColumnType[] { ColumnType.LONG, ColumnType.STRING });
+    rs.next();
+    row.read(rs);
+    // overhead, two references, a boxed long and a string of 4 chars
+    assertThat(FetchSizeTuner.estimateBytes(row), is(32L + 16 + 24 + 48));
+    rs.next();
+    row.read(rs);
+    assertThat(FetchSizeTuner.estimateBytes(row), is(32L + 16 + 24));
+  }
+
+  @Test
+  public void testAdjustsFetchSize() throws SQLException {
+    final var wide = "x".repeat(1000);
+    final var data = new Object[300][];
+    for (var i = 0; i < data.length; i++) {
+      data[i] = new Object[] { (long) i, i < 100 ? "" : wide };
+    }
+    final var rs = MockResultSet.create(new String[] { "id", "name" },
+        new int[] { Types.BIGINT, Types.VARCHAR }, data);
+    final var extractor = new StreamingCsvResultSetExtractor(new ByteArrayOutputStream());
+    extractor.setFetchSizeTuner(FetchSizeTuner.withinBudget(1_000_000).withSampleInterval(10));
+    extractor.extractData(rs);
+
+    // narrow rows first, then the average moves towards the wide ones
+    verify(rs).setFetchSize(1_000_000 / 112);
+    verify(rs, atLeast(3)).setFetchSize(intThat(size -> size < 1_000_000 / 112));
+    verify(rs, never()).setFetchSize(intThat(size -> size < 1_000_000 / 2200));
+  }
+
+  @Test
+  public void testInvalidArguments() {
+    assertThrows(IllegalArgumentException.class, () -> FetchSizeTuner.withinBudget(0));
+    assertThrows(IllegalArgumentException.class, () -> FetchSizeTuner.withinBudget(1).withFetchSizeRange(10, 5));
+    assertThrows(IllegalArgumentException.class, () -> FetchSizeTuner.withinBudget(1).withSampleInterval(0));
+  }
+}
@@ -0,0 +1,46 @@
+package com.sharfah.util.sql;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+
+public class FlushPolicyTest {
+
+  @Test
+  public void testAtEnd() {
+    assertThat(FlushPolicy.atEnd().shouldFlush(Long.MAX_VALUE, Long.MAX_VALUE, 0), is(false));
+  }
+
+  @Test
+  public void testEveryRows() {
+    final var policy = FlushPolicy.everyRows(10);
+    assertThat(policy.shouldFlush(9, 1000, System.nanoTime()), is(false));
+    assertThat(policy.shouldFlush(10, 0, System.nanoTime()), is(true));
+  }
+
+  @Test
+  public void testEveryBytes() {
+    final var policy = FlushPolicy.everyBytes(100);
+    assertThat(policy.shouldFlush(1000, 99, System.nanoTime()), is(false));
+    assertThat(policy.shouldFlush(1, 100, System.nanoTime()), is(true));
+  }
+
+  @Test
+  public void testEvery() {
+    final var policy = FlushPolicy.every(Duration.ofMinutes(1));
+    final var now = System.nanoTime();
+    assertThat(policy.shouldFlush(1, 1, now), is(false));
+    assertThat(policy.shouldFlush(1, 1, now - Duration.ofMinutes(2).toNanos()), is(true));
+  }
+
+  @Test
+  public void testInvalid() {
+    assertThrows(IllegalArgumentException.class, () -> FlushPolicy.everyRows(0));
+    assertThrows(IllegalArgumentException.class, () -> FlushPolicy.everyBytes(-1));
+    assertThrows(IllegalArgumentException.class, () -> FlushPolicy.every(Duration.ZERO));
+  }
+}
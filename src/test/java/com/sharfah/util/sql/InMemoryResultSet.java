@@ -0,0 +1,1654 @@
+package com.sharfah.util.sql;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.JDBCType;
+import java.sql.NClob;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Statement;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A read-only ResultSet whose rows are held in memory, or generated on
+ * demand, for driving extractors in tests and benchmarks without a database.
+ * <p>
+ * Rows come from a {@link RowGenerator}, which is asked for the values of a
+ * row each time the cursor moves onto it, so that any number of rows can be
+ * produced without holding them. Numeric and boolean values can be set as
+ * primitives, and are then read by the typed getters without boxing.
+ * <p>
+ * The cursor can be moved in any direction. Column labels are matched
+ * ignoring case. Updates are not supported.
+ *
+ * @author fahd
+ */
+public final class InMemoryResultSet implements ResultSet {
+
+  /**
+   * Sets the values of a row.
+   */
+  @FunctionalInterface
+  public interface RowGenerator {
+
+    /**
+     * Sets the values of a row. Every column starts out null.
+     *
+     * @param row the index of the row, from 0
+     * @param values the values to set
+     */
+    void generate(long row, Row values);
+  }
+
+  // how a value is held in a row
+  private static final byte NULL = 0;
+  private static final byte LONG = 1;
+  private static final byte DOUBLE = 2;
+  private static final byte OBJECT = 3;
+
+  /**
+   * The values of the current row, reused for every row.
+   */
+  public static final class Row {
+
+    private final byte[] kinds;
+    private final long[] longs;
+    private final double[] doubles;
+    private final Object[] objects;
+
+    private Row(final int columnCount) {
+      this.kinds = new byte[columnCount];
+      this.longs = new long[columnCount];
+      this.doubles = new double[columnCount];
+      this.objects = new Object[columnCount];
+    }
+
+    /**
+     * @param column the index of the column, from 1
+     * @param value the value
+     * @return this row
+     */
+    public Row setLong(final int column, final long value) {
+      kinds[column - 1] = LONG;
+      longs[column - 1] = value;
+      return this;
+    }
+
+    /**
+     * @param column the index of the column, from 1
+     * @param value the value
+     * @return this row
+     */
+    public Row setDouble(final int column, final double value) {
+      kinds[column - 1] = DOUBLE;
+      doubles[column - 1] = value;
+      return this;
+    }
+
+    /**
+     * @param column the index of the column, from 1
+     * @param value the value, held as 1 or 0
+     * @return this row
+     */
+    public Row setBoolean(final int column, final boolean value) {
+      return setLong(column, value ? 1 : 0);
+    }
+
+    /**
+     * @param column the index of the column, from 1
+     * @param value the value, or null
+     * @return this row
+     */
+    public Row setObject(final int column, final Object value) {
+      kinds[column - 1] = value == null ? NULL : OBJECT;
+      objects[column - 1] = value;
+      return this;
+    }
+
+    /**
+     * @param column the index of the column, from 1
+     * @return this row
+     */
+    public Row setNull(final int column) {
+      return setObject(column, null);
+    }
+
+    private void clear() {
+      for (var i = 0; i < kinds.length; i++) {
+        kinds[i] = NULL;
+        objects[i] = null;
+      }
+    }
+  }
+
+  private final String[] columnNames;
+  private final int[] columnTypes;
+  private final Map<String, Integer> columnIndices;
+  private final long rowCount;
+  private final RowGenerator generator;
+  private final Row values;
+  private final MetaData metaData = new MetaData();
+
+  // the index of the current row, -1 before the first and rowCount after the last
+  private long row = -1;
+  private boolean wasNull;
+  private boolean closed;
+  private int fetchSize;
+  private int fetchDirection = FETCH_FORWARD;
+
+  private InMemoryResultSet(final String[] columnNames, final int[] columnTypes, final long rowCount,
+      final RowGenerator generator) {
+    if (columnNames.length != columnTypes.length) {
+      throw new IllegalArgumentException(
+          columnNames.length + " column names given for " + columnTypes.length + " column types");
+    }
+    if (rowCount < 0) {
+      throw new IllegalArgumentException("Row count must not be negative: " + rowCount);
+    }
+    this.columnNames = columnNames.clone();
+    this.columnTypes = columnTypes.clone();
+    this.columnIndices = new HashMap<>();
+    for (var i = columnNames.length - 1; i >= 0; i--) {
+      columnIndices.put(columnNames[i], i + 1);
+      columnIndices.putIfAbsent(columnNames[i].toUpperCase(Locale.ROOT), i + 1);
+    }
+    this.rowCount = rowCount;
+    this.generator = generator;
+    this.values = new Row(columnNames.length);
+  }
+
+  /**
+   * Creates a ResultSet over the given rows. The values are read as they
+   * are, so numbers should be of the class the column's type maps to.
+   *
+   * @param columnNames the names of the columns
+   * @param columnTypes the JDBC types of the columns, from {@link Types}
+   * @param rows the values of each row
+   * @return the ResultSet
+   */
+  public static InMemoryResultSet of(final String[] columnNames, final int[] columnTypes,
+      final Object[][] rows) {
+    for (var i = 0; i < rows.length; i++) {
+      if (rows[i].length != columnNames.length) {
+        throw new IllegalArgumentException(
+            "Row " + i + " has " + rows[i].length + " values for " + columnNames.length + " columns");
+      }
+    }
+    return new InMemoryResultSet(columnNames, columnTypes, rows.length, (row, values) -> {
+      final var data = rows[(int) row];
+      for (var i = 0; i < data.length; i++) {
+        values.setObject(i + 1, data[i]);
+      }
+    });
+  }
+
+  /**
+   * Creates a ResultSet whose rows are generated as the cursor reaches them.
+   *
+   * @param columnNames the names of the columns
+   * @param columnTypes the JDBC types of the columns, from {@link Types}
+   * @param rowCount the number of rows
+   * @param generator sets the values of each row
+   * @return the ResultSet
+   */
+  public static InMemoryResultSet generate(final String[] columnNames, final int[] columnTypes,
+      final long rowCount, final RowGenerator generator) {
+    return new InMemoryResultSet(columnNames, columnTypes, rowCount, generator);
+  }
+
+  private boolean moveTo(final long target) throws SQLException {
+    checkOpen();
+    row = Math.max(-1, Math.min(target, rowCount));
+    if (row == -1 || row == rowCount) {
+      return false;
+    }
+    values.clear();
+    generator.generate(row, values);
+    return true;
+  }
+
+  private void checkOpen() throws SQLException {
+    if (closed) {
+      throw new SQLException("ResultSet is closed");
+    }
+  }
+
+  /**
+   * Returns how the value of a column is held in the current row, and
+   * records whether it is null.
+   */
+  private byte kind(final int column) throws SQLException {
+    if (row < 0 || row >= rowCount) {
+      throw new SQLException(closed ? "ResultSet is closed" : "No current row");
+    }
+    if (column < 1 || column > columnNames.length) {
+      throw new SQLException("Invalid column index: " + column);
+    }
+    final var kind = values.kinds[column - 1];
+    wasNull = kind == NULL;
+    return kind;
+  }
+
+  private Object object(final int column) throws SQLException {
+    switch (kind(column)) {
+      case LONG:
+        return values.longs[column - 1];
+      case DOUBLE:
+        return values.doubles[column - 1];
+      default:
+        return values.objects[column - 1];
+    }
+  }
+
+  private static SQLException cannotConvert(final Object value, final String type) {
+    return new SQLException("Cannot convert " + value.getClass().getName() + " to " + type);
+  }
+
+  @Override
+  public boolean next() throws SQLException {
+    return moveTo(row + 1);
+  }
+
+  @Override
+  public boolean previous() throws SQLException {
+    return moveTo(row - 1);
+  }
+
+  @Override
+  public boolean absolute(final int row) throws SQLException {
+    return moveTo(row >= 0 ? row - 1 : rowCount + row);
+  }
+
+  @Override
+  public boolean relative(final int rows) throws SQLException {
+    return moveTo(row + rows);
+  }
+
+  @Override
+  public boolean first() throws SQLException {
+    return moveTo(0);
+  }
+
+  @Override
+  public boolean last() throws SQLException {
+    return moveTo(rowCount - 1);
+  }
+
+  @Override
+  public void beforeFirst() throws SQLException {
+    moveTo(-1);
+  }
+
+  @Override
+  public void afterLast() throws SQLException {
+    moveTo(rowCount);
+  }
+
+  @Override
+  public boolean isBeforeFirst() throws SQLException {
+    return row == -1 && rowCount > 0;
+  }
+
+  @Override
+  public boolean isAfterLast() throws SQLException {
+    return row == rowCount && rowCount > 0;
+  }
+
+  @Override
+  public boolean isFirst() throws SQLException {
+    return row == 0 && rowCount > 0;
+  }
+
+  @Override
+  public boolean isLast() throws SQLException {
+    return rowCount > 0 && row == rowCount - 1;
+  }
+
+  @Override
+  public int getRow() throws SQLException {
+    return row >= 0 && row < rowCount ? (int) Math.min(row + 1, Integer.MAX_VALUE) : 0;
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    row = -1;
+  }
+
+  @Override
+  public boolean isClosed() {
+    return closed;
+  }
+
+  @Override
+  public boolean wasNull() {
+    return wasNull;
+  }
+
+  @Override
+  public int findColumn(final String columnLabel) throws SQLException {
+    var column = columnIndices.get(columnLabel);
+    if (column == null) {
+      column = columnIndices.get(columnLabel.toUpperCase(Locale.ROOT));
+      if (column == null) {
+        throw new SQLException("Unknown column: " + columnLabel);
+      }
+    }
+    return column;
+  }
+
+  @Override
+  public long getLong(final int column) throws SQLException {
+    switch (kind(column)) {
+      case NULL:
+        return 0;
+      case LONG:
+        return values.longs[column - 1];
+      case DOUBLE:
+        return (long) values.doubles[column - 1];
+      default:
+        final var value = values.objects[column - 1];
+        if (value instanceof Number) {
+          return ((Number) value).longValue();
+        }
+        if (value instanceof Boolean) {
+          return (Boolean) value ? 1 : 0;
+        }
+        if (value instanceof String) {
+          try {
+            return Long.parseLong(((String) value).trim());
+          } catch (final NumberFormatException e) {
+            throw new SQLException("Not a number: " + value, e);
+          }
+        }
+        throw cannotConvert(value, "long");
+    }
+  }
+
+  @Override
+  public int getInt(final int column) throws SQLException {
+    return (int) getLong(column);
+  }
+
+  @Override
+  public short getShort(final int column) throws SQLException {
+    return (short) getLong(column);
+  }
+
+  @Override
+  public byte getByte(final int column) throws SQLException {
+    return (byte) getLong(column);
+  }
+
+  @Override
+  public double getDouble(final int column) throws SQLException {
+    switch (kind(column)) {
+      case NULL:
+        return 0;
+      case LONG:
+        return values.longs[column - 1];
+      case DOUBLE:
+        return values.doubles[column - 1];
+      default:
+        final var value = values.objects[column - 1];
+        if (value instanceof Number) {
+          return ((Number) value).doubleValue();
+        }
+        if (value instanceof String) {
+          try {
+            return Double.parseDouble((String) value);
+          } catch (final NumberFormatException e) {
+            throw new SQLException("Not a number: " + value, e);
+          }
+        }
+        throw cannotConvert(value, "double");
+    }
+  }
+
+  @Override
+  public float getFloat(final int column) throws SQLException {
+    return (float) getDouble(column);
+  }
+
+  @Override
+  public boolean getBoolean(final int column) throws SQLException {
+    switch (kind(column)) {
+      case NULL:
+        return false;
+      case LONG:
+        return values.longs[column - 1] != 0;
+      case DOUBLE:
+        return values.doubles[column - 1] != 0;
+      default:
+        final var value = values.objects[column - 1];
+        if (value instanceof Boolean) {
+          return (Boolean) value;
+        }
+        if (value instanceof Number) {
+          return ((Number) value).doubleValue() != 0;
+        }
+        if (value instanceof String) {
+          final var s = ((String) value).trim();
+          return s.equalsIgnoreCase("true") || s.equals("1");
+        }
+        throw cannotConvert(value, "boolean");
+    }
+  }
+
+  @Override
+  public BigDecimal getBigDecimal(final int column) throws SQLException {
+    switch (kind(column)) {
+      case NULL:
+        return null;
+      case LONG:
+        return BigDecimal.valueOf(values.longs[column - 1]);
+      case DOUBLE:
+        return BigDecimal.valueOf(values.doubles[column - 1]);
+      default:
+        final var value = values.objects[column - 1];
+        if (value instanceof BigDecimal) {
+          return (BigDecimal) value;
+        }
+        if (value instanceof Number || value instanceof String) {
+          try {
+            return new BigDecimal(value.toString().trim());
+          } catch (final NumberFormatException e) {
+            throw new SQLException("Not a number: " + value, e);
+          }
+        }
+        throw cannotConvert(value, "BigDecimal");
+    }
+  }
+
+  @Override
+  @Deprecated
+  public BigDecimal getBigDecimal(final int column, final int scale) throws SQLException {
+    final var value = getBigDecimal(column);
+    return value == null ? null : value.setScale(scale, RoundingMode.HALF_UP);
+  }
+
+  @Override
+  public String getString(final int column) throws SQLException {
+    switch (kind(column)) {
+      case NULL:
+        return null;
+      case LONG:
+        final var type = columnTypes[column - 1];
+        if (type == Types.BOOLEAN || type == Types.BIT) {
+          return values.longs[column - 1] != 0 ? "true" : "false";
+        }
+        return Long.toString(values.longs[column - 1]);
+      case DOUBLE:
+        return Double.toString(values.doubles[column - 1]);
+      default:
+        final var value = values.objects[column - 1];
+        return value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString();
+    }
+  }
+
+  @Override
+  public String getNString(final int column) throws SQLException {
+    return getString(column);
+  }
+
+  @Override
+  public byte[] getBytes(final int column) throws SQLException {
+    final var value = object(column);
+    if (value == null || value instanceof byte[]) {
+      return (byte[]) value;
+    }
+    throw cannotConvert(value, "byte[]");
+  }
+
+  @Override
+  public Date getDate(final int column) throws SQLException {
+    final var value = object(column);
+    if (value == null || value instanceof Date) {
+      return (Date) value;
+    }
+    if (value instanceof LocalDate) {
+      return Date.valueOf((LocalDate) value);
+    }
+    if (value instanceof java.util.Date) {
+      return new Date(((java.util.Date) value).getTime());
+    }
+    throw cannotConvert(value, "Date");
+  }
+
+  @Override
+  public Time getTime(final int column) throws SQLException {
+    final var value = object(column);
+    if (value == null || value instanceof Time) {
+      return (Time) value;
+    }
+    if (value instanceof LocalTime) {
+      return Time.valueOf((LocalTime) value);
+    }
+    if (value instanceof java.util.Date) {
+      return new Time(((java.util.Date) value).getTime());
+    }
+    throw cannotConvert(value, "Time");
+  }
+
+  @Override
+  public Timestamp getTimestamp(final int column) throws SQLException {
+    final var value = object(column);
+    if (value == null || value instanceof Timestamp) {
+      return (Timestamp) value;
+    }
+    if (value instanceof LocalDateTime) {
+      return Timestamp.valueOf((LocalDateTime) value);
+    }
+    if (value instanceof java.util.Date) {
+      return new Timestamp(((java.util.Date) value).getTime());
+    }
+    throw cannotConvert(value, "Timestamp");
+  }
+
+  @Override
+  public Object getObject(final int column) throws SQLException {
+    switch (kind(column)) {
+      case NULL:
+        return null;
+      case LONG:
+        final var value = values.longs[column - 1];
+        switch (columnTypes[column - 1]) {
+          case Types.BIT:
+          case Types.BOOLEAN:
+            return value != 0;
+          case Types.TINYINT:
+          case Types.SMALLINT:
+          case Types.INTEGER:
+            return (int) value;
+          case Types.DECIMAL:
+          case Types.NUMERIC:
+            return BigDecimal.valueOf(value);
+          default:
+            return value;
+        }
+      case DOUBLE:
+        switch (columnTypes[column - 1]) {
+          case Types.REAL:
+            return (float) values.doubles[column - 1];
+          case Types.DECIMAL:
+          case Types.NUMERIC:
+            return BigDecimal.valueOf(values.doubles[column - 1]);
+          default:
+            return values.doubles[column - 1];
+        }
+      default:
+        return values.objects[column - 1];
+    }
+  }
+
+  @Override
+  public <T> T getObject(final int column, final Class<T> type) throws SQLException {
+    final Object value;
+    if (type == Long.class) {
+      value = getLong(column);
+    } else if (type == Integer.class) {
+      value = getInt(column);
+    } else if (type == Short.class) {
+      value = getShort(column);
+    } else if (type == Byte.class) {
+      value = getByte(column);
+    } else if (type == Double.class) {
+      value = getDouble(column);
+    } else if (type == Float.class) {
+      value = getFloat(column);
+    } else if (type == Boolean.class) {
+      value = getBoolean(column);
+    } else if (type == BigDecimal.class) {
+      value = getBigDecimal(column);
+    } else if (type == String.class) {
+      value = getString(column);
+    } else if (type == Date.class) {
+      value = getDate(column);
+    } else if (type == Time.class) {
+      value = getTime(column);
+    } else if (type == Timestamp.class) {
+      value = getTimestamp(column);
+    } else if (type == LocalDate.class) {
+      final var date = getDate(column);
+      value = date == null ? null : date.toLocalDate();
+    } else if (type == LocalTime.class) {
+      final var time = getTime(column);
+      value = time == null ? null : time.toLocalTime();
+    } else if (type == LocalDateTime.class) {
+      final var timestamp = getTimestamp(column);
+      value = timestamp == null ? null : timestamp.toLocalDateTime();
+    } else {
+      value = object(column);
+      if (value != null && !type.isInstance(value)) {
+        throw cannotConvert(value, type.getName());
+      }
+    }
+    return wasNull ? null : type.cast(value);
+  }
+
+  @Override
+  public Object getObject(final int column, final Map<String, Class<?>> map) throws SQLException {
+    return getObject(column);
+  }
+
+  @Override
+  public long getLong(final String columnLabel) throws SQLException {
+    return getLong(findColumn(columnLabel));
+  }
+
+  @Override
+  public int getInt(final String columnLabel) throws SQLException {
+    return getInt(findColumn(columnLabel));
+  }
+
+  @Override
+  public short getShort(final String columnLabel) throws SQLException {
+    return getShort(findColumn(columnLabel));
+  }
+
+  @Override
+  public byte getByte(final String columnLabel) throws SQLException {
+    return getByte(findColumn(columnLabel));
+  }
+
+  @Override
+  public double getDouble(final String columnLabel) throws SQLException {
+    return getDouble(findColumn(columnLabel));
+  }
+
+  @Override
+  public float getFloat(final String columnLabel) throws SQLException {
+    return getFloat(findColumn(columnLabel));
+  }
+
+  @Override
+  public boolean getBoolean(final String columnLabel) throws SQLException {
+    return getBoolean(findColumn(columnLabel));
+  }
+
+  @Override
+  public BigDecimal getBigDecimal(final String columnLabel) throws SQLException {
+    return getBigDecimal(findColumn(columnLabel));
+  }
+
+  @Override
+  @Deprecated
+  public BigDecimal getBigDecimal(final String columnLabel, final int scale) throws SQLException {
+    return getBigDecimal(findColumn(columnLabel), scale);
+  }
+
+  @Override
+  public String getString(final String columnLabel) throws SQLException {
+    return getString(findColumn(columnLabel));
+  }
+
+  @Override
+  public String getNString(final String columnLabel) throws SQLException {
+    return getNString(findColumn(columnLabel));
+  }
+
+  @Override
+  public byte[] getBytes(final String columnLabel) throws SQLException {
+    return getBytes(findColumn(columnLabel));
+  }
+
+  @Override
+  public Date getDate(final String columnLabel) throws SQLException {
+    return getDate(findColumn(columnLabel));
+  }
+
+  @Override
+  public Time getTime(final String columnLabel) throws SQLException {
+    return getTime(findColumn(columnLabel));
+  }
+
+  @Override
+  public Timestamp getTimestamp(final String columnLabel) throws SQLException {
+    return getTimestamp(findColumn(columnLabel));
+  }
+
+  @Override
+  public Object getObject(final String columnLabel) throws SQLException {
+    return getObject(findColumn(columnLabel));
+  }
+
+  @Override
+  public <T> T getObject(final String columnLabel, final Class<T> type) throws SQLException {
+    return getObject(findColumn(columnLabel), type);
+  }
+
+  @Override
+  public Object getObject(final String columnLabel, final Map<String, Class<?>> map) throws SQLException {
+    return getObject(findColumn(columnLabel), map);
+  }
+
+  @Override
+  public ResultSetMetaData getMetaData() throws SQLException {
+    checkOpen();
+    return metaData;
+  }
+
+  @Override
+  public void setFetchSize(final int rows) throws SQLException {
+    if (rows < 0) {
+      throw new SQLException("Fetch size must not be negative: " + rows);
+    }
+    this.fetchSize = rows;
+  }
+
+  @Override
+  public int getFetchSize() {
+    return fetchSize;
+  }
+
+  @Override
+  public void setFetchDirection(final int direction) {
+    this.fetchDirection = direction;
+  }
+
+  @Override
+  public int getFetchDirection() {
+    return fetchDirection;
+  }
+
+  @Override
+  public int getType() {
+    return TYPE_SCROLL_INSENSITIVE;
+  }
+
+  @Override
+  public int getConcurrency() {
+    return CONCUR_READ_ONLY;
+  }
+
+  @Override
+  public int getHoldability() {
+    return HOLD_CURSORS_OVER_COMMIT;
+  }
+
+  @Override
+  public Statement getStatement() {
+    return null;
+  }
+
+  @Override
+  public SQLWarning getWarnings() {
+    return null;
+  }
+
+  @Override
+  public void clearWarnings() {
+  }
+
+  @Override
+  public boolean rowUpdated() {
+    return false;
+  }
+
+  @Override
+  public boolean rowInserted() {
+    return false;
+  }
+
+  @Override
+  public boolean rowDeleted() {
+    return false;
+  }
+
+  @Override
+  public <T> T unwrap(final Class<T> iface) throws SQLException {
+    if (iface.isInstance(this)) {
+      return iface.cast(this);
+    }
+    throw new SQLException("Not a wrapper for " + iface.getName());
+  }
+
+  @Override
+  public boolean isWrapperFor(final Class<?> iface) {
+    return iface.isInstance(this);
+  }
+
+  @Override
+  public InputStream getBinaryStream(final int column) throws SQLException {
+    final var value = getBytes(column);
+    return value == null ? null : new ByteArrayInputStream(value);
+  }
+
+  @Override
+  public InputStream getBinaryStream(final String columnLabel) throws SQLException {
+    return getBinaryStream(findColumn(columnLabel));
+  }
+
+  @Override
+  public Reader getCharacterStream(final int column) throws SQLException {
+    final var value = getString(column);
+    return value == null ? null : new StringReader(value);
+  }
+
+  @Override
+  public Reader getCharacterStream(final String columnLabel) throws SQLException {
+    return getCharacterStream(findColumn(columnLabel));
+  }
+
+  @Override
+  public Reader getNCharacterStream(final int column) throws SQLException {
+    return getCharacterStream(column);
+  }
+
+  @Override
+  public Reader getNCharacterStream(final String columnLabel) throws SQLException {
+    return getCharacterStream(findColumn(columnLabel));
+  }
+
+  // not supported
+
+  private static SQLFeatureNotSupportedException unsupported() {
+    return new SQLFeatureNotSupportedException("Not supported by " + InMemoryResultSet.class.getSimpleName());
+  }
+
+  @Override
+  public void cancelRowUpdates() throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void deleteRow() throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public Array getArray(final String columnLabel) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public Array getArray(final int column) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public InputStream getAsciiStream(final String columnLabel) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public InputStream getAsciiStream(final int column) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public Blob getBlob(final String columnLabel) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public Blob getBlob(final int column) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public Clob getClob(final String columnLabel) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public Clob getClob(final int column) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public String getCursorName() throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public Date getDate(final String columnLabel, final Calendar calendar) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public Date getDate(final int column, final Calendar calendar) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public NClob getNClob(final String columnLabel) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public NClob getNClob(final int column) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public Ref getRef(final String columnLabel) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public Ref getRef(final int column) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public RowId getRowId(final String columnLabel) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public RowId getRowId(final int column) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public SQLXML getSQLXML(final String columnLabel) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public SQLXML getSQLXML(final int column) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public Time getTime(final String columnLabel, final Calendar calendar) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public Time getTime(final int column, final Calendar calendar) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public Timestamp getTimestamp(final String columnLabel, final Calendar calendar) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public Timestamp getTimestamp(final int column, final Calendar calendar) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public URL getURL(final String columnLabel) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public URL getURL(final int column) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  @Deprecated
+  public InputStream getUnicodeStream(final String columnLabel) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  @Deprecated
+  public InputStream getUnicodeStream(final int column) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void insertRow() throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void moveToCurrentRow() throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void moveToInsertRow() throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void refreshRow() throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateArray(final String columnLabel, final Array value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateArray(final int column, final Array value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateAsciiStream(final String columnLabel, final InputStream value, final int length) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateAsciiStream(final String columnLabel, final InputStream value, final long length) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateAsciiStream(final String columnLabel, final InputStream value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateAsciiStream(final int column, final InputStream value, final int length) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateAsciiStream(final int column, final InputStream value, final long length) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateAsciiStream(final int column, final InputStream value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateBigDecimal(final String columnLabel, final BigDecimal value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateBigDecimal(final int column, final BigDecimal value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateBinaryStream(final String columnLabel, final InputStream value, final int length) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateBinaryStream(final String columnLabel, final InputStream value, final long length) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateBinaryStream(final String columnLabel, final InputStream value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateBinaryStream(final int column, final InputStream value, final int length) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateBinaryStream(final int column, final InputStream value, final long length) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateBinaryStream(final int column, final InputStream value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateBlob(final String columnLabel, final InputStream value, final long length) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateBlob(final String columnLabel, final InputStream value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateBlob(final String columnLabel, final Blob value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateBlob(final int column, final InputStream value, final long length) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateBlob(final int column, final InputStream value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateBlob(final int column, final Blob value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateBoolean(final String columnLabel, final boolean value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateBoolean(final int column, final boolean value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateByte(final String columnLabel, final byte value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateByte(final int column, final byte value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateBytes(final String columnLabel, final byte[] value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateBytes(final int column, final byte[] value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateCharacterStream(final String columnLabel, final Reader value, final int length) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateCharacterStream(final String columnLabel, final Reader value, final long length) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateCharacterStream(final String columnLabel, final Reader value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateCharacterStream(final int column, final Reader value, final int length) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateCharacterStream(final int column, final Reader value, final long length) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateCharacterStream(final int column, final Reader value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateClob(final String columnLabel, final Reader value, final long length) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateClob(final String columnLabel, final Reader value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateClob(final String columnLabel, final Clob value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateClob(final int column, final Reader value, final long length) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateClob(final int column, final Reader value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateClob(final int column, final Clob value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateDate(final String columnLabel, final Date value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateDate(final int column, final Date value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateDouble(final String columnLabel, final double value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateDouble(final int column, final double value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateFloat(final String columnLabel, final float value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateFloat(final int column, final float value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateInt(final String columnLabel, final int value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateInt(final int column, final int value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateLong(final String columnLabel, final long value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateLong(final int column, final long value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateNCharacterStream(final String columnLabel, final Reader value, final long length) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateNCharacterStream(final String columnLabel, final Reader value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateNCharacterStream(final int column, final Reader value, final long length) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateNCharacterStream(final int column, final Reader value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateNClob(final String columnLabel, final Reader value, final long length) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateNClob(final String columnLabel, final Reader value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateNClob(final String columnLabel, final NClob value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateNClob(final int column, final Reader value, final long length) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateNClob(final int column, final Reader value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateNClob(final int column, final NClob value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateNString(final String columnLabel, final String value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateNString(final int column, final String value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateNull(final String columnLabel) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateNull(final int column) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateObject(final String columnLabel, final Object value, final int scaleOrLength) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateObject(final String columnLabel, final Object value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateObject(final int column, final Object value, final int scaleOrLength) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateObject(final int column, final Object value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateRef(final String columnLabel, final Ref value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateRef(final int column, final Ref value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateRow() throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateRowId(final String columnLabel, final RowId value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateRowId(final int column, final RowId value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateSQLXML(final String columnLabel, final SQLXML value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateSQLXML(final int column, final SQLXML value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateShort(final String columnLabel, final short value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateShort(final int column, final short value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateString(final String columnLabel, final String value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateString(final int column, final String value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateTime(final String columnLabel, final Time value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateTime(final int column, final Time value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateTimestamp(final String columnLabel, final Timestamp value) throws SQLException {
+    throw unsupported();
+  }
+
+  @Override
+  public void updateTimestamp(final int column, final Timestamp value) throws SQLException {
+    throw unsupported();
+  }
+
+  /**
+   * Describes the columns, all of which are read-only and of unknown
+   * nullability.
+   */
+  private final class MetaData implements ResultSetMetaData {
+
+    private String checkColumn(final int column) throws SQLException {
+      if (column < 1 || column > columnNames.length) {
+        throw new SQLException("Invalid column index: " + column);
+      }
+      return columnNames[column - 1];
+    }
+
+    @Override
+    public int getColumnCount() {
+      return columnNames.length;
+    }
+
+    @Override
+    public String getColumnName(final int column) throws SQLException {
+      return checkColumn(column);
+    }
+
+    @Override
+    public String getColumnLabel(final int column) throws SQLException {
+      return checkColumn(column);
+    }
+
+    @Override
+    public int getColumnType(final int column) throws SQLException {
+      checkColumn(column);
+      return columnTypes[column - 1];
+    }
+
+    @Override
+    public String getColumnTypeName(final int column) throws SQLException {
+      try {
+        return JDBCType.valueOf(getColumnType(column)).getName();
+      } catch (final IllegalArgumentException e) {
+        return "OTHER";
+      }
+    }
+
+    @Override
+    public String getColumnClassName(final int column) throws SQLException {
+      switch (getColumnType(column)) {
+        case Types.BIT:
+        case Types.BOOLEAN:
+          return Boolean.class.getName();
+        case Types.TINYINT:
+        case Types.SMALLINT:
+        case Types.INTEGER:
+          return Integer.class.getName();
+        case Types.BIGINT:
+          return Long.class.getName();
+        case Types.REAL:
+          return Float.class.getName();
+        case Types.FLOAT:
+        case Types.DOUBLE:
+          return Double.class.getName();
+        case Types.DECIMAL:
+        case Types.NUMERIC:
+          return BigDecimal.class.getName();
+        case Types.CHAR:
+        case Types.VARCHAR:
+        case Types.LONGVARCHAR:
+        case Types.NCHAR:
+        case Types.NVARCHAR:
+        case Types.LONGNVARCHAR:
+          return String.class.getName();
+        case Types.DATE:
+          return Date.class.getName();
+        case Types.TIME:
+          return Time.class.getName();
+        case Types.TIMESTAMP:
+          return Timestamp.class.getName();
+        case Types.BINARY:
+        case Types.VARBINARY:
+        case Types.LONGVARBINARY:
+          return byte[].class.getName();
+        default:
+          return Object.class.getName();
+      }
+    }
+
+    @Override
+    public boolean isSigned(final int column) throws SQLException {
+      switch (getColumnType(column)) {
+        case Types.TINYINT:
+        case Types.SMALLINT:
+        case Types.INTEGER:
+        case Types.BIGINT:
+        case Types.REAL:
+        case Types.FLOAT:
+        case Types.DOUBLE:
+        case Types.DECIMAL:
+        case Types.NUMERIC:
+          return true;
+        default:
+          return false;
+      }
+    }
+
+    @Override
+    public boolean isCaseSensitive(final int column) throws SQLException {
+      return getColumnClassName(column).equals(String.class.getName());
+    }
+
+    @Override
+    public int isNullable(final int column) throws SQLException {
+      checkColumn(column);
+      return columnNullableUnknown;
+    }
+
+    @Override
+    public boolean isAutoIncrement(final int column) throws SQLException {
+      checkColumn(column);
+      return false;
+    }
+
+    @Override
+    public boolean isSearchable(final int column) throws SQLException {
+      checkColumn(column);
+      return false;
+    }
+
+    @Override
+    public boolean isCurrency(final int column) throws SQLException {
+      checkColumn(column);
+      return false;
+    }
+
+    @Override
+    public int getColumnDisplaySize(final int column) throws SQLException {
+      checkColumn(column);
+      return 0;
+    }
+
+    @Override
+    public int getPrecision(final int column) throws SQLException {
+      checkColumn(column);
+      return 0;
+    }
+
+    @Override
+    public int getScale(final int column) throws SQLException {
+      checkColumn(column);
+      return 0;
+    }
+
+    @Override
+    public String getSchemaName(final int column) throws SQLException {
+      checkColumn(column);
+      return "";
+    }
+
+    @Override
+    public String getTableName(final int column) throws SQLException {
+      checkColumn(column);
+      return "";
+    }
+
+    @Override
+    public String getCatalogName(final int column) throws SQLException {
+      checkColumn(column);
+      return "";
+    }
+
+    @Override
+    public boolean isReadOnly(final int column) throws SQLException {
+      checkColumn(column);
+      return true;
+    }
+
+    @Override
+    public boolean isWritable(final int column) throws SQLException {
+      checkColumn(column);
+      return false;
+    }
+
+    @Override
+    public boolean isDefinitelyWritable(final int column) throws SQLException {
+      checkColumn(column);
+      return false;
+    }
+
+    @Override
+    public <T> T unwrap(final Class<T> iface) throws SQLException {
+      if (iface.isInstance(this)) {
+        return iface.cast(this);
+      }
+      throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(final Class<?> iface) {
+      return iface.isInstance(this);
+    }
+  }
+}
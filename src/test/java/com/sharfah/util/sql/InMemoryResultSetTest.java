@@ -0,0 +1,198 @@
+package com.sharfah.util.sql;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+
+import org.junit.jupiter.api.Test;
+
+public class InMemoryResultSetTest {
+
+  private static final String[] NAMES = { "id", "price", "active", "name", "born" };
+  private static final int[] TYPES = { Types.INTEGER, Types.DOUBLE, Types.BOOLEAN, Types.VARCHAR, Types.DATE };
+
+  private static InMemoryResultSet people() {
+    return InMemoryResultSet.of(NAMES, TYPES, new Object[][] {
+      { 1, 1.5, true, "Alice", Date.valueOf("2000-01-02") },
+      { 2, null, false, "Bob", null },
+      { null, -3.25, null, null, Date.valueOf("1999-12-31") }
+    });
+  }
+
+  /**
+   * Generates rows with primitive ids, prices and flags.
+   */
+  private static InMemoryResultSet generated(final long rows) {
+    return InMemoryResultSet.generate(NAMES, TYPES, rows, (row, values) -> {
+      values.setLong(1, row).setDouble(2, row / 4.0).setBoolean(3, row % 2 == 0);
+      if (row % 3 != 0) {
+        values.setObject(4, "name " + row);
+      }
+    });
+  }
+
+  @Test
+  public void testTypedGetters() throws SQLException {
+    final var rs = people();
+    assertThat(rs.next(), is(true));
+    assertThat(rs.getInt(1), is(1));
+    assertThat(rs.getLong("ID"), is(1L));
+    assertThat(rs.getDouble(2), is(1.5));
+    assertThat(rs.getFloat(2), is(1.5f));
+    assertThat(rs.getBigDecimal(2), is(new BigDecimal("1.5")));
+    assertThat(rs.getBoolean("active"), is(true));
+    assertThat(rs.getString("Name"), is("Alice"));
+    assertThat(rs.getDate(5), is(Date.valueOf("2000-01-02")));
+    assertThat(rs.getObject(5, LocalDate.class), is(LocalDate.of(2000, 1, 2)));
+    assertThat(rs.getTimestamp(5), is(new Timestamp(Date.valueOf("2000-01-02").getTime())));
+    assertThat(rs.getString(1), is("1"));
+    assertThat(rs.wasNull(), is(false));
+  }
+
+  @Test
+  public void testWasNull() throws SQLException {
+    final var rs = people();
+    rs.next();
+    rs.next();
+    assertThat(rs.getDouble(2), is(0.0));
+    assertThat(rs.wasNull(), is(true));
+    assertThat(rs.getString(4), is("Bob"));
+    assertThat(rs.wasNull(), is(false));
+    assertThat(rs.getDate(5), is(nullValue()));
+    assertThat(rs.wasNull(), is(true));
+    rs.next();
+    assertThat(rs.getInt(1), is(0));
+    assertThat(rs.wasNull(), is(true));
+    assertThat(rs.getBoolean(3), is(false));
+    assertThat(rs.wasNull(), is(true));
+    assertThat(rs.getObject(1, Integer.class), is(nullValue()));
+    assertThat(rs.next(), is(false));
+  }
+
+  @Test
+  public void testGeneratedRows() throws SQLException {
+    final var rs = generated(10);
+    var count = 0;
+    while (rs.next()) {
+      assertThat(rs.getLong(1), is((long) count));
+      assertThat(rs.getObject(1), is(count));
+      assertThat(rs.getDouble(2), is(count / 4.0));
+      assertThat(rs.getObject(3), is(count % 2 == 0));
+      assertThat(rs.getString(3), is(Boolean.toString(count % 2 == 0)));
+      assertThat(rs.getString(4), is(count % 3 == 0 ? null : "name " + count));
+      assertThat(rs.getRow(), is(count + 1));
+      count++;
+    }
+    assertThat(count, is(10));
+    assertThat(rs.isAfterLast(), is(true));
+  }
+
+  @Test
+  public void testScrolling() throws SQLException {
+    final var rs = generated(5);
+    assertThat(rs.isBeforeFirst(), is(true));
+    assertThat(rs.last(), is(true));
+    assertThat(rs.isLast(), is(true));
+    assertThat(rs.getLong(1), is(4L));
+    assertThat(rs.previous(), is(true));
+    assertThat(rs.getLong(1), is(3L));
+    assertThat(rs.absolute(-5), is(true));
+    assertThat(rs.isFirst(), is(true));
+    assertThat(rs.relative(10), is(false));
+    assertThat(rs.isAfterLast(), is(true));
+    rs.beforeFirst();
+    assertThat(rs.next(), is(true));
+    assertThat(rs.getLong(1), is(0L));
+    assertThat(rs.absolute(0), is(false));
+    assertThrows(SQLException.class, () -> rs.getLong(1));
+  }
+
+  @Test
+  public void testEmpty() throws SQLException {
+    final var rs = generated(0);
+    assertThat(rs.isBeforeFirst(), is(false));
+    assertThat(rs.isFirst(), is(false));
+    assertThat(rs.isLast(), is(false));
+    assertThat(rs.next(), is(false));
+    assertThat(rs.isLast(), is(false));
+    assertThat(rs.isAfterLast(), is(false));
+    assertThat(rs.last(), is(false));
+    assertThat(rs.isLast(), is(false));
+  }
+
+  @Test
+  public void testMetaData() throws SQLException {
+    final var md = people().getMetaData();
+    assertThat(md.getColumnCount(), is(NAMES.length));
+    assertThat(md.getColumnName(4), is("name"));
+    assertThat(md.getColumnLabel(1), is("id"));
+    assertThat(md.getColumnType(2), is(Types.DOUBLE));
+    assertThat(md.getColumnTypeName(5), is("DATE"));
+    assertThat(md.getColumnClassName(1), is(Integer.class.getName()));
+    assertThat(md.isSigned(2), is(true));
+    assertThat(md.isReadOnly(3), is(true));
+    assertThrows(SQLException.class, () -> md.getColumnName(6));
+  }
+
+  @Test
+  public void testInvalidUse() throws SQLException {
+    final var rs = people();
+    assertThrows(SQLException.class, () -> rs.getString(1));
+    rs.next();
+    assertThrows(SQLException.class, () -> rs.getString(0));
+    assertThrows(SQLException.class, () -> rs.getString("unknown"));
+    assertThrows(SQLException.class, () -> rs.getLong(4));
+    assertThrows(SQLFeatureNotSupportedException.class, () -> rs.updateLong(1, 2));
+    rs.close();
+    assertThat(rs.isClosed(), is(true));
+    assertThrows(SQLException.class, rs::next);
+    assertThrows(IllegalArgumentException.class,
+        () -> InMemoryResultSet.of(NAMES, TYPES, new Object[][] { { 1 } }));
+    assertThrows(IllegalArgumentException.class,
+        () -> InMemoryResultSet.generate(NAMES, new int[] { Types.INTEGER }, 1, (row, values) -> { }));
+  }
+
+  @Test
+  public void testMatchesMockResultSet() throws SQLException {
+    final var types = new int[] { Types.BIGINT, Types.DOUBLE, Types.BOOLEAN, Types.VARCHAR, Types.DATE };
+    final var data = new Object[][] {
+      { 1L, 1.5, true, "Alice, \"A\"", Date.valueOf("2000-01-02") },
+      { null, null, null, null, null }
+    };
+    assertThat(csv(InMemoryResultSet.of(NAMES, types, data)), is(csv(MockResultSet.create(NAMES, types, data))));
+    assertThat(json(InMemoryResultSet.of(NAMES, types, data)), is(json(MockResultSet.create(NAMES, types, data))));
+  }
+
+  @Test
+  public void testManyRows() throws SQLException {
+    final var rows = 1_000_000;
+    final var rs = generated(rows);
+    final var os = new CountingOutputStream(OutputStream.nullOutputStream());
+    new StreamingCsvResultSetExtractor(os).extractData(rs);
+    assertThat(rs.isAfterLast(), is(true));
+    assertThat(os.getCount(), is(greaterThan((long) rows * 10)));
+  }
+
+  private static String csv(final ResultSet rs) {
+    final var bos = new ByteArrayOutputStream();
+    new StreamingCsvResultSetExtractor(bos).extractData(rs);
+    return bos.toString();
+  }
+
+  private static String json(final ResultSet rs) {
+    final var bos = new ByteArrayOutputStream();
+    new StreamingJsonResultSetExtractor(bos).extractData(rs);
+    return bos.toString();
+  }
+}
@@ -0,0 +1,142 @@
+package com.sharfah.util.sql;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public class JsonBulkLoaderTest {
+
+  private static final int ROWS = 1000;
+  private static final String COLUMNS = "id bigint primary key, name varchar(50), price decimal(10, 2), "
+      + "ratio double, active boolean, born date, seen timestamp, at time";
+  private static final String SELECT = "select id, name, price, ratio, active, born, seen, at from %s order by id";
+
+  private static JdbcDataSource dataSource;
+  private static JdbcTemplate jdbcTemplate;
+
+  @TempDir
+  Path dir;
+
+  @BeforeAll
+  public static void setUp() {
+    dataSource = new JdbcDataSource();
+    dataSource.setURL("jdbc:h2:mem:jsonbulk;DB_CLOSE_DELAY=-1");
+    jdbcTemplate = new JdbcTemplate(dataSource);
+    jdbcTemplate.execute("create table source (" + COLUMNS + ")");
+    jdbcTemplate.execute("create table target (" + COLUMNS + ")");
+    jdbcTemplate.execute("insert into source select x, "
+        + "casewhen(mod(x, 7) = 0, null, 'name ' || x || ', \"quoted\"' || casewhen(mod(x, 3) = 0, char(10) || 'line', '')), "
+        + "x / 100.0, x / 3.0, mod(x, 2) = 0, dateadd('day', x, date '2000-01-01'), "
+        + "dateadd('millisecond', x * 1001, timestamp '2020-01-01 00:00:00'), "
+        + "dateadd('second', x, time '00:00:00') "
+        + "from system_range(1, " + ROWS + ")");
+  }
+
+  @AfterAll
+  public static void tearDown() {
+    jdbcTemplate.execute("drop table source");
+    jdbcTemplate.execute("drop table target");
+  }
+
+  @BeforeEach
+  public void truncate() {
+    jdbcTemplate.execute("truncate table target");
+  }
+
+  private Path export(final JsonLayout layout) throws IOException {
+    final var file = dir.resolve("source.json");
+    try (var os = Files.newOutputStream(file)) {
+      final var extractor = new StreamingJsonResultSetExtractor(os);
+      extractor.setLayout(layout);
+      jdbcTemplate.query(String.format(SELECT, "source"), extractor);
+    }
+    return file;
+  }
+
+  private void assertLoaded(final JsonLayout layout) throws IOException {
+    final var loader = new JsonBulkLoader(dataSource, "target");
+    loader.setLayout(layout);
+    loader.setConnections(3);
+    loader.setBatchSize(7);
+    loader.setQueuedBatches(2);
+    assertThat(loader.load(export(layout)), is((long) ROWS));
+    assertThat(jdbcTemplate.queryForList(String.format(SELECT, "target")),
+        is(jdbcTemplate.queryForList(String.format(SELECT, "source"))));
+  }
+
+  @Test
+  public void testLoadObjects() throws IOException {
+    assertLoaded(JsonLayout.OBJECTS);
+  }
+
+  @Test
+  public void testLoadNdjson() throws IOException {
+    assertLoaded(JsonLayout.NDJSON);
+  }
+
+  @Test
+  public void testLoadColumnsAndRows() throws IOException {
+    assertLoaded(JsonLayout.COLUMNS_AND_ROWS);
+  }
+
+  @Test
+  public void testFieldOrderAndMissingFields() {
+    final var json = "[{\"id\": 1, \"name\": \"a\"}, {\"name\": \"b\", \"id\": 2}, {\"id\": 3},"
+        + " {\"NAME\": null, \"Id\": \"4\"}]";
+    final var loader = new JsonBulkLoader(dataSource, "target");
+    loader.setConnections(2);
+    loader.setBatchSize(1);
+    assertThat(loader.load(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))), is(4L));
+    assertThat(jdbcTemplate.queryForList("select name from target order by id", String.class),
+        contains("a", "b", null, null));
+  }
+
+  @Test
+  public void testDatesAsStrings() {
+    final var json = "{\"id\": 1, \"born\": \"2001-02-03\", \"seen\": \"2001-02-03 04:05:06.7\"}";
+    final var loader = new JsonBulkLoader(dataSource, "target");
+    loader.setLayout(JsonLayout.NDJSON);
+    assertThat(loader.load(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))), is(1L));
+    assertThat(jdbcTemplate.queryForObject("select born || ' ' || seen from target", String.class),
+        is("2001-02-03 2001-02-03 04:05:06.7"));
+  }
+
+  @Test
+  public void testEmpty() {
+    final var loader = new JsonBulkLoader(dataSource, "target");
+    assertThat(loader.load(new ByteArrayInputStream("[]".getBytes(StandardCharsets.UTF_8))), is(0L));
+  }
+
+  @Test
+  public void testUnknownColumn() {
+    final var json = "[{\"id\": 1}, {\"id\": 2, \"colour\": \"red\"}]";
+    final var e = assertThrows(RuntimeException.class, () -> new JsonBulkLoader(dataSource, "target")
+        .load(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))));
+    assertThat(e.getCause(), is(instanceOf(IOException.class)));
+  }
+
+  @Test
+  public void testFailedInsert() {
+    final var json = "[{\"id\": 1}, {\"id\": 1}]";
+    final var loader = new JsonBulkLoader(dataSource, "target");
+    loader.setBatchSize(1);
+    loader.setConnections(1);
+    assertThrows(RuntimeException.class,
+        () -> loader.load(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8))));
+    assertThat(jdbcTemplate.queryForObject("select count(*) from target", Long.class), is(1L));
+  }
+}
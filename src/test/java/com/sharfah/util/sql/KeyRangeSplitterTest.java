@@ -0,0 +1,45 @@
+package com.sharfah.util.sql;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class KeyRangeSplitterTest {
+
+  @Test
+  public void testUniform() {
+    assertThat(KeyRangeSplitter.uniform(0, 10).split(3), contains(
+        new KeyRange(0, 4), new KeyRange(4, 7), new KeyRange(7, 10)));
+    assertThat(KeyRangeSplitter.uniform(-5, 5).split(2), contains(
+        new KeyRange(-5, 0), new KeyRange(0, 5)));
+  }
+
+  @Test
+  public void testWideKeySpace() {
+    assertThat(KeyRangeSplitter.uniform(Long.MIN_VALUE, Long.MAX_VALUE).split(2), contains(
+        new KeyRange(Long.MIN_VALUE, 0), new KeyRange(0, Long.MAX_VALUE)));
+    final var ranges = KeyRangeSplitter.uniform(-10, Long.MAX_VALUE).split(3);
+    assertThat(ranges, hasSize(3));
+    assertThat(ranges.get(0).getLower(), is(-10L));
+    assertThat(ranges.get(2).getUpper(), is(Long.MAX_VALUE));
+    for (var i = 1; i < ranges.size(); i++) {
+      assertThat(ranges.get(i).getLower(), is(ranges.get(i - 1).getUpper()));
+      assertThat(ranges.get(i).getUpper(), is(greaterThan(ranges.get(i).getLower())));
+    }
+  }
+
+  @Test
+  public void testMorePartitionsThanKeys() {
+    assertThat(KeyRangeSplitter.uniform(0, 2).split(4), contains(
+        new KeyRange(0, 1), new KeyRange(1, 2)));
+    assertThat(KeyRangeSplitter.uniform(3, 3).split(4), contains(new KeyRange(3, 3)));
+  }
+
+  @Test
+  public void testInvalid() {
+    assertThrows(IllegalArgumentException.class, () -> KeyRangeSplitter.uniform(2, 1));
+    assertThrows(IllegalArgumentException.class, () -> KeyRangeSplitter.uniform(0, 1).split(0));
+  }
+}
@@ -6,6 +6,8 @@ import static org.mockito.Mockito.*;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.function.Function;
@@ -17,11 +19,15 @@ import java.util.stream.IntStream;
  */
 public class MockResultSet {
 
+  private final String[] columnNames;
   private final Map<String, Integer> columnIndices;
+  private final int[] columnTypes;
   private final Object[][] data;
   private int rowIndex;
+  private boolean wasNull;
 
-  private MockResultSet(final String[] columnNames, final Object[][] data) {
+  private MockResultSet(final String[] columnNames, final int[] columnTypes, final Object[][] data) {
+    this.columnNames = columnNames;
     this.columnIndices = IntStream.range(0, columnNames.length)
         .boxed()
         .collect(Collectors.toMap(
@@ -30,10 +36,26 @@ public class MockResultSet {
             (a, b) -> { throw new RuntimeException("Duplicate column " + a); },
             LinkedHashMap::new
             ));
+    this.columnTypes = columnTypes;
     this.data = data;
     this.rowIndex = -1;
   }
 
+  /**
+   * Returns the value at the given index of the current row and records
+   * whether it was null, for rs.wasNull().
+   */
+  private Object value(final int index) {
+    final var value = data[rowIndex][index];
+    wasNull = value == null;
+    return value;
+  }
+
+  private Number number(final int index) {
+    final var value = (Number) value(index);
+    return value == null ? 0 : value;
+  }
+
   private ResultSet buildMock() throws SQLException {
     final var rs = mock(ResultSet.class);
 
@@ -53,7 +75,7 @@ public class MockResultSet {
     // mock rs.getString(columnIndex)
     doAnswer(invocation -> {
       final var index = invocation.getArgument(0, Integer.class);
-      return (String)data[rowIndex][index - 1];
+      return (String) value(index - 1);
     }).when(rs).getString(anyInt());
 
     // mock rs.getInt(columnName)
@@ -73,9 +95,61 @@ public class MockResultSet {
     // mock rs.getObject(columnIndex)
     doAnswer(invocation -> {
       final var index = invocation.getArgument(0, Integer.class);
-      return data[rowIndex][index - 1];
+      return value(index - 1);
     }).when(rs).getObject(anyInt());
 
+    // mock rs.getLong(columnIndex)
+    doAnswer(invocation -> {
+      final var index = invocation.getArgument(0, Integer.class);
+      return number(index - 1).longValue();
+    }).when(rs).getLong(anyInt());
+
+    // mock rs.getDouble(columnIndex)
+    doAnswer(invocation -> {
+      final var index = invocation.getArgument(0, Integer.class);
+      return number(index - 1).doubleValue();
+    }).when(rs).getDouble(anyInt());
+
+    // mock rs.getFloat(columnIndex)
+    doAnswer(invocation -> {
+      final var index = invocation.getArgument(0, Integer.class);
+      return number(index - 1).floatValue();
+    }).when(rs).getFloat(anyInt());
+
+    // mock rs.getBoolean(columnIndex)
+    doAnswer(invocation -> {
+      final var index = invocation.getArgument(0, Integer.class);
+      final var value = (Boolean) value(index - 1);
+      return value != null && value;
+    }).when(rs).getBoolean(anyInt());
+
+    // mock rs.getBigDecimal(columnIndex)
+    doAnswer(invocation -> {
+      final var index = invocation.getArgument(0, Integer.class);
+      return value(index - 1);
+    }).when(rs).getBigDecimal(anyInt());
+
+    // mock rs.getDate(columnIndex)
+    doAnswer(invocation -> {
+      final var index = invocation.getArgument(0, Integer.class);
+      return value(index - 1);
+    }).when(rs).getDate(anyInt());
+
+    // mock rs.getTime(columnIndex)
+    doAnswer(invocation -> {
+      final var index = invocation.getArgument(0, Integer.class);
+      return value(index - 1);
+    }).when(rs).getTime(anyInt());
+
+    // mock rs.getTimestamp(columnIndex)
+    doAnswer(invocation -> {
+      final var index = invocation.getArgument(0, Integer.class);
+      return value(index - 1);
+    }).when(rs).getTimestamp(anyInt());
+
+    // mock rs.wasNull()
+    doAnswer(invocation -> wasNull).when(rs).wasNull();
+
     final var rsmd = mock(ResultSetMetaData.class);
 
     // mock rsmd.getColumnCount()
@@ -84,9 +158,15 @@ public class MockResultSet {
     // mock rsmd.getColumnName(int)
     doAnswer(invocation -> {
       final var index = invocation.getArgument(0, Integer.class);
-      return columnIndices.keySet().stream().skip(index - 1).findFirst().get();
+      return columnNames[index - 1];
     }).when(rsmd).getColumnName(anyInt());
 
+    // mock rsmd.getColumnType(int)
+    doAnswer(invocation -> {
+      final var index = invocation.getArgument(0, Integer.class);
+      return columnTypes[index - 1];
+    }).when(rsmd).getColumnType(anyInt());
+
     // mock rs.getMetaData()
     doReturn(rsmd).when(rs).getMetaData();
 
@@ -102,6 +182,22 @@ public class MockResultSet {
    * @throws SQLException
    */
   public static ResultSet create(final String[] columnNames, final Object[][] data) throws SQLException {
-    return new MockResultSet(columnNames, data).buildMock();
+    final var columnTypes = new int[columnNames.length];
+    Arrays.fill(columnTypes, Types.OTHER);
+    return create(columnNames, columnTypes, data);
+  }
+
+  /**
+   * Creates the mock ResultSet with typed columns.
+   *
+   * @param columnNames the names of the columns
+   * @param columnTypes the JDBC types of the columns, from {@link Types}
+   * @param data
+   * @return a mocked ResultSet
+   * @throws SQLException
+   */
+  public static ResultSet create(final String[] columnNames, final int[] columnTypes,
+      final Object[][] data) throws SQLException {
+    return new MockResultSet(columnNames, columnTypes, data).buildMock();
   }
 }
@@ -0,0 +1,123 @@
+package com.sharfah.util.sql;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class NumberFormatterTest {
+
+  private static String format(final double value) {
+    final var buf = new char[NumberFormatter.MAX_DOUBLE_LENGTH];
+    return new String(buf, 0, NumberFormatter.appendDouble(value, buf, 0));
+  }
+
+  private static String format(final BigDecimal value) {
+    final var buf = new TextBuffer(4);
+    buf.appendDecimal(value);
+    return buf.toString();
+  }
+
+  private static void assertShortest(final double value) {
+    final var s = format(value);
+    assertThat(s, Double.parseDouble(s), is(value));
+    assertThat(s, s.length(), is(lessThanOrEqualTo(Double.toString(value).length())));
+  }
+
+  @Test
+  public void testKnownValues() {
+    assertThat(format(0.0), is("0.0"));
+    assertThat(format(-0.0), is("-0.0"));
+    assertThat(format(1.0), is("1.0"));
+    assertThat(format(-12.5), is("-12.5"));
+    assertThat(format(0.1), is("0.1"));
+    assertThat(format(0.001), is("0.001"));
+    assertThat(format(1.0E-4), is("1.0E-4"));
+    assertThat(format(1234567.0), is("1234567.0"));
+    assertThat(format(1.0E7), is("1.0E7"));
+    assertThat(format(123456.789), is("123456.789"));
+    assertThat(format(1.0 / 3), is("0.3333333333333333"));
+    assertThat(format(Double.MAX_VALUE), is("1.7976931348623157E308"));
+    assertThat(format(Double.MIN_VALUE), is("4.9E-324"));
+    assertThat(format(Double.MIN_NORMAL), is("2.2250738585072014E-308"));
+    assertThat(format(-Double.MIN_NORMAL).length(), is(NumberFormatter.MAX_DOUBLE_LENGTH));
+    assertThat(format(Double.NaN), is("NaN"));
+    assertThat(format(Double.POSITIVE_INFINITY), is("Infinity"));
+    assertThat(format(Double.NEGATIVE_INFINITY), is("-Infinity"));
+    assertThat(format(1.0E23), is("1.0E23"));
+    // Double.toString writes these with a needless digit before Java 19
+    assertThat(format(2.0E-3), is("0.002"));
+    assertThat(format(1.0E-5 * 2), is("2.0E-5"));
+  }
+
+  @Test
+  public void testPowersOfTen() {
+    for (var e = -323; e <= 308; e++) {
+      assertShortest(Double.parseDouble("1E" + e));
+    }
+  }
+
+  @Test
+  public void testPowersOfTwo() {
+    for (var e = -1074; e <= 1023; e++) {
+      assertShortest(Math.scalb(1.0, e));
+    }
+  }
+
+  @Test
+  public void testSubnormals() {
+    for (var t = 1L; t < 1000; t++) {
+      assertShortest(Double.longBitsToDouble(t));
+      assertShortest(Double.longBitsToDouble((1L << 52) - t));
+    }
+  }
+
+  @Test
+  public void testIntegers() {
+    final var random = new Random(0);
+    for (var i = 0; i < 10_000; i++) {
+      final double value = random.nextLong() >> random.nextInt(64);
+      assertShortest(value);
+    }
+  }
+
+  @Test
+  public void testRandomBits() {
+    final var random = new Random(0);
+    for (var i = 0; i < 200_000; i++) {
+      final var value = Double.longBitsToDouble(random.nextLong());
+      if (Double.isFinite(value)) {
+        assertShortest(value);
+      }
+    }
+  }
+
+  @Test
+  public void testRandomDecimals() {
+    final var random = new Random(0);
+    for (var i = 0; i < 100_000; i++) {
+      final var value = Math.round(random.nextDouble() * 1e9) / Math.pow(10, random.nextInt(12));
+      assertShortest(value);
+    }
+  }
+
+  @Test
+  public void testDecimal() {
+    final var random = new Random(0);
+    for (var i = 0; i < 100_000; i++) {
+      final var unscaled = BigInteger.valueOf(random.nextLong() >> random.nextInt(64));
+      final var value = new BigDecimal(unscaled, random.nextInt(50) - 20);
+      assertThat(format(value), is(value.toPlainString()));
+    }
+    for (final var s : new String[] { "0", "0.00", "-0.5", "0E+3", "0E-25", "1E+3", "-1.23E-20",
+        "123456789012345678", "1234567890123456789", "-99999999999999999999.99", "0.000000001",
+        "9223372036854775807", "-9223372036854775808", "-922337203685477580.8" }) {
+      final var value = new BigDecimal(s);
+      assertThat(s, format(value), is(value.toPlainString()));
+    }
+  }
+}
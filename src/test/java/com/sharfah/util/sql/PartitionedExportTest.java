@@ -0,0 +1,126 @@
+package com.sharfah.util.sql;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class PartitionedExportTest {
+
+  private static final int ROWS = 1000;
+  private static final String QUERY = "select id, name from people where id >= ? and id < ? order by id";
+
+  private static JdbcDataSource dataSource;
+
+  @BeforeAll
+  public static void setUp() {
+    dataSource = TestDatabase.people("partitioned", ROWS);
+  }
+
+  @AfterAll
+  public static void tearDown() {
+    TestDatabase.drop(dataSource);
+  }
+
+  private static PartitionedExport export(final PartitionedExport.Order order) {
+    final var export = new PartitionedExport(dataSource, QUERY, KeyRangeSplitter.uniform(0, ROWS));
+    export.setPartitions(7);
+    export.setParallelism(3);
+    export.setChunkRows(50);
+    export.setQueuedChunks(2);
+    export.setOrder(order);
+    return export;
+  }
+
+  private static List<String> expectedLines() {
+    final var lines = new ArrayList<String>();
+    lines.add("ID,NAME");
+    for (var i = 0; i < ROWS; i++) {
+      lines.add(i + ",name" + i);
+    }
+    return lines;
+  }
+
+  @Test
+  public void testCsvStrictOrder() {
+    final var bos = new ByteArrayOutputStream();
+    export(PartitionedExport.Order.STRICT).export(ExportFormat.CSV, bos);
+    final var lines = Arrays.asList(new String(bos.toByteArray()).split(System.lineSeparator()));
+    assertThat(lines, is(expectedLines()));
+  }
+
+  @Test
+  public void testCsvArrivalOrder() {
+    final var bos = new ByteArrayOutputStream();
+    export(PartitionedExport.Order.ARRIVAL).export(ExportFormat.CSV, bos);
+    final var lines = Arrays.asList(new String(bos.toByteArray()).split(System.lineSeparator()));
+    final var expected = expectedLines();
+    assertThat(lines.get(0), is(expected.get(0)));
+    assertThat(lines, containsInAnyOrder(expected.toArray()));
+  }
+
+  @Test
+  public void testJsonStrictOrder() throws Exception {
+    final var bos = new ByteArrayOutputStream();
+    export(PartitionedExport.Order.STRICT).export(ExportFormat.JSON, bos);
+    final JsonNode json = new ObjectMapper().readTree(bos.toByteArray());
+    assertThat(json.size(), is(ROWS));
+    for (var i = 0; i < ROWS; i++) {
+      assertThat(json.get(i).get("ID").asInt(), is(i));
+      assertThat(json.get(i).get("NAME").asText(), is("name" + i));
+    }
+  }
+
+  @Test
+  public void testJsonArrivalOrder() throws Exception {
+    final var bos = new ByteArrayOutputStream();
+    export(PartitionedExport.Order.ARRIVAL).export(ExportFormat.JSON, bos);
+    final JsonNode json = new ObjectMapper().readTree(bos.toByteArray());
+    assertThat(json.size(), is(ROWS));
+  }
+
+  @Test
+  public void testNdjson() throws Exception {
+    final var bos = new ByteArrayOutputStream();
+    export(PartitionedExport.Order.STRICT).export(ExportFormat.NDJSON, bos);
+    final var lines = new String(bos.toByteArray()).split("\n");
+    assertThat(lines.length, is(ROWS));
+    for (var i = 0; i < ROWS; i++) {
+      assertThat(lines[i], is("{\"ID\":" + i + ",\"NAME\":\"name" + i + "\"}"));
+    }
+  }
+
+  @Test
+  public void testEmptyRanges() throws Exception {
+    final var export = new PartitionedExport(dataSource, QUERY, KeyRangeSplitter.uniform(ROWS, ROWS + 10));
+    export.setPartitions(3);
+    final var csv = new ByteArrayOutputStream();
+    export.export(ExportFormat.CSV, csv);
+    assertThat(new String(csv.toByteArray()), is("ID,NAME" + System.lineSeparator()));
+    final var json = new ByteArrayOutputStream();
+    export.export(ExportFormat.JSON, json);
+    assertThat(new String(json.toByteArray()), is("[]"));
+  }
+
+  @Test
+  public void testQueryFailure() {
+    final var export = new PartitionedExport(dataSource, "select * from missing where id >= ? and id < ?",
+        KeyRangeSplitter.uniform(0, ROWS));
+    final var e = assertThrows(RuntimeException.class,
+        () -> export.export(ExportFormat.CSV, new ByteArrayOutputStream()));
+    assertThat(e.getCause(), is(instanceOf(SQLException.class)));
+  }
+}
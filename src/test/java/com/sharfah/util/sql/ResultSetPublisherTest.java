@@ -0,0 +1,244 @@
+package com.sharfah.util.sql;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public class ResultSetPublisherTest {
+
+  private static final String SELECT = "select id, name from people order by id";
+
+  private static JdbcTemplate jdbcTemplate;
+
+  @BeforeAll
+  public static void setUp() {
+    jdbcTemplate = new JdbcTemplate(TestDatabase.people("publisher", 1000));
+  }
+
+  @AfterAll
+  public static void tearDown() {
+    TestDatabase.drop(jdbcTemplate.getDataSource());
+  }
+
+  /**
+   * Records the signals it receives.
+   */
+  private static class RecordingSubscriber implements Flow.Subscriber<ByteBuffer> {
+    final List<ByteBuffer> chunks = new ArrayList<>();
+    final CountDownLatch done = new CountDownLatch(1);
+    volatile Flow.Subscription subscription;
+    volatile Throwable error;
+    volatile boolean completed;
+
+    @Override
+    public void onSubscribe(final Flow.Subscription subscription) {
+      this.subscription = subscription;
+    }
+
+    @Override
+    public void onNext(final ByteBuffer item) {
+      synchronized (chunks) {
+        chunks.add(item);
+        chunks.notifyAll();
+      }
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+      error = throwable;
+      done.countDown();
+    }
+
+    @Override
+    public void onComplete() {
+      completed = true;
+      done.countDown();
+    }
+
+    int awaitChunks(final int count) throws InterruptedException {
+      final var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+      synchronized (chunks) {
+        while (chunks.size() < count && System.nanoTime() < deadline) {
+          chunks.wait(100);
+        }
+        return chunks.size();
+      }
+    }
+
+    void awaitDone() throws InterruptedException {
+      assertThat(done.await(10, TimeUnit.SECONDS), is(true));
+    }
+
+    String text() {
+      final var bos = new ByteArrayOutputStream();
+      synchronized (chunks) {
+        for (final var chunk : chunks) {
+          bos.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+        }
+      }
+      return bos.toString(StandardCharsets.UTF_8);
+    }
+  }
+
+  private static ResultSetPublisher publisher(final ExportFormat format, final int chunkSize) {
+    final var publisher = new ResultSetPublisher(jdbcTemplate, new StreamingQuery(SELECT), format);
+    publisher.setChunkSize(chunkSize);
+    return publisher;
+  }
+
+  private static String expected(final ExportFormat format) {
+    final var os = new ByteArrayOutputStream();
+    jdbcTemplate.query(SELECT, new ExtractorFactory().extractor(format, os));
+    return os.toString(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testFormats() throws InterruptedException {
+    for (final var format : ExportFormat.values()) {
+      final var subscriber = new RecordingSubscriber();
+      publisher(format, 100).subscribe(subscriber);
+      subscriber.subscription.request(Long.MAX_VALUE);
+      subscriber.awaitDone();
+      assertThat(subscriber.error, is(nullValue()));
+      assertThat(subscriber.completed, is(true));
+      assertThat(subscriber.text(), is(expected(format)));
+      for (var i = 0; i < subscriber.chunks.size() - 1; i++) {
+        assertThat(subscriber.chunks.get(i).remaining(), is(100));
+      }
+    }
+  }
+
+  @Test
+  public void testEmitsOnlyOnDemand() throws InterruptedException {
+    final var subscriber = new RecordingSubscriber();
+    publisher(ExportFormat.CSV, 64).subscribe(subscriber);
+    Thread.sleep(100);
+    assertThat(subscriber.chunks, is(empty()));
+    subscriber.subscription.request(2);
+    assertThat(subscriber.awaitChunks(2), is(2));
+    Thread.sleep(100);
+    assertThat(subscriber.awaitChunks(0), is(2));
+    assertThat(subscriber.done.getCount(), is(1L));
+    subscriber.subscription.request(3);
+    assertThat(subscriber.awaitChunks(5), is(5));
+    subscriber.subscription.request(Long.MAX_VALUE);
+    subscriber.subscription.request(Long.MAX_VALUE);
+    subscriber.awaitDone();
+    assertThat(subscriber.completed, is(true));
+    assertThat(subscriber.text(), is(expected(ExportFormat.CSV)));
+  }
+
+  @Test
+  public void testResubscribe() throws InterruptedException {
+    final var publisher = publisher(ExportFormat.NDJSON, 1000);
+    for (var i = 0; i < 2; i++) {
+      final var subscriber = new RecordingSubscriber();
+      publisher.subscribe(subscriber);
+      subscriber.subscription.request(Long.MAX_VALUE);
+      subscriber.awaitDone();
+      assertThat(subscriber.text(), is(expected(ExportFormat.NDJSON)));
+    }
+  }
+
+  @Test
+  public void testCancel() throws InterruptedException {
+    final var subscriber = new RecordingSubscriber();
+    publisher(ExportFormat.JSON, 64).subscribe(subscriber);
+    subscriber.subscription.request(1);
+    assertThat(subscriber.awaitChunks(1), is(1));
+    subscriber.subscription.cancel();
+    subscriber.subscription.request(10);
+    Thread.sleep(200);
+    assertThat(subscriber.awaitChunks(0), is(1));
+    assertThat(subscriber.done.getCount(), is(1L));
+    // the connection was released and the table is not locked
+    assertThat(jdbcTemplate.queryForObject("select count(*) from people", Long.class), is(1000L));
+  }
+
+  @Test
+  public void testCancelBeforeRequest() throws InterruptedException {
+    final var subscriber = new RecordingSubscriber();
+    publisher(ExportFormat.CSV, 64).subscribe(subscriber);
+    subscriber.subscription.cancel();
+    Thread.sleep(100);
+    assertThat(subscriber.chunks, is(empty()));
+    assertThat(subscriber.done.getCount(), is(1L));
+  }
+
+  @Test
+  public void testInvalidRequest() throws InterruptedException {
+    final var subscriber = new RecordingSubscriber();
+    publisher(ExportFormat.CSV, 64).subscribe(subscriber);
+    subscriber.subscription.request(1);
+    assertThat(subscriber.awaitChunks(1), is(1));
+    subscriber.subscription.request(0);
+    subscriber.awaitDone();
+    assertThat(subscriber.error, is(instanceOf(IllegalArgumentException.class)));
+    assertThat(subscriber.completed, is(false));
+  }
+
+  @Test
+  public void testInvalidRequestAfterLastChunk() throws InterruptedException {
+    final var expected = expected(ExportFormat.CSV);
+    final var subscriber = new RecordingSubscriber() {
+      @Override
+      public void onNext(final ByteBuffer item) {
+        super.onNext(item);
+        if (text().length() == expected.length()) {
+          subscription.request(0);
+        }
+      }
+    };
+    publisher(ExportFormat.CSV, 64).subscribe(subscriber);
+    subscriber.subscription.request(Long.MAX_VALUE);
+    subscriber.awaitDone();
+    assertThat(subscriber.text(), is(expected));
+    assertThat(subscriber.error, is(instanceOf(IllegalArgumentException.class)));
+    assertThat(subscriber.completed, is(false));
+  }
+
+  @Test
+  public void testQueryFailure() throws InterruptedException {
+    final var subscriber = new RecordingSubscriber();
+    new ResultSetPublisher(jdbcTemplate, new StreamingQuery("select * from missing"), ExportFormat.CSV)
+        .subscribe(subscriber);
+    subscriber.subscription.request(1);
+    subscriber.awaitDone();
+    assertThat(subscriber.error, is(notNullValue()));
+    assertThat(subscriber.chunks, is(empty()));
+  }
+
+  @Test
+  public void testRejected() throws InterruptedException {
+    final var subscriber = new RecordingSubscriber();
+    final var publisher = publisher(ExportFormat.CSV, 64);
+    publisher.setExecutor(task -> {
+      throw new RejectedExecutionException("full");
+    });
+    publisher.subscribe(subscriber);
+    subscriber.awaitDone();
+    assertThat(subscriber.error, is(instanceOf(RejectedExecutionException.class)));
+  }
+
+  @Test
+  public void testInvalidArguments() {
+    final var publisher = publisher(ExportFormat.CSV, 64);
+    assertThrows(IllegalArgumentException.class, () -> publisher.setChunkSize(0));
+    assertThrows(NullPointerException.class, () -> publisher.subscribe(null));
+  }
+}
@@ -0,0 +1,142 @@
+package com.sharfah.util.sql;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ResumableExportTest {
+
+  private static final int ROWS = 1000;
+  private static final String QUERY = "select id, name, true ok from people";
+
+  private static JdbcDataSource dataSource;
+
+  @TempDir
+  Path dir;
+
+  /**
+   * Returns a DataSource whose ResultSets fail after the given number of rows.
+   */
+  private static DataSource failingAfter(final int rows) {
+    return (DataSource) failing(dataSource, DataSource.class, new AtomicInteger(rows));
+  }
+
+  private static Object failing(final Object target, final Class<?> type, final AtomicInteger rows) {
+    return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, (proxy, method, args) -> {
+      if (type == ResultSet.class && method.getName().equals("next") && rows.decrementAndGet() < 0) {
+        throw new SQLException("Connection lost");
+      }
+      final Object result;
+      try {
+        result = method.invoke(target, args);
+      } catch (final InvocationTargetException e) {
+        throw e.getCause();
+      }
+      for (final var wrapped : List.of(Connection.class, PreparedStatement.class, ResultSet.class)) {
+        if (method.getReturnType() == wrapped) {
+          return failing(result, wrapped, rows);
+        }
+      }
+      return result;
+    });
+  }
+
+  @BeforeAll
+  public static void setUp() {
+    dataSource = TestDatabase.people("resumable", ROWS);
+  }
+
+  @AfterAll
+  public static void tearDown() {
+    TestDatabase.drop(dataSource);
+  }
+
+  private ResumableExport export(final ExportFormat format) {
+    return export(dataSource, format);
+  }
+
+  private ResumableExport export(final DataSource dataSource, final ExportFormat format) {
+    final var export = new ResumableExport(dataSource, QUERY, "id", dir.resolve("out"), dir.resolve("checkpoint"));
+    export.setFormat(format);
+    export.setCheckpointInterval(100);
+    export.setFetchSize(10);
+    return export;
+  }
+
+  private static String expectedCsv() {
+    final var lines = new ArrayList<String>();
+    lines.add("ID,NAME,OK");
+    for (var i = 0; i < ROWS; i++) {
+      lines.add(i + ",name" + i + ",true");
+    }
+    return String.join(System.lineSeparator(), lines) + System.lineSeparator();
+  }
+
+  @Test
+  public void testExport() throws IOException, SQLException {
+    assertThat(export(ExportFormat.CSV).export(), is((long) ROWS));
+    assertThat(Files.readString(dir.resolve("out")), is(expectedCsv()));
+    assertThat(Files.exists(dir.resolve("checkpoint")), is(false));
+  }
+
+  @Test
+  public void testResumeCsv() throws IOException, SQLException {
+    assertThrows(SQLException.class, () -> export(failingAfter(555), ExportFormat.CSV).export());
+    final var properties = new Properties();
+    try (var reader = Files.newBufferedReader(dir.resolve("checkpoint"))) {
+      properties.load(reader);
+    }
+    assertThat(properties.getProperty("lastKey"), is("499"));
+    assertThat(properties.getProperty("rows"), is("500"));
+    assertThat(Files.size(dir.resolve("out")), is(greaterThanOrEqualTo(Long.parseLong(properties.getProperty("offset")))));
+
+    assertThat(export(ExportFormat.CSV).export(), is((long) ROWS));
+    assertThat(Files.readString(dir.resolve("out")), is(expectedCsv()));
+    assertThat(Files.exists(dir.resolve("checkpoint")), is(false));
+  }
+
+  @Test
+  public void testResumeNdjson() throws IOException, SQLException {
+    assertThrows(SQLException.class, () -> export(failingAfter(250), ExportFormat.NDJSON).export());
+    assertThat(Files.exists(dir.resolve("checkpoint")), is(true));
+    assertThat(export(ExportFormat.NDJSON).export(), is((long) ROWS));
+    final var lines = Files.readAllLines(dir.resolve("out"));
+    assertThat(lines.size(), is(ROWS));
+    for (var i = 0; i < ROWS; i++) {
+      assertThat(lines.get(i), is("{\"ID\":" + i + ",\"NAME\":\"name" + i + "\",\"OK\":true}"));
+    }
+  }
+
+  @Test
+  public void testCheckpointOfAnotherExport() throws IOException {
+    Files.writeString(dir.resolve("checkpoint"), "query=select 1\nkeyColumn=id\nformat=CSV\n");
+    assertThrows(IllegalStateException.class, () -> export(ExportFormat.CSV).export());
+  }
+
+  @Test
+  public void testJsonNotResumable() {
+    assertThrows(IllegalArgumentException.class, () -> export(ExportFormat.JSON));
+  }
+}
@@ -0,0 +1,248 @@
+package com.sharfah.util.sql;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.beans.ConstructorProperties;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+public class RowMapperFactoryTest {
+
+  private static final String SELECT = "select id, name, price, ratio, active, born, seen, item_count, "
+      + "small, unmapped from item order by id";
+
+  private static JdbcTemplate jdbcTemplate;
+
+  public static class Item {
+    private long id;
+    private String name;
+    private BigDecimal price;
+    private double ratio;
+    private boolean active;
+    private LocalDate born;
+    private Timestamp seen;
+    private Integer itemCount;
+    private short small;
+
+    public long getId() {
+      return id;
+    }
+
+    public void setId(final long id) {
+      this.id = id;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public void setName(final String name) {
+      this.name = name;
+    }
+
+    public BigDecimal getPrice() {
+      return price;
+    }
+
+    public void setPrice(final BigDecimal price) {
+      this.price = price;
+    }
+
+    public double getRatio() {
+      return ratio;
+    }
+
+    public void setRatio(final double ratio) {
+      this.ratio = ratio;
+    }
+
+    public boolean isActive() {
+      return active;
+    }
+
+    public void setActive(final boolean active) {
+      this.active = active;
+    }
+
+    public LocalDate getBorn() {
+      return born;
+    }
+
+    public void setBorn(final LocalDate born) {
+      this.born = born;
+    }
+
+    public Timestamp getSeen() {
+      return seen;
+    }
+
+    // fluent setters are bound too
+    public Item setSeen(final Timestamp seen) {
+      this.seen = seen;
+      return this;
+    }
+
+    public Integer getItemCount() {
+      return itemCount;
+    }
+
+    public void setItemCount(final Integer itemCount) {
+      this.itemCount = itemCount;
+    }
+
+    public short getSmall() {
+      return small;
+    }
+
+    public void setSmall(final short small) {
+      this.small = small;
+    }
+  }
+
+  public static class Defaulted {
+    private long id = -1;
+    private int itemCount = -1;
+    private double ratio = -1;
+
+    public long getId() {
+      return id;
+    }
+
+    public void setId(final long id) {
+      this.id = id;
+    }
+
+    public int getItemCount() {
+      return itemCount;
+    }
+
+    public void setItemCount(final int itemCount) {
+      this.itemCount = itemCount;
+    }
+
+    public double getRatio() {
+      return ratio;
+    }
+
+    public void setRatio(final double ratio) {
+      this.ratio = ratio;
+    }
+  }
+
+  public static class ImmutableItem {
+    final long id;
+    final String name;
+    final int itemCount;
+    final String missing;
+
+    @ConstructorProperties({ "id", "name", "item_count", "missing" })
+    public ImmutableItem(final long id, final String name, final int itemCount, final String missing) {
+      this.id = id;
+      this.name = name;
+      this.itemCount = itemCount;
+      this.missing = missing;
+    }
+  }
+
+  @BeforeAll
+  public static void setUp() {
+    final var dataSource = new JdbcDataSource();
+    dataSource.setURL("jdbc:h2:mem:mapper;DB_CLOSE_DELAY=-1");
+    jdbcTemplate = new JdbcTemplate(dataSource);
+    jdbcTemplate.execute("create table item (id bigint primary key, name varchar(50), price decimal(10, 2), "
+        + "ratio double, active boolean, born date, seen timestamp, item_count int, small smallint, "
+        + "unmapped varchar(10))");
+    jdbcTemplate.execute("insert into item select x, casewhen(mod(x, 3) = 0, null, 'name ' || x), "
+        + "x / 100.0, casewhen(mod(x, 4) = 0, null, x / 3.0), mod(x, 2) = 0, "
+        + "dateadd('day', x, date '2000-01-01'), dateadd('second', x, timestamp '2020-01-01 00:00:00'), "
+        + "casewhen(mod(x, 5) = 0, null, x * 2), x, 'u' from system_range(1, 100)");
+  }
+
+  @AfterAll
+  public static void tearDown() {
+    jdbcTemplate.execute("drop table item");
+  }
+
+  @Test
+  public void testBean() {
+    final var beanPropertyRowMapper = new BeanPropertyRowMapper<>(Item.class);
+    beanPropertyRowMapper.setPrimitivesDefaultedForNullValue(true);
+    final var expected = jdbcTemplate.query(SELECT, beanPropertyRowMapper);
+    final var actual = jdbcTemplate.query(SELECT, new RowMapperFactory().getRowMapper(Item.class));
+    assertThat(actual, hasSize(100));
+    for (var i = 0; i < actual.size(); i++) {
+      final var e = expected.get(i);
+      final var a = actual.get(i);
+      assertThat(a.getId(), is(e.getId()));
+      assertThat(a.getName(), is(e.getName()));
+      assertThat(a.getPrice(), is(e.getPrice()));
+      assertThat(a.getRatio(), is(e.getRatio()));
+      assertThat(a.isActive(), is(e.isActive()));
+      assertThat(a.getBorn(), is(LocalDate.of(2000, 1, 1).plusDays(a.getId())));
+      assertThat(a.getSeen(), is(e.getSeen()));
+      assertThat(a.getItemCount(), is(e.getItemCount()));
+      assertThat(a.getSmall(), is((short) a.getId()));
+    }
+    assertThat(actual.get(3).getItemCount(), is(8));
+    assertThat(actual.get(4).getItemCount(), is(nullValue()));
+  }
+
+  @Test
+  public void testNullNotSetIntoPrimitive() {
+    final var mapper = new RowMapperFactory().getRowMapper(Defaulted.class);
+    final var nulls = jdbcTemplate.queryForObject(
+        "select cast(null as bigint) id, item_count, ratio from item where id = 20", mapper);
+    assertThat(nulls.getId(), is(-1L));
+    assertThat(nulls.getItemCount(), is(-1));
+    assertThat(nulls.getRatio(), is(-1.0));
+    final var values = jdbcTemplate.queryForObject("select id, item_count, ratio from item where id = 3", mapper);
+    assertThat(values.getId(), is(3L));
+    assertThat(values.getItemCount(), is(6));
+    assertThat(values.getRatio(), is(1.0));
+  }
+
+  @Test
+  public void testConstructor() {
+    final var items = jdbcTemplate.query("select id, name, item_count, ratio from item order by id",
+        new RowMapperFactory().getRowMapper(ImmutableItem.class));
+    assertThat(items, hasSize(100));
+    assertThat(items.get(0).id, is(1L));
+    assertThat(items.get(0).name, is("name 1"));
+    assertThat(items.get(0).itemCount, is(2));
+    assertThat(items.get(0).missing, is(nullValue()));
+    assertThat(items.get(2).name, is(nullValue()));
+    // a null is given to a primitive parameter as zero
+    assertThat(items.get(4).itemCount, is(0));
+  }
+
+  @Test
+  public void testPlansCachedBySignature() {
+    final var factory = new RowMapperFactory(2);
+    final var mapper = factory.getRowMapper(Item.class);
+    jdbcTemplate.query("select id, name from item", mapper);
+    jdbcTemplate.query("select id, name from item where id > 50", factory.getRowMapper(Item.class));
+    assertThat(factory.size(), is(1));
+    final var items = jdbcTemplate.query("select id, small as item_count from item where id = 7", mapper);
+    assertThat(factory.size(), is(2));
+    assertThat(items.get(0).getItemCount(), is(7));
+    assertThat(items.get(0).getName(), is(nullValue()));
+    jdbcTemplate.query("select id from item", mapper);
+    assertThat(factory.size(), is(2));
+  }
+
+  @Test
+  public void testNoConstructor() {
+    assertThrows(IllegalArgumentException.class,
+        () -> jdbcTemplate.query(SELECT, new RowMapperFactory().getRowMapper(Integer.class)));
+  }
+}
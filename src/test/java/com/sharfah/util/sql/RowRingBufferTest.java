@@ -0,0 +1,71 @@
+package com.sharfah.util.sql;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class RowRingBufferTest {
+
+  private static final ColumnType[] TYPES = { ColumnType.LONG };
+
+  @Test
+  public void testCapacityIsPowerOfTwo() {
+    assertThat(new RowRingBuffer(1, TYPES).capacity(), is(1));
+    assertThat(new RowRingBuffer(5, TYPES).capacity(), is(8));
+    assertThat(new RowRingBuffer(8, TYPES).capacity(), is(8));
+    assertThrows(IllegalArgumentException.class, () -> new RowRingBuffer(0, TYPES));
+  }
+
+  @Test
+  public void testRowsArriveInOrder() throws Exception {
+    final var ring = new RowRingBuffer(4, TYPES);
+    final var count = 100_000;
+    final var consumer = CompletableFuture.supplyAsync(() -> {
+      var expected = 0L;
+      RowValues row;
+      while ((row = ring.take()) != null) {
+        assertThat(row.longs[0], is(expected++));
+        ring.release();
+      }
+      return expected;
+    });
+    for (var i = 0L; i < count; i++) {
+      ring.claim().longs[0] = i;
+      ring.publish();
+    }
+    ring.close();
+    assertThat(consumer.get(10, TimeUnit.SECONDS), is((long) count));
+  }
+
+  @Test
+  public void testTakeReturnsNullWhenClosed() {
+    final var ring = new RowRingBuffer(2, TYPES);
+    ring.claim().longs[0] = 42;
+    ring.publish();
+    ring.close();
+    assertThat(ring.take().longs[0], is(42L));
+    ring.release();
+    assertThat(ring.take(), is(nullValue()));
+  }
+
+  @Test
+  public void testAbortStopsProducer() throws Exception {
+    final var ring = new RowRingBuffer(2, TYPES);
+    final var producer = CompletableFuture.runAsync(() -> {
+      while (true) {
+        ring.claim();
+        ring.publish();
+      }
+    });
+    ring.take();
+    ring.abort();
+    final var e = assertThrows(Exception.class, () -> producer.get(10, TimeUnit.SECONDS));
+    assertThat(e.getCause(), is(instanceOf(CancellationException.class)));
+  }
+}
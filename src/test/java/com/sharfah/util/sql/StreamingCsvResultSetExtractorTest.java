@@ -2,9 +2,21 @@ package com.sharfah.util.sql;
 
 import static org.hamcrest.MatcherAssert.*;
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
 
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
 import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.Random;
 
 import org.junit.jupiter.api.Test;
 
@@ -35,4 +47,154 @@ public class StreamingCsvResultSetExtractorTest {
     final var csv = new String(bos.toByteArray());
     assertThat(csv, is("name,age" + System.lineSeparator()));
   }
+
+  @Test
+  public void testTypedColumns() throws SQLException {
+    final var bos = new ByteArrayOutputStream();
+    final var extractor = new StreamingCsvResultSetExtractor(bos);
+    final var rs = MockResultSet.create(new String[] { "id", "price", "ratio", "amount", "active", "name" },
+        new int[] { Types.BIGINT, Types.DOUBLE, Types.REAL, Types.DECIMAL, Types.BOOLEAN, Types.VARCHAR },
+        new Object[][] {
+          { 1L, 1.5, 0.1f, new BigDecimal("10.25"), true, "Alice" },
+          { -42L, -0.001, 2.5f, new BigDecimal("-3"), false, "Bob" },
+          { Long.MIN_VALUE, 1e20, 1e10f, BigDecimal.ZERO, true, "" },
+          { null, null, null, null, null, null }
+      });
+    extractor.extractData(rs);
+    final var csv = new String(bos.toByteArray());
+    assertThat(csv, is(String.join(System.lineSeparator(),
+        "id,price,ratio,amount,active,name",
+        "1,1.5,0.1,10.25,true,Alice",
+        "-42,-0.001,2.5,-3,false,Bob",
+        "-9223372036854775808,1.0E20,1.0E10,0,true,\"\"",
+        ",,,,,") + System.lineSeparator()));
+  }
+
+  @Test
+  public void testTemporalColumns() throws SQLException {
+    final var bos = new ByteArrayOutputStream();
+    final var extractor = new StreamingCsvResultSetExtractor(bos);
+    final var rs = MockResultSet.create(new String[] { "day", "at", "seen" },
+        new int[] { Types.DATE, Types.TIME, Types.TIMESTAMP },
+        new Object[][] {
+          { Date.valueOf("2020-01-31"), Time.valueOf("13:45:30"), Timestamp.valueOf("2020-01-31 13:45:30.123456") },
+          { Date.valueOf("1969-12-31"), Time.valueOf("00:00:00"), Timestamp.valueOf("2020-01-31 23:59:59") }
+      });
+    extractor.extractData(rs);
+    assertThat(bos.toString(StandardCharsets.UTF_8), is(String.join(System.lineSeparator(),
+        "day,at,seen",
+        "2020-01-31,13:45:30,2020-01-31T13:45:30.123456",
+        "1969-12-31,00:00:00,2020-01-31T23:59:59") + System.lineSeparator()));
+
+    bos.reset();
+    final var utc = new StreamingCsvResultSetExtractor(bos);
+    utc.setTemporalFormat(TemporalFormat.iso().withZone(ZoneOffset.UTC).withPrecision(3).withOffset(true));
+    utc.extractData(MockResultSet.create(new String[] { "seen" }, new int[] { Types.TIMESTAMP },
+        new Object[][] { { new Timestamp(1_580_478_330_123L) } }));
+    assertThat(bos.toString(StandardCharsets.UTF_8), is(String.join(System.lineSeparator(),
+        "seen", "2020-01-31T13:45:30.123Z") + System.lineSeparator()));
+  }
+
+  @Test
+  public void testQuoting() throws SQLException {
+    final var bos = new ByteArrayOutputStream();
+    final var extractor = new StreamingCsvResultSetExtractor(bos);
+    final var rs = MockResultSet.create(new String[] { "name", "a,b" },
+        new int[] { Types.VARCHAR, Types.VARCHAR },
+        new Object[][] {
+          { "Smith, John", "say \"hi\"" },
+          { "two\nlines", "" },
+          { null, "plain" }
+      });
+    extractor.extractData(rs);
+    final var csv = new String(bos.toByteArray());
+    assertThat(csv, is(String.join(System.lineSeparator(),
+        "name,\"a,b\"",
+        "\"Smith, John\",\"say \"\"hi\"\"\"",
+        "\"two\nlines\",\"\"",
+        ",plain") + System.lineSeparator()));
+  }
+
+  @Test
+  public void testUtf8WithSmallBuffer() throws SQLException {
+    final var bos = new ByteArrayOutputStream();
+    final var extractor = new StreamingCsvResultSetExtractor(bos);
+    extractor.setBufferSize(3);
+    extractor.setFlushPolicy(FlushPolicy.everyRows(1));
+    final var rs = MockResultSet.create(new String[] { "name" },
+        new Object[][] {
+          { "Zo\u00eb" },
+          { "\u00c5sa" }
+      });
+    extractor.extractData(rs);
+    final var csv = bos.toString(StandardCharsets.UTF_8);
+    assertThat(csv, is(String.join(System.lineSeparator(), "name", "Zo\u00eb", "\u00c5sa") + System.lineSeparator()));
+  }
+
+  @Test
+  public void testPipelined() throws SQLException {
+    final var count = 10_000;
+    final var data = new Object[count][];
+    final var expected = new StringBuilder("id,name").append(System.lineSeparator());
+    for (var i = 0; i < count; i++) {
+      data[i] = new Object[] { i, "name" + i };
+      expected.append(i).append(",name").append(i).append(System.lineSeparator());
+    }
+    final var bos = new ByteArrayOutputStream();
+    final var extractor = new StreamingCsvResultSetExtractor(bos);
+    extractor.setPipelineCapacity(16);
+    extractor.extractData(MockResultSet.create(new String[] { "id", "name" },
+        new int[] { Types.INTEGER, Types.VARCHAR }, data));
+    assertThat(new String(bos.toByteArray()), is(expected.toString()));
+  }
+
+  @Test
+  public void testPipelinedWriteFailure() throws SQLException {
+    final var os = new OutputStream() {
+      @Override
+      public void write(final int b) throws IOException {
+        throw new IOException("disk full");
+      }
+    };
+    final var data = new Object[1000][];
+    for (var i = 0; i < data.length; i++) {
+      data[i] = new Object[] { i };
+    }
+    final var extractor = new StreamingCsvResultSetExtractor(os);
+    extractor.setBufferSize(16);
+    extractor.setPipelineCapacity(4);
+    final var rs = MockResultSet.create(new String[] { "id" }, new int[] { Types.INTEGER }, data);
+    final var e = assertThrows(RuntimeException.class, () -> extractor.extractData(rs));
+    assertThat(e.getCause().getMessage(), is("disk full"));
+  }
+
+  @Test
+  public void testLobs() throws SQLException {
+    // larger than a chunk, with quotes and surrogate pairs across chunk boundaries
+    final var text = "a\"\ud83d\ude00".repeat(10_000);
+    final var bytes = new byte[100_000];
+    new Random(0).nextBytes(bytes);
+    final var names = new String[] { "id", "doc", "data" };
+    final var types = new int[] { Types.BIGINT, Types.CLOB, Types.BLOB };
+    final var data = new Object[][] {
+      { 1L, text, bytes },
+      { 2L, "", new byte[0] },
+      { 3L, null, null }
+    };
+    final var expected = String.join(System.lineSeparator(), "id,doc,data",
+        "1,\"" + text.replace("\"", "\"\"") + "\"," + Base64.getEncoder().encodeToString(bytes),
+        "2,\"\",\"\"", "3,,") + System.lineSeparator();
+
+    final var bos = new ByteArrayOutputStream();
+    final var extractor = new StreamingCsvResultSetExtractor(bos);
+    extractor.setBufferSize(1000);
+    extractor.extractData(InMemoryResultSet.of(names, types, data));
+    assertThat(bos.toString(StandardCharsets.UTF_8), is(expected));
+
+    // not pipelined, as streamed LOBs must be read before the ResultSet moves on
+    bos.reset();
+    extractor.setPipelineCapacity(16);
+    extractor.extractData(InMemoryResultSet.of(names, types, data));
+    assertThat(bos.toString(StandardCharsets.UTF_8), is(expected));
+  }
 }
@@ -2,10 +2,19 @@ package com.sharfah.util.sql;
 
 import static com.sharfah.util.hamcrest.IsEqualJSON.*;
 import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
 
 import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Base64;
+import java.util.Random;
 
+import org.json.JSONObject;
 import org.junit.jupiter.api.Test;
 
 public class StreamingJsonResultSetExtractorTest {
@@ -39,4 +48,116 @@ public class StreamingJsonResultSetExtractorTest {
     final var json = new String(bos.toByteArray());
     assertThat(json, equalToJSON("[]"));
   }
+
+  @Test
+  public void testTypedColumns() throws SQLException {
+    final var bos = new ByteArrayOutputStream();
+    final var extractor = new StreamingJsonResultSetExtractor(bos);
+    final var rs = MockResultSet.create(
+        new String[] { "id", "price", "amount", "active", "name", "created", "at" },
+        new int[] { Types.INTEGER, Types.DOUBLE, Types.NUMERIC, Types.BIT, Types.VARCHAR,
+          Types.TIMESTAMP, Types.TIME },
+        new Object[][] {
+          { 1, 1.5, new BigDecimal("10.25"), true, "Alice", new Timestamp(1000), Time.valueOf("01:02:03") },
+          { null, null, null, null, null, null, null }
+      });
+    extractor.extractData(rs);
+    final var json = new String(bos.toByteArray());
+    assertThat(json, equalToJSON("["
+        + "{\"id\":1,\"price\":1.5,\"amount\":10.25,\"active\":true,\"name\":\"Alice\","
+        + "\"created\":1000,\"at\":\"01:02:03\"},"
+        + "{\"id\":null,\"price\":null,\"amount\":null,\"active\":null,\"name\":null,"
+        + "\"created\":null,\"at\":null}"
+        + "]"));
+  }
+
+  @Test
+  public void testPipelined() throws SQLException {
+    final var bos = new ByteArrayOutputStream();
+    final var extractor = new StreamingJsonResultSetExtractor(bos);
+    extractor.setPipelineCapacity(2);
+    final var rs = MockResultSet.create(new String[] { "name", "age" },
+        new int[] { Types.VARCHAR, Types.INTEGER },
+        new Object[][] {
+          { "Alice", 20 },
+          { "Bob", 35 },
+          { "Charles", 50 }
+      });
+    extractor.extractData(rs);
+    final var json = new String(bos.toByteArray());
+    assertThat(json, equalToJSON("["
+        + "{\"name\":\"Alice\",\"age\":20},"
+        + "{\"name\":\"Bob\",\"age\":35},"
+        + "{\"name\":\"Charles\",\"age\":50}"
+        + "]"));
+  }
+
+  @Test
+  public void testNdjson() throws SQLException {
+    final var bos = new ByteArrayOutputStream();
+    final var extractor = new StreamingJsonResultSetExtractor(bos);
+    extractor.setLayout(JsonLayout.NDJSON);
+    final var rs = MockResultSet.create(new String[] { "name", "age" },
+        new int[] { Types.VARCHAR, Types.INTEGER },
+        new Object[][] {
+          { "Alice", 20 },
+          { "Bob", null }
+      });
+    extractor.extractData(rs);
+    assertThat(new String(bos.toByteArray()),
+        is("{\"name\":\"Alice\",\"age\":20}\n{\"name\":\"Bob\",\"age\":null}\n"));
+  }
+
+  @Test
+  public void testNdjsonEmpty() throws SQLException {
+    final var bos = new ByteArrayOutputStream();
+    final var extractor = new StreamingJsonResultSetExtractor(bos);
+    extractor.setLayout(JsonLayout.NDJSON);
+    extractor.extractData(MockResultSet.create(new String[] { "name" }, new Object[][] {}));
+    assertThat(new String(bos.toByteArray()), is(""));
+  }
+
+  @Test
+  public void testColumnsAndRows() throws SQLException {
+    final var bos = new ByteArrayOutputStream();
+    final var extractor = new StreamingJsonResultSetExtractor(bos);
+    extractor.setLayout(JsonLayout.COLUMNS_AND_ROWS);
+    final var rs = MockResultSet.create(new String[] { "name", "age" },
+        new int[] { Types.VARCHAR, Types.INTEGER },
+        new Object[][] {
+          { "Alice", 20 },
+          { "Bob", null }
+      });
+    extractor.extractData(rs);
+    assertThat(new String(bos.toByteArray()),
+        is("{\"columns\":[\"name\",\"age\"],\"rows\":[[\"Alice\",20],[\"Bob\",null]]}"));
+  }
+
+  @Test
+  public void testColumnsAndRowsEmpty() throws SQLException {
+    final var bos = new ByteArrayOutputStream();
+    final var extractor = new StreamingJsonResultSetExtractor(bos);
+    extractor.setLayout(JsonLayout.COLUMNS_AND_ROWS);
+    extractor.extractData(MockResultSet.create(new String[] { "name" }, new Object[][] {}));
+    assertThat(new String(bos.toByteArray()), equalToJSON("{\"columns\":[\"name\"],\"rows\":[]}"));
+  }
+
+  @Test
+  public void testLobs() throws SQLException {
+    final var text = "a\"\ud83d\ude00\n".repeat(10_000);
+    final var bytes = new byte[100_000];
+    new Random(0).nextBytes(bytes);
+    final var rs = InMemoryResultSet.of(new String[] { "doc", "data" }, new int[] { Types.CLOB, Types.BLOB },
+        new Object[][] {
+          { text, bytes },
+          { null, null }
+      });
+    final var bos = new ByteArrayOutputStream();
+    new StreamingJsonResultSetExtractor(bos).extractData(rs);
+    final var json = new String(bos.toByteArray(), StandardCharsets.UTF_8);
+    assertThat(json, equalToJSON("["
+        + "{\"doc\":" + JSONObject.quote(text) + ",\"data\":\"" + Base64.getEncoder().encodeToString(bytes) + "\"},"
+        + "{\"doc\":null,\"data\":null}"
+        + "]"));
+  }
 }
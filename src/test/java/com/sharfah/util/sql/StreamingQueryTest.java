@@ -0,0 +1,100 @@
+package com.sharfah.util.sql;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+public class StreamingQueryTest {
+
+  private static JdbcDataSource dataSource;
+
+  @BeforeAll
+  public static void setUp() {
+    dataSource = TestDatabase.people("streaming", 6);
+  }
+
+  @AfterAll
+  public static void tearDown() {
+    TestDatabase.drop(dataSource);
+  }
+
+  @Test
+  public void testQuery() throws SQLException {
+    final var connection = dataSource.getConnection();
+    final var jdbcTemplate = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+    final var query = new StreamingQuery("select id, name from people where id > ? order by id", 3);
+    query.setFetchSize(2);
+    final var bos = new ByteArrayOutputStream();
+    query.query(jdbcTemplate, new StreamingCsvResultSetExtractor(bos));
+    assertThat(bos.toString(), is(String.join(System.lineSeparator(), "ID,NAME", "4,name4", "5,name5")
+        + System.lineSeparator()));
+    assertThat(connection.getAutoCommit(), is(true));
+    connection.close();
+  }
+
+  @Test
+  public void testStatementSetup() throws SQLException {
+    try (var connection = dataSource.getConnection()) {
+      final var query = new StreamingQuery("select id from people");
+      query.setFetchSize(3);
+      query.setQueryTimeout(10);
+      query.query(connection, rs -> {
+        assertThat(connection.getAutoCommit(), is(false));
+        assertThat(rs.getType(), is(ResultSet.TYPE_FORWARD_ONLY));
+        assertThat(rs.getConcurrency(), is(ResultSet.CONCUR_READ_ONLY));
+        assertThat(rs.getStatement().getFetchSize(), is(3));
+        assertThat(rs.getStatement().getQueryTimeout(), is(10));
+        return null;
+      });
+      assertThat(connection.getAutoCommit(), is(true));
+    }
+  }
+
+  @Test
+  public void testFailureRestoresAutoCommit() throws SQLException {
+    try (var connection = dataSource.getConnection()) {
+      final var query = new StreamingQuery("select id from people");
+      assertThrows(IllegalStateException.class, () -> query.query(connection, rs -> {
+        throw new IllegalStateException();
+      }));
+      assertThat(connection.getAutoCommit(), is(true));
+    }
+  }
+
+  @Test
+  public void testFailedRollbackKeepsCause() throws SQLException {
+    try (var connection = dataSource.getConnection()) {
+      final var failingRollback = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+          new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+            if (method.getName().equals("rollback")) {
+              throw new SQLException("rollback failed");
+            }
+            try {
+              return method.invoke(connection, args);
+            } catch (final InvocationTargetException e) {
+              throw e.getCause();
+            }
+          });
+      final var query = new StreamingQuery("select id from people");
+      final var e = assertThrows(IllegalStateException.class, () -> query.query(failingRollback, rs -> {
+        throw new IllegalStateException("extract failed");
+      }));
+      assertThat(e.getSuppressed()[0].getMessage(), is("rollback failed"));
+      assertThat(connection.getAutoCommit(), is(true));
+    }
+  }
+}
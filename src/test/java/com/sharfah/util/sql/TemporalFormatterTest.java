@@ -0,0 +1,117 @@
+package com.sharfah.util.sql;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Date;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+
+import org.junit.jupiter.api.Test;
+
+public class TemporalFormatterTest {
+
+  private static String timestamp(final TemporalFormatter formatter, final Timestamp value) {
+    final var buf = new TextBuffer(8);
+    formatter.appendTimestamp(buf, value);
+    return buf.toString();
+  }
+
+  @Test
+  public void testDefaultFormat() {
+    final var formatter = new TemporalFormatter(TemporalFormat.iso());
+    final var buf = new TextBuffer(8);
+    formatter.appendDate(buf, Date.valueOf("2020-02-29"));
+    buf.append(' ');
+    formatter.appendTime(buf, Time.valueOf("07:08:09"));
+    buf.append(' ');
+    formatter.appendTimestamp(buf, Timestamp.valueOf("2020-02-29 07:08:09"));
+    assertThat(buf.toString(), is("2020-02-29 07:08:09 2020-02-29T07:08:09"));
+    assertThat(timestamp(formatter, Timestamp.valueOf("2020-02-29 07:08:09.5")), is("2020-02-29T07:08:09.500"));
+    assertThat(timestamp(formatter, Timestamp.valueOf("2020-02-29 07:08:09.00012")), is("2020-02-29T07:08:09.000120"));
+    assertThat(timestamp(formatter, Timestamp.valueOf("2020-02-29 07:08:09.000000001")), is("2020-02-29T07:08:09.000000001"));
+  }
+
+  @Test
+  public void testPrecision() {
+    final var value = Timestamp.valueOf("2020-02-29 07:08:09.123456789");
+    assertThat(timestamp(new TemporalFormatter(TemporalFormat.iso().withPrecision(0)), value), is("2020-02-29T07:08:09"));
+    assertThat(timestamp(new TemporalFormatter(TemporalFormat.iso().withPrecision(1)), value), is("2020-02-29T07:08:09.1"));
+    assertThat(timestamp(new TemporalFormatter(TemporalFormat.iso().withPrecision(3)), value), is("2020-02-29T07:08:09.123"));
+    assertThat(timestamp(new TemporalFormatter(TemporalFormat.iso().withPrecision(9)),
+        Timestamp.valueOf("2020-02-29 07:08:09")), is("2020-02-29T07:08:09.000000000"));
+    assertThrows(IllegalArgumentException.class, () -> TemporalFormat.iso().withPrecision(10));
+  }
+
+  @Test
+  public void testMatchesDateTimeFormatter() {
+    final var zones = new ZoneId[] { ZoneOffset.UTC, ZoneId.of("Europe/London"), ZoneId.of("America/St_Johns"),
+        ZoneId.of("Asia/Kolkata") };
+    for (final var zone : zones) {
+      final var formatter = new TemporalFormatter(TemporalFormat.iso().withZone(zone).withPrecision(3).withOffset(true));
+      final var expected = DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss.SSSXXX");
+      // every 7 minutes and 13 seconds across two years, in and out of order
+      for (long millis = 1_577_836_800_000L; millis < 1_640_995_200_000L; millis += 433_123L) {
+        for (final var m : new long[] { millis, millis - 86_400_000L * 40 }) {
+          assertThat(timestamp(formatter, new Timestamp(m)),
+              is(expected.format(java.time.Instant.ofEpochMilli(m).atZone(zone))));
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testDaylightSavingTransitions() {
+    final var zone = ZoneId.of("Europe/London");
+    final var formatter = new TemporalFormatter(TemporalFormat.iso().withZone(zone).withOffset(true));
+    // clocks go forward at 01:00 UTC on 2020-03-29, and back at 01:00 UTC on 2020-10-25
+    assertThat(timestamp(formatter, Timestamp.from(java.time.Instant.parse("2020-03-29T00:59:59Z"))),
+        is("2020-03-29T00:59:59Z"));
+    assertThat(timestamp(formatter, Timestamp.from(java.time.Instant.parse("2020-03-29T01:00:00Z"))),
+        is("2020-03-29T02:00:00+01:00"));
+    assertThat(timestamp(formatter, Timestamp.from(java.time.Instant.parse("2020-03-29T00:30:00Z"))),
+        is("2020-03-29T00:30:00Z"));
+    assertThat(timestamp(formatter, Timestamp.from(java.time.Instant.parse("2020-10-25T00:59:59Z"))),
+        is("2020-10-25T01:59:59+01:00"));
+    assertThat(timestamp(formatter, Timestamp.from(java.time.Instant.parse("2020-10-25T01:00:00Z"))),
+        is("2020-10-25T01:00:00Z"));
+  }
+
+  @Test
+  public void testBeforeEpochAndFarFuture() {
+    final var formatter = new TemporalFormatter(TemporalFormat.iso().withZone(ZoneOffset.UTC));
+    assertThat(timestamp(formatter, new Timestamp(-1)), is("1969-12-31T23:59:59.999"));
+    assertThat(timestamp(formatter, Timestamp.from(java.time.Instant.parse("0900-01-02T03:04:05Z"))),
+        is("0900-01-02T03:04:05"));
+    assertThat(timestamp(formatter, Timestamp.from(java.time.Instant.parse("+12345-01-02T03:04:05Z"))),
+        is("+12345-01-02T03:04:05"));
+  }
+
+  @Test
+  public void testOffsetDateTime() {
+    final var formatter = new TemporalFormatter(TemporalFormat.iso());
+    final var buf = new TextBuffer(8);
+    formatter.appendOffsetDateTime(buf,
+        OffsetDateTime.of(LocalDateTime.of(2020, 1, 2, 3, 4, 5, 6_000_000), ZoneOffset.ofHoursMinutes(-3, -30)));
+    assertThat(buf.toString(), is("2020-01-02T03:04:05.006-03:30"));
+  }
+
+  @Test
+  public void testParse() {
+    final var value = Timestamp.valueOf("2020-02-29 07:08:09.123456");
+    assertThat(TemporalFormatter.parseTimestamp(timestamp(new TemporalFormatter(TemporalFormat.iso()), value)),
+        is(value));
+    assertThat(TemporalFormatter.parseTimestamp(timestamp(new TemporalFormatter(
+        TemporalFormat.iso().withZone(ZoneId.of("Asia/Tokyo")).withOffset(true)), value)), is(value));
+    assertThat(TemporalFormatter.parseTimestamp(value.toString()), is(value));
+    assertThat(TemporalFormatter.parseDate("2020-02-29"), is(Date.valueOf("2020-02-29")));
+    assertThat(TemporalFormatter.parseTime("07:08:09"), is(Time.valueOf("07:08:09")));
+    assertThat(TemporalFormatter.parseTime("07:08:09.250").getTime(), is(Time.valueOf("07:08:09").getTime() + 250));
+  }
+}
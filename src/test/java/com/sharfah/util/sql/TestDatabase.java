@@ -0,0 +1,50 @@
+package com.sharfah.util.sql;
+
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+
+/**
+ * In-memory H2 databases for the tests which run queries.
+ */
+final class TestDatabase {
+
+  private TestDatabase() {
+  }
+
+  /**
+   * Creates an in-memory database with a {@code people} table of
+   * {@code (id bigint primary key, name varchar(50))}, holding the rows
+   * {@code (i, 'name' || i)} for i from 0 to rows - 1.
+   *
+   * @param name the name of the database, unique to the test
+   * @param rows the number of rows
+   * @return the database
+   */
+  static JdbcDataSource people(final String name, final long rows) {
+    final var dataSource = new JdbcDataSource();
+    dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+    try (var connection = dataSource.getConnection(); var statement = connection.createStatement()) {
+      statement.execute("create table people (id bigint primary key, name varchar(50))");
+      statement.execute("insert into people select x, 'name' || x from system_range(0, " + (rows - 1) + ")");
+    } catch (final SQLException e) {
+      throw new RuntimeException(e);
+    }
+    return dataSource;
+  }
+
+  /**
+   * Drops the {@code people} table created by {@link #people(String, long)}.
+   *
+   * @param dataSource the database
+   */
+  static void drop(final DataSource dataSource) {
+    try (var connection = dataSource.getConnection(); var statement = connection.createStatement()) {
+      statement.execute("drop table people");
+    } catch (final SQLException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
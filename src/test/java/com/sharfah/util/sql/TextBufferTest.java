@@ -0,0 +1,58 @@
+package com.sharfah.util.sql;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class TextBufferTest {
+
+  @Test
+  public void testAppendLong() {
+    final var buf = new TextBuffer(1);
+    for (final var value : new long[] { 0, 7, -7, 10, 99, 100, 123456789, -987654321,
+        Long.MAX_VALUE, Long.MIN_VALUE, 1_000_000_000_000_000_000L }) {
+      buf.reset();
+      buf.appendLong(value);
+      assertThat(buf.toString(), is(Long.toString(value)));
+    }
+  }
+
+  @Test
+  public void testAppendDouble() {
+    final var buf = new TextBuffer(1);
+    for (final var value : new double[] { 0, -0.0, 1.5, 1e-5, 1e21, Double.NaN, Double.MIN_VALUE }) {
+      buf.reset();
+      buf.appendDouble(value);
+      assertThat(buf.toString(), is(Double.toString(value)));
+    }
+  }
+
+  @Test
+  public void testAppendBase64() {
+    final var buf = new TextBuffer(1);
+    final var bytes = new byte[100];
+    new Random(0).nextBytes(bytes);
+    for (var len = 0; len < bytes.length; len++) {
+      buf.reset();
+      // in parts whose lengths are multiples of 3, as when streamed
+      final var split = len / 6 * 3;
+      buf.appendBase64(bytes, 0, split).appendBase64(bytes, split, len - split);
+      assertThat(buf.toString(), is(Base64.getEncoder().encodeToString(Arrays.copyOf(bytes, len))));
+    }
+  }
+
+  @Test
+  public void testGrows() {
+    final var buf = new TextBuffer(2);
+    buf.append("foo").append(',').appendLong(42).append("bar".toCharArray(), 1, 2);
+    assertThat(buf.toString(), is("foo,42ar"));
+    assertThat(buf.length(), is(8));
+    buf.reset();
+    assertThat(buf.toString(), is(""));
+  }
+}